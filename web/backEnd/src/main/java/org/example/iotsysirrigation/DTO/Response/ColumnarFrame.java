@@ -0,0 +1,200 @@
+package org.example.iotsysirrigation.DTO.Response;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wire formats for {@link ColumnarSeries}; both delta-encode the timestamps.
+ * <p>
+ * Binary ({@value #MEDIA_TYPE}), little-endian:
+ * <pre>
+ * "IOTC"  u8 version=1  u8 0  u16 columns  u32 rows
+ * i64 t[0]  then rows-1 deltas t[i]-t[i-1] in ms, zigzag LEB128 varints
+ * per column: u16 name length, UTF-8 name, rows x f64 (NaN = missing)
+ * </pre>
+ * JSON ({@value #JSON_MEDIA_TYPE}): {@code {"t":[t0,d1,d2,...],"humiditySensor.3":[78.0,null,...]}}, where
+ * {@code t[0]} is epoch millis and every later entry is the delta to the previous row.
+ */
+public final class ColumnarFrame {
+
+    public static final String MEDIA_TYPE = "application/vnd.iot.columnar";
+    public static final String JSON_MEDIA_TYPE = "application/vnd.iot.columnar+json";
+
+    private static final byte[] MAGIC = {'I', 'O', 'T', 'C'};
+    private static final int VERSION = 1;
+
+    private ColumnarFrame() {}
+
+    public static void write(ColumnarSeries s, OutputStream out) throws IOException {
+        long[] t = s.t();
+        LeWriter w = new LeWriter(out);
+        w.bytes(MAGIC);
+        w.u8(VERSION);
+        w.u8(0);
+        w.u16(s.columns().size());
+        w.i32(t.length);
+        if (t.length > 0) {
+            w.i64(t[0]);
+            for (int i = 1; i < t.length; i++) w.varint(zigzag(t[i] - t[i - 1]));
+        }
+        for (Map.Entry<String, double[]> c : s.columns().entrySet()) {
+            byte[] name = c.getKey().getBytes(StandardCharsets.UTF_8);
+            w.u16(name.length);
+            w.bytes(name);
+            for (double v : c.getValue()) w.f64(v);
+        }
+        w.flush();
+    }
+
+    public static ColumnarSeries read(byte[] frame) {
+        ByteBuffer b = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            for (byte m : MAGIC) {
+                if (b.get() != m) throw new IllegalArgumentException("Not a columnar frame");
+            }
+            int version = b.get() & 0xFF;
+            if (version != VERSION) throw new IllegalArgumentException("Unsupported columnar frame version " + version);
+            b.get();
+            int columns = b.getShort() & 0xFFFF;
+            int rows = b.getInt();
+            if (rows < 0 || rows > frame.length) throw new IllegalArgumentException("Corrupt columnar frame");
+
+            long[] t = new long[rows];
+            if (rows > 0) {
+                t[0] = b.getLong();
+                for (int i = 1; i < rows; i++) t[i] = t[i - 1] + unzigzag(readVarint(b));
+            }
+            Map<String, double[]> cols = new LinkedHashMap<>();
+            for (int c = 0; c < columns; c++) {
+                byte[] name = new byte[b.getShort() & 0xFFFF];
+                b.get(name);
+                double[] values = new double[rows];
+                b.asDoubleBuffer().get(values);
+                b.position(b.position() + rows * Double.BYTES);
+                cols.put(new String(name, StandardCharsets.UTF_8), values);
+            }
+            return new ColumnarSeries(t, cols);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated columnar frame", e);
+        }
+    }
+
+    /** NaN and infinities become null, since JSON has no literal for them. */
+    public static void writeJson(ColumnarSeries s, JsonGenerator g) throws IOException {
+        long[] t = s.t();
+        g.writeStartObject();
+        g.writeArrayFieldStart("t");
+        for (int i = 0; i < t.length; i++) g.writeNumber(i == 0 ? t[0] : t[i] - t[i - 1]);
+        g.writeEndArray();
+        for (Map.Entry<String, double[]> c : s.columns().entrySet()) {
+            g.writeArrayFieldStart(c.getKey());
+            for (double v : c.getValue()) {
+                if (Double.isFinite(v)) g.writeNumber(v);
+                else g.writeNull();
+            }
+            g.writeEndArray();
+        }
+        g.writeEndObject();
+        g.flush();
+    }
+
+    /** Inverse of {@link #writeJson}: undoes the deltas and maps null back to NaN. */
+    public static ColumnarSeries readJson(JsonNode root) {
+        JsonNode tn = root.path("t");
+        if (!tn.isArray()) throw new IllegalArgumentException("Missing 't' array");
+        long[] t = new long[tn.size()];
+        for (int i = 0; i < t.length; i++) t[i] = (i == 0 ? 0 : t[i - 1]) + tn.get(i).asLong();
+
+        Map<String, double[]> cols = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = root.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> e = it.next();
+            if (e.getKey().equals("t")) continue;
+            JsonNode arr = e.getValue();
+            if (arr.size() != t.length) throw new IllegalArgumentException("Column " + e.getKey() + " has " + arr.size() + " rows, expected " + t.length);
+            double[] values = new double[t.length];
+            for (int i = 0; i < values.length; i++) {
+                JsonNode v = arr.get(i);
+                values[i] = v.isNumber() ? v.asDouble() : Double.NaN;
+            }
+            cols.put(e.getKey(), values);
+        }
+        return new ColumnarSeries(t, cols);
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long readVarint(ByteBuffer b) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte x = b.get();
+            v |= (long) (x & 0x7F) << shift;
+            if (x >= 0) return v;
+        }
+        throw new IllegalArgumentException("Malformed varint in columnar frame");
+    }
+
+    /** Little-endian writes through a fixed buffer, so a year of rows never needs one big array. */
+    private static final class LeWriter {
+        private final OutputStream out;
+        private final ByteBuffer buf = ByteBuffer.allocate(16 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+        LeWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void u8(int v) throws IOException { room(1); buf.put((byte) v); }
+        void u16(int v) throws IOException { room(2); buf.putShort((short) v); }
+        void i32(int v) throws IOException { room(4); buf.putInt(v); }
+        void i64(long v) throws IOException { room(8); buf.putLong(v); }
+        void f64(double v) throws IOException { room(8); buf.putDouble(v); }
+
+        void varint(long v) throws IOException {
+            room(10);
+            while ((v & ~0x7FL) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        void bytes(byte[] b) throws IOException {
+            if (b.length > buf.capacity()) {
+                flush();
+                out.write(b);
+                return;
+            }
+            room(b.length);
+            buf.put(b);
+        }
+
+        private void room(int n) throws IOException {
+            if (buf.remaining() < n) drain();
+        }
+
+        private void drain() throws IOException {
+            out.write(buf.array(), 0, buf.position());
+            buf.clear();
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+    }
+}
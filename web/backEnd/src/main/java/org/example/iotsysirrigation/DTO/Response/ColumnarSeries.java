@@ -0,0 +1,17 @@
+package org.example.iotsysirrigation.DTO.Response;
+
+import java.util.Map;
+
+/**
+ * Readings or rollup buckets turned column-wise: one epoch-millis array and one double array per metric,
+ * all of the same length and in the row order of the JSON endpoint. A missing value is {@code NaN}.
+ * Written as {@link ColumnarFrame#MEDIA_TYPE} or {@link ColumnarFrame#JSON_MEDIA_TYPE}.
+ */
+public record ColumnarSeries(
+        long[] t,
+        Map<String, double[]> columns
+) {
+    public int rows() {
+        return t.length;
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.iotsysirrigation.DTO.Response;
+
+import org.example.iotsysirrigation.Models.SensorReading;
+
+import java.util.List;
+
+/** One keyset page of readings, newest first; {@code nextCursor} is null on the last page. */
+public record ReadingPage(
+        List<SensorReading> items,
+        String nextCursor
+) {}
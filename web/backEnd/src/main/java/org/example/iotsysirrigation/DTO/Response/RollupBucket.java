@@ -0,0 +1,48 @@
+package org.example.iotsysirrigation.DTO.Response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One hourly or daily rollup of a device: bucket start, readings folded in, and per-metric stats keyed by
+ * the object_json path (e.g. "humiditySensor.3", "gpsLocation.0.latitude").
+ * It also carries {@code timestamp} and {@code sensorsReading} like a reading, so clients of the raw
+ * lastMonth/lastYear rows keep parsing it: one row per bucket holding each metric's newest value.
+ */
+public record RollupBucket(
+        Instant t,
+        long count,
+        Map<String, Metric> metrics
+) {
+    /**
+     * {@code last} is the value of the newest reading in the bucket. Metrics without values are left out
+     * of a bucket, and any field that has no finite value is null (JSON can't carry NaN or infinities).
+     */
+    public record Metric(Double min, Double max, Double avg, long count, Double last) {}
+
+    @JsonProperty("timestamp")
+    public Instant timestamp() {
+        return t;
+    }
+
+    /** The {@code last} values nested back into object_json's shape, e.g. {"humiditySensor": {"3": 41.5}}. */
+    @JsonProperty("sensorsReading")
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> sensorsReading() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        if (metrics == null) return out;
+        metrics.forEach((path, m) -> {
+            String[] keys = path.split("\\.");
+            Map<String, Object> node = out;
+            for (int i = 0; i < keys.length - 1; i++) {
+                if (!(node.computeIfAbsent(keys[i], k -> new LinkedHashMap<String, Object>()) instanceof Map<?, ?> child)) return;
+                node = (Map<String, Object>) child;
+            }
+            node.putIfAbsent(keys[keys.length - 1], m.last());
+        });
+        return out;
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.iotsysirrigation.DTO.Response;
+
+import java.time.Instant;
+
+/** One aggregated time bucket of a single metric (bucket start + min/max/avg/count). */
+public record SeriesBucket(
+        Instant t,
+        long count,
+        Double min,
+        Double max,
+        Double avg
+) {}
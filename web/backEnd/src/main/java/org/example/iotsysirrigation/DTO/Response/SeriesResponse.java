@@ -0,0 +1,14 @@
+package org.example.iotsysirrigation.DTO.Response;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Bucketed series for one device/metric; {@code granularity} is the effective (possibly coarsened) bucket width. */
+public record SeriesResponse(
+        String devEui,
+        String metric,
+        String granularity,
+        Instant from,
+        Instant to,
+        List<SeriesBucket> buckets
+) {}
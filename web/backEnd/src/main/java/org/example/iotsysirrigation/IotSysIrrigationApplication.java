@@ -4,9 +4,11 @@ import org.example.iotsysirrigation.JWT.ChirpstackProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableConfigurationProperties({ChirpstackProperties.class})
+@EnableScheduling
 public class IotSysIrrigationApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,29 @@
+package org.example.iotsysirrigation.JWT;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ChirpstackHttpConfig {
+
+    /**
+     * One shared JDK client for ChirpStack: HTTP/1.1 keep-alive, idle connections are kept and reused across
+     * calls (ChirpstackClient caps how many are open at once). With spring.threads.virtual.enabled its
+     * internal tasks and async completions run on virtual threads.
+     */
+    @Bean
+    public HttpClient chirpstackHttpClient(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                           @Value("${chirpstack.http.connect-timeout-ms:2000}") long connectTimeoutMs) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                // ChirpStack's REST gateway speaks HTTP/1.1; skip the h2c upgrade attempt
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs));
+        if (virtualThreads) builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        return builder.build();
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.iotsysirrigation.JWT;
+
+import org.example.iotsysirrigation.Repositories.DecodedMetricsReadConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.List;
+
+@Configuration
+public class MongoConfig {
+
+    /** Replaces Boot's empty default; the JSR-310 and store converters are still registered underneath. */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(new DecodedMetricsReadConverter()));
+    }
+}
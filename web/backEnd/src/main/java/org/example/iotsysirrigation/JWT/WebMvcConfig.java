@@ -0,0 +1,18 @@
+package org.example.iotsysirrigation.JWT;
+
+import org.example.iotsysirrigation.RestControllers.ColumnarMessageConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    /** First in line, so Jackson (which also matches application/*+json) never gets a ColumnarSeries. */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new ColumnarMessageConverter());
+    }
+}
@@ -1,5 +1,6 @@
 package org.example.iotsysirrigation.JWT;
 
+import jakarta.servlet.DispatcherType;
 import org.example.iotsysirrigation.Services.UserDetailsServiceImp;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -62,12 +63,19 @@ public class WebSecurityConfig {
                 .exceptionHandling().authenticationEntryPoint(unauthorizedhandler).and()
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
                 .authorizeHttpRequests()
+                        // streamed responses complete on an ASYNC dispatch; the original request was already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
+                        // ChirpStack HTTP integration; checks its own shared-secret header
+                        .requestMatchers(HttpMethod.POST, "/api/ingest/chirpstack").permitAll()
                         .requestMatchers("/api/users/**").hasRole("ADMIN")
+                        .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/commands/**").hasAnyRole("ADMIN","CLIENT")
                         .requestMatchers("/api/commands/**").hasRole("ADMIN")
                         .requestMatchers("/api/readings/**").hasAnyRole("ADMIN","CLIENT")
                         .requestMatchers("/api/devices/**").hasAnyRole("ADMIN","CLIENT")
+                        // WebSocket sessions authenticate with their first message (LiveReadingSocketHandler)
+                        .requestMatchers("/api/ws/**").permitAll()
 
 
 
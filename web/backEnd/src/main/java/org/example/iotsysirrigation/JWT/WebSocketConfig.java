@@ -0,0 +1,24 @@
+package org.example.iotsysirrigation.JWT;
+
+import lombok.RequiredArgsConstructor;
+import org.example.iotsysirrigation.RestControllers.LiveReadingSocketHandler;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final LiveReadingSocketHandler liveReadingSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // same origins as the CORS config in WebSecurityConfig
+        registry.addHandler(liveReadingSocketHandler, "/api/ws/readings")
+                .setAllowedOriginPatterns("http://localhost:4200", "http://localhost:4000",
+                        "http://127.0.0.1:*", "http://*", "https://*");
+    }
+}
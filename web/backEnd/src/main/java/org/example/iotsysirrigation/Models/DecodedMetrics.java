@@ -0,0 +1,30 @@
+package org.example.iotsysirrigation.Models;
+
+/**
+ * Flat, typed view of a reading's object_json (Cayenne LPP channels as decoded by ChirpStack).
+ * Absent values are NaN, so nothing is boxed; use the has* helpers before reading optional fields.
+ */
+public record DecodedMetrics(
+        double temperature,   // temperatureSensor, °C
+        double humidity,      // humiditySensor, %RH
+        double pressure,      // barometer, hPa
+        double illuminance,   // illuminanceSensor, lux
+        double analogInput,   // analogInput (soil humidity probe)
+        double digitalInput,  // digitalInput (irrigation state)
+        double latitude,
+        double longitude,
+        double altitude
+) {
+    public static final DecodedMetrics EMPTY = new DecodedMetrics(
+            Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN,
+            Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+    public boolean hasGps() {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    /** {lat, lng} or {lat, lng, alt}, the shape EndNodeDeviceService has always used. */
+    public double[] gps() {
+        return Double.isNaN(altitude) ? new double[]{latitude, longitude} : new double[]{latitude, longitude, altitude};
+    }
+}
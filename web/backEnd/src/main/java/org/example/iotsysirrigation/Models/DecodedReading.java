@@ -0,0 +1,35 @@
+package org.example.iotsysirrigation.Models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+
+/**
+ * Read model over the sensors collection for code that needs metric values rather than the raw payload:
+ * object_json is turned into {@link DecodedMetrics} by the registered read converter, and data / rx_info
+ * are never loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = SensorReading.COLLECTION)
+public class DecodedReading {
+
+    @Id
+    private String id;
+
+    @Field("dev_eui")
+    private String devEui;
+
+    @Field("f_port")
+    private int fPort;
+
+    @Field("timestamp")
+    private Instant timestamp;
+
+    @Field("object_json")
+    private DecodedMetrics metrics;
+}
@@ -3,16 +3,22 @@ package org.example.iotsysirrigation.Models;
 
 import org.springframework.data.annotation.Id;
 import lombok.*;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.IndexDirection;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
+import java.util.Map;
 
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @Document("devices")
+// list lookups plus the covered (count, max updatedAt) version check for conditional GETs
+@CompoundIndex(name = "organizationId_updatedAt", def = "{'organizationId': 1, 'updatedAt': -1}")
+@CompoundIndex(name = "userId_updatedAt", def = "{'userId': 1, 'updatedAt': -1}")
 public class EndNodeDevice {
     @Id
     private String id;
@@ -33,6 +39,10 @@ public class EndNodeDevice {
     private Double lng;
     private Double altitude;
 
+    /** object_json of the newest reading, kept current on ingest by DeviceStateService */
+    private Map<String, Object> lastValues;
+
     private Instant createdAt;
+    @Indexed(name = "updatedAt", direction = IndexDirection.DESCENDING)
     private Instant updatedAt;
 }
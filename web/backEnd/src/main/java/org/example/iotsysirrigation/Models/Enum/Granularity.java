@@ -0,0 +1,66 @@
+package org.example.iotsysirrigation.Models.Enum;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/** Bucket width for server-side series aggregation (maps onto Mongo's $dateTrunc unit/binSize). */
+public enum Granularity {
+
+    MINUTE("1m", "minute", 1, Duration.ofMinutes(1)),
+    FIVE_MINUTES("5m", "minute", 5, Duration.ofMinutes(5)),
+    FIFTEEN_MINUTES("15m", "minute", 15, Duration.ofMinutes(15)),
+    HOUR("1h", "hour", 1, Duration.ofHours(1)),
+    SIX_HOURS("6h", "hour", 6, Duration.ofHours(6)),
+    DAY("1d", "day", 1, Duration.ofDays(1)),
+    WEEK("1w", "week", 1, Duration.ofDays(7)),
+    MONTH("1M", "month", 1, Duration.ofDays(30));
+
+    private final String code;
+    private final String unit;
+    private final int binSize;
+    private final Duration approxWidth;
+
+    Granularity(String code, String unit, int binSize, Duration approxWidth) {
+        this.code = code;
+        this.unit = unit;
+        this.binSize = binSize;
+        this.approxWidth = approxWidth;
+    }
+
+    public String code() { return code; }
+    public String unit() { return unit; }
+    public int binSize() { return binSize; }
+    public Duration approxWidth() { return approxWidth; }
+
+    /** Upper bound of buckets a range of the given length produces at this granularity. */
+    public long bucketsFor(Duration range) {
+        long w = approxWidth.toMillis();
+        return (range.toMillis() + w - 1) / w;
+    }
+
+    /**
+     * Finest granularity (starting at {@code floor}) that keeps the range within {@code maxBuckets}.
+     * Throws IllegalArgumentException when even monthly buckets would exceed it.
+     */
+    public static Granularity fit(Duration range, Granularity floor, int maxBuckets) {
+        Granularity[] all = values();
+        for (int i = floor.ordinal(); i < all.length; i++) {
+            if (all[i].bucketsFor(range) <= maxBuckets) return all[i];
+        }
+        throw new IllegalArgumentException("Range too long: more than " + maxBuckets + " monthly buckets");
+    }
+
+    /** Accepts either the short code ("15m", "1h", "1d") or the enum name (case-insensitive); null for "auto". */
+    public static Granularity parse(String s) {
+        if (s == null || s.isBlank() || "auto".equalsIgnoreCase(s.trim())) return null;
+        String v = s.trim();
+        for (Granularity g : values()) {
+            if (g.code.equals(v)) return g;
+        }
+        try {
+            return valueOf(v.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown granularity: " + s);
+        }
+    }
+}
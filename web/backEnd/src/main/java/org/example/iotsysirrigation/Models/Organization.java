@@ -2,6 +2,7 @@ package org.example.iotsysirrigation.Models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
@@ -14,6 +15,8 @@ public class Organization {
     @Id
     private String id;
 
+    /** Looked up by findByName/existsByName. Not unique: existing deployments may hold duplicate names. */
+    @Indexed
     private String name;
     private String address;
     private String contactEmail;
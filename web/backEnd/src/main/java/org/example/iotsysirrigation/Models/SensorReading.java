@@ -3,6 +3,7 @@ package org.example.iotsysirrigation.Models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -11,12 +12,20 @@ import java.util.List;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
-@Document(collection = "sensors")
+@Document(collection = SensorReading.COLLECTION)
+// serves latest, range, series and keyset (timestamp, _id) queries per device
+@CompoundIndex(name = "dev_eui_timestamp_id", def = "{'dev_eui': 1, 'timestamp': -1, '_id': -1}")
 public class SensorReading {
 
+    /**
+     * Resolved per call from {@code app.readings.collection} (default "sensors"), so a deployment can point
+     * every read model at a time-series copy; see ReadingStorageService.
+     */
+    public static final String COLLECTION = "#{@environment.getProperty('app.readings.collection', 'sensors')}";
+
     @Id
     private String id;
 
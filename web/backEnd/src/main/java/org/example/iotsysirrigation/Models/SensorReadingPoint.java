@@ -0,0 +1,26 @@
+package org.example.iotsysirrigation.Models;
+
+import lombok.*;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Chart-only read model over the sensors collection: timestamp plus the requested object_json sub-fields.
+ * Property names match {@link SensorReading} so clients parse both the same way.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = SensorReading.COLLECTION)
+public class SensorReadingPoint {
+
+    @Field("timestamp")
+    private Instant timestamp;
+
+    /** Only the projected sensors are present */
+    @Field("object_json")
+    private Map<String, Object> sensorsReading;
+}
@@ -3,6 +3,7 @@ package org.example.iotsysirrigation.Models;
 import org.springframework.data.annotation.Id;
 import lombok.*;
 import org.example.iotsysirrigation.Models.Enum.Role;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Set;
@@ -17,8 +18,10 @@ public class User {
     @Id
     private String id;
 
+    @Indexed(unique = true)
     private String username;
     private String password;     // store BCrypt'ed
+    @Indexed(unique = true)
     private String email;
     private String organizationId;
     private Set<Role> roles;
@@ -0,0 +1,157 @@
+package org.example.iotsysirrigation.Repositories;
+
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * object_json → {@link DecodedMetrics} in one pass over its top-level keys. Key → slot mapping is a
+ * precompiled string switch, so each key costs one hash lookup instead of probing every alias per metric.
+ * Also used directly on readings that were already mapped to nested Maps.
+ */
+@ReadingConverter
+public class DecodedMetricsReadConverter implements Converter<Document, DecodedMetrics> {
+
+    private static final int TEMPERATURE = 0, HUMIDITY = 1, PRESSURE = 2, ILLUMINANCE = 3,
+            ANALOG = 4, DIGITAL = 5, LAT = 6, LNG = 7, ALT = 8, SLOTS = 9;
+    /** Top-level key holding a GPS object (Cayenne: {"0": {latitude, longitude, altitude}}). */
+    private static final int GPS = -1;
+
+    private static final int NONE = -2;
+
+    @Override
+    public DecodedMetrics convert(Document source) {
+        return decode(source);
+    }
+
+    /** First value wins when a payload carries both a Cayenne name and an alias. */
+    public static DecodedMetrics decode(Object objectJson) {
+        if (!(objectJson instanceof Map<?, ?> obj) || obj.isEmpty()) return DecodedMetrics.EMPTY;
+        double[] v = new double[SLOTS];
+        Arrays.fill(v, Double.NaN);
+        for (Map.Entry<?, ?> e : obj.entrySet()) {
+            int slot = e.getKey() instanceof String k ? topLevelSlot(k) : NONE;
+            if (slot == NONE) continue;
+            if (slot == GPS) {
+                readGps(e.getValue(), v);
+            } else if (Double.isNaN(v[slot])) {
+                v[slot] = firstNumber(e.getValue());
+            }
+        }
+        return new DecodedMetrics(v[TEMPERATURE], v[HUMIDITY], v[PRESSURE], v[ILLUMINANCE],
+                v[ANALOG], v[DIGITAL], v[LAT], v[LNG], v[ALT]);
+    }
+
+    /**
+     * A bare number, or the numeric value on the lowest channel of {"<channel>": value}. Going by channel
+     * number rather than key order keeps the answer independent of how the writer ordered the keys, and is
+     * what CayenneLppDecoder picks from the raw frame.
+     */
+    private static double firstNumber(Object val) {
+        if (val instanceof Map<?, ?> channels) {
+            double best = Double.NaN;
+            int bestRank = Integer.MAX_VALUE;
+            for (Map.Entry<?, ?> c : channels.entrySet()) {
+                int rank = channelRank(c.getKey());
+                if (rank >= bestRank && !Double.isNaN(best)) continue;
+                double d = number(c.getValue());
+                if (!Double.isNaN(d)) {
+                    best = d;
+                    bestRank = rank;
+                }
+            }
+            return best;
+        }
+        return number(val);
+    }
+
+    /** Cayenne nests the fix under a channel ({"0": {...}}, lowest channel wins); the aliases put lat/lng directly inside. */
+    private static void readGps(Object val, double[] v) {
+        if (!(val instanceof Map<?, ?> m)) return;
+        Map<?, ?> best = null;
+        int bestRank = Integer.MAX_VALUE;
+        for (Map.Entry<?, ?> ch : m.entrySet()) {
+            if (!(ch.getValue() instanceof Map<?, ?> c) || (best != null && channelRank(ch.getKey()) >= bestRank)) continue;
+            if (hasGps(c)) {
+                best = c;
+                bestRank = channelRank(ch.getKey());
+            }
+        }
+        setGps(best != null ? best : m, v);
+    }
+
+    /** Channel number of an object_json key; anything else sorts after every channel. */
+    private static int channelRank(Object key) {
+        if (!(key instanceof String k) || k.isEmpty() || k.length() > 9) return Integer.MAX_VALUE;
+        int n = 0;
+        for (int i = 0; i < k.length(); i++) {
+            char c = k.charAt(i);
+            if (c < '0' || c > '9') return Integer.MAX_VALUE;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    private static boolean hasGps(Map<?, ?> m) {
+        for (Map.Entry<?, ?> e : m.entrySet()) {
+            if (e.getKey() instanceof String k && gpsSlot(k) != NONE && !Double.isNaN(number(e.getValue()))) return true;
+        }
+        return false;
+    }
+
+    private static boolean setGps(Map<?, ?> m, double[] v) {
+        boolean any = false;
+        for (Map.Entry<?, ?> e : m.entrySet()) {
+            int slot = e.getKey() instanceof String k ? gpsSlot(k) : NONE;
+            if (slot == NONE || !Double.isNaN(v[slot])) continue;
+            double d = number(e.getValue());
+            if (!Double.isNaN(d)) {
+                v[slot] = d;
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    /** Cayenne LPP names first, then the aliases older payloads and the dashboard use (compiled to a hash switch). */
+    private static int topLevelSlot(String key) {
+        return switch (key) {
+            case "temperatureSensor", "temperature" -> TEMPERATURE;
+            case "humiditySensor", "humidity" -> HUMIDITY;
+            case "barometer", "pressure" -> PRESSURE;
+            case "illuminanceSensor", "luminosity" -> ILLUMINANCE;
+            case "analogInput", "soilHumidity" -> ANALOG;
+            case "digitalInput" -> DIGITAL;
+            case "gpsLocation", "gps", "location", "coordinates" -> GPS;
+            case "lat", "latitude", "gps_lat", "gpsLatitude" -> LAT;
+            case "lng", "lon", "longitude", "gps_lon", "gpsLongitude" -> LNG;
+            case "alt", "altitude", "gps_alt", "gpsAltitude" -> ALT;
+            default -> NONE;
+        };
+    }
+
+    private static int gpsSlot(String key) {
+        return switch (key) {
+            case "latitude", "lat" -> LAT;
+            case "longitude", "lng", "lon" -> LNG;
+            case "altitude", "alt" -> ALT;
+            default -> NONE;
+        };
+    }
+
+    private static double number(Object o) {
+        if (o instanceof Number n) return n.doubleValue();
+        if (o instanceof String s) {
+            try {
+                return Double.parseDouble(s);
+            } catch (NumberFormatException ignored) {
+                // not numeric
+            }
+        }
+        return Double.NaN;
+    }
+}
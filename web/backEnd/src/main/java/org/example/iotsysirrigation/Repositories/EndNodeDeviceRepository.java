@@ -7,7 +7,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.List;
 import java.util.Optional;
 
-public interface EndNodeDeviceRepository extends MongoRepository<EndNodeDevice, String> {
+public interface EndNodeDeviceRepository extends MongoRepository<EndNodeDevice, String>, EndNodeDeviceRepositoryCustom {
     Optional<EndNodeDevice> findByDevEui(String devEui);
     List<EndNodeDevice> findByUserId(String userId);
     List<EndNodeDevice> findByOrganizationId(String organizationId);
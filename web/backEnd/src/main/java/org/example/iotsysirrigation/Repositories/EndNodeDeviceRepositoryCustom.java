@@ -0,0 +1,36 @@
+package org.example.iotsysirrigation.Repositories;
+
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/** Hand-written queries on the devices collection. */
+public interface EndNodeDeviceRepositoryCustom {
+
+    /** How many devices a list holds and the newest updatedAt among them; changes whenever the list does. */
+    record ListVersion(long count, Instant newestUpdate) {}
+
+    /**
+     * {@link ListVersion} of the devices whose {@code field} ("organizationId" or "userId") equals
+     * {@code value}, or of every device when {@code field} is null. One aggregation that reads only the
+     * (field, updatedAt) index.
+     */
+    ListVersion listVersion(String field, String value);
+
+    /**
+     * Every device with only id, devEui, organizationId, name, description and lastSeen set: what ChirpStack
+     * reconciliation compares.
+     */
+    List<EndNodeDevice> findAllSyncFields();
+
+    /** Lat/lng rectangle, edges included. */
+    record Area(double minLat, double minLng, double maxLat, double maxLng) {}
+
+    /**
+     * devEuis of the registered devices matching every given selector: in {@code devEuis}, of
+     * {@code organizationId}, located in {@code area}. A null selector doesn't restrict.
+     */
+    List<String> findDevEuis(Collection<String> devEuis, String organizationId, Area area);
+}
@@ -0,0 +1,62 @@
+package org.example.iotsysirrigation.Repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public class EndNodeDeviceRepositoryCustomImpl implements EndNodeDeviceRepositoryCustom {
+
+    private static final Set<String> SCOPES = Set.of("organizationId", "userId");
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public ListVersion listVersion(String field, String value) {
+        if (field != null && !SCOPES.contains(field)) {
+            throw new IllegalArgumentException("Unsupported device scope: " + field);
+        }
+        Document match = field == null ? new Document() : new Document(field, value);
+        List<Document> pipeline = List.of(
+                new Document("$match", match),
+                new Document("$group", new Document("_id", null)
+                        .append("count", new Document("$sum", 1))
+                        .append("newest", new Document("$max", "$updatedAt"))));
+        var agg = mongoTemplate.getCollection(mongoTemplate.getCollectionName(EndNodeDevice.class)).aggregate(pipeline);
+        // without a filter the planner would pick a COLLSCAN; the updatedAt index holds everything $group needs
+        if (field == null) agg = agg.hint(new Document("updatedAt", -1));
+
+        Document d = agg.first();
+        if (d == null) return new ListVersion(0, null);
+        Date newest = d.getDate("newest");
+        return new ListVersion(((Number) d.get("count")).longValue(), newest == null ? null : newest.toInstant());
+    }
+
+    @Override
+    public List<EndNodeDevice> findAllSyncFields() {
+        Query q = new Query();
+        q.fields().include("devEui", "organizationId", "name", "description", "lastSeen");
+        return mongoTemplate.find(q, EndNodeDevice.class);
+    }
+
+    @Override
+    public List<String> findDevEuis(Collection<String> devEuis, String organizationId, Area area) {
+        Query q = new Query();
+        if (devEuis != null) q.addCriteria(Criteria.where("devEui").in(devEuis));
+        if (organizationId != null) q.addCriteria(Criteria.where("organizationId").is(organizationId));
+        if (area != null) {
+            q.addCriteria(Criteria.where("lat").gte(area.minLat()).lte(area.maxLat()));
+            q.addCriteria(Criteria.where("lng").gte(area.minLng()).lte(area.maxLng()));
+        }
+        q.fields().include("devEui");
+        return mongoTemplate.find(q, EndNodeDevice.class).stream().map(EndNodeDevice::getDevEui).toList();
+    }
+}
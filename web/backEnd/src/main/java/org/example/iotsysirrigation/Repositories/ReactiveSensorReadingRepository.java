@@ -0,0 +1,14 @@
+package org.example.iotsysirrigation.Repositories;
+
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+/** Non-blocking twin of {@link SensorReadingRepository} for the streaming endpoints. */
+@Repository
+public interface ReactiveSensorReadingRepository extends ReactiveMongoRepository<SensorReading, String>, ReactiveSensorReadingRepositoryCustom {
+    Flux<SensorReading> findByDevEuiAndTimestampBetweenOrderByTimestampDesc(String devEui, Instant from, Instant to);
+}
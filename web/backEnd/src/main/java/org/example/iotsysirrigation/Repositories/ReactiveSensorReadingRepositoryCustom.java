@@ -0,0 +1,13 @@
+package org.example.iotsysirrigation.Repositories;
+
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ReactiveSensorReadingRepositoryCustom {
+
+    /** Same projection as {@link SensorReadingRepositoryCustom#findPoints}, emitted as the cursor advances. */
+    Flux<SensorReadingPoint> findPoints(String devEui, Instant from, Instant to, List<String> fields);
+}
@@ -0,0 +1,21 @@
+package org.example.iotsysirrigation.Repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ReactiveSensorReadingRepositoryCustomImpl implements ReactiveSensorReadingRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Flux<SensorReadingPoint> findPoints(String devEui, Instant from, Instant to, List<String> fields) {
+        return reactiveMongoTemplate.find(
+                SensorReadingRepositoryCustomImpl.pointsQuery(devEui, from, to, fields), SensorReadingPoint.class);
+    }
+}
@@ -1,17 +1,23 @@
 package org.example.iotsysirrigation.Repositories;
 
 import org.example.iotsysirrigation.Models.SensorReading;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import org.springframework.data.domain.Pageable;
 import java.time.Instant;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface SensorReadingRepository  extends MongoRepository<SensorReading,String> {
+public interface SensorReadingRepository  extends MongoRepository<SensorReading,String>, SensorReadingRepositoryCustom {
 //    List<SensorReading> findByDevEuiOrderByTimestampDesc(String devEui);
     List<SensorReading> findByDevEuiOrderByTimestampDesc(String devEui, Pageable pageable);
     List<SensorReading> findByDevEuiAndTimestampBetweenOrderByTimestampDesc(String devEui, Instant from, Instant to);
+
+    /** Cursor-backed, oldest first; caller must close the stream. */
+    @Meta(cursorBatchSize = 500)
+    Stream<SensorReading> streamByDevEuiAndTimestampBetweenOrderByTimestampAsc(String devEui, Instant from, Instant to);
 }
 
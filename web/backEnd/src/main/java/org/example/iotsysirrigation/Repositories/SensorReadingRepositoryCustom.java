@@ -0,0 +1,50 @@
+package org.example.iotsysirrigation.Repositories;
+
+import org.example.iotsysirrigation.DTO.Response.SeriesBucket;
+import org.example.iotsysirrigation.Models.DecodedReading;
+import org.example.iotsysirrigation.Models.Enum.Granularity;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/** Hand-written queries on the sensors collection that derived query methods can't express. */
+public interface SensorReadingRepositoryCustom {
+
+    /** Position of the newest reading in a scope; what conditional GETs derive their validators from. */
+    record NewestMark(Instant timestamp, String id) {}
+
+    /**
+     * Buckets one numeric object_json metric (e.g. "humiditySensor.3") inside Mongo.
+     * Buckets are returned oldest first.
+     */
+    List<SeriesBucket> aggregateSeries(String devEui, String metric, Instant from, Instant to, Granularity granularity);
+
+    /**
+     * Keyset page ordered by (timestamp desc, _id desc). Rows strictly after the (afterTs, afterId) position
+     * are returned; both null means the first page. from/to are optional exclusive bounds.
+     */
+    List<SensorReading> findPage(String devEui, Instant from, Instant to, Instant afterTs, String afterId, int limit);
+
+    /**
+     * Range query (newest first) that only reads timestamp and the given object_json paths
+     * (e.g. "humiditySensor" or "humiditySensor.3"); data, rx_info and the other sensors stay on the server.
+     */
+    List<SensorReadingPoint> findPoints(String devEui, Instant from, Instant to, List<String> fields);
+
+    /** Newest reading of each given device in one $sort + $group pass; devices without readings are absent. */
+    List<SensorReading> findLatestPerDevice(Collection<String> devEuis);
+
+    /** Cursor-backed, oldest first, metrics decoded and data/rx_info left on the server; caller must close it. */
+    Stream<DecodedReading> streamDecoded(String devEui, Instant from, Instant to);
+
+    /**
+     * Newest (timestamp, _id) among the given devices, optionally within the exclusive (from, to) bounds.
+     * Projects only index keys, so on the (dev_eui, timestamp, _id) index it never fetches a document.
+     */
+    Optional<NewestMark> findNewestMark(Collection<String> devEuis, Instant from, Instant to);
+}
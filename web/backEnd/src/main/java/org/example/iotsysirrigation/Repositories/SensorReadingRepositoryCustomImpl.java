@@ -0,0 +1,164 @@
+package org.example.iotsysirrigation.Repositories;
+
+import com.mongodb.client.MongoCollection;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.iotsysirrigation.DTO.Response.SeriesBucket;
+import org.example.iotsysirrigation.Models.DecodedReading;
+import org.example.iotsysirrigation.Models.Enum.Granularity;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class SensorReadingRepositoryCustomImpl implements SensorReadingRepositoryCustom {
+
+    /** Dotted path below object_json; no '$' or empty segments so it can't turn into an operator. */
+    private static final Pattern METRIC_PATH = Pattern.compile("[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+){0,4}");
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<SeriesBucket> aggregateSeries(String devEui, String metric, Instant from, Instant to, Granularity g) {
+        String field = "object_json." + requireMetric(metric);
+
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("dev_eui", devEui)
+                        .append("timestamp", new Document("$gte", Date.from(from)).append("$lte", Date.from(to)))
+                        .append(field, new Document("$type", "number"))),
+                new Document("$group", new Document("_id", new Document("$dateTrunc", new Document("date", "$timestamp")
+                                .append("unit", g.unit())
+                                .append("binSize", g.binSize())))
+                        .append("count", new Document("$sum", 1))
+                        .append("min", new Document("$min", "$" + field))
+                        .append("max", new Document("$max", "$" + field))
+                        .append("avg", new Document("$avg", "$" + field))),
+                new Document("$sort", new Document("_id", 1))
+        );
+
+        List<SeriesBucket> out = new ArrayList<>();
+        for (Document d : collection().aggregate(pipeline).allowDiskUse(true)) {
+            out.add(new SeriesBucket(
+                    d.getDate("_id").toInstant(),
+                    ((Number) d.get("count")).longValue(),
+                    asDouble(d.get("min")),
+                    asDouble(d.get("max")),
+                    asDouble(d.get("avg"))
+            ));
+        }
+        return out;
+    }
+
+    @Override
+    public List<SensorReading> findPage(String devEui, Instant from, Instant to, Instant afterTs, String afterId, int limit) {
+        List<Criteria> and = new ArrayList<>();
+        and.add(Criteria.where("devEui").is(devEui));
+        if (from != null) and.add(Criteria.where("timestamp").gt(from));
+        if (to != null) and.add(Criteria.where("timestamp").lt(to));
+        if (afterTs != null && afterId != null) {
+            // ts <= t gives the index a tight bound; the $or only breaks ties inside that one timestamp
+            and.add(Criteria.where("timestamp").lte(afterTs));
+            and.add(new Criteria().orOperator(
+                    Criteria.where("timestamp").lt(afterTs),
+                    Criteria.where("id").lt(ObjectId.isValid(afterId) ? new ObjectId(afterId) : afterId)));
+        }
+        Query q = new Query(new Criteria().andOperator(and))
+                .with(Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("id")))
+                .limit(limit);
+        return mongoTemplate.find(q, SensorReading.class);
+    }
+
+    @Override
+    public List<SensorReadingPoint> findPoints(String devEui, Instant from, Instant to, List<String> fields) {
+        return mongoTemplate.find(pointsQuery(devEui, from, to, fields), SensorReadingPoint.class);
+    }
+
+    /** Shared with the reactive repository; validates every field path before anything is sent. */
+    static Query pointsQuery(String devEui, Instant from, Instant to, List<String> fields) {
+        // mapped against SensorReadingPoint, which has no devEui property, so use the stored name
+        Query q = new Query(Criteria.where("dev_eui").is(devEui).and("timestamp").gt(from).lt(to))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp"));
+        q.fields().include("timestamp").exclude("_id");
+        for (String f : fields) {
+            q.fields().include("object_json." + requireMetric(f));
+        }
+        return q;
+    }
+
+    @Override
+    public List<SensorReading> findLatestPerDevice(Collection<String> devEuis) {
+        if (devEuis.isEmpty()) return List.of();
+        // sort matches the {dev_eui, timestamp} index prefix, so $group/$first can run as a DISTINCT_SCAN
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("dev_eui", new Document("$in", new ArrayList<>(devEuis)))),
+                new Document("$sort", new Document("dev_eui", 1).append("timestamp", -1)),
+                new Document("$group", new Document("_id", "$dev_eui").append("doc", new Document("$first", "$$ROOT"))),
+                new Document("$replaceRoot", new Document("newRoot", "$doc"))
+        );
+
+        List<SensorReading> out = new ArrayList<>(devEuis.size());
+        for (Document d : collection().aggregate(pipeline)) {
+            out.add(mongoTemplate.getConverter().read(SensorReading.class, d));
+        }
+        return out;
+    }
+
+    @Override
+    public Stream<DecodedReading> streamDecoded(String devEui, Instant from, Instant to) {
+        Query q = new Query(Criteria.where("devEui").is(devEui).and("timestamp").gt(from).lt(to))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp"))
+                .cursorBatchSize(500);
+        q.fields().include("devEui", "fPort", "timestamp", "metrics");
+        return mongoTemplate.stream(q, DecodedReading.class);
+    }
+
+    @Override
+    public Optional<NewestMark> findNewestMark(Collection<String> devEuis, Instant from, Instant to) {
+        if (devEuis.isEmpty()) return Optional.empty();
+        Document filter = new Document("dev_eui", devEuis.size() == 1
+                ? devEuis.iterator().next()
+                : new Document("$in", new ArrayList<>(devEuis)));
+        if (from != null || to != null) {
+            Document range = new Document();
+            if (from != null) range.append("$gt", Date.from(from));
+            if (to != null) range.append("$lt", Date.from(to));
+            filter.append("timestamp", range);
+        }
+        // timestamp and the implicit _id are both index keys, so the plan is IXSCAN + PROJECTION_COVERED
+        Document d = collection().find(filter)
+                .projection(new Document("timestamp", 1))
+                .sort(new Document("timestamp", -1).append("_id", -1))
+                .limit(1)
+                .first();
+        if (d == null || d.getDate("timestamp") == null) return Optional.empty();
+        return Optional.of(new NewestMark(d.getDate("timestamp").toInstant(), String.valueOf(d.get("_id"))));
+    }
+
+    static String requireMetric(String metric) {
+        if (metric == null || !METRIC_PATH.matcher(metric).matches()) {
+            throw new IllegalArgumentException("Invalid metric key: " + metric);
+        }
+        return metric;
+    }
+
+    private MongoCollection<Document> collection() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(SensorReading.class));
+    }
+
+    private static Double asDouble(Object v) {
+        return v instanceof Number n ? n.doubleValue() : null;
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import lombok.RequiredArgsConstructor;
+import org.example.iotsysirrigation.Services.BulkCommandService;
+import org.example.iotsysirrigation.Services.ChirpstackClient;
+import org.example.iotsysirrigation.Services.ChirpstackDeviceCache;
+import org.example.iotsysirrigation.Services.ChirpstackReconcileService;
+import org.example.iotsysirrigation.Services.DeviceStateService;
+import org.example.iotsysirrigation.Services.IndexMaintenanceService;
+import org.example.iotsysirrigation.Services.LatestReadingCache;
+import org.example.iotsysirrigation.Services.LiveReadingHub;
+import org.example.iotsysirrigation.Services.MqttUplinkSubscriber;
+import org.example.iotsysirrigation.Services.ReadingRedecodeService;
+import org.example.iotsysirrigation.Services.ReadingRollupService;
+import org.example.iotsysirrigation.Services.ReadingStorageService;
+import org.example.iotsysirrigation.Services.UplinkIngestService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class AdminController {
+
+    private final IndexMaintenanceService indexService;
+    private final LatestReadingCache latestCache;
+    private final LiveReadingHub liveHub;
+    private final ReadingRollupService rollupService;
+    private final ReadingStorageService storageService;
+    private final UplinkIngestService ingestService;
+    private final MqttUplinkSubscriber mqttSubscriber;
+    private final DeviceStateService deviceState;
+    private final ReadingRedecodeService redecodeService;
+    private final ChirpstackClient chirpstackClient;
+    private final ChirpstackDeviceCache chirpstackDevices;
+    private final ChirpstackReconcileService reconcileService;
+    private final BulkCommandService bulkCommandService;
+
+    /** Per-collection $indexStats plus the query shapes that currently fall back to a COLLSCAN. */
+    @GetMapping("/indexes")
+    public ResponseEntity<?> indexes() {
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "usage", indexService.indexUsage(),
+                    "collscans", indexService.verifyQueryPlans()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error reading index stats: " + e.getMessage());
+        }
+    }
+
+    /** Hit/miss counters, size and staleness of the in-memory latest-reading cache and its change stream. */
+    @GetMapping("/cache/latest")
+    public ResponseEntity<?> latestCache() {
+        return ResponseEntity.ok(latestCache.stats());
+    }
+
+    /** Live-push subscribers and how many readings were delivered, conflated or dropped for slow clients. */
+    @GetMapping("/live")
+    public ResponseEntity<?> live() {
+        return ResponseEntity.ok(liveHub.stats());
+    }
+
+    /** In-process ingestion: queue depth, batch counters, sustained inserts per second and the MQTT connection. */
+    @GetMapping("/ingest")
+    public ResponseEntity<?> ingest() {
+        return ResponseEntity.ok(Map.of(
+                "writer", ingestService.stats(),
+                "mqtt", mqttSubscriber.stats()));
+    }
+
+    /** Device write-behind: readings folded in, devices pending and updates per flush. */
+    @GetMapping("/devices/state")
+    public ResponseEntity<?> deviceState() {
+        return ResponseEntity.ok(deviceState.stats());
+    }
+
+    /** ChirpStack client pool: requests in flight and waiting, totals, failures and timeouts. */
+    @GetMapping("/chirpstack")
+    public ResponseEntity<?> chirpstack() {
+        return ResponseEntity.ok(chirpstackClient.stats());
+    }
+
+    /** ChirpStack device cache: hits, misses, coalesced loads, background refreshes and upstream calls. */
+    @GetMapping("/chirpstack/cache")
+    public ResponseEntity<?> chirpstackCache() {
+        return ResponseEntity.ok(chirpstackDevices.stats());
+    }
+
+    /** Bulk valve commands: limits, commands sent and downlinks queued or failed. */
+    @GetMapping("/commands")
+    public ResponseEntity<?> bulkCommands() {
+        return ResponseEntity.ok(bulkCommandService.stats());
+    }
+
+    /** Reconciliation with ChirpStack: whether a run is going on and the counts of the last one. */
+    @GetMapping("/chirpstack/reconcile")
+    public ResponseEntity<?> reconcileStats() {
+        return ResponseEntity.ok(reconcileService.stats());
+    }
+
+    /** Reconcile devices with ChirpStack now instead of waiting for the schedule. */
+    @PostMapping("/chirpstack/reconcile")
+    public ResponseEntity<?> reconcile() {
+        try {
+            return ResponseEntity.ok(reconcileService.reconcile());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error reconciling with ChirpStack: " + e.getMessage());
+        }
+    }
+
+    /** Queue depth, applied/dropped counters and the outcome of the last rollup rebuild. */
+    @GetMapping("/rollups")
+    public ResponseEntity<?> rollups() {
+        return ResponseEntity.ok(rollupService.stats());
+    }
+
+    /** Recompute hourly/daily rollups for a window from raw readings (idempotent; e.g. after importing old data). */
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<?> rebuildRollups(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().body("'from' must be before 'to'");
+        }
+        try {
+            return ResponseEntity.ok(rollupService.rebuild(from, to));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error rebuilding rollups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decode stored readings' raw LPP "data" and compare with their object_json in the background; with
+     * apply=true, fill in object_json where it is missing (plain storage only). Follow it with the GET below.
+     */
+    @PostMapping("/readings/redecode")
+    public ResponseEntity<?> redecode(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                      @RequestParam(defaultValue = "false") boolean apply) {
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().body("'from' must be before 'to'");
+        }
+        try {
+            return ResponseEntity.accepted().body(redecodeService.start(from, to, apply));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error starting the re-decode: " + e.getMessage());
+        }
+    }
+
+    /** Progress and counters of the running (or last) re-decode. */
+    @GetMapping("/readings/redecode")
+    public ResponseEntity<?> redecodeStatus() {
+        return ResponseEntity.ok(redecodeService.status());
+    }
+
+    @DeleteMapping("/readings/redecode")
+    public ResponseEntity<?> cancelRedecode() {
+        return ResponseEntity.ok(redecodeService.cancel());
+    }
+
+    /** Storage mode, layout and size of the readings collection, plus the current migration if any. */
+    @GetMapping("/storage")
+    public ResponseEntity<?> storage() {
+        try {
+            return ResponseEntity.ok(storageService.stats());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error reading storage stats: " + e.getMessage());
+        }
+    }
+
+    /** Copies readings into a time-series collection in the background; re-run after cutover to copy the tail. */
+    @PostMapping("/storage/migrate")
+    public ResponseEntity<?> migrate(@RequestParam(defaultValue = "sensors") String source,
+                                     @RequestParam(defaultValue = "sensors_ts") String target,
+                                     @RequestParam(required = false) Integer batchSize) {
+        try {
+            return ResponseEntity.accepted().body(storageService.startMigration(source, target, batchSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error starting migration: " + e.getMessage());
+        }
+    }
+
+    /** Progress of the running (or last) migration: processed/total, rate and ETA. */
+    @GetMapping("/storage/migration")
+    public ResponseEntity<?> migration() {
+        return ResponseEntity.ok(storageService.migrationStatus());
+    }
+
+    @DeleteMapping("/storage/migration")
+    public ResponseEntity<?> cancelMigration() {
+        return ResponseEntity.ok(storageService.cancelMigration());
+    }
+}
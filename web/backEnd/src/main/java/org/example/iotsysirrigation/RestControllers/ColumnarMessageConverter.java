@@ -0,0 +1,68 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.example.iotsysirrigation.DTO.Response.ColumnarFrame;
+import org.example.iotsysirrigation.DTO.Response.ColumnarSeries;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/** Writes {@link ColumnarSeries} as the binary frame or as columnar JSON, whichever the client accepted. */
+public class ColumnarMessageConverter extends AbstractHttpMessageConverter<ColumnarSeries> {
+
+    public static final MediaType BINARY = MediaType.parseMediaType(ColumnarFrame.MEDIA_TYPE);
+    public static final MediaType JSON = MediaType.parseMediaType(ColumnarFrame.JSON_MEDIA_TYPE);
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public ColumnarMessageConverter() {
+        super(BINARY, JSON);
+    }
+
+    /** True when the Accept header names one of the columnar types explicitly (wildcards don't count). */
+    public static boolean accepted(String accept) {
+        if (accept == null || accept.isBlank()) return false;
+        try {
+            for (MediaType m : MediaType.parseMediaTypes(accept)) {
+                if (m.isWildcardType() || m.isWildcardSubtype()) continue;
+                if (BINARY.isCompatibleWith(m) || JSON.isCompatibleWith(m)) return true;
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ColumnarSeries.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected ColumnarSeries readInternal(Class<? extends ColumnarSeries> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Columnar series are response-only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(ColumnarSeries series, HttpOutputMessage outputMessage) throws IOException {
+        MediaType type = outputMessage.getHeaders().getContentType();
+        if (type != null && JSON.isCompatibleWith(type)) {
+            try (JsonGenerator g = jsonFactory.createGenerator(outputMessage.getBody(), JsonEncoding.UTF8)) {
+                ColumnarFrame.writeJson(series, g);
+            }
+        } else {
+            ColumnarFrame.write(series, outputMessage.getBody());
+        }
+    }
+}
@@ -2,11 +2,15 @@ package org.example.iotsysirrigation.RestControllers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepositoryCustom.Area;
+import org.example.iotsysirrigation.Services.BulkCommandService;
 import org.example.iotsysirrigation.Services.EndNodeDeviceService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -17,20 +21,30 @@ import java.util.Map;
 public class CommandController {
 
     private final EndNodeDeviceService deviceService;
+    private final BulkCommandService bulkCommandService;
 
     public record CommandRequest(Integer value, String action, Integer fPort) {}
 
+    /** Selectors narrow each other: devEuis, organizationId and area may be combined. */
+    public record BulkCommandRequest(List<String> devEuis, String organizationId, Area area,
+                                     Integer value, String action, Integer fPort) {}
+
+    /** 1 = open, 0 = close, from either an explicit value or action OPEN/CLOSE; null if neither is given. */
+    private static Integer commandValue(Integer value, String action) {
+        if (value != null) return value > 0 ? 1 : 0;
+        if (action != null) {
+            String a = action.trim().toUpperCase();
+            return ("OPEN".equals(a) || "ON".equals(a)) ? 1 : 0;
+        }
+        return null;
+    }
+
     @PostMapping("/{devEui}")
     public ResponseEntity<?> send(@PathVariable String devEui, @RequestBody CommandRequest req) {
         try {
             // Accept either explicit value or action OPEN/CLOSE
-            int v;
-            if (req != null && req.value != null) {
-                v = req.value > 0 ? 1 : 0;
-            } else if (req != null && req.action != null) {
-                String a = req.action.trim().toUpperCase();
-                v = ("OPEN".equals(a) || "ON".equals(a)) ? 1 : 0;
-            } else {
+            Integer v = req == null ? null : commandValue(req.value, req.action);
+            if (v == null) {
                 return ResponseEntity.badRequest().body("Missing value/action");
             }
 
@@ -44,4 +58,39 @@ public class CommandController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Command enqueue error");
         }
     }
+
+    /**
+     * Same command to every selected device, e.g. all valves of a field. Returns one result per device:
+     * QUEUED, FAILED (ChirpStack refused or didn't answer), NOT_REGISTERED (a listed devEui we don't know) or
+     * NOT_SELECTED (a listed devEui that organizationId/area excludes).
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> sendBulk(@RequestBody BulkCommandRequest req) {
+        Integer v = req == null ? null : commandValue(req.value, req.action);
+        if (v == null) {
+            return ResponseEntity.badRequest().body("Missing value/action");
+        }
+        int fPort = req.fPort != null ? req.fPort : 2;
+        try {
+            long t0 = System.currentTimeMillis();
+            List<BulkCommandService.Result> results =
+                    bulkCommandService.send(req.devEuis, req.organizationId, req.area, v, fPort);
+            if (results.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No registered device matches the selection");
+            }
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("value", v);
+            out.put("fPort", fPort);
+            out.put("devices", results.size());
+            out.put("queued", results.stream().filter(r -> r.outcome() == BulkCommandService.Outcome.QUEUED).count());
+            out.put("durationMs", System.currentTimeMillis() - t0);
+            out.put("results", results);
+            return ResponseEntity.ok(out);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Bulk command failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Bulk command error");
+        }
+    }
 }
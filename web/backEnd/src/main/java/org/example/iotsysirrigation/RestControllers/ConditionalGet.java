@@ -0,0 +1,49 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * ETag / Last-Modified handling for polled GETs. Validators come from a cheap "newest change" lookup,
+ * so a 304 is decided before the body is queried or serialized.
+ */
+final class ConditionalGet {
+
+    /** Browsers may keep the body but must revalidate every time; Spring Security's no-store default would forbid that. */
+    private static final String CACHE_CONTROL = CacheControl.noCache().cachePrivate().getHeaderValue();
+
+    private ConditionalGet() {}
+
+    /** Weak ETag over the parts that determine the body (scope, parameters, newest change, Accept). */
+    static String etag(Object... parts) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (Object p : parts) {
+                md.update(String.valueOf(p).getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0);
+            }
+            return "W/\"" + HexFormat.of().formatHex(md.digest(), 0, 12) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sets the validators and cache headers; true means a 304 has already been written and the handler should
+     * return null. {@code lastModified} may be null when the scope is empty.
+     */
+    static boolean notModified(ServletWebRequest request, String etag, Instant lastModified) {
+        if (request.getResponse() != null) {
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+            request.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return request.checkNotModified(etag, lastModified == null ? -1 : lastModified.toEpochMilli());
+    }
+}
@@ -2,9 +2,11 @@ package org.example.iotsysirrigation.RestControllers;
 
 import lombok.RequiredArgsConstructor;
 import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepositoryCustom.ListVersion;
 import org.example.iotsysirrigation.Services.EndNodeDeviceService;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.*;
 
@@ -55,7 +57,8 @@ public class EndNodeDeviceController {
     }
 
     @GetMapping("/all")
-    public ResponseEntity<List<EndNodeDevice>> getAll() {
+    public ResponseEntity<List<EndNodeDevice>> getAll(ServletWebRequest request) {
+        if (notModified(request, service.versionOfAll(), "all")) return null;
         List<EndNodeDevice> list = service.findAll();
         return list.isEmpty() ? new ResponseEntity<>(HttpStatus.NO_CONTENT) : new ResponseEntity<>(list, HttpStatus.OK);
     }
@@ -75,13 +78,15 @@ public class EndNodeDeviceController {
     }
 
     @GetMapping("/CreatedBy/{userId}")
-    public ResponseEntity<?> getByCreatedBy(@PathVariable String userId) {
+    public ResponseEntity<?> getByCreatedBy(@PathVariable String userId, ServletWebRequest request) {
+        if (notModified(request, service.versionOfOwner(userId), "owner", userId)) return null;
         List<EndNodeDevice> list = service.findByOwner(userId);
         return list.isEmpty() ? new ResponseEntity<>(HttpStatus.NO_CONTENT) : new ResponseEntity<>(list, HttpStatus.OK);
     }
 
     @GetMapping("/organization/{orgId}")
-    public ResponseEntity<?> getByOrganization(@PathVariable String orgId) {
+    public ResponseEntity<?> getByOrganization(@PathVariable String orgId, ServletWebRequest request) {
+        if (notModified(request, service.versionOfOrganization(orgId), "organization", orgId)) return null;
         List<EndNodeDevice> list = service.findByOrganization(orgId);
         return list.isEmpty() ? new ResponseEntity<>(HttpStatus.NO_CONTENT) : new ResponseEntity<>(list, HttpStatus.OK);
     }
@@ -95,4 +100,10 @@ public class EndNodeDeviceController {
             return new ResponseEntity<>("Error deleting device", HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    /** 304 when neither the number of devices in the list nor their newest updatedAt changed. */
+    private static boolean notModified(ServletWebRequest request, ListVersion version, String... scope) {
+        String etag = ConditionalGet.etag("devices", String.join("/", scope), version.count(), version.newestUpdate());
+        return ConditionalGet.notModified(request, etag, version.newestUpdate());
+    }
 }
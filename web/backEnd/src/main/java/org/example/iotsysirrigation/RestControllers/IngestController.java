@@ -0,0 +1,90 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.example.iotsysirrigation.Services.UplinkIngestService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+
+/**
+ * Target for ChirpStack's HTTP integration (JSON marshaler), as an alternative to MQTT ingestion. Only "up"
+ * events are stored; the others are acknowledged and ignored. The body is queued unparsed and the call
+ * returns 202 right away; when the ingest queue is full it answers 429, and a body over
+ * app.ingest.http.max-body-bytes gets 413. ChirpStack doesn't retry failed
+ * integration calls, so size app.ingest.queue-capacity for the bursts you expect.
+ * Not behind JWT: ChirpStack sends the shared secret (app.ingest.http.token) in the X-Ingest-Token header.
+ */
+@RestController
+@RequestMapping("/api/ingest")
+@RequiredArgsConstructor
+public class IngestController {
+
+    public static final String TOKEN_HEADER = "X-Ingest-Token";
+
+    private final UplinkIngestService ingestService;
+
+    @Value("${app.ingest.http.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.ingest.http.token:}")
+    private String token;
+
+    /** Largest event accepted; an uplink with a full rxInfo is a few KB. */
+    @Value("${app.ingest.http.max-body-bytes:262144}")
+    private int maxBodyBytes;
+
+    /** The body is read only after the token and content type check out, and never past max-body-bytes. */
+    @PostMapping("/chirpstack")
+    public ResponseEntity<?> chirpstack(@RequestParam(defaultValue = "up") String event,
+                                        @RequestHeader(value = TOKEN_HEADER, required = false) String secret,
+                                        @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                        HttpServletRequest request) throws IOException {
+        if (!enabled) return ResponseEntity.notFound().build();
+        if (!authorized(secret)) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if (!"up".equals(event)) return ResponseEntity.noContent().build();
+        if (contentType != null && !isJson(contentType)) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body("Use the JSON marshaler");
+        }
+        if (request.getContentLengthLong() > maxBodyBytes) return tooLarge();
+        byte[] body;
+        try (InputStream in = request.getInputStream()) {
+            body = in.readNBytes(maxBodyBytes + 1);
+        }
+        if (body.length > maxBodyBytes) return tooLarge();
+
+        if (ingestService.offer(body, Instant.now())) return ResponseEntity.accepted().build();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Ingest queue full");
+    }
+
+    private ResponseEntity<?> tooLarge() {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Event larger than " + maxBodyBytes + " bytes");
+    }
+
+    /** A malformed Content-Type is just not JSON. */
+    private static boolean isJson(String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.APPLICATION_JSON);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    /** Constant-time compare; with no token configured nothing gets in. */
+    private boolean authorized(String secret) {
+        if (token == null || token.isBlank() || secret == null) return false;
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.iotsysirrigation.JWT.JwtUtils;
+import org.example.iotsysirrigation.Models.User;
+import org.example.iotsysirrigation.Repositories.UserRepository;
+import org.example.iotsysirrigation.Services.LiveReadingHub;
+import org.example.iotsysirrigation.Services.UserDetailsServiceImp;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /api/ws/readings — browsers can't set headers on a WebSocket handshake, and a token in the URL ends up in
+ * access logs, so the first client message authenticates the session: {"action":"auth","token":"<jwt>"}.
+ * A handshake that already carries an Authorization header is authenticated by the JWT filter instead.
+ * A session that hasn't authenticated within {@code app.readings.live.auth-timeout-ms} is closed.
+ * Client messages: {"action":"subscribe"|"unsubscribe", "devEui":"..."} or {..., "organizationId":"..."}.
+ * Server messages: hello, subscribed, unsubscribed, reading, resync, status, error (all carry a "type").
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LiveReadingSocketHandler extends TextWebSocketHandler {
+
+    private static final CloseStatus UNAUTHENTICATED = CloseStatus.POLICY_VIOLATION.withReason("Authentication required");
+
+    private final LiveReadingHub hub;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final JwtUtils jwtUtils;
+    private final UserDetailsServiceImp userDetailsService;
+
+    @Value("${app.readings.live.auth-timeout-ms:10000}")
+    private long authTimeoutMs;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        if (session.getPrincipal() instanceof Authentication auth) {
+            open(session, auth.getName(), auth.getAuthorities());
+            return;
+        }
+        CompletableFuture.delayedExecutor(authTimeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (session.isOpen() && !hub.isOpen(session)) closeQuietly(session, UNAUTHENTICATED);
+        });
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        try {
+            JsonNode msg = objectMapper.readTree(message.getPayload());
+            String action = msg.path("action").asText("");
+            if (!hub.isOpen(session)) {
+                authenticate(session, "auth".equals(action) ? msg.path("token").asText(null) : null);
+                return;
+            }
+            String devEui = msg.path("devEui").asText(null);
+            String orgId = msg.path("organizationId").asText(null);
+
+            List<String> euis = switch (action) {
+                case "subscribe" -> hub.subscribe(session, devEui, orgId);
+                case "unsubscribe" -> hub.unsubscribe(session, devEui, orgId);
+                default -> throw new IllegalArgumentException("Unknown action: " + action);
+            };
+            hub.reply(session, Map.of("type", action + "d", "devEuis", euis));
+        } catch (IllegalArgumentException | AccessDeniedException e) {
+            hub.reply(session, Map.of("type", "error", "message", e.getMessage()));
+        } catch (Exception e) {
+            log.warn("Bad live-reading message on session {}", session.getId(), e);
+            hub.reply(session, Map.of("type", "error", "message", "Invalid message"));
+        }
+    }
+
+    /** Opens the session in the hub for a valid token; anything else closes it. */
+    private void authenticate(WebSocketSession session, String token) {
+        if (token == null || token.isBlank() || !jwtUtils.validateToken(token)) {
+            closeQuietly(session, UNAUTHENTICATED);
+            return;
+        }
+        UserDetails user;
+        try {
+            user = userDetailsService.loadUserByUsername(jwtUtils.extractUsername(token));
+        } catch (RuntimeException e) {
+            closeQuietly(session, UNAUTHENTICATED);
+            return;
+        }
+        open(session, user.getUsername(), user.getAuthorities());
+    }
+
+    private void open(WebSocketSession session, String username, Collection<? extends GrantedAuthority> authorities) {
+        boolean admin = authorities.stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+        boolean client = admin || authorities.stream().anyMatch(a -> "ROLE_CLIENT".equals(a.getAuthority()));
+        if (!client) {
+            closeQuietly(session, CloseStatus.POLICY_VIOLATION.withReason("Not allowed"));
+            return;
+        }
+        String orgId = userRepository.findByUsername(username).map(User::getOrganizationId).orElse(null);
+        hub.open(session, orgId, admin);
+    }
+
+    private static void closeQuietly(WebSocketSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException ignored) {
+            // already gone
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        hub.close(session);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        hub.close(session);
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.example.iotsysirrigation.Services.ReactiveSensorReadingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Streaming variants of the {@link SensorReadingController} range endpoints: one JSON reading per line
+ * ({@code application/x-ndjson}), fed by the reactive Mongo driver. Spring MVC subscribes to the Flux and
+ * writes as rows arrive, so a long range (e.g. a year of raw readings) holds a socket, not a Tomcat worker.
+ * MVC writes and flushes every element on its own, so rows are serialized here in chunks of
+ * {@code app.readings.stream.batch-rows} lines: one write per chunk instead of one per row. lastMonth/lastYear
+ * here are raw rows, unlike the blocking ones, which serve rollups; pass {@code fields}.
+ */
+@RestController
+@RequestMapping("/api/readings/stream")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class ReactiveSensorReadingController {
+
+    private final ReactiveSensorReadingService readingService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.readings.stream.batch-rows:500}")
+    private int batchRows;
+
+    @GetMapping(value = "/range/{devEui}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<?>> streamRange(@PathVariable String devEui,
+                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                         @RequestParam(required = false) List<String> fields) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        return stream(devEui, from, to, fields);
+    }
+
+    @GetMapping(value = "/last2h/{devEui}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<?>> streamLast2Hours(@PathVariable String devEui,
+                                              @RequestParam(required = false) List<String> fields) {
+        return streamLast(devEui, Duration.ofHours(2), fields);
+    }
+
+    @GetMapping(value = "/last24h/{devEui}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<?>> streamLast24Hours(@PathVariable String devEui,
+                                               @RequestParam(required = false) List<String> fields) {
+        return streamLast(devEui, Duration.ofHours(24), fields);
+    }
+
+    @GetMapping(value = "/lastMonth/{devEui}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<?>> streamLastMonth(@PathVariable String devEui,
+                                             @RequestParam(required = false) List<String> fields) {
+        return streamLast(devEui, Duration.ofDays(30), fields);
+    }
+
+    @GetMapping(value = "/lastYear/{devEui}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<?>> streamLastYear(@PathVariable String devEui,
+                                            @RequestParam(required = false) List<String> fields) {
+        return streamLast(devEui, Duration.ofDays(365), fields);
+    }
+
+    private ResponseEntity<Flux<?>> streamLast(String devEui, Duration window, List<String> fields) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        return stream(devEui, now.minus(window), now, fields);
+    }
+
+    private ResponseEntity<Flux<?>> stream(String devEui, Instant from, Instant to, List<String> fields) {
+        Flux<byte[]> chunks = readingService.fetch(devEui, from, to, fields)
+                .buffer(Math.max(1, batchRows))
+                .map(this::ndjson);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(chunks);
+    }
+
+    /** The rows as NDJSON lines; MVC writes byte[] elements as they are and appends the last newline itself. */
+    private byte[] ndjson(List<?> rows) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rows.size() * 128);
+        try {
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) out.write('\n');
+                objectMapper.writeValue(out, rows.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Bad ranges and fields surface here rather than as a String body: MVC only streams a ResponseEntity whose
+     * declared body type is reactive, so the handlers can't return {@code ResponseEntity<?>}.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+}
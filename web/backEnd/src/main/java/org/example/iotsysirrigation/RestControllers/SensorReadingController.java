@@ -1,16 +1,30 @@
 package org.example.iotsysirrigation.RestControllers;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.iotsysirrigation.DTO.Response.ColumnarFrame;
+import org.example.iotsysirrigation.DTO.Response.ReadingPage;
+import org.example.iotsysirrigation.DTO.Response.RollupBucket;
+import org.example.iotsysirrigation.DTO.Response.SeriesResponse;
+import org.example.iotsysirrigation.Models.Enum.Granularity;
 import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Repositories.SensorReadingRepositoryCustom.NewestMark;
+import org.example.iotsysirrigation.Services.ReadingColumns;
+import org.example.iotsysirrigation.Services.ReadingExportService;
+import org.example.iotsysirrigation.Services.ReadingRollupService;
 import org.example.iotsysirrigation.Services.SensorReadingService;
+import org.example.iotsysirrigation.Services.SensorReadingService.Revision;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/readings")
 @RequiredArgsConstructor
@@ -18,11 +32,17 @@ import java.util.*;
 public class SensorReadingController {
 
     private final SensorReadingService readingService;
+    private final ReadingExportService exportService;
+    private final ReadingRollupService rollupService;
+
+    public record LatestBatchRequest(List<String> devEuis) {}
 
     @GetMapping("/latest/{devEui}")
     public ResponseEntity<?> getLatest(@PathVariable String devEui,
-                                       @RequestParam(defaultValue = "10") int limit) {
+                                       @RequestParam(defaultValue = "10") int limit,
+                                       ServletWebRequest request) {
         try {
+            if (notModified(request, readingService.newestMark(devEui), "latest", devEui, limit)) return null;
             List<SensorReading> readings = readingService.latest(devEui, limit);
             if (readings.isEmpty()) {
                 return ResponseEntity.noContent().build();
@@ -37,29 +57,148 @@ public class SensorReadingController {
     @GetMapping("/range/{devEui}")
     public ResponseEntity<?> getInRange(@PathVariable String devEui,
                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
-                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                        @RequestParam(required = false) List<String> fields,
+                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                        ServletWebRequest request) {
         try {
-            List<SensorReading> readings = readingService.between(devEui, from, to);
-            if (readings.isEmpty()) {
-                return ResponseEntity.noContent().build();
-            }
-            return new ResponseEntity<>(readings, HttpStatus.OK);
+            if (notModified(request, readingService.newestMark(devEui, from, to), "range", devEui, from, to, fields)) return null;
+            List<?> readings = fetch(devEui, from, to, fields);
+            return respond(readings, accept);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("Invalid date range or error: " + e.getMessage());
         }
     }
 
+    /** Newest reading per device for a whole dashboard in one call: {devEui: reading}. */
+    @PostMapping("/latest/batch")
+    public ResponseEntity<?> getLatestBatch(@RequestBody LatestBatchRequest req) {
+        if (req == null || req.devEuis() == null) {
+            return ResponseEntity.badRequest().body("Missing devEuis");
+        }
+        try {
+            return ResponseEntity.ok(readingService.latestPerDevice(req.devEuis()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error retrieving latest readings: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/latest/organization/{orgId}")
+    public ResponseEntity<?> getLatestForOrganization(@PathVariable String orgId, ServletWebRequest request) {
+        try {
+            List<String> euis = readingService.organizationDevEuis(orgId);
+            if (notModified(request, readingService.newestMark(euis), "latest-org", orgId, euis)) return null;
+            return ResponseEntity.ok(readingService.latestPerDevice(euis));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error retrieving latest readings: " + e.getMessage());
+        }
+    }
+
+    /** Keyset-paginated history, newest first; pass back {@code nextCursor} as {@code cursor} for the next page. */
+    @GetMapping("/latest/{devEui}/page")
+    public ResponseEntity<?> getLatestPage(@PathVariable String devEui,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "100") int limit) {
+        return page(devEui, null, null, cursor, limit);
+    }
+
+    /** Same as {@code /latest/{devEui}/page} but bounded to (from, to). */
+    @GetMapping("/range/{devEui}/page")
+    public ResponseEntity<?> getRangePage(@PathVariable String devEui,
+                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "100") int limit) {
+        return page(devEui, from, to, cursor, limit);
+    }
+
+    private ResponseEntity<?> page(String devEui, Instant from, Instant to, String cursor, int limit) {
+        try {
+            ReadingPage page = readingService.page(devEui, from, to, cursor, limit);
+            if (page.items().isEmpty()) {
+                return ResponseEntity.noContent().build();
+            }
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error retrieving readings page: " + e.getMessage());
+        }
+    }
+
+    /** Bucketed min/max/avg/count of one metric, e.g. ?metric=humiditySensor.3&granularity=1h (default auto). */
+    @GetMapping("/series/{devEui}")
+    public ResponseEntity<?> getSeries(@PathVariable String devEui,
+                                       @RequestParam String metric,
+                                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                       @RequestParam(defaultValue = "auto") String granularity) {
+        try {
+            SeriesResponse series = readingService.series(devEui, metric, from, to, Granularity.parse(granularity));
+            if (series.buckets().isEmpty()) {
+                return ResponseEntity.noContent().build();
+            }
+            return ResponseEntity.ok(series);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error aggregating series: " + e.getMessage());
+        }
+    }
+
+    /** Streams the range row by row (oldest first) as NDJSON or CSV with flattened metric columns. */
+    @GetMapping("/export/{devEui}")
+    public ResponseEntity<?> export(@PathVariable String devEui,
+                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                    @RequestParam(defaultValue = "ndjson") String format) {
+        ReadingExportService.Format fmt;
+        try {
+            fmt = ReadingExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        if (!from.isBefore(to)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("'from' must be before 'to'");
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                exportService.export(devEui, from, to, fmt, out);
+            } catch (Exception e) {
+                // headers are already committed at this point; all we can do is log and cut the stream
+                log.error("Export failed for {} [{} .. {}]", devEui, from, to, e);
+                throw e;
+            }
+        };
+        String filename = devEui + "_" + from.toString().substring(0, 10) + "_" + to.toString().substring(0, 10) + "." + fmt.extension();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(fmt.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
     @GetMapping("/last2h/{devEui}")
-    public ResponseEntity<?> getLast2Hours(@PathVariable String devEui) {
+    public ResponseEntity<?> getLast2Hours(@PathVariable String devEui,
+                                           @RequestParam(required = false) List<String> fields,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                           ServletWebRequest request) {
         try {
+            // a 304 keeps the client's window until the next uplink, even though rows may have aged out of it since
+            if (notModified(request, readingService.newestMark(devEui), "last2h", devEui, fields)) return null;
             Instant now = Instant.now();
             Instant from = now.minus(2, ChronoUnit.HOURS);
-            List<SensorReading> readings = readingService.between(devEui, from, now);
-            if (readings.isEmpty()) {
-                return ResponseEntity.noContent().build();
-            }
-            return new ResponseEntity<>(readings, HttpStatus.OK);
+            List<?> readings = fetch(devEui, from, now, fields);
+            return respond(readings, accept);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error fetching last 2h data: " + e.getMessage());
@@ -67,50 +206,123 @@ public class SensorReadingController {
     }
 
     @GetMapping("/last24h/{devEui}")
-    public ResponseEntity<?> getLast24Hours(@PathVariable String devEui) {
+    public ResponseEntity<?> getLast24Hours(@PathVariable String devEui,
+                                            @RequestParam(required = false) List<String> fields,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                            ServletWebRequest request) {
         try {
+            // a 304 keeps the client's window until the next uplink, even though rows may have aged out of it since
+            if (notModified(request, readingService.newestMark(devEui), "last24h", devEui, fields)) return null;
             Instant now = Instant.now();
             Instant from = now.minus(24, ChronoUnit.HOURS);
-            List<SensorReading> readings = readingService.between(devEui, from, now);
-            if (readings.isEmpty()) {
-                return ResponseEntity.noContent().build();
-            }
-            return new ResponseEntity<>(readings, HttpStatus.OK);
+            List<?> readings = fetch(devEui, from, now, fields);
+            return respond(readings, accept);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error fetching last 24h data: " + e.getMessage());
         }
     }
 
+    /**
+     * Hourly rollups of the last 30 days: at most 720 buckets however often the device reports. Each bucket
+     * also has a reading's {@code timestamp} and {@code sensorsReading} (see {@link RollupBucket}). Only with
+     * app.rollups.enabled=false are these raw readings, since there is nothing else to read then.
+     */
     @GetMapping("/lastMonth/{devEui}")
-    public ResponseEntity<?> getLastMonth(@PathVariable String devEui) {
+    public ResponseEntity<?> getLastMonth(@PathVariable String devEui,
+                                          @RequestParam(required = false) List<String> fields,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                          ServletWebRequest request) {
         try {
+            if (rollupsNotModified(request, "lastMonth", devEui, fields)) return null;
             Instant now = Instant.now();
             Instant from = now.minus(30, ChronoUnit.DAYS);
-            List<SensorReading> readings = readingService.between(devEui, from, now);
-            if (readings.isEmpty()) {
-                return ResponseEntity.noContent().build();
-            }
-            return new ResponseEntity<>(readings, HttpStatus.OK);
+            List<?> readings = rollupService.isEnabled()
+                    ? rollupService.hourly(devEui, from, now, fields)
+                    : fetch(devEui, from, now, fields);
+            return respond(readings, accept);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error retrieving last month's data: " + e.getMessage());
         }
     }
 
+    /** Daily rollups of the last 365 days, shaped like {@code /lastMonth}. */
     @GetMapping("/lastYear/{devEui}")
-    public ResponseEntity<?> getLastYear(@PathVariable String devEui) {
+    public ResponseEntity<?> getLastYear(@PathVariable String devEui,
+                                         @RequestParam(required = false) List<String> fields,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                         ServletWebRequest request) {
         try {
+            if (rollupsNotModified(request, "lastYear", devEui, fields)) return null;
             Instant now = Instant.now();
             Instant from = now.minus(365, ChronoUnit.DAYS);
-            List<SensorReading> readings = readingService.between(devEui, from, now);
-            if (readings.isEmpty()) {
-                return ResponseEntity.noContent().build();
-            }
-            return new ResponseEntity<>(readings, HttpStatus.OK);
+            List<?> readings = rollupService.isEnabled()
+                    ? rollupService.daily(devEui, from, now, fields)
+                    : fetch(devEui, from, now, fields);
+            return respond(readings, accept);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error retrieving last year's data: " + e.getMessage());
         }
     }
+
+    /**
+     * Answers with 304 when the validators (scope + newest reading + revision + Accept) match what the client
+     * has. The revision covers readings rewritten in place, which leave the newest mark as it was.
+     * Returns true when the response is already written.
+     */
+    private boolean notModified(ServletWebRequest request, Optional<NewestMark> newest, Object... scope) {
+        Revision revision = readingService.revision();
+        Object[] parts = Arrays.copyOf(scope, scope.length + 4);
+        parts[scope.length] = newest.map(NewestMark::timestamp).orElse(null);
+        parts[scope.length + 1] = newest.map(NewestMark::id).orElse(null);
+        parts[scope.length + 2] = revision.generation();
+        parts[scope.length + 3] = request.getHeader(HttpHeaders.ACCEPT);
+        Instant lastModified = newest.map(NewestMark::timestamp).orElse(null);
+        if (lastModified != null && revision.at() != null && revision.at().isAfter(lastModified)) lastModified = revision.at();
+        return ConditionalGet.notModified(request, ConditionalGet.etag(parts), lastModified);
+    }
+
+    /**
+     * Validators for the rollup views. The raw newest mark would validate a rollup that isn't flushed yet, so
+     * these come from the rollups themselves; without rollups the raw readings are served and validated.
+     */
+    private boolean rollupsNotModified(ServletWebRequest request, String view, String devEui, List<String> fields) {
+        if (!rollupService.isEnabled()) {
+            return notModified(request, readingService.newestMark(devEui), view, devEui, fields);
+        }
+        return notModified(request, Optional.empty(), view, devEui, fields, rollupService.version(devEui));
+    }
+
+    /**
+     * 204 when empty; with an Accept of {@value ColumnarFrame#MEDIA_TYPE} or {@value ColumnarFrame#JSON_MEDIA_TYPE}
+     * the same rows go out column-wise (delta-encoded timestamps, one array per metric), otherwise as JSON objects.
+     */
+    private ResponseEntity<?> respond(List<?> readings, String accept) {
+        if (readings.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        if (ColumnarMessageConverter.accepted(accept)) {
+            return ResponseEntity.ok(ReadingColumns.of(readings));
+        }
+        return new ResponseEntity<>(readings, HttpStatus.OK);
+    }
+
+    /**
+     * With {@code fields} (e.g. ?fields=humiditySensor,temperatureSensor.2) only timestamp and those
+     * object_json entries are read from Mongo; without it the full documents are returned as before.
+     */
+    private List<?> fetch(String devEui, Instant from, Instant to, List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return readingService.between(devEui, from, to);
+        }
+        return readingService.pointsBetween(devEui, from, to, fields);
+    }
 }
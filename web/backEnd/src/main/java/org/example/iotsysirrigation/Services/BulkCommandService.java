@@ -0,0 +1,132 @@
+package org.example.iotsysirrigation.Services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepositoryCustom.Area;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opens or closes many valves in one go: resolves the selection to registered devices, then enqueues a
+ * downlink per device. At most {@code parallelism} enqueues are in flight, and they start at most
+ * {@code rate-per-second} apart. The rate is shared by all bulk commands, so two operators watering at the
+ * same time don't double the load on ChirpStack.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkCommandService {
+
+    private final ChirpstackClient client;
+    private final EndNodeDeviceRepository repo;
+
+    @Value("${chirpstack.downlink.parallelism:16}")
+    private int parallelism;
+
+    @Value("${chirpstack.downlink.rate-per-second:50}")
+    private double ratePerSecond;
+
+    /** Largest selection one request may command; with the rate this bounds how long the request takes. */
+    @Value("${chirpstack.downlink.max-devices:1000}")
+    private int maxDevices;
+
+    /** NOT_SELECTED: a listed devEui that is registered but outside the organizationId/area selection. */
+    public enum Outcome { QUEUED, FAILED, NOT_REGISTERED, NOT_SELECTED }
+
+    public record Result(String devEui, Outcome outcome, long ms) {}
+
+    /** When the next enqueue may start; spaced 1/rate apart across all callers. */
+    private final AtomicLong nextStartNanos = new AtomicLong(System.nanoTime());
+
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Devices matching every given selector. Listed devEuis that aren't sent come back as NOT_REGISTERED, or as
+     * NOT_SELECTED when they are registered but the other selectors exclude them. Fails when nothing is
+     * selected or the selection exceeds max-devices.
+     */
+    public List<Result> send(Collection<String> devEuis, String organizationId, Area area, int value, int fPort)
+            throws InterruptedException {
+        if (devEuis == null && organizationId == null && area == null) {
+            throw new IllegalArgumentException("Select devices by devEuis, organizationId and/or area");
+        }
+        Set<String> wanted = null;
+        if (devEuis != null) {
+            wanted = new LinkedHashSet<>();
+            for (String eui : devEuis) if (eui != null && !eui.isBlank()) wanted.add(EndNodeDeviceService.norm(eui));
+        }
+        List<String> targets = wanted != null && wanted.isEmpty() ? List.of() : repo.findDevEuis(wanted, organizationId, area);
+        if (targets.size() > maxDevices) {
+            throw new IllegalArgumentException("Selection has " + targets.size() + " devices; at most " + maxDevices + " per command");
+        }
+
+        List<Result> results = new ArrayList<>(fanOut(targets, value, fPort));
+        if (wanted != null) {
+            Set<String> left = new LinkedHashSet<>(wanted);
+            targets.forEach(left::remove);
+            // only a narrowed selection can leave out registered devices; ask once which of the rest exist
+            Set<String> excluded = left.isEmpty() || (organizationId == null && area == null)
+                    ? Set.of() : new HashSet<>(repo.findDevEuis(left, null, null));
+            for (String eui : left) {
+                results.add(new Result(eui, excluded.contains(eui) ? Outcome.NOT_SELECTED : Outcome.NOT_REGISTERED, 0));
+            }
+        }
+        commands.increment();
+        return results;
+    }
+
+    /** Enqueues value on every devEui within the parallelism and rate limits; results in the order given. */
+    List<Result> fanOut(List<String> devEuis, int value, int fPort) throws InterruptedException {
+        Semaphore window = new Semaphore(parallelism);
+        List<CompletableFuture<Result>> calls = new ArrayList<>(devEuis.size());
+        for (String eui : devEuis) {
+            window.acquire();
+            try {
+                awaitStart();
+            } catch (InterruptedException e) {
+                window.release();
+                throw e;
+            }
+            long t0 = System.nanoTime();
+            calls.add(client.enqueueDownlinkAsync(eui, value, fPort).handle((ok, e) -> {
+                window.release();
+                boolean sent = e == null && Boolean.TRUE.equals(ok);
+                (sent ? queued : failed).increment();
+                return new Result(eui, sent ? Outcome.QUEUED : Outcome.FAILED, (System.nanoTime() - t0) / 1_000_000);
+            }));
+        }
+        List<Result> out = new ArrayList<>(calls.size());
+        for (CompletableFuture<Result> call : calls) out.add(call.join());
+        return out;
+    }
+
+    /** Claims the next start slot and sleeps until it. */
+    private void awaitStart() throws InterruptedException {
+        long interval = (long) (1_000_000_000L / ratePerSecond);
+        long now = System.nanoTime();
+        long slot = nextStartNanos.getAndUpdate(prev -> Math.max(prev, now) + interval);
+        long wait = slot - now;
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("parallelism", parallelism);
+        out.put("ratePerSecond", ratePerSecond);
+        out.put("maxDevices", maxDevices);
+        out.put("commands", commands.sum());
+        out.put("queued", queued.sum());
+        out.put("failed", failed.sum());
+        return out;
+    }
+}
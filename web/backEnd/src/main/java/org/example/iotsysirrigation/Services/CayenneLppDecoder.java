@@ -0,0 +1,261 @@
+package org.example.iotsysirrigation.Services;
+
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodes the raw Cayenne LPP frame in a reading's "data" (base64) without going through object_json.
+ * Each entry is [channel][type][value]; the README's layout is GPS on 0, barometer 1, temperature 2,
+ * humidity 3, illuminance 4, analog input 5 and digital input 6, but like ChirpStack's codec this goes by
+ * type, so any channel works. When a type repeats, the lowest channel fills its slot, and a repeated channel
+ * keeps its last entry (object_json is a map, so ChirpStack's codec overwrites it): the same rule
+ * DecodedMetricsReadConverter applies to object_json, whatever order its keys were stored in.
+ * <p>
+ * Allocation-free after construction: base64 is decoded into a reused 242-byte buffer (the largest LoRaWAN
+ * payload) and values land in a double[] of slots (NaN when absent). An instance is reusable but not
+ * thread-safe; keep one per thread. {@link #toMetrics} and {@link #toObjectJson} allocate, for callers that
+ * need an object.
+ */
+public final class CayenneLppDecoder {
+
+    /** Slot indexes, in DecodedMetrics order. */
+    public static final int TEMPERATURE = 0, HUMIDITY = 1, PRESSURE = 2, ILLUMINANCE = 3,
+            ANALOG = 4, DIGITAL = 5, LAT = 6, LNG = 7, ALT = 8, SLOTS = 9;
+
+    static final int DIGITAL_INPUT = 0x00, DIGITAL_OUTPUT = 0x01, ANALOG_INPUT = 0x02, ANALOG_OUTPUT = 0x03,
+            ILLUMINANCE_SENSOR = 0x65, PRESENCE_SENSOR = 0x66, TEMPERATURE_SENSOR = 0x67, HUMIDITY_SENSOR = 0x68,
+            ACCELEROMETER = 0x71, BAROMETER = 0x73, GYROMETER = 0x86, GPS_LOCATION = 0x88;
+
+    static final int MAX_FRAME = 242;
+
+    private static final int[] BASE64 = new int[128];
+
+    static {
+        Arrays.fill(BASE64, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) BASE64[alphabet.charAt(i)] = i;
+    }
+
+    /** Value size per type byte, -1 for types we can't step over. */
+    private static final int[] SIZE = new int[256];
+    /** Slot per type byte (LAT for GPS), -1 for types that carry no metric we keep. */
+    private static final int[] SLOT = new int[256];
+
+    static {
+        for (int t = 0; t < 256; t++) {
+            SIZE[t] = size(t);
+            SLOT[t] = switch (t) {
+                case TEMPERATURE_SENSOR -> TEMPERATURE;
+                case HUMIDITY_SENSOR -> HUMIDITY;
+                case BAROMETER -> PRESSURE;
+                case ILLUMINANCE_SENSOR -> ILLUMINANCE;
+                case ANALOG_INPUT -> ANALOG;
+                case DIGITAL_INPUT -> DIGITAL;
+                case GPS_LOCATION -> LAT;
+                default -> -1;
+            };
+        }
+    }
+
+    private final ByteBuffer frame = ByteBuffer.allocate(MAX_FRAME);
+    private final double[] slots = new double[SLOTS];
+    /** Channel each filled slot came from. */
+    private final int[] channels = new int[SLOTS];
+    /** {@link #frame} holds a complete frame from the last {@link #decodeBase64}. */
+    private boolean framed;
+
+    /**
+     * Decodes a base64 LPP payload.
+     * @return false if it isn't base64, is longer than a LoRaWAN payload or isn't a well-formed frame; the
+     * slots then hold whatever was decoded before the problem
+     */
+    public boolean decodeBase64(CharSequence data) {
+        Arrays.fill(slots, Double.NaN);
+        frame.clear();
+        framed = false;
+        if (data == null || !base64(data, frame)) return false;
+        frame.flip();
+        framed = parse(frame.array(), 0, frame.limit());
+        return framed;
+    }
+
+    /** Decodes the frame between position and limit; the buffer's position is left unchanged. */
+    public boolean decode(ByteBuffer lpp) {
+        Arrays.fill(slots, Double.NaN);
+        framed = false;
+        if (lpp.hasArray()) {
+            return parse(lpp.array(), lpp.arrayOffset() + lpp.position(), lpp.arrayOffset() + lpp.limit());
+        }
+        if (lpp.remaining() > MAX_FRAME) return false;
+        frame.clear();
+        frame.put(lpp.duplicate()).flip();
+        return parse(frame.array(), 0, frame.limit());
+    }
+
+    public double get(int slot) { return slots[slot]; }
+
+    public boolean hasGps() { return !Double.isNaN(slots[LAT]) && !Double.isNaN(slots[LNG]); }
+
+    public DecodedMetrics toMetrics() {
+        double[] v = slots;
+        return new DecodedMetrics(v[TEMPERATURE], v[HUMIDITY], v[PRESSURE], v[ILLUMINANCE],
+                v[ANALOG], v[DIGITAL], v[LAT], v[LNG], v[ALT]);
+    }
+
+    /**
+     * The frame last decoded by {@link #decodeBase64}, as ChirpStack's Cayenne LPP codec would put it in
+     * object_json: {"temperatureSensor": {"2": 29.0}, "gpsLocation": {"0": {"latitude": ..}}, ...}, every
+     * channel included. Null if that frame didn't decode.
+     */
+    public Document toObjectJson() {
+        if (!framed) return null;
+        ByteBuffer b = frame.duplicate().rewind();
+        Document out = new Document();
+        while (b.remaining() >= 2) {
+            String ch = Integer.toString(b.get() & 0xff);
+            int type = b.get() & 0xff;
+            int size = SIZE[type];
+            if (size < 0 || b.remaining() < size) return null;
+            switch (type) {
+                case GPS_LOCATION -> channel(out, "gpsLocation").put(ch, new Document("latitude", int24(b) / 10_000.0)
+                        .append("longitude", int24(b) / 10_000.0).append("altitude", int24(b) / 100.0));
+                case ACCELEROMETER, GYROMETER -> {
+                    double scale = type == ACCELEROMETER ? 1_000.0 : 100.0;
+                    channel(out, type == ACCELEROMETER ? "accelerometer" : "gyrometer").put(ch, new Document("x", b.getShort() / scale)
+                            .append("y", b.getShort() / scale).append("z", b.getShort() / scale));
+                }
+                default -> channel(out, name(type)).put(ch, scalar(type, b));
+            }
+        }
+        return b.hasRemaining() ? null : out;
+    }
+
+    private static Document channel(Document out, String name) {
+        Document d = out.get(name, Document.class);
+        if (d == null) out.put(name, d = new Document());
+        return d;
+    }
+
+    private boolean parse(byte[] b, int p, int end) {
+        while (end - p >= 2) {
+            int ch = b[p] & 0xff, type = b[p + 1] & 0xff;
+            int size = SIZE[type];
+            p += 2;
+            if (size < 0 || end - p < size) return false;
+            int slot = SLOT[type];
+            if (slot >= 0 && (Double.isNaN(slots[slot]) || ch <= channels[slot])) {
+                channels[slot] = ch;
+                switch (type) {
+                    case TEMPERATURE_SENSOR -> slots[slot] = s16(b, p) / 10.0;
+                    case HUMIDITY_SENSOR -> slots[slot] = (b[p] & 0xff) / 2.0;
+                    case BAROMETER -> slots[slot] = u16(b, p) / 10.0;
+                    case ILLUMINANCE_SENSOR -> slots[slot] = u16(b, p);
+                    case ANALOG_INPUT -> slots[slot] = s16(b, p) / 100.0;
+                    case DIGITAL_INPUT -> slots[slot] = b[p] & 0xff;
+                    case GPS_LOCATION -> {
+                        slots[LAT] = s24(b, p) / 10_000.0;
+                        slots[LNG] = s24(b, p + 3) / 10_000.0;
+                        slots[ALT] = s24(b, p + 6) / 100.0;
+                    }
+                    default -> { }
+                }
+            }
+            p += size;
+        }
+        return p == end;
+    }
+
+    private static int s16(byte[] b, int p) {
+        return (short) (b[p] << 8 | b[p + 1] & 0xff);
+    }
+
+    private static int u16(byte[] b, int p) {
+        return (b[p] & 0xff) << 8 | b[p + 1] & 0xff;
+    }
+
+    private static int s24(byte[] b, int p) {
+        return (b[p] << 16 | (b[p + 1] & 0xff) << 8 | b[p + 2] & 0xff);
+    }
+
+    /** Reads one single-value entry, scaled as in the LPP spec. */
+    private static double scalar(int type, ByteBuffer b) {
+        return switch (type) {
+            case DIGITAL_INPUT, DIGITAL_OUTPUT, PRESENCE_SENSOR -> b.get() & 0xff;
+            case ANALOG_INPUT, ANALOG_OUTPUT -> b.getShort() / 100.0;
+            case ILLUMINANCE_SENSOR -> b.getShort() & 0xffff;
+            case TEMPERATURE_SENSOR -> b.getShort() / 10.0;
+            case HUMIDITY_SENSOR -> (b.get() & 0xff) / 2.0;
+            case BAROMETER -> (b.getShort() & 0xffff) / 10.0;
+            default -> throw new IllegalArgumentException("not a scalar LPP type: " + type);
+        };
+    }
+
+    /** ChirpStack's object_json key per type. */
+    private static String name(int type) {
+        return switch (type) {
+            case DIGITAL_INPUT -> "digitalInput";
+            case DIGITAL_OUTPUT -> "digitalOutput";
+            case ANALOG_INPUT -> "analogInput";
+            case ANALOG_OUTPUT -> "analogOutput";
+            case ILLUMINANCE_SENSOR -> "illuminanceSensor";
+            case PRESENCE_SENSOR -> "presenceSensor";
+            case TEMPERATURE_SENSOR -> "temperatureSensor";
+            case HUMIDITY_SENSOR -> "humiditySensor";
+            case BAROMETER -> "barometer";
+            default -> throw new IllegalArgumentException("unknown LPP type: " + type);
+        };
+    }
+
+    /** Value size in bytes, or -1 for a type we can't step over. */
+    static int size(int type) {
+        return switch (type) {
+            case DIGITAL_INPUT, DIGITAL_OUTPUT, PRESENCE_SENSOR, HUMIDITY_SENSOR -> 1;
+            case ANALOG_INPUT, ANALOG_OUTPUT, ILLUMINANCE_SENSOR, TEMPERATURE_SENSOR, BAROMETER -> 2;
+            case ACCELEROMETER, GYROMETER -> 6;
+            case GPS_LOCATION -> 9;
+            default -> -1;
+        };
+    }
+
+    /** Signed big-endian 24-bit integer. */
+    private static int int24(ByteBuffer b) {
+        int v = (b.get() & 0xff) << 16 | (b.get() & 0xff) << 8 | (b.get() & 0xff);
+        return v << 8 >> 8;
+    }
+
+    /** Standard base64 with optional padding, straight into {@code out}; false on a bad character or overflow. */
+    private static boolean base64(CharSequence s, ByteBuffer out) {
+        int len = s.length();
+        while (len > 0 && s.charAt(len - 1) == '=') len--;
+        int tail = len & 3;
+        int size = len / 4 * 3 + (tail == 0 ? 0 : tail - 1);
+        if (tail == 1 || size > out.remaining()) return false;
+        byte[] dst = out.array();
+        int o = out.arrayOffset() + out.position();
+        int i = 0;
+        for (int full = len - tail; i < full; i += 4) {
+            int q = sextet(s.charAt(i)) << 18 | sextet(s.charAt(i + 1)) << 12
+                    | sextet(s.charAt(i + 2)) << 6 | sextet(s.charAt(i + 3));
+            if (q < 0) return false;
+            dst[o++] = (byte) (q >> 16);
+            dst[o++] = (byte) (q >> 8);
+            dst[o++] = (byte) q;
+        }
+        if (tail > 0) {
+            int q = sextet(s.charAt(i)) << 18 | sextet(s.charAt(i + 1)) << 12 | (tail == 3 ? sextet(s.charAt(i + 2)) << 6 : 0);
+            if (q < 0) return false;
+            dst[o++] = (byte) (q >> 16);
+            if (tail == 3) dst[o] = (byte) (q >> 8);
+        }
+        out.position(out.position() + size);
+        return true;
+    }
+
+    /** 0..63, or -1, which stays negative however far it is shifted and OR-ed into a quad. */
+    private static int sextet(char c) {
+        return c < 128 ? BASE64[c] : -1;
+    }
+}
@@ -2,21 +2,42 @@ package org.example.iotsysirrigation.Services;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import java.util.Base64;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * ChirpStack v4 REST calls on the shared keep-alive {@link HttpClient} (see ChirpstackHttpConfig). At most
+ * {@code pool-size} requests are in flight, so at most that many connections are open and idle ones get
+ * reused; further calls wait up to {@code acquire-timeout-ms} for a slot. Each operation has its own
+ * timeout, so a hung ChirpStack fails calls instead of holding request threads. The *Async methods never
+ * complete exceptionally: failures are logged and come back as empty / false, like the blocking ones.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ChirpstackClient {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final HttpClient http;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Value("${chirpstack.api.base-url:http://localhost:8090}")
@@ -25,129 +46,229 @@ public class ChirpstackClient {
     @Value("${chirpstack.api.token}")
     private String token;
 
+    @Value("${chirpstack.http.pool-size:64}")
+    private int poolSize;
+
+    @Value("${chirpstack.http.acquire-timeout-ms:5000}")
+    private long acquireTimeoutMs;
+
+    @Value("${chirpstack.http.get-timeout-ms:5000}")
+    private long getTimeoutMs;
+
+    @Value("${chirpstack.http.update-timeout-ms:10000}")
+    private long updateTimeoutMs;
+
+    @Value("${chirpstack.http.enqueue-timeout-ms:5000}")
+    private long enqueueTimeoutMs;
+
+    /** Authorization / Accept / Content-Type, built once. */
+    private String[] headers;
+    private Permits permits;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder queueTimeouts = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        headers = new String[]{
+                HttpHeaders.AUTHORIZATION, "Bearer " + token,
+                HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE,
+                HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE};
+        permits = new Permits(poolSize);
+    }
+
     public Optional<DeviceInfo> getDeviceByDevEui(String devEui) {
-        try {
-            String url = baseUrl + "/api/devices/" + devEui;
-            HttpHeaders headers = authHeaders();
-            ResponseEntity<String> resp =
-                    restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
-
-            if (!resp.getStatusCode().is2xxSuccessful()) {
-                log.warn("Device {} not found on ChirpStack: {}", devEui, resp.getStatusCode());
-                return Optional.empty();
-            }
+        return getDeviceByDevEuiAsync(devEui).join();
+    }
 
-            JsonNode body = objectMapper.readTree(resp.getBody());
-            JsonNode device = body.path("device");
-
-            return Optional.of(new DeviceInfo(
-                    devEui,
-                    device.path("name").asText(""),
-                    device.path("description").asText(""),
-                    body.path("lastSeenAt").asText(""),
-                    body.path("createdAt").asText(""),
-                    body.path("updatedAt").asText(""),
-                    device.path("isDisabled").asBoolean(false) ? "OFFLINE" : "ONLINE"
-            ));
-        } catch (Exception e) {
-            log.error("getDeviceByDevEui failed for {}", devEui, e);
-            return Optional.empty();
-        }
+    public CompletableFuture<Optional<DeviceInfo>> getDeviceByDevEuiAsync(String devEui) {
+        return getDeviceBodyAsync(devEui).thenApply(body -> body.map(b -> toDeviceInfo(devEui, b)));
     }
 
-    /** Update name/description/status on ChirpStack (v4). */
-    public boolean updateDeviceMeta(String devEui, String name, String description, String status) {
-        try {
-            // GET current device to retain required ids/fields
-            String getUrl = baseUrl + "/api/devices/" + devEui;
-            HttpHeaders headers = authHeaders();
-            ResponseEntity<String> getResp =
-                    restTemplate.exchange(getUrl, HttpMethod.GET, new HttpEntity<>(headers), String.class);
-
-            if (!getResp.getStatusCode().is2xxSuccessful()) {
-                log.warn("ChirpStack GET before PUT failed for {}: {}", devEui, getResp.getStatusCode());
-                return false;
+    /** GET /api/devices/{devEui} as ChirpStack returns it: {"device": {...}, "lastSeenAt": ..}. */
+    public CompletableFuture<Optional<JsonNode>> getDeviceBodyAsync(String devEui) {
+        return send("GET", "/api/devices/" + segment(devEui), null, getTimeoutMs).thenApply(resp -> {
+            if (resp == null) return Optional.<JsonNode>empty();
+            if (!is2xx(resp)) {
+                log.warn("Device {} not found on ChirpStack: {}", devEui, resp.statusCode());
+                return Optional.<JsonNode>empty();
+            }
+            try {
+                return Optional.of(objectMapper.readTree(resp.body()));
+            } catch (Exception e) {
+                log.error("getDeviceByDevEui failed for {}", devEui, e);
+                return Optional.<JsonNode>empty();
             }
+        });
+    }
 
-            JsonNode body = objectMapper.readTree(getResp.getBody());
-            JsonNode d = body.path("device");
+    public static DeviceInfo toDeviceInfo(String devEui, JsonNode body) {
+        JsonNode device = body.path("device");
+        return new DeviceInfo(
+                devEui,
+                device.path("name").asText(""),
+                device.path("description").asText(""),
+                body.path("lastSeenAt").asText(""),
+                body.path("createdAt").asText(""),
+                body.path("updatedAt").asText(""),
+                device.path("isDisabled").asBoolean(false) ? "OFFLINE" : "ONLINE"
+        );
+    }
 
-            // REQUIRED by ChirpStack v4
-            String applicationId   = d.path("applicationId").asText(null);
-            String deviceProfileId = d.path("deviceProfileId").asText(null);
-            if (applicationId == null || applicationId.isBlank()) {
-                log.warn("device {} missing applicationId", devEui);
-                return false;
+    /**
+     * One page of GET /api/devices?applicationId=..&limit=..&offset=.. (v4), in ChirpStack's order. List items carry no
+     * isDisabled, so their status is null. Empty when the page couldn't be fetched.
+     */
+    public CompletableFuture<Optional<DevicePage>> listDevicesAsync(String applicationId, int offset, int limit) {
+        String path = "/api/devices?applicationId=" + segment(applicationId) + "&limit=" + limit + "&offset=" + offset;
+        return send("GET", path, null, getTimeoutMs).thenApply(resp -> {
+            if (resp == null) return Optional.<DevicePage>empty();
+            if (!is2xx(resp)) {
+                log.warn("ChirpStack device list of application {} failed at offset {}: {}", applicationId, offset, resp.statusCode());
+                return Optional.<DevicePage>empty();
             }
-            if (deviceProfileId == null || deviceProfileId.isBlank()) {
-                log.warn("device {} missing deviceProfileId", devEui);
-                return false; // <- was the cause of your 400 (expected length 32)
+            try {
+                JsonNode body = objectMapper.readTree(resp.body());
+                List<DeviceInfo> devices = new ArrayList<>();
+                for (JsonNode d : body.path("result")) {
+                    devices.add(new DeviceInfo(
+                            d.path("devEui").asText(""),
+                            d.path("name").asText(""),
+                            d.path("description").asText(""),
+                            d.path("lastSeenAt").asText(""),
+                            d.path("createdAt").asText(""),
+                            d.path("updatedAt").asText(""),
+                            null));
+                }
+                return Optional.of(new DevicePage(body.path("totalCount").asLong(0), devices));
+            } catch (Exception e) {
+                log.error("listDevices failed for application {}", applicationId, e);
+                return Optional.<DevicePage>empty();
             }
+        });
+    }
 
-            String currentName        = d.path("name").asText("");
-            String currentDescription = d.path("description").asText("");
-            boolean currentIsDisabled = d.path("isDisabled").asBoolean(false);
-            String joinEui            = d.path("joinEui").asText(""); // keep if present
+    /** Update name/description/status on ChirpStack (v4). */
+    public boolean updateDeviceMeta(String devEui, String name, String description, String status) {
+        return updateDeviceMetaAsync(devEui, name, description, status).join();
+    }
 
-            String newName = (name != null ? name : currentName);
-            String newDesc = (description != null ? description : currentDescription);
+    public CompletableFuture<Boolean> updateDeviceMetaAsync(String devEui, String name, String description, String status) {
+        return updateDeviceMetaAsync(devEui, null, name, description, status);
+    }
 
-            Boolean newIsDisabled = null;
-            if (status != null && !status.isBlank()) {
-                String s = status.trim().toUpperCase();
-                if ("OFFLINE".equals(s)) newIsDisabled = true;
-                else if ("ONLINE".equals(s)) newIsDisabled = false;
+    /**
+     * @param current the device body as last read from ChirpStack (see {@link #getDeviceBodyAsync}), which
+     * saves the GET; null to read it first
+     */
+    public CompletableFuture<Boolean> updateDeviceMetaAsync(String devEui, JsonNode current,
+                                                            String name, String description, String status) {
+        // GET current device to retain required ids/fields
+        String path = "/api/devices/" + segment(devEui);
+        CompletableFuture<JsonNode> device = current != null
+                ? CompletableFuture.completedFuture(current.path("device"))
+                : send("GET", path, null, updateTimeoutMs).thenApply(getResp -> {
+                    if (getResp == null) return null;
+                    if (!is2xx(getResp)) {
+                        log.warn("ChirpStack GET before PUT failed for {}: {}", devEui, getResp.statusCode());
+                        return null;
+                    }
+                    try {
+                        return objectMapper.readTree(getResp.body()).path("device");
+                    } catch (Exception e) {
+                        log.error("updateDeviceMeta failed for {}", devEui, e);
+                        return null;
+                    }
+                });
+        return device.thenCompose(d -> {
+            if (d == null) return CompletableFuture.completedFuture(false);
+            String putBody;
+            try {
+                putBody = updateBody(devEui, d, name, description, status);
+            } catch (Exception e) {
+                log.error("updateDeviceMeta failed for {}", devEui, e);
+                return CompletableFuture.completedFuture(false);
             }
-            boolean finalIsDisabled = (newIsDisabled != null ? newIsDisabled : currentIsDisabled);
+            if (putBody == null) return CompletableFuture.completedFuture(false);
 
-            Map<String, String> tags = new HashMap<>();
-            if (d.path("tags").isObject()) {
-                d.path("tags").fields().forEachRemaining(e -> tags.put(e.getKey(), e.getValue().asText("")));
-            }
-            Map<String, String> variables = new HashMap<>();
-            if (d.path("variables").isObject()) {
-                d.path("variables").fields().forEachRemaining(e -> variables.put(e.getKey(), e.getValue().asText("")));
-            }
+            return send("PUT", path, putBody, updateTimeoutMs).thenApply(putResp -> {
+                if (putResp == null) return false;
+                if (!is2xx(putResp)) {
+                    log.warn("ChirpStack PUT update failed for {}: {}", devEui, putResp.statusCode());
+                    return false;
+                }
+                return true;
+            });
+        });
+    }
 
-            Map<String, Object> device = new HashMap<>();
-            device.put("applicationId",   applicationId);
-            device.put("deviceProfileId", deviceProfileId); // <-- REQUIRED
-            device.put("devEui",          devEui);
-            device.put("name",            newName);
-            device.put("description",     newDesc);
-            device.put("isDisabled",      finalIsDisabled);
-            if (!joinEui.isBlank()) device.put("joinEui", joinEui);
-            device.put("tags",            tags);
-            device.put("variables",       variables);
+    /** The PUT body: the device as ChirpStack has it, with name/description/status replaced; null if it can't be sent. */
+    private String updateBody(String devEui, JsonNode d, String name, String description, String status) throws Exception {
+        // REQUIRED by ChirpStack v4
+        String applicationId   = d.path("applicationId").asText(null);
+        String deviceProfileId = d.path("deviceProfileId").asText(null);
+        if (applicationId == null || applicationId.isBlank()) {
+            log.warn("device {} missing applicationId", devEui);
+            return null;
+        }
+        if (deviceProfileId == null || deviceProfileId.isBlank()) {
+            log.warn("device {} missing deviceProfileId", devEui);
+            return null; // <- was the cause of your 400 (expected length 32)
+        }
 
-            Map<String, Object> wrapper = new HashMap<>();
-            wrapper.put("device", device);
+        String currentName        = d.path("name").asText("");
+        String currentDescription = d.path("description").asText("");
+        boolean currentIsDisabled = d.path("isDisabled").asBoolean(false);
+        String joinEui            = d.path("joinEui").asText(""); // keep if present
 
-            String putUrl = baseUrl + "/api/devices/" + devEui;
-            HttpEntity<Map<String, Object>> putEntity = new HttpEntity<>(wrapper, headers);
-            ResponseEntity<String> putResp =
-                    restTemplate.exchange(putUrl, HttpMethod.PUT, putEntity, String.class);
+        String newName = (name != null ? name : currentName);
+        String newDesc = (description != null ? description : currentDescription);
 
-            if (!putResp.getStatusCode().is2xxSuccessful()) {
-                log.warn("ChirpStack PUT update failed for {}: {}", devEui, putResp.getStatusCode());
-                return false;
-            }
-            return true;
+        Boolean newIsDisabled = null;
+        if (status != null && !status.isBlank()) {
+            String s = status.trim().toUpperCase();
+            if ("OFFLINE".equals(s)) newIsDisabled = true;
+            else if ("ONLINE".equals(s)) newIsDisabled = false;
+        }
+        boolean finalIsDisabled = (newIsDisabled != null ? newIsDisabled : currentIsDisabled);
 
-        } catch (Exception e) {
-            log.error("updateDeviceMeta failed for {}", devEui, e);
-            return false;
+        Map<String, String> tags = new HashMap<>();
+        if (d.path("tags").isObject()) {
+            d.path("tags").fields().forEachRemaining(e -> tags.put(e.getKey(), e.getValue().asText("")));
+        }
+        Map<String, String> variables = new HashMap<>();
+        if (d.path("variables").isObject()) {
+            d.path("variables").fields().forEachRemaining(e -> variables.put(e.getKey(), e.getValue().asText("")));
         }
+
+        Map<String, Object> device = new HashMap<>();
+        device.put("applicationId",   applicationId);
+        device.put("deviceProfileId", deviceProfileId); // <-- REQUIRED
+        device.put("devEui",          devEui);
+        device.put("name",            newName);
+        device.put("description",     newDesc);
+        device.put("isDisabled",      finalIsDisabled);
+        if (!joinEui.isBlank()) device.put("joinEui", joinEui);
+        device.put("tags",            tags);
+        device.put("variables",       variables);
+
+        Map<String, Object> wrapper = new HashMap<>();
+        wrapper.put("device", device);
+        return objectMapper.writeValueAsString(wrapper);
     }
 
      /** POST /api/devices/{devEui}/queue  (ChirpStack v4)
      *  Sends a single byte: 0x01 for OPEN, 0x00 for CLOSE. Default fPort=2.
      */
     public boolean enqueueDownlink(String devEui, int value, Integer fPort) {
-        try {
-            String url = baseUrl + "/api/devices/" + devEui + "/queue";
-            HttpHeaders headers = authHeaders();
+        return enqueueDownlinkAsync(devEui, value, fPort).join();
+    }
 
+    public CompletableFuture<Boolean> enqueueDownlinkAsync(String devEui, int value, Integer fPort) {
+        String body;
+        try {
             Map<String, Object> item = new HashMap<>();
             item.put("confirmed", false);
             item.put("fPort", (fPort != null ? fPort : 2));
@@ -155,27 +276,141 @@ public class ChirpstackClient {
 
             Map<String, Object> wrapper = new HashMap<>();
             wrapper.put("deviceQueueItem", item);
+            body = objectMapper.writeValueAsString(wrapper);
+        } catch (Exception e) {
+            log.error("enqueueDownlink error for {}", devEui, e);
+            return CompletableFuture.completedFuture(false);
+        }
 
-            HttpEntity<Map<String, Object>> req = new HttpEntity<>(wrapper, headers);
-            ResponseEntity<String> resp = restTemplate.exchange(url, HttpMethod.POST, req, String.class);
-
-            if (!resp.getStatusCode().is2xxSuccessful()) {
-                log.warn("enqueueDownlink failed for {}: {}", devEui, resp.getStatusCode());
+        return send("POST", "/api/devices/" + segment(devEui) + "/queue", body, enqueueTimeoutMs).thenApply(resp -> {
+            if (resp == null) return false;
+            if (!is2xx(resp)) {
+                log.warn("enqueueDownlink failed for {}: {}", devEui, resp.statusCode());
                 return false;
             }
             return true;
-        } catch (Exception e) {
-            log.error("enqueueDownlink error for {}", devEui, e);
-            return false;
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("poolSize", poolSize);
+        out.put("inFlight", permits.inUse());
+        out.put("waiting", permits.waiting());
+        out.put("requests", requests.sum());
+        out.put("failures", failures.sum());
+        out.put("timeouts", timeouts.sum());
+        out.put("queueTimeouts", queueTimeouts.sum());
+        return out;
+    }
+
+    /**
+     * One request within the pool limit. Completes with the response whatever its status, or with null when
+     * there was none (no free slot in time, timeout, connection error), which is logged here.
+     */
+    private CompletableFuture<HttpResponse<String>> send(String method, String path, String body, long timeoutMs) {
+        requests.increment();
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .headers(headers)
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        } catch (RuntimeException e) {
+            // a malformed base URL; callers get the same null as for any other failed call
+            failures.increment();
+            log.error("ChirpStack {} {}: invalid request URI ({})", method, path, e.getMessage());
+            return CompletableFuture.completedFuture(null);
         }
+        return permits.acquire()
+                .orTimeout(acquireTimeoutMs, TimeUnit.MILLISECONDS)
+                .thenCompose(slot -> {
+                    try {
+                        return http.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                                .whenComplete((resp, e) -> permits.release());
+                    } catch (RuntimeException e) {
+                        permits.release();
+                        throw e;
+                    }
+                })
+                .handle((resp, e) -> {
+                    if (e == null) {
+                        if (!is2xx(resp)) failures.increment();
+                        return resp;
+                    }
+                    failures.increment();
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        queueTimeouts.increment();
+                        log.warn("ChirpStack {} {}: no free connection within {} ms", method, path, acquireTimeoutMs);
+                    } else if (cause instanceof HttpTimeoutException) {
+                        timeouts.increment();
+                        log.warn("ChirpStack {} {} timed out after {} ms", method, path, timeoutMs);
+                    } else {
+                        log.error("ChirpStack {} {} failed", method, path, cause);
+                    }
+                    return null;
+                });
+    }
+
+    /** devEuis and ids come from callers; encoded so they stay one path segment or query value. */
+    static String segment(String value) {
+        return URLEncoder.encode(value == null ? "" : value, StandardCharsets.UTF_8).replace("+", "%20");
     }
 
-    private HttpHeaders authHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("Authorization", "Bearer " + token);
-        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        return headers;
+    private static boolean is2xx(HttpResponse<?> resp) {
+        return resp.statusCode() >= 200 && resp.statusCode() < 300;
+    }
+
+    /**
+     * Counting semaphore whose waiters are futures rather than blocked threads. A waiter that gave up
+     * (orTimeout completed it first) is skipped on release and its slot handed to the next one.
+     */
+    static final class Permits {
+        private final int size;
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private int available;
+
+        Permits(int size) {
+            this.size = size;
+            this.available = size;
+        }
+
+        CompletableFuture<Void> acquire() {
+            synchronized (this) {
+                if (available > 0) {
+                    available--;
+                    return CompletableFuture.completedFuture(null);
+                }
+                CompletableFuture<Void> waiter = new CompletableFuture<>();
+                waiters.add(waiter);
+                return waiter;
+            }
+        }
+
+        void release() {
+            while (true) {
+                CompletableFuture<Void> next;
+                synchronized (this) {
+                    next = waiters.poll();
+                    if (next == null) {
+                        available++;
+                        return;
+                    }
+                }
+                // completed outside the lock: the waiter's request is sent from here
+                if (next.complete(null)) return;
+            }
+        }
+
+        synchronized int inUse() {
+            return size - available;
+        }
+
+        synchronized int waiting() {
+            return (int) waiters.stream().filter(w -> !w.isDone()).count();
+        }
     }
 
     public record DeviceInfo(
@@ -187,4 +422,7 @@ public class ChirpstackClient {
             String updatedAt,
             String status
     ) {}
+
+    /** @param totalCount devices in the application, across all pages */
+    public record DevicePage(long totalCount, List<DeviceInfo> devices) {}
 }
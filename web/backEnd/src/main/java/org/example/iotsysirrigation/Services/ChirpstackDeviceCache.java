@@ -0,0 +1,193 @@
+package org.example.iotsysirrigation.Services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ChirpStack device metadata by normalized devEui, so /api/devices/eui and device updates don't call
+ * ChirpStack every time. Holds the raw device body (an update PUTs it back with its fields changed) and
+ * the DeviceInfo made from it.
+ * <ul>
+ *   <li>An entry is served for {@code ttl-ms}. Once it is older than {@code refresh-after-ms}, the next read
+ *       still gets it but also starts a reload in the background.</li>
+ *   <li>Loads are single-flight: concurrent misses for one device share one upstream GET.</li>
+ *   <li>Failed or not-found lookups are not cached.</li>
+ *   <li>Our own updates drop the entry, so the next read sees what ChirpStack now has.</li>
+ *   <li>Past {@code max-size} the entry loaded longest ago is dropped.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChirpstackDeviceCache {
+
+    private final ChirpstackClient client;
+
+    @Value("${chirpstack.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chirpstack.cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${chirpstack.cache.refresh-after-ms:240000}")
+    private long refreshAfterMs;
+
+    @Value("${chirpstack.cache.max-size:10000}")
+    private int maxSize;
+
+    /** One ChirpStack answer and when it arrived. */
+    record Entry(JsonNode body, ChirpstackClient.DeviceInfo info, long loadedAtNanos, AtomicBoolean refreshing) {
+        long ageMs() {
+            return (System.nanoTime() - loadedAtNanos) / 1_000_000;
+        }
+    }
+
+    /** Completed futures are cached entries, pending ones are loads in flight. */
+    private final Map<String, CompletableFuture<Entry>> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder upstreamCalls = new LongAdder();
+    private final LongAdder upstreamMisses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public Optional<ChirpstackClient.DeviceInfo> get(String devEui) {
+        return getAsync(devEui).join();
+    }
+
+    public CompletableFuture<Optional<ChirpstackClient.DeviceInfo>> getAsync(String devEui) {
+        return entry(devEui).thenApply(e -> Optional.ofNullable(e).map(Entry::info));
+    }
+
+    /**
+     * Pushes name/description/status to ChirpStack. Starts from the cached device body when it is younger
+     * than refresh-after-ms, which saves the GET before the PUT, and drops the entry either way.
+     */
+    public boolean updateDeviceMeta(String devEui, String name, String description, String status) {
+        String eui = EndNodeDeviceService.norm(devEui);
+        Entry cached = enabled ? fresh(eui) : null;
+        try {
+            return client.updateDeviceMetaAsync(eui, cached == null ? null : cached.body(), name, description, status).join();
+        } finally {
+            invalidate(eui);
+        }
+    }
+
+    public void invalidate(String devEui) {
+        if (entries.remove(EndNodeDeviceService.norm(devEui)) != null) invalidations.increment();
+    }
+
+    /** Resolves to the entry, or to null when ChirpStack doesn't know the device or couldn't be asked. */
+    private CompletableFuture<Entry> entry(String devEui) {
+        String eui = EndNodeDeviceService.norm(devEui);
+        if (!enabled) return load(eui);
+
+        CompletableFuture<Entry> current = entries.get(eui);
+        if (current != null) {
+            if (!current.isDone()) {
+                coalesced.increment();
+                return current;
+            }
+            Entry e = current.join();
+            long age = e.ageMs();
+            if (age < ttlMs) {
+                hits.increment();
+                if (age >= refreshAfterMs && e.refreshing().compareAndSet(false, true)) refresh(eui, current, e);
+                return current;
+            }
+            expired.increment();
+            entries.remove(eui, current);
+        }
+
+        misses.increment();
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> raced = entries.putIfAbsent(eui, mine);
+        if (raced != null) {
+            // another caller started the load (or refreshed it) in between
+            coalesced.increment();
+            return raced;
+        }
+        load(eui).whenComplete((e, err) -> {
+            if (e == null) entries.remove(eui, mine);
+            mine.complete(e);
+            if (e != null && entries.size() > maxSize) evictOldest();
+        });
+        return mine;
+    }
+
+    /** The cached entry if it is younger than refresh-after-ms, without loading. */
+    private Entry fresh(String eui) {
+        CompletableFuture<Entry> f = entries.get(eui);
+        if (f == null || !f.isDone()) return null;
+        Entry e = f.join();
+        return e != null && e.ageMs() < refreshAfterMs ? e : null;
+    }
+
+    /** Reload in the background; readers keep getting the old entry until the new one replaces it. */
+    private void refresh(String eui, CompletableFuture<Entry> current, Entry old) {
+        refreshes.increment();
+        load(eui).whenComplete((e, err) -> {
+            if (e != null) entries.replace(eui, current, CompletableFuture.completedFuture(e));
+            else old.refreshing().set(false); // keep serving the old one until it expires; the next read retries
+        });
+    }
+
+    private CompletableFuture<Entry> load(String eui) {
+        upstreamCalls.increment();
+        return client.getDeviceBodyAsync(eui).handle((body, err) -> {
+            if (err != null || body == null || body.isEmpty()) {
+                upstreamMisses.increment();
+                return null;
+            }
+            return new Entry(body.get(), ChirpstackClient.toDeviceInfo(eui, body.get()), System.nanoTime(), new AtomicBoolean());
+        });
+    }
+
+    /** Drops the entry loaded longest ago; only runs past the cap. */
+    private void evictOldest() {
+        String oldestKey = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<String, CompletableFuture<Entry>> e : entries.entrySet()) {
+            CompletableFuture<Entry> f = e.getValue();
+            if (!f.isDone() || f.join() == null) continue;
+            if (f.join().loadedAtNanos() - oldest < 0 || oldestKey == null) {
+                oldestKey = e.getKey();
+                oldest = f.join().loadedAtNanos();
+            }
+        }
+        if (oldestKey != null && entries.remove(oldestKey) != null) evictions.increment();
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum(), m = misses.sum(), c = coalesced.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("size", entries.size());
+        out.put("maxSize", maxSize);
+        out.put("hits", h);
+        out.put("misses", m);
+        out.put("coalesced", c);
+        out.put("expired", expired.sum());
+        out.put("refreshes", refreshes.sum());
+        out.put("invalidations", invalidations.sum());
+        out.put("evictions", evictions.sum());
+        out.put("upstreamCalls", upstreamCalls.sum());
+        out.put("upstreamMisses", upstreamMisses.sum());
+        // a read that waited on someone else's load didn't cost an upstream call either
+        out.put("hitRate", h + m + c == 0 ? 0.0 : (double) (h + c) / (h + m + c));
+        return out;
+    }
+}
@@ -0,0 +1,351 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.Organization;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.OrganizationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Brings name, description and lastSeen of registered devices back in line with ChirpStack. Without it they
+ * only match at createSmart/updateSmart. Each run pages through ChirpStack's device list of every configured
+ * application: the first page of each application, then the rest once the totals are known, with at most
+ * {@code parallelism} pages in flight. The result is diffed in memory against the devices collection by devEui,
+ * and the differences are written as unordered bulks:
+ * <ul>
+ *   <li>updated: name or description differ, or ChirpStack saw the device more recently (lastSeen only moves forward);</li>
+ *   <li>created: listed but not registered, for applications configured as applicationId=organizationId:userId;
+ *       for the others they are only counted as unregistered;</li>
+ *   <li>orphaned: registered to an organization that a configured application maps to, but in none of the listed
+ *       applications. Devices of other organizations may belong to applications not configured here, so they are
+ *       never counted. Counted with a sample, never deleted, and only when every page arrived.</li>
+ * </ul>
+ * A run waits at most {@code max-duration-ms} for ChirpStack; the pages that arrived by then are still applied.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChirpstackReconcileService {
+
+    private static final int ORPHAN_SAMPLE = 20;
+
+    private final ChirpstackClient client;
+    private final EndNodeDeviceRepository repo;
+    private final OrganizationRepository orgRepo;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${chirpstack.reconcile.enabled:false}")
+    private boolean enabled;
+
+    /** Comma-separated applicationId or applicationId=organizationId:userId. */
+    @Value("${chirpstack.reconcile.applications:}")
+    private String applicationsSpec;
+
+    @Value("${chirpstack.reconcile.page-size:500}")
+    private int pageSize;
+
+    @Value("${chirpstack.reconcile.parallelism:8}")
+    private int parallelism;
+
+    @Value("${chirpstack.reconcile.max-duration-ms:120000}")
+    private long maxDurationMs;
+
+    @Value("${chirpstack.reconcile.batch-size:1000}")
+    private int batchSize;
+
+    /** A configured application; organizationId and userId are null when its unknown devices aren't created. */
+    record Application(String id, String organizationId, String userId) {}
+
+    record Page(Application app, int offset, CompletableFuture<Optional<ChirpstackClient.DevicePage>> result) {}
+
+    record Listed(Application app, ChirpstackClient.DeviceInfo info) {}
+
+    private List<Application> applications = List.of();
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final AtomicLong runs = new AtomicLong();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    @PostConstruct
+    void init() {
+        applications = parse(applicationsSpec);
+    }
+
+    static List<Application> parse(String spec) {
+        List<Application> out = new ArrayList<>();
+        if (spec == null) return out;
+        for (String item : spec.split(",")) {
+            String s = item.trim();
+            if (s.isEmpty()) continue;
+            int eq = s.indexOf('=');
+            if (eq < 0) {
+                out.add(new Application(s, null, null));
+                continue;
+            }
+            String[] owner = s.substring(eq + 1).split(":", 2);
+            if (owner.length != 2 || owner[0].isBlank() || owner[1].isBlank()) {
+                throw new IllegalArgumentException("Expected applicationId=organizationId:userId, got '" + s + "'");
+            }
+            out.add(new Application(s.substring(0, eq).trim(), owner[0].trim(), owner[1].trim()));
+        }
+        return out;
+    }
+
+    @Scheduled(fixedDelayString = "${chirpstack.reconcile.interval-ms:900000}",
+               initialDelayString = "${chirpstack.reconcile.initial-delay-ms:60000}")
+    public void scheduled() {
+        if (!enabled) return;
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.warn("ChirpStack reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    /** One run now; the counts are also kept as lastRun. */
+    public Map<String, Object> reconcile() throws InterruptedException {
+        List<Application> apps = applications;
+        if (apps.isEmpty()) {
+            throw new IllegalArgumentException("No applications configured in chirpstack.reconcile.applications");
+        }
+        if (!runLock.tryLock()) {
+            throw new IllegalStateException("A reconciliation is already running");
+        }
+        try {
+            return run(apps);
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private Map<String, Object> run(List<Application> apps) throws InterruptedException {
+        Instant startedAt = Instant.now();
+        long t0 = System.nanoTime();
+        long deadline = t0 + maxDurationMs * 1_000_000;
+
+        // ChirpStack: every page that arrives in time, by devEui
+        List<Page> pages = new ArrayList<>();
+        boolean complete = fetch(apps, deadline, pages);
+        Map<String, Listed> listed = new HashMap<>();
+        int failedPages = 0;
+        for (Page p : pages) {
+            Optional<ChirpstackClient.DevicePage> r = await(p.result(), deadline);
+            if (r == null || r.isEmpty()) {
+                failedPages++;
+                complete = false;
+                continue;
+            }
+            for (ChirpstackClient.DeviceInfo info : r.get().devices()) {
+                listed.put(EndNodeDeviceService.norm(info.devEui()), new Listed(p.app(), info));
+            }
+        }
+
+        Map<String, EndNodeDevice> stored = new HashMap<>();
+        for (EndNodeDevice d : repo.findAllSyncFields()) {
+            if (d.getDevEui() != null) stored.put(EndNodeDeviceService.norm(d.getDevEui()), d);
+        }
+        Map<String, String> addresses = addresses(apps);
+
+        Date now = new Date();
+        List<WriteModel<Document>> ops = new ArrayList<>();
+        long created = 0, updated = 0, unchanged = 0, unregistered = 0;
+        for (Map.Entry<String, Listed> e : listed.entrySet()) {
+            Listed l = e.getValue();
+            EndNodeDevice d = stored.get(e.getKey());
+            if (d != null) {
+                UpdateOneModel<Document> op = update(d, l.info(), now);
+                if (op == null) {
+                    unchanged++;
+                } else {
+                    ops.add(op);
+                    updated++;
+                }
+            } else if (addresses.containsKey(l.app().id())) {
+                ops.add(new InsertOneModel<>(insert(e.getKey(), l.info(), l.app(), addresses.get(l.app().id()), now)));
+                created++;
+            } else {
+                unregistered++;
+            }
+        }
+        long writeErrors = write(ops);
+
+        List<String> orphans = new ArrayList<>();
+        if (complete) {
+            Set<String> orgs = new HashSet<>();
+            for (Application app : apps) if (app.organizationId() != null) orgs.add(app.organizationId());
+            stored.forEach((eui, d) -> {
+                if (orgs.contains(d.getOrganizationId()) && !listed.containsKey(eui)) orphans.add(eui);
+            });
+            Collections.sort(orphans);
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("startedAt", startedAt);
+        out.put("durationMs", (System.nanoTime() - t0) / 1_000_000);
+        // false when pages failed or didn't arrive in time: nothing is reported orphaned then
+        out.put("complete", complete);
+        out.put("applications", apps.size());
+        out.put("pages", pages.size());
+        out.put("failedPages", failedPages);
+        out.put("listed", listed.size());
+        out.put("registered", stored.size());
+        out.put("created", created);
+        out.put("updated", updated);
+        out.put("unchanged", unchanged);
+        out.put("unregistered", unregistered);
+        out.put("orphaned", complete ? orphans.size() : null);
+        out.put("orphanSample", orphans.subList(0, Math.min(ORPHAN_SAMPLE, orphans.size())));
+        out.put("writeErrors", writeErrors);
+        runs.incrementAndGet();
+        lastRun = out;
+        log.info("ChirpStack reconciliation: {}", out);
+        return out;
+    }
+
+    /**
+     * Requests every page of every application, at most parallelism at a time. First pages go out together;
+     * the rest of an application follow once its first page has told how many devices it has. Adds the
+     * requests to pages; false when the deadline passed before every page could be requested.
+     */
+    private boolean fetch(List<Application> apps, long deadline, List<Page> pages) throws InterruptedException {
+        Semaphore window = new Semaphore(parallelism);
+        for (Application app : apps) {
+            Page first = submit(app, 0, window, deadline);
+            if (first == null) return false;
+            pages.add(first);
+        }
+        for (int i = 0; i < apps.size(); i++) {
+            Page first = pages.get(i);
+            Optional<ChirpstackClient.DevicePage> r = await(first.result(), deadline);
+            if (r == null) return false;
+            if (r.isEmpty()) continue; // counted as a failed page by the caller
+            for (long offset = pageSize; offset < r.get().totalCount(); offset += pageSize) {
+                Page next = submit(first.app(), (int) offset, window, deadline);
+                if (next == null) return false;
+                pages.add(next);
+            }
+        }
+        return true;
+    }
+
+    private Page submit(Application app, int offset, Semaphore window, long deadline) throws InterruptedException {
+        if (!window.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            log.warn("ChirpStack reconciliation ran out of time listing application {} at offset {}", app.id(), offset);
+            return null;
+        }
+        var result = client.listDevicesAsync(app.id(), offset, pageSize);
+        result.whenComplete((r, e) -> window.release());
+        return new Page(app, offset, result);
+    }
+
+    /** The result, or null when it didn't arrive before the deadline. */
+    private static <T> T await(CompletableFuture<T> f, long deadline) throws InterruptedException {
+        try {
+            return f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    /** Organization address by application, for the applications whose unknown devices are created. */
+    private Map<String, String> addresses(List<Application> apps) {
+        Map<String, String> out = new HashMap<>();
+        for (Application app : apps) {
+            if (app.organizationId() == null) continue;
+            Optional<Organization> org = orgRepo.findById(app.organizationId());
+            if (org.isEmpty()) {
+                log.warn("ChirpStack application {} maps to unknown organization {}; its new devices are not created",
+                        app.id(), app.organizationId());
+                continue;
+            }
+            out.put(app.id(), org.get().getAddress());
+        }
+        return out;
+    }
+
+    /** Unordered bulks of batch-size; returns how many writes failed (e.g. a device registered meanwhile). */
+    private long write(List<WriteModel<Document>> ops) {
+        var collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(EndNodeDevice.class));
+        long errors = 0;
+        for (int i = 0; i < ops.size(); i += batchSize) {
+            try {
+                collection.bulkWrite(ops.subList(i, Math.min(ops.size(), i + batchSize)), new BulkWriteOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                errors += e.getWriteErrors().size();
+            }
+        }
+        return errors;
+    }
+
+    /** What to change on a registered device so it matches ChirpStack's list entry; null when nothing. */
+    static UpdateOneModel<Document> update(EndNodeDevice stored, ChirpstackClient.DeviceInfo listed, Date now) {
+        Document set = new Document();
+        if (!blankToEmpty(stored.getName()).equals(blankToEmpty(listed.name()))) set.append("name", listed.name());
+        if (!blankToEmpty(stored.getDescription()).equals(blankToEmpty(listed.description()))) {
+            set.append("description", listed.description());
+        }
+        Instant seen = instant(listed.lastSeenAt());
+        boolean newer = seen != null && (stored.getLastSeen() == null || seen.isAfter(stored.getLastSeen()));
+        if (set.isEmpty() && !newer) return null;
+
+        set.append("updatedAt", now);
+        Document update = new Document("$set", set);
+        // ingest may have moved it further meanwhile
+        if (newer) update.append("$max", new Document("lastSeen", Date.from(seen)));
+        return new UpdateOneModel<>(new Document("devEui", stored.getDevEui()), update);
+    }
+
+    /** A device as createSmart would register it, minus the GPS backfill (DeviceStateService fills it in). */
+    static Document insert(String devEui, ChirpstackClient.DeviceInfo listed, Application app, String address, Date now) {
+        Document d = new Document("devEui", devEui)
+                .append("name", listed.name())
+                .append("description", listed.description())
+                .append("organizationId", app.organizationId())
+                .append("userId", app.userId());
+        if (address != null) d.append("address", address);
+        Instant seen = instant(listed.lastSeenAt());
+        if (seen != null) d.append("lastSeen", Date.from(seen));
+        Instant createdAt = instant(listed.createdAt());
+        return d.append("createdAt", createdAt != null ? Date.from(createdAt) : now)
+                .append("updatedAt", now);
+    }
+
+    private static String blankToEmpty(String s) {
+        return s == null ? "" : s.trim();
+    }
+
+    private static Instant instant(String s) {
+        try {
+            return s == null || s.isBlank() ? null : Instant.parse(s);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("applications", applications.size());
+        out.put("running", runLock.isLocked());
+        out.put("runs", runs.get());
+        out.put("lastRun", lastRun);
+        return out;
+    }
+}
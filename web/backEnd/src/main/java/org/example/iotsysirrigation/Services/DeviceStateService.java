@@ -0,0 +1,174 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps lastSeen, lat/lng/altitude and lastValues (the newest object_json) of registered devices current
+ * from ingested readings. Readings are coalesced per devEui in memory (newest wins, GPS from the newest reading
+ * that had a fix) and flushed every flush-ms as one unordered bulk of updateOne, so a device reporting every
+ * second still costs one device write per interval. Each update also bumps updatedAt, which the device ETags
+ * depend on. An update only applies if it is newer than the stored lastSeen, so late or replayed readings
+ * don't move a device backwards; readings of devEuis that aren't registered match nothing.
+ * Fed by the sensors change stream (bridge inserts) and, while that stream is down, directly by the
+ * in-process ingest writer.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceStateService implements SensorChangeStream.Listener {
+
+    private final MongoTemplate mongoTemplate;
+    private final SensorChangeStream changeStream;
+
+    @Value("${app.devices.state.enabled:true}")
+    private boolean enabled;
+
+    /** The in-process ingest sources; either one hands its readings over through {@link #onIngested}. */
+    @Value("${app.ingest.http.enabled:false}")
+    private boolean httpIngest;
+
+    @Value("${app.ingest.mqtt.enabled:false}")
+    private boolean mqttIngest;
+
+    /** Devices with pending state beyond this are dropped until the next flush; the next reading brings them back. */
+    @Value("${app.devices.state.max-pending:50000}")
+    private int maxPending;
+
+    /** Newest state seen for a device since the last flush. */
+    record State(Instant lastSeen, double[] gps, Object values) {
+
+        /** Newest reading wins; a newer reading without a fix keeps the older fix. */
+        State merge(State newer) {
+            if (newer.lastSeen.isBefore(lastSeen)) return newer.merge(this);
+            return newer.gps != null ? newer : new State(newer.lastSeen, gps, newer.values);
+        }
+    }
+
+    private final Map<String, State> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong readings = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong modified = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastFlushMs;
+
+    @PostConstruct
+    void register() {
+        if (enabled) changeStream.addListener(this);
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    /**
+     * True when readings actually reach this service: the change stream is live or an in-process ingest
+     * source is on. With only the Python bridge and no replica set it is enabled but never fed, so callers
+     * must keep reading device state from the readings themselves.
+     */
+    public boolean receivesReadings() {
+        return enabled && (changeStream.isLive() || httpIngest || mqttIngest);
+    }
+
+    @Override
+    public void onReading(SensorReading r) {
+        if (r.getDevEui() == null || r.getTimestamp() == null) return;
+        double[] gps = EndNodeDeviceService.extractGps(r).orElse(null);
+        Object values = r.getSensorsReading() instanceof Map<?, ?> m ? m : null;
+        record(EndNodeDeviceService.norm(r.getDevEui()), new State(r.getTimestamp(), gps, values));
+    }
+
+    /** Documents the ingest writer just stored; skipped while the change stream delivers them anyway. */
+    public void onIngested(List<Document> docs) {
+        if (!enabled || changeStream.isLive()) return;
+        for (Document d : docs) {
+            onReading(mongoTemplate.getConverter().read(SensorReading.class, d));
+        }
+    }
+
+    private void record(String devEui, State s) {
+        readings.incrementAndGet();
+        if (pending.size() >= maxPending && !pending.containsKey(devEui)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        pending.merge(devEui, s, State::merge);
+    }
+
+    @Scheduled(fixedDelayString = "${app.devices.state.flush-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+        Map<String, State> batch = new HashMap<>();
+        for (String eui : pending.keySet()) {
+            State s = pending.remove(eui);
+            if (s != null) batch.put(eui, s);
+        }
+        List<WriteModel<Document>> ops = new ArrayList<>(batch.size());
+        Date now = new Date();
+        batch.forEach((eui, s) -> ops.add(update(eui, s, now)));
+
+        long t0 = System.currentTimeMillis();
+        try {
+            BulkWriteResult res = mongoTemplate.getCollection(mongoTemplate.getCollectionName(EndNodeDevice.class))
+                    .bulkWrite(ops, new BulkWriteOptions().ordered(false));
+            updates.addAndGet(ops.size());
+            modified.addAndGet(res.getModifiedCount());
+        } catch (Exception e) {
+            // keep the states for the next flush unless newer ones arrived meanwhile
+            failures.incrementAndGet();
+            batch.forEach((eui, s) -> pending.merge(eui, s, State::merge));
+            log.warn("device state flush of {} devices failed: {}", batch.size(), e.getMessage());
+        }
+        flushes.incrementAndGet();
+        lastFlushMs = System.currentTimeMillis() - t0;
+    }
+
+    static UpdateOneModel<Document> update(String devEui, State s, Date now) {
+        Date seen = Date.from(s.lastSeen());
+        Document filter = new Document("devEui", devEui).append("$or", List.of(
+                new Document("lastSeen", new Document("$lt", seen)),
+                new Document("lastSeen", null)));
+        Document set = new Document("lastSeen", seen).append("updatedAt", now);
+        if (s.values() != null) set.append("lastValues", s.values());
+        double[] gps = s.gps();
+        if (gps != null) {
+            set.append("lat", gps[0]).append("lng", gps[1]);
+            if (gps.length > 2) set.append("altitude", gps[2]);
+        }
+        return new UpdateOneModel<>(filter, new Document("$set", set));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("receivesReadings", receivesReadings());
+        out.put("readings", readings.get());
+        out.put("pending", pending.size());
+        out.put("dropped", dropped.get());
+        out.put("flushes", flushes.get());
+        // one per device per flush; readings / updates is the coalescing factor
+        out.put("updates", updates.get());
+        out.put("modified", modified.get());
+        out.put("failures", failures.get());
+        out.put("lastFlushMs", lastFlushMs);
+        return out;
+    }
+}
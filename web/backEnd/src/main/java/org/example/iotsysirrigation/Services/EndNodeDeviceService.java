@@ -5,8 +5,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.iotsysirrigation.Models.EndNodeDevice;
 import org.example.iotsysirrigation.Models.Organization;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
 import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Repositories.DecodedMetricsReadConverter;
 import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepositoryCustom.ListVersion;
 import org.example.iotsysirrigation.Repositories.OrganizationRepository;
 import org.springframework.stereotype.Service;
 
@@ -21,10 +24,12 @@ public class EndNodeDeviceService {
     private final EndNodeDeviceRepository repo;
     private final OrganizationRepository orgRepo;
     private final ChirpstackClient chirpstackClient;
+    private final ChirpstackDeviceCache chirpstackDevices;
     private final SensorReadingService readingService;
+    private final DeviceStateService deviceState;
 
     /** Lowercase hex, no separators — keeps DB/ChirpStack lookups consistent. */
-    private String norm(String eui) {
+    static String norm(String eui) {
         return eui == null ? null : eui.replaceAll("[^0-9a-fA-F]", "").toLowerCase();
     }
 
@@ -49,7 +54,7 @@ public class EndNodeDeviceService {
         }
 
         // Must exist on ChirpStack
-        var infoOpt = chirpstackClient.getDeviceByDevEui(device.getDevEui());  // uses normalized EUI
+        var infoOpt = chirpstackDevices.get(device.getDevEui());  // uses normalized EUI
         if (infoOpt.isEmpty()) {
             throw new NoSuchElementException("No device found in ChirpStack with devEui " + device.getDevEui());
         }
@@ -57,12 +62,12 @@ public class EndNodeDeviceService {
 
         Instant now = Instant.now();
         device.setCreatedAt(now);
+        // server time, never ChirpStack's: the list ETags rely on (count, max updatedAt) moving on every write
         device.setUpdatedAt(now);
         device.setName(info.name());
         device.setDescription(info.description());
         try { device.setLastSeen(Instant.parse(info.lastSeenAt())); } catch (Exception ignored) {}
         try { device.setCreatedAt(Instant.parse(info.createdAt())); } catch (Exception ignored) {}
-        try { device.setUpdatedAt(Instant.parse(info.updatedAt())); } catch (Exception ignored) {}
 
         device.setAddress(org.getAddress());
 
@@ -84,7 +89,7 @@ public class EndNodeDeviceService {
     public Optional<EndNodeDevice> findByDevEui(String devEui) {
         String eui = norm(devEui);                               // <-- normalize
         try {
-            return chirpstackClient.getDeviceByDevEui(eui).map(info -> {
+            return chirpstackDevices.get(eui).map(info -> {
                 EndNodeDevice d = new EndNodeDevice();
                 d.setDevEui(eui);
                 d.setName(info.name());
@@ -103,6 +108,11 @@ public class EndNodeDeviceService {
     public List<EndNodeDevice> findByOwner(String userId) { return repo.findByUserId(userId); }
     public List<EndNodeDevice> findByOrganization(String organizationId) { return repo.findByOrganizationId(organizationId); }
 
+    /** Count + newest updatedAt of the matching list, read from an index only; for conditional GETs. */
+    public ListVersion versionOfAll() { return repo.listVersion(null, null); }
+    public ListVersion versionOfOwner(String userId) { return repo.listVersion("userId", userId); }
+    public ListVersion versionOfOrganization(String organizationId) { return repo.listVersion("organizationId", organizationId); }
+
     /**
      * devEui/orgId/userId immutable.
      * Push name/description to ChirpStack first; save to DB only if that succeeds.
@@ -126,19 +136,22 @@ public class EndNodeDeviceService {
         String newDescription = patch.getDescription() != null ? patch.getDescription() : existing.getDescription();
         String newAddress     = patch.getAddress()     != null ? patch.getAddress()     : existing.getAddress();
 
-        boolean ok = chirpstackClient.updateDeviceMeta(norm(existing.getDevEui()), newName, newDescription, null);
+        boolean ok = chirpstackDevices.updateDeviceMeta(norm(existing.getDevEui()), newName, newDescription, null);
         if (!ok) {
             throw new IllegalStateException("Failed to update device metadata on ChirpStack.");
         }
 
         if (patch.getLat() == null && patch.getLng() == null) {
-            readingService.lastOne(existing.getDevEui()).ifPresent(r -> {
-                extractGps(r).ifPresent(g -> {
-                    existing.setLat(g[0]);
-                    existing.setLng(g[1]);
-                    if (g.length > 2) existing.setAltitude(g[2]);
+            // while the write-behind is fed, GPS is already current from ingest
+            if (!deviceState.receivesReadings()) {
+                readingService.lastOne(existing.getDevEui()).ifPresent(r -> {
+                    extractGps(r).ifPresent(g -> {
+                        existing.setLat(g[0]);
+                        existing.setLng(g[1]);
+                        if (g.length > 2) existing.setAltitude(g[2]);
+                    });
                 });
-            });
+            }
         } else {
             if (patch.getLat() != null) existing.setLat(patch.getLat());
             if (patch.getLng() != null) existing.setLng(patch.getLng());
@@ -157,25 +170,11 @@ public class EndNodeDeviceService {
     public void delete(String id) { repo.deleteById(id); }
 
     /** Try to read GPS from object_json (preferred), then rx_info[*].location. */
-    private Optional<double[]> extractGps(SensorReading r) {
-        // 1) object_json (decoded payload)
-        Object obj = r.getSensorsReading();
-        if (obj instanceof Map<?,?> map) {
-            Double lat = findDouble(map, "lat","latitude","gps_lat","gpsLatitude");
-            Double lng = findDouble(map, "lng","lon","longitude","gps_lon","gpsLongitude");
-            Double alt = findDouble(map, "alt","altitude","gps_alt","gpsAltitude");
-            if (lat == null || lng == null) {
-                // nested objects like gps / location
-                Map<String, Object> nested = findNestedMap(map, "gps","location","coordinates");
-                if (nested != null) {
-                    if (lat == null) lat = findDouble(nested, "lat","latitude");
-                    if (lng == null) lng = findDouble(nested, "lng","lon","longitude");
-                    if (alt == null) alt = findDouble(nested, "alt","altitude");
-                }
-            }
-            if (lat != null && lng != null) {
-                return Optional.of(alt != null ? new double[]{lat, lng, alt} : new double[]{lat, lng});
-            }
+    static Optional<double[]> extractGps(SensorReading r) {
+        // 1) object_json (decoded payload: gpsLocation channel, or lat/lng aliases at top level or under gps/location)
+        DecodedMetrics metrics = DecodedMetricsReadConverter.decode(r.getSensorsReading());
+        if (metrics.hasGps()) {
+            return Optional.of(metrics.gps());
         }
         // 2) rx_info[*].location  (ChirpStack gateways sometimes include this)
         if (r.getRxInfo() != null) {
@@ -194,26 +193,7 @@ public class EndNodeDeviceService {
         return Optional.empty();
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> findNestedMap(Map<?,?> map, String... keys) {
-        for (String k : keys) {
-            Object v = map.get(k);
-            if (v instanceof Map<?,?>) return (Map<String, Object>) v;
-        }
-        return null;
-    }
-
-    @SuppressWarnings("unchecked")
-    private Double findDouble(Map<?,?> map, String... keys) {
-        for (String k : keys) {
-            Object v = map.get(k);
-            Double dv = asDouble(v);
-            if (dv != null) return dv;
-        }
-        return null;
-    }
-
-    private Double asDouble(Object v) {
+    private static Double asDouble(Object v) {
         if (v instanceof Number n) return n.doubleValue();
         if (v instanceof String s) {
             try { return Double.parseDouble(s); } catch (Exception ignored) {}
@@ -0,0 +1,183 @@
+package org.example.iotsysirrigation.Services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.Organization;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Models.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Creates the indexes declared on our documents (the sensors collection is created by the Python bridge,
+ * so nobody else will) and explains every repository query shape at startup to catch COLLSCANs.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IndexMaintenanceService {
+
+    private static final List<Class<?>> INDEXED = List.of(
+            SensorReading.class, EndNodeDevice.class, User.class, Organization.class);
+
+    /** One explainable query per repository method shape. */
+    record QueryShape(String name, Class<?> entity, Document filter, Document sort) {}
+
+    private static final String SAMPLE_EUI = "0000000000000000";
+    private static final Date SAMPLE_FROM = new Date(0);
+    private static final Date SAMPLE_TO = new Date(1);
+
+    static final List<QueryShape> SHAPES = List.of(
+            new QueryShape("readings.latest", SensorReading.class,
+                    new Document("dev_eui", SAMPLE_EUI),
+                    new Document("timestamp", -1)),
+            new QueryShape("readings.range", SensorReading.class,
+                    new Document("dev_eui", SAMPLE_EUI)
+                            .append("timestamp", new Document("$gt", SAMPLE_FROM).append("$lt", SAMPLE_TO)),
+                    new Document("timestamp", -1)),
+            new QueryShape("readings.page", SensorReading.class,
+                    new Document("dev_eui", SAMPLE_EUI)
+                            .append("timestamp", new Document("$lte", SAMPLE_TO))
+                            .append("$or", List.of(
+                                    new Document("timestamp", new Document("$lt", SAMPLE_TO)),
+                                    new Document("_id", new Document("$lt", new ObjectId())))),
+                    new Document("timestamp", -1).append("_id", -1)),
+            new QueryShape("devices.byDevEui", EndNodeDevice.class, new Document("devEui", SAMPLE_EUI), null),
+            new QueryShape("devices.byOrganization", EndNodeDevice.class, new Document("organizationId", "x"), null),
+            new QueryShape("devices.byUser", EndNodeDevice.class, new Document("userId", "x"), null),
+            new QueryShape("users.byUsername", User.class, new Document("username", "x"), null),
+            new QueryShape("users.byEmail", User.class, new Document("email", "x"), null),
+            new QueryShape("organizations.byName", Organization.class, new Document("name", "x"), null)
+    );
+
+    /**
+     * Backstop for ingest deduplication: one document per ChirpStack deduplicationId. Partial, since bridge
+     * documents don't carry one. Time-series collections can't have unique indexes, so it's plain mode only.
+     */
+    static final IndexDefinition DEDUP_INDEX = new Index()
+            .on(UplinkDocuments.DEDUP_ID, Sort.Direction.ASC)
+            .unique()
+            .partial(PartialIndexFilter.of(Criteria.where(UplinkDocuments.DEDUP_ID).exists(true)))
+            .named(UplinkDocuments.DEDUP_ID);
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+    private final ReadingStorageService storage;
+
+    /** off | warn | fail */
+    @Value("${app.mongo.index-verification:warn}")
+    private String verification;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        ensureIndexes();
+        if ("off".equalsIgnoreCase(verification)) return;
+
+        List<String> scans = verifyQueryPlans();
+        if (scans.isEmpty()) {
+            log.info("Index verification: all {} query shapes use an index", SHAPES.size());
+        } else if ("fail".equalsIgnoreCase(verification)) {
+            throw new IllegalStateException("Queries would COLLSCAN: " + scans);
+        } else {
+            log.warn("Index verification: queries would COLLSCAN: {}", scans);
+        }
+    }
+
+    /** Idempotent; a failing index (e.g. duplicates under a unique key) is logged, not fatal. */
+    public void ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        for (Class<?> type : INDEXED) {
+            if (type == SensorReading.class && storage.isTimeSeries()) {
+                try {
+                    storage.ensureTimeSeriesIndex();
+                } catch (Exception e) {
+                    log.error("Could not ensure the time-series index on {}", storage.collection(), e);
+                }
+                continue;
+            }
+            IndexOperations ops = mongoTemplate.indexOps(type);
+            List<IndexDefinition> defs = new ArrayList<>();
+            resolver.resolveIndexFor(type).forEach(defs::add);
+            if (type == SensorReading.class) defs.add(DEDUP_INDEX);
+            for (IndexDefinition def : defs) {
+                try {
+                    ops.ensureIndex(def);
+                } catch (Exception e) {
+                    log.error("Could not ensure index {} on {}", def.getIndexKeys(), mongoTemplate.getCollectionName(type), e);
+                }
+            }
+        }
+    }
+
+    /** Names of the query shapes whose winning plan contains a COLLSCAN stage. */
+    public List<String> verifyQueryPlans() {
+        List<String> scans = new ArrayList<>();
+        for (QueryShape shape : SHAPES) {
+            try {
+                Document find = new Document("find", mongoTemplate.getCollectionName(shape.entity()))
+                        .append("filter", shape.filter());
+                if (shape.sort() != null) find.append("sort", shape.sort()).append("limit", 1);
+                Document explain = mongoTemplate.getDb().runCommand(
+                        new Document("explain", find).append("verbosity", "queryPlanner"));
+                Object winning = explain.get("queryPlanner", Document.class).get("winningPlan");
+                if (containsStage(winning, "COLLSCAN")) scans.add(shape.name());
+            } catch (Exception e) {
+                log.warn("Could not explain query shape {}", shape.name(), e);
+            }
+        }
+        return scans;
+    }
+
+    /** $indexStats per collection: index name, key and how often it was used since the counter reset. */
+    public Map<String, List<Map<String, Object>>> indexUsage() {
+        Map<String, List<Map<String, Object>>> out = new LinkedHashMap<>();
+        for (Class<?> type : INDEXED) {
+            String collection = mongoTemplate.getCollectionName(type);
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Document d : mongoTemplate.getCollection(collection)
+                    .aggregate(List.of(new Document("$indexStats", new Document())))) {
+                Document accesses = d.get("accesses", Document.class);
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("name", d.getString("name"));
+                row.put("key", d.get("key"));
+                row.put("ops", accesses != null ? accesses.get("ops") : null);
+                row.put("since", accesses != null ? accesses.get("since") : null);
+                rows.add(row);
+            }
+            out.put(collection, rows);
+        }
+        return out;
+    }
+
+    /** Walks inputStage/inputStages (and SBE's queryPlan) looking for the given stage name. */
+    static boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Map<?, ?> m) {
+            if (stage.equals(m.get("stage"))) return true;
+            for (Object v : m.values()) {
+                if (containsStage(v, stage)) return true;
+            }
+        } else if (plan instanceof List<?> l) {
+            for (Object v : l) {
+                if (containsStage(v, stage)) return true;
+            }
+        }
+        return false;
+    }
+}
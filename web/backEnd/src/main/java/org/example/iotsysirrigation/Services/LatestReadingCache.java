@@ -0,0 +1,135 @@
+package org.example.iotsysirrigation.Services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.SensorReadingRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Newest reading per devEui, kept current by {@link SensorChangeStream}. Only trusted while the stream
+ * is live; otherwise {@link #get} reports a miss and callers go to the repository.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LatestReadingCache implements SensorChangeStream.Listener {
+
+    private final SensorChangeStream changeStream;
+    private final SensorReadingRepository repo;
+    private final EndNodeDeviceRepository deviceRepo;
+
+    @Value("${app.readings.latest-cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<String, SensorReading> latest = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    @PostConstruct
+    void register() {
+        changeStream.addListener(this);
+    }
+
+    /** Cached newest reading, or empty when unknown or the stream isn't live (caller falls back). */
+    public Optional<SensorReading> get(String devEui) {
+        if (!changeStream.isLive()) {
+            bypassed.increment();
+            return Optional.empty();
+        }
+        SensorReading r = latest.get(devEui);
+        if (r == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(r);
+    }
+
+    /** Record a reading fetched from the repository (or received live); older ones never replace newer. */
+    public void offer(SensorReading r) {
+        if (r == null || r.getDevEui() == null) return;
+        latest.compute(r.getDevEui(), (k, cur) -> isNewer(r, cur) ? r : cur);
+        if (latest.size() > maxSize) evictOldest();
+    }
+
+    @Override
+    public void onReading(SensorReading reading) {
+        offer(reading);
+    }
+
+    /** Warm from one aggregation over every registered device. */
+    @Override
+    public void onResync() {
+        List<String> euis = deviceRepo.findAll().stream()
+                .map(EndNodeDevice::getDevEui)
+                .filter(Objects::nonNull)
+                .toList();
+        List<SensorReading> rows = repo.findLatestPerDevice(euis);
+        rows.forEach(this::offer);
+        log.info("Latest-reading cache warmed with {} of {} devices", rows.size(), euis.size());
+    }
+
+    private static boolean isNewer(SensorReading r, SensorReading cur) {
+        if (cur == null) return true;
+        Instant a = r.getTimestamp(), b = cur.getTimestamp();
+        return b == null || (a != null && !a.isBefore(b));
+    }
+
+    /**
+     * Past the cap, drops the devices that reported longest ago until a tenth of the cap is free again, so
+     * the scan runs once per maxSize/10 inserts rather than on every insert. Only one caller scans at a time.
+     */
+    private void evictOldest() {
+        if (!evicting.compareAndSet(false, true)) return;
+        try {
+            int target = Math.max(1, maxSize - Math.max(1, maxSize / 10));
+            int excess = latest.size() - target;
+            if (excess <= 0) return;
+            List<Map.Entry<String, SensorReading>> oldest = latest.entrySet().stream()
+                    .sorted(Comparator.comparing((Map.Entry<String, SensorReading> e) -> e.getValue().getTimestamp(),
+                            Comparator.nullsFirst(Comparator.naturalOrder())))
+                    .limit(excess)
+                    .toList();
+            for (Map.Entry<String, SensorReading> e : oldest) {
+                // a newer reading that arrived meanwhile keeps its device
+                if (latest.remove(e.getKey(), e.getValue())) evictions.increment();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum(), m = misses.sum();
+        Instant newest = null;
+        for (SensorReading r : latest.values()) {
+            if (r.getTimestamp() != null && (newest == null || r.getTimestamp().isAfter(newest))) newest = r.getTimestamp();
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", latest.size());
+        out.put("maxSize", maxSize);
+        out.put("hits", h);
+        out.put("misses", m);
+        out.put("bypassed", bypassed.sum());
+        out.put("evictions", evictions.sum());
+        out.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        out.put("newestReadingAgeMs", newest == null ? -1 : System.currentTimeMillis() - newest.toEpochMilli());
+        out.put("changeStream", changeStream.stats());
+        return out;
+    }
+}
@@ -0,0 +1,276 @@
+package org.example.iotsysirrigation.Services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Session;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes new readings to WebSocket subscribers, fed by the shared {@link SensorChangeStream}.
+ * Each subscriber has a bounded pending map keyed by devEui: a slow client only ever gets the newest
+ * reading per device (older ones are conflated away), and a full map drops the longest-waiting entry.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LiveReadingHub implements SensorChangeStream.Listener {
+
+    /** Tomcat's per-session limit for a blocking send; a stuck client gives up its sender thread after this. */
+    private static final String TOMCAT_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final SensorChangeStream changeStream;
+    private final EndNodeDeviceRepository deviceRepo;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.readings.live.max-pending:256}")
+    private int maxPending;
+
+    @Value("${app.readings.live.senders:4}")
+    private int senders;
+
+    @Value("${app.readings.live.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    private final Map<String, Subscriber> bySession = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscriber>> byDevEui = new ConcurrentHashMap<>();
+    private final AtomicLong controlSeq = new AtomicLong();
+    private ExecutorService sendPool;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        AtomicLong n = new AtomicLong();
+        sendPool = Executors.newFixedThreadPool(senders,
+                r -> Thread.ofPlatform().daemon().name("live-push-" + n.incrementAndGet()).unstarted(r));
+        changeStream.addListener(this);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sendPool.shutdownNow();
+    }
+
+    /** Registers an authenticated session; {@code organizationId} scopes what a non-admin may subscribe to. */
+    public void open(WebSocketSession session, String organizationId, boolean admin) {
+        if (session instanceof NativeWebSocketSession ns) {
+            Session s = ns.getNativeSession(Session.class);
+            if (s != null) s.getUserProperties().put(TOMCAT_SEND_TIMEOUT, sendTimeoutMs);
+        }
+        Subscriber sub = new Subscriber(session, organizationId, admin);
+        bySession.put(session.getId(), sub);
+        sub.control(Map.of("type", "hello", "live", changeStream.isLive()));
+    }
+
+    public void close(WebSocketSession session) {
+        Subscriber sub = bySession.remove(session.getId());
+        if (sub == null) return;
+        for (String eui : sub.devEuis) unindex(eui, sub);
+    }
+
+    /** Subscribes to one device or to every device of an organization; returns the devEuis now covered. */
+    public List<String> subscribe(WebSocketSession session, String devEui, String organizationId) {
+        Subscriber sub = requireSubscriber(session);
+        List<String> euis = resolve(sub, devEui, organizationId);
+        for (String eui : euis) {
+            if (sub.devEuis.add(eui)) byDevEui.computeIfAbsent(eui, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        }
+        return euis;
+    }
+
+    public List<String> unsubscribe(WebSocketSession session, String devEui, String organizationId) {
+        Subscriber sub = requireSubscriber(session);
+        List<String> euis = resolve(sub, devEui, organizationId);
+        for (String eui : euis) {
+            if (sub.devEuis.remove(eui)) unindex(eui, sub);
+        }
+        return euis;
+    }
+
+    /** Queues a control message (acks, errors) for the session; goes through the same ordered sender. */
+    public void reply(WebSocketSession session, Map<String, ?> message) {
+        Subscriber sub = bySession.get(session.getId());
+        if (sub != null) sub.control(message);
+    }
+
+    @Override
+    public void onReading(SensorReading reading) {
+        Set<Subscriber> subs = reading.getDevEui() == null ? null : byDevEui.get(reading.getDevEui());
+        if (subs == null || subs.isEmpty()) return;
+        String payload = toJson(Map.of("type", "reading", "reading", reading));
+        if (payload == null) return;
+        for (Subscriber sub : subs) sub.offer(reading.getDevEui(), payload);
+    }
+
+    /** Readings may have been missed while the stream was down; clients should refetch once. */
+    @Override
+    public void onResync() {
+        String payload = toJson(Map.of("type", "resync"));
+        if (payload == null) return;
+        for (Subscriber sub : bySession.values()) sub.offer("resync", payload);
+    }
+
+    /** Tells every session whether pushes are flowing, so clients can switch between push and polling. */
+    @Override
+    public void onLiveChanged(boolean live) {
+        String payload = toJson(Map.of("type", "status", "live", live));
+        if (payload == null) return;
+        // one key per session: a client that hasn't caught up only gets the latest state
+        for (Subscriber sub : bySession.values()) sub.offer("status", payload);
+    }
+
+    public boolean isOpen(WebSocketSession session) {
+        return bySession.containsKey(session.getId());
+    }
+
+    private List<String> resolve(Subscriber sub, String devEui, String organizationId) {
+        if (devEui != null && !devEui.isBlank()) {
+            EndNodeDevice d = deviceRepo.findByDevEui(devEui.trim())
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown device: " + devEui));
+            if (!sub.admin && !Objects.equals(d.getOrganizationId(), sub.organizationId)) {
+                throw new AccessDeniedException("Device " + devEui + " is not in your organization");
+            }
+            return List.of(d.getDevEui());
+        }
+        if (organizationId != null && !organizationId.isBlank()) {
+            if (!sub.admin && !Objects.equals(organizationId, sub.organizationId)) {
+                throw new AccessDeniedException("Not a member of organization " + organizationId);
+            }
+            // resolved now; devices added later are picked up when the client subscribes again
+            return deviceRepo.findByOrganizationId(organizationId).stream()
+                    .map(EndNodeDevice::getDevEui)
+                    .filter(Objects::nonNull)
+                    .toList();
+        }
+        throw new IllegalArgumentException("devEui or organizationId is required");
+    }
+
+    private Subscriber requireSubscriber(WebSocketSession session) {
+        Subscriber sub = bySession.get(session.getId());
+        if (sub == null) throw new IllegalStateException("Session is not open");
+        return sub;
+    }
+
+    private void unindex(String eui, Subscriber sub) {
+        byDevEui.computeIfPresent(eui, (k, set) -> {
+            set.remove(sub);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private String toJson(Object message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (IOException e) {
+            log.warn("Could not serialize live message", e);
+            return null;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        int pending = 0;
+        for (Subscriber s : bySession.values()) pending += s.pendingSize();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("subscribers", bySession.size());
+        out.put("devices", byDevEui.size());
+        out.put("pending", pending);
+        out.put("delivered", delivered.sum());
+        out.put("conflated", conflated.sum());
+        out.put("dropped", dropped.sum());
+        out.put("failed", failed.sum());
+        out.put("changeStreamLive", changeStream.isLive());
+        return out;
+    }
+
+    final class Subscriber {
+        final WebSocketSession session;
+        final String organizationId;
+        final boolean admin;
+        final Set<String> devEuis = ConcurrentHashMap.newKeySet();
+
+        /** Newest payload per key, oldest first; guarded by {@code this}. */
+        private final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Subscriber(WebSocketSession session, String organizationId, boolean admin) {
+            this.session = session;
+            this.organizationId = organizationId;
+            this.admin = admin;
+        }
+
+        void control(Map<String, ?> message) {
+            String payload = toJson(message);
+            if (payload != null) offer("ctl:" + controlSeq.incrementAndGet(), payload);
+        }
+
+        void offer(String key, String payload) {
+            synchronized (this) {
+                if (pending.remove(key) != null) {
+                    conflated.increment();
+                } else if (pending.size() >= maxPending) {
+                    Iterator<String> it = pending.keySet().iterator();
+                    it.next();
+                    it.remove();
+                    dropped.increment();
+                }
+                pending.put(key, payload);
+            }
+            if (scheduled.compareAndSet(false, true)) sendPool.execute(this::drain);
+        }
+
+        synchronized int pendingSize() { return pending.size(); }
+
+        /** One drainer per subscriber at a time, so sends on a session are never concurrent. */
+        private void drain() {
+            try {
+                while (true) {
+                    String payload;
+                    synchronized (this) {
+                        Iterator<String> it = pending.values().iterator();
+                        if (!it.hasNext()) {
+                            scheduled.set(false);
+                            return;
+                        }
+                        payload = it.next();
+                        it.remove();
+                    }
+                    session.sendMessage(new TextMessage(payload));
+                    delivered.increment();
+                }
+            } catch (Exception e) {
+                failed.increment();
+                log.debug("Live push to session {} failed: {}", session.getId(), e.getMessage());
+                LiveReadingHub.this.close(session);
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException ignored) {
+                    // already gone
+                }
+            }
+        }
+    }
+}
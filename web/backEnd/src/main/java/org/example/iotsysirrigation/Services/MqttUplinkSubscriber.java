@@ -0,0 +1,167 @@
+package org.example.iotsysirrigation.Services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.*;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Native replacement for db/mqtt_to_mongo.py: subscribes to ChirpStack's uplink events and hands them to
+ * {@link UplinkIngestService}. Off by default; run either this or the Python bridge, not both, or every
+ * uplink is stored twice. Persistent session at QoS 1, so the broker keeps queuing while we're down.
+ * Paho delivers on one thread and acks after messageArrived returns, so a full ingest queue slows the
+ * broker down instead of piling up here.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MqttUplinkSubscriber implements MqttCallbackExtended {
+
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    private final UplinkIngestService ingest;
+
+    @Value("${app.ingest.mqtt.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.ingest.mqtt.url:tcp://localhost:1883}")
+    private String url;
+
+    /** "$share/&lt;group&gt;/application/+/device/+/event/up" splits the stream across several backends. */
+    @Value("${app.ingest.mqtt.topic:application/+/device/+/event/up}")
+    private String topic;
+
+    @Value("${app.ingest.mqtt.client-id:iot-backend-ingest}")
+    private String clientId;
+
+    @Value("${app.ingest.mqtt.qos:1}")
+    private int qos;
+
+    @Value("${app.ingest.mqtt.username:}")
+    private String username;
+
+    @Value("${app.ingest.mqtt.password:}")
+    private String password;
+
+    private volatile MqttClient client;
+    private volatile boolean running;
+
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong connectionLosses = new AtomicLong();
+    private volatile long lastMessageAt;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        // the first connect isn't covered by Paho's automatic reconnect
+        Thread.ofPlatform().daemon().name("mqtt-connect").start(this::connect);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        MqttClient c = client;
+        client = null;
+        if (c == null) return;
+        try {
+            if (c.isConnected()) c.disconnect(5_000);
+            c.close();
+        } catch (MqttException e) {
+            log.debug("MQTT disconnect: {}", e.getMessage());
+        }
+    }
+
+    private void connect() {
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(false);
+        options.setAutomaticReconnect(true);
+        options.setKeepAliveInterval(30);
+        options.setMaxInflight(1000);
+        if (!username.isBlank()) {
+            options.setUserName(username);
+            options.setPassword(password.toCharArray());
+        }
+        long backoff = 1_000;
+        while (running) {
+            try {
+                MqttClient c = new MqttClient(url, clientId, new MemoryPersistence());
+                c.setCallback(this);
+                client = c; // connectComplete runs inside connect() and subscribes through it
+                c.connect(options);
+                return;
+            } catch (MqttException e) {
+                closeQuietly();
+                log.warn("MQTT broker {} unavailable ({}); retrying in {} ms", url, e.getMessage(), backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    @Override
+    public void connectComplete(boolean reconnect, String serverURI) {
+        log.info("MQTT {} to {}", reconnect ? "reconnected" : "connected", serverURI);
+        MqttClient c = client;
+        if (c == null) return;
+        // blocking client calls can't be made from Paho's callback thread
+        Thread.ofPlatform().daemon().name("mqtt-subscribe").start(() -> {
+            try {
+                c.subscribe(topic, qos);
+                log.info("MQTT subscribed to {} (qos {})", topic, qos);
+            } catch (MqttException e) {
+                log.error("MQTT subscribe to {} failed", topic, e);
+            }
+        });
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+        connectionLosses.incrementAndGet();
+        log.warn("MQTT connection lost: {}", cause == null ? "?" : cause.getMessage());
+    }
+
+    @Override
+    public void messageArrived(String from, MqttMessage message) throws InterruptedException {
+        messages.incrementAndGet();
+        lastMessageAt = System.currentTimeMillis();
+        ingest.submit(message.getPayload(), Instant.now());
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+        // subscribe only
+    }
+
+    public Map<String, Object> stats() {
+        MqttClient c = client;
+        long last = lastMessageAt;
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("connected", c != null && c.isConnected());
+        out.put("topic", topic);
+        out.put("messages", messages.get());
+        out.put("connectionLosses", connectionLosses.get());
+        out.put("msSinceLastMessage", last == 0 ? -1 : System.currentTimeMillis() - last);
+        return out;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.iotsysirrigation.Services;
+
+import lombok.RequiredArgsConstructor;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import org.example.iotsysirrigation.Repositories.ReactiveSensorReadingRepository;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Range reads on the reactive Mongo driver. Nothing here blocks: rows are emitted as the cursor yields
+ * them, and the request thread is handed back to Tomcat until the stream completes.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReactiveSensorReadingService {
+
+    private final ReactiveSensorReadingRepository repo;
+
+    /** Full readings, newest first, with the same defaults as {@link SensorReadingService#between}. */
+    public Flux<SensorReading> between(String devEui, Instant from, Instant to) {
+        return repo.findByDevEuiAndTimestampBetweenOrderByTimestampDesc(devEui, from, to)
+                .map(SensorReadingService::applyDefaults);
+    }
+
+    /** Timestamp + the requested object_json fields only; an invalid field fails here, before subscription. */
+    public Flux<SensorReadingPoint> pointsBetween(String devEui, Instant from, Instant to, List<String> fields) {
+        return repo.findPoints(devEui, from, to, fields)
+                .doOnNext(p -> {
+                    if (p.getSensorsReading() == null) p.setSensorsReading(new HashMap<>());
+                });
+    }
+
+    public Flux<?> fetch(String devEui, Instant from, Instant to, List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return between(devEui, from, to);
+        }
+        return pointsBetween(devEui, from, to, fields);
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.iotsysirrigation.Services;
+
+import org.example.iotsysirrigation.DTO.Response.ColumnarSeries;
+import org.example.iotsysirrigation.DTO.Response.RollupBucket;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Pivots the rows the readings endpoints return into a {@link ColumnarSeries}. Readings get one column per
+ * numeric object_json leaf ("humiditySensor.3"); rollup buckets get "count" plus "&lt;path&gt;.min/.max/.avg".
+ */
+public final class ReadingColumns {
+
+    private ReadingColumns() {}
+
+    /** Rows of {@link SensorReading}, {@link SensorReadingPoint} or {@link RollupBucket}, in any mix. */
+    public static ColumnarSeries of(List<?> rows) {
+        int n = rows.size();
+        long[] t = new long[n];
+        // sorted so the column order is stable across requests
+        Map<String, double[]> columns = new TreeMap<>();
+        for (int i = 0; i < n; i++) {
+            Object row = rows.get(i);
+            if (row instanceof RollupBucket b) {
+                t[i] = millis(b.t());
+                column(columns, "count", n)[i] = b.count();
+                if (b.metrics() == null) continue;
+                for (Map.Entry<String, RollupBucket.Metric> e : b.metrics().entrySet()) {
+                    RollupBucket.Metric m = e.getValue();
+                    column(columns, e.getKey() + ".min", n)[i] = orNaN(m.min());
+                    column(columns, e.getKey() + ".max", n)[i] = orNaN(m.max());
+                    column(columns, e.getKey() + ".avg", n)[i] = orNaN(m.avg());
+                }
+            } else {
+                Instant ts;
+                Object metrics;
+                if (row instanceof SensorReading r) {
+                    ts = r.getTimestamp();
+                    metrics = r.getSensorsReading();
+                } else if (row instanceof SensorReadingPoint p) {
+                    ts = p.getTimestamp();
+                    metrics = p.getSensorsReading();
+                } else {
+                    throw new IllegalArgumentException("Cannot pivot " + (row == null ? "null" : row.getClass().getSimpleName()));
+                }
+                t[i] = millis(ts);
+                for (Map.Entry<String, Double> e : ReadingRollupService.numericLeaves(metrics).entrySet()) {
+                    column(columns, e.getKey(), n)[i] = e.getValue();
+                }
+            }
+        }
+        return new ColumnarSeries(t, new LinkedHashMap<>(columns));
+    }
+
+    private static double[] column(Map<String, double[]> columns, String name, int rows) {
+        return columns.computeIfAbsent(name, k -> {
+            double[] v = new double[rows];
+            Arrays.fill(v, Double.NaN);
+            return v;
+        });
+    }
+
+    private static double orNaN(Double v) {
+        return v == null ? Double.NaN : v;
+    }
+
+    private static long millis(Instant ts) {
+        return ts == null ? 0 : ts.toEpochMilli();
+    }
+}
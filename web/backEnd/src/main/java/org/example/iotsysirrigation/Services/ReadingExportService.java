@@ -0,0 +1,155 @@
+package org.example.iotsysirrigation.Services;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
+import org.example.iotsysirrigation.Models.DecodedReading;
+import org.example.iotsysirrigation.Repositories.SensorReadingRepository;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+/**
+ * Streams a device's readings straight from a Mongo cursor to an OutputStream, one row at a time,
+ * so heap use doesn't grow with the range. Rows come in as {@link DecodedReading}s, so object_json is
+ * decoded into fixed metric columns by the read converter and data / rx_info are never fetched.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReadingExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() { return contentType; }
+        public String extension() { return extension; }
+
+        public static Format parse(String s) {
+            try {
+                return valueOf(s.trim().toUpperCase(Locale.ROOT));
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Unsupported export format: " + s);
+            }
+        }
+    }
+
+    /** Flattened object_json columns; names match the dashboard's metric keys. */
+    public enum Column {
+        SOIL_HUMIDITY("soilHumidity", DecodedMetrics::analogInput),
+        LUMINOSITY("luminosity", DecodedMetrics::illuminance),
+        HUMIDITY("humidity", DecodedMetrics::humidity),
+        BAROMETER("barometer", DecodedMetrics::pressure),
+        TEMPERATURE("temperature", DecodedMetrics::temperature),
+        COMMAND("command", DecodedMetrics::digitalInput),
+        LAT("lat", DecodedMetrics::latitude),
+        LNG("lng", DecodedMetrics::longitude),
+        ALTITUDE("altitude", DecodedMetrics::altitude);
+
+        private final String header;
+        private final ToDoubleFunction<DecodedMetrics> value;
+
+        Column(String header, ToDoubleFunction<DecodedMetrics> value) {
+            this.header = header;
+            this.value = value;
+        }
+
+        public String header() { return header; }
+
+        /** NaN when the reading doesn't carry this metric. */
+        double extract(DecodedMetrics m) {
+            return value.applyAsDouble(m);
+        }
+    }
+
+    private static final Column[] COLUMNS = Column.values();
+    private static final int FLUSH_EVERY = 1000;
+
+    private final SensorReadingRepository repo;
+    private final ObjectMapper objectMapper;
+
+    public void export(String devEui, Instant from, Instant to, Format format, OutputStream out) throws IOException {
+        long rows = 0;
+        try (Stream<DecodedReading> cursor = repo.streamDecoded(devEui, from, to)) {
+            rows = format == Format.CSV ? writeCsv(cursor, out) : writeNdjson(cursor, out);
+        } finally {
+            log.debug("Exported {} {} rows for {} [{} .. {}]", rows, format, devEui, from, to);
+        }
+    }
+
+    private long writeNdjson(Stream<DecodedReading> cursor, OutputStream out) throws IOException {
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long rows = 0;
+        for (DecodedReading r : (Iterable<DecodedReading>) cursor::iterator) {
+            DecodedMetrics m = metricsOf(r);
+            gen.writeStartObject();
+            gen.writeStringField("timestamp", r.getTimestamp() != null ? r.getTimestamp().toString() : null);
+            gen.writeStringField("devEui", r.getDevEui());
+            gen.writeNumberField("fPort", r.getFPort());
+            for (Column c : COLUMNS) {
+                double v = c.extract(m);
+                gen.writeFieldName(c.header());
+                if (Double.isNaN(v)) gen.writeNull(); else gen.writeNumber(v);
+            }
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+            if (++rows % FLUSH_EVERY == 0) gen.flush();
+        }
+        gen.close();
+        return rows;
+    }
+
+    private long writeCsv(Stream<DecodedReading> cursor, OutputStream out) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        StringBuilder line = new StringBuilder(256);
+        line.append("timestamp,devEui,fPort");
+        for (Column c : COLUMNS) line.append(',').append(c.header());
+        w.write(line.append('\n').toString());
+
+        long rows = 0;
+        for (DecodedReading r : (Iterable<DecodedReading>) cursor::iterator) {
+            DecodedMetrics m = metricsOf(r);
+            line.setLength(0);
+            line.append(r.getTimestamp() != null ? r.getTimestamp() : "")
+                    .append(',').append(r.getDevEui() != null ? r.getDevEui() : "")
+                    .append(',').append(r.getFPort());
+            for (Column c : COLUMNS) {
+                line.append(',');
+                appendNumber(line, c.extract(m));
+            }
+            w.write(line.append('\n').toString());
+            if (++rows % FLUSH_EVERY == 0) w.flush();
+        }
+        w.flush();
+        return rows;
+    }
+
+    private static DecodedMetrics metricsOf(DecodedReading r) {
+        return r.getMetrics() != null ? r.getMetrics() : DecodedMetrics.EMPTY;
+    }
+
+    /** Integral values without the trailing ".0"; NaN as an empty cell. */
+    private static void appendNumber(StringBuilder sb, double v) {
+        if (Double.isNaN(v)) return;
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) sb.append((long) v);
+        else sb.append(v);
+    }
+}
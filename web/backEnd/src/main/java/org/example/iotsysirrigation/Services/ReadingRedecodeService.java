@@ -0,0 +1,207 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
+import org.example.iotsysirrigation.Repositories.DecodedMetricsReadConverter;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Re-decodes the raw "data" of stored readings with {@link CayenneLppDecoder}. Without apply it only
+ * compares: how many frames decode, and whether the result agrees with the object_json the bridge stored.
+ * With apply it also fills object_json where it is missing or empty, e.g. for uplinks stored before the
+ * device profile had a codec. Streams the window in _id order through one reused decoder, on a background
+ * thread (one run at a time) whose progress {@link #status} reports.
+ * <p>
+ * Filled readings change in place, so afterwards the rollups for the window are rebuilt and
+ * {@link SensorReadingService#readingsRewritten} moves the reading ETags on and re-reads the latest cache.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReadingRedecodeService {
+
+    private static final int WRITE_BATCH = 1000;
+    private static final int MAX_SAMPLES = 10;
+    /** object_json values went through JSON, so allow for the last digit of a float. */
+    private static final double TOLERANCE = 1e-6;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReadingStorageService storage;
+    private final SensorReadingService readingService;
+    private final ReadingRollupService rollupService;
+
+    private volatile Run run;
+
+    /** Starts a re-decode of [from, to) in the background and returns its first status. */
+    public synchronized Map<String, Object> start(Instant from, Instant to, boolean apply) {
+        if (run != null && run.running) {
+            throw new IllegalStateException("A re-decode is already running: " + run.from + ".." + run.to);
+        }
+        if (apply && storage.isTimeSeries()) {
+            throw new IllegalStateException("object_json can't be updated in a time-series collection");
+        }
+        Run r = new Run(from, to, apply);
+        run = r;
+        Thread.ofPlatform().daemon().name("readings-redecode").start(r::run);
+        return r.status();
+    }
+
+    /** Progress of the running (or last) re-decode. */
+    public Map<String, Object> status() {
+        Run r = run;
+        return r == null ? Map.of("state", "idle") : r.status();
+    }
+
+    /** Stops after the current reading; whatever was filled so far still gets its rollups and ETags refreshed. */
+    public Map<String, Object> cancel() {
+        Run r = run;
+        if (r == null) return Map.of("state", "idle");
+        r.running = false;
+        return r.status();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Run r = run;
+        if (r != null) r.running = false;
+    }
+
+    final class Run {
+        final Instant from;
+        final Instant to;
+        final boolean apply;
+        final Instant startedAt = Instant.now();
+
+        volatile boolean running = true;
+        volatile String state = "running";
+        volatile String error;
+        volatile long scanned, undecodable, matching, mismatching, missing, filled;
+        final List<Object> samples = new CopyOnWriteArrayList<>();
+        volatile Map<String, Object> rollups;
+        volatile Instant finishedAt;
+
+        Run(Instant from, Instant to, boolean apply) {
+            this.from = from;
+            this.to = to;
+            this.apply = apply;
+        }
+
+        void run() {
+            try {
+                scan();
+                state = running ? "done" : "cancelled";
+            } catch (Exception e) {
+                state = "failed";
+                error = e.getMessage();
+                log.error("LPP re-decode {}..{} failed after {} readings", from, to, scanned, e);
+            } finally {
+                refresh();
+                running = false;
+                finishedAt = Instant.now();
+                log.info("LPP re-decode {}..{}: {}", from, to, status());
+            }
+        }
+
+        private void scan() {
+            CayenneLppDecoder decoder = new CayenneLppDecoder();
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            MongoCollection<Document> coll = mongoTemplate.getCollection(storage.collection());
+            Document filter = new Document("timestamp", new Document("$gte", Date.from(from)).append("$lt", Date.from(to)))
+                    .append("data", new Document("$type", "string"));
+            try (MongoCursor<Document> it = coll.find(filter)
+                    .projection(Projections.include("data", "object_json"))
+                    .sort(new Document("_id", 1)).batchSize(2000).cursor()) {
+                while (running && it.hasNext()) {
+                    Document d = it.next();
+                    scanned++;
+                    if (!decoder.decodeBase64(d.getString("data"))) {
+                        undecodable++;
+                        continue;
+                    }
+                    Object stored = d.get("object_json");
+                    if (!(stored instanceof Map<?, ?> m) || m.isEmpty()) {
+                        missing++;
+                        if (apply) {
+                            writes.add(new UpdateOneModel<>(new Document("_id", d.get("_id")),
+                                    new Document("$set", new Document("object_json", decoder.toObjectJson()))));
+                            if (writes.size() >= WRITE_BATCH) filled += flush(coll, writes);
+                        }
+                    } else if (agrees(decoder, DecodedMetricsReadConverter.decode(stored))) {
+                        matching++;
+                    } else {
+                        mismatching++;
+                        if (samples.size() < MAX_SAMPLES) samples.add(d.get("_id").toString());
+                    }
+                }
+            } finally {
+                if (apply) filled += flush(coll, writes);
+            }
+        }
+
+        /** Readings whose object_json was filled now count in rollups and responses they were missing from. */
+        private void refresh() {
+            if (filled == 0) return;
+            try {
+                if (rollupService.isEnabled()) rollups = rollupService.rebuild(from, to);
+            } catch (Exception e) {
+                log.error("Rollup rebuild after re-decoding {}..{} failed; run it again", from, to, e);
+            }
+            readingService.readingsRewritten();
+        }
+
+        Map<String, Object> status() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("state", state);
+            out.put("from", from);
+            out.put("to", to);
+            out.put("apply", apply);
+            out.put("scanned", scanned);
+            out.put("undecodable", undecodable);
+            out.put("matching", matching);
+            out.put("mismatching", mismatching);
+            out.put("mismatchSamples", List.copyOf(samples));
+            out.put("missingObjectJson", missing);
+            out.put("filled", filled);
+            out.put("rollups", rollups);
+            out.put("error", error);
+            out.put("startedAt", startedAt);
+            out.put("finishedAt", finishedAt);
+            out.put("tookMs", Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis());
+            return out;
+        }
+    }
+
+    private static long flush(MongoCollection<Document> coll, List<WriteModel<Document>> writes) {
+        if (writes.isEmpty()) return 0;
+        long n = coll.bulkWrite(writes, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        writes.clear();
+        return n;
+    }
+
+    /** Every metric object_json has must decode to the same value; extra channels in the frame are fine. */
+    static boolean agrees(CayenneLppDecoder decoder, DecodedMetrics stored) {
+        double[] s = {stored.temperature(), stored.humidity(), stored.pressure(), stored.illuminance(),
+                stored.analogInput(), stored.digitalInput(), stored.latitude(), stored.longitude(), stored.altitude()};
+        for (int slot = 0; slot < CayenneLppDecoder.SLOTS; slot++) {
+            if (Double.isNaN(s[slot])) continue;
+            double v = decoder.get(slot);
+            if (Double.isNaN(v) || Math.abs(v - s[slot]) > TOLERANCE * Math.max(1, Math.abs(s[slot]))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,490 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.example.iotsysirrigation.DTO.Response.RollupBucket;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.SensorReadingRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Maintains sensors_hourly and sensors_daily: per devEui and bucket, the reading count plus min/max/sum/count
+ * and last value of every numeric object_json leaf (stored under "m", mirroring object_json's nesting).
+ * Readings from the change stream are folded in with $inc/$min/$max once a second. {@link #rebuild} recomputes
+ * a window from raw readings and replaces those buckets, so it is idempotent; the scheduled catch-up runs it
+ * over the last few hours to pick up late inserts and anything the stream missed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReadingRollupService implements SensorChangeStream.Listener {
+
+    public static final String HOURLY = "sensors_hourly";
+    public static final String DAILY = "sensors_daily";
+
+    /** Key segments that are safe in an update path (no '.', no leading '$'). */
+    private static final Pattern SEGMENT = Pattern.compile("[A-Za-z0-9_]+");
+    private static final int MAX_PATH_DEPTH = 5;
+    private static final int FLUSH_BATCH = 5000;
+
+    private final MongoTemplate mongoTemplate;
+    private final SensorChangeStream changeStream;
+    private final SensorReadingRepository repo;
+    private final EndNodeDeviceRepository deviceRepo;
+
+    @Value("${app.rollups.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rollups.max-queued:100000}")
+    private int maxQueued;
+
+    /** How far back the scheduled catch-up recomputes; readings arriving later than this need a manual rebuild. */
+    @Value("${app.rollups.lateness-hours:3}")
+    private int latenessHours;
+
+    /** History rebuilt on first start, when sensors_hourly is still empty. */
+    @Value("${app.rollups.backfill-days:366}")
+    private int backfillDays;
+
+    private final Queue<SensorReading> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Instant newestStreamed;
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile Map<String, Object> lastRebuild = Map.of();
+
+    record BucketKey(String devEui, Instant t) {}
+
+    @PostConstruct
+    void register() {
+        if (enabled) changeStream.addListener(this);
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) return;
+        ensureIndexes();
+        Instant now = Instant.now();
+        boolean empty = mongoTemplate.getCollection(HOURLY).estimatedDocumentCount() == 0;
+        Instant from = empty ? now.minus(backfillDays, ChronoUnit.DAYS) : now.minus(latenessHours, ChronoUnit.HOURS);
+        rebuildInBackground(from, now, empty ? "backfill" : "startup");
+    }
+
+    public void ensureIndexes() {
+        for (String c : List.of(HOURLY, DAILY)) {
+            try {
+                mongoTemplate.indexOps(c).ensureIndex(new Index()
+                        .on("dev_eui", Sort.Direction.ASC).on("t", Sort.Direction.ASC)
+                        .unique().named("dev_eui_t"));
+            } catch (Exception e) {
+                log.error("Could not ensure rollup index on {}", c, e);
+            }
+        }
+    }
+
+    @Override
+    public void onReading(SensorReading r) {
+        if (r.getDevEui() == null || r.getTimestamp() == null) return;
+        if (queued.incrementAndGet() > maxQueued) {
+            // the catch-up recomputes from raw readings, so shedding here only delays the rollup
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.add(r);
+        Instant prev = newestStreamed;
+        if (prev == null || r.getTimestamp().isAfter(prev)) newestStreamed = r.getTimestamp();
+    }
+
+    /** The stream restarted without a resume token: recompute from the last reading we saw. */
+    @Override
+    public void onResync() {
+        Instant now = Instant.now();
+        Instant since = newestStreamed != null ? newestStreamed : now;
+        rebuildInBackground(since.minus(latenessHours, ChronoUnit.HOURS), now, "resync");
+    }
+
+    /** Folds queued readings into one upsert per touched bucket. */
+    @Scheduled(fixedDelayString = "${app.rollups.flush-ms:1000}")
+    public void flush() {
+        if (queue.isEmpty()) return;
+        Map<BucketKey, Bucket> hours = new HashMap<>();
+        Map<BucketKey, Bucket> days = new HashMap<>();
+        int n = 0;
+        SensorReading r;
+        while (n < FLUSH_BATCH && (r = queue.poll()) != null) {
+            queued.decrementAndGet();
+            n++;
+            Instant ts = r.getTimestamp();
+            Map<String, Double> values = numericLeaves(r.getSensorsReading());
+            hours.computeIfAbsent(new BucketKey(r.getDevEui(), ts.truncatedTo(ChronoUnit.HOURS)), k -> new Bucket()).add(ts, values);
+            days.computeIfAbsent(new BucketKey(r.getDevEui(), ts.truncatedTo(ChronoUnit.DAYS)), k -> new Bucket()).add(ts, values);
+        }
+        try {
+            bulkWrite(HOURLY, hours.entrySet().stream().map(e -> increment(e.getKey(), e.getValue())).toList());
+            bulkWrite(DAILY, days.entrySet().stream().map(e -> increment(e.getKey(), e.getValue())).toList());
+            applied.add(n);
+        } catch (Exception e) {
+            log.warn("Rollup flush of {} readings failed; the next catch-up repairs them", n, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.rollups.catch-up-ms:600000}", initialDelayString = "${app.rollups.catch-up-ms:600000}")
+    public void catchUp() {
+        if (!enabled || !rebuildLock.tryLock()) return;
+        try {
+            Instant now = Instant.now();
+            rebuild(now.minus(latenessHours, ChronoUnit.HOURS), now);
+        } catch (Exception e) {
+            log.warn("Rollup catch-up failed", e);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Recomputes every hourly bucket overlapping [from, to) from raw readings, then the days containing them
+     * from the hourly buckets. Buckets are replaced (and emptied ones deleted), so running it twice changes nothing.
+     */
+    public Map<String, Object> rebuild(Instant from, Instant to) {
+        Instant start = from.truncatedTo(ChronoUnit.HOURS);
+        Instant end = to.minusMillis(1).truncatedTo(ChronoUnit.HOURS).plus(1, ChronoUnit.HOURS);
+        Instant dayStart = start.truncatedTo(ChronoUnit.DAYS);
+        Instant dayEnd = end.minusMillis(1).truncatedTo(ChronoUnit.DAYS).plus(1, ChronoUnit.DAYS);
+
+        rebuildLock.lock();
+        try {
+            long t0 = System.currentTimeMillis();
+            long readings = 0, hours = 0, days = 0;
+            List<String> euis = deviceEuis();
+            for (String eui : euis) {
+                Map<Instant, Bucket> byHour = new HashMap<>();
+                // Between is exclusive on both ends
+                try (Stream<SensorReading> s = repo.streamByDevEuiAndTimestampBetweenOrderByTimestampAsc(eui, start.minusMillis(1), end)) {
+                    for (SensorReading r : (Iterable<SensorReading>) s::iterator) {
+                        if (r.getTimestamp() == null) continue;
+                        byHour.computeIfAbsent(r.getTimestamp().truncatedTo(ChronoUnit.HOURS), k -> new Bucket())
+                                .add(r.getTimestamp(), numericLeaves(r.getSensorsReading()));
+                        readings++;
+                    }
+                }
+                hours += replace(HOURLY, eui, start, end, byHour);
+
+                Map<Instant, Bucket> byDay = new HashMap<>();
+                for (Document d : collection(HOURLY).find(range(eui, dayStart, dayEnd))) {
+                    byDay.computeIfAbsent(d.getDate("t").toInstant().truncatedTo(ChronoUnit.DAYS), k -> new Bucket())
+                            .merge(Bucket.fromDocument(d));
+                }
+                days += replace(DAILY, eui, dayStart, dayEnd, byDay);
+            }
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("from", start);
+            out.put("to", end);
+            out.put("devices", euis.size());
+            out.put("readings", readings);
+            out.put("hourlyBuckets", hours);
+            out.put("dailyBuckets", days);
+            out.put("tookMs", System.currentTimeMillis() - t0);
+            out.put("at", Instant.now());
+            lastRebuild = out;
+            rebuilds.incrementAndGet();
+            log.info("Rollups rebuilt for {}", out);
+            return out;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Validator parts for a device's rollups, read without loading them: the newest daily bucket's start, count
+     * and updatedAt, which every flush of the device moves, and the number of finished rebuilds, which may
+     * rewrite any bucket. A late reading in an older bucket shows up with the device's next uplink.
+     */
+    public List<Object> version(String devEui) {
+        Document newest = collection(DAILY).find(new Document("dev_eui", devEui))
+                .sort(new Document("t", -1))
+                .projection(new Document("_id", 0).append("t", 1).append("count", 1).append("updatedAt", 1))
+                .first();
+        if (newest == null) return List.of(rebuilds.get());
+        return List.of(rebuilds.get(), newest.getDate("t"), newest.get("count"), String.valueOf(newest.getDate("updatedAt")));
+    }
+
+    public List<RollupBucket> hourly(String devEui, Instant from, Instant to, List<String> fields) {
+        return read(HOURLY, devEui, from.truncatedTo(ChronoUnit.HOURS), to, fields);
+    }
+
+    public List<RollupBucket> daily(String devEui, Instant from, Instant to, List<String> fields) {
+        return read(DAILY, devEui, from.truncatedTo(ChronoUnit.DAYS), to, fields);
+    }
+
+    /** Oldest first; {@code fields} keeps only metrics at or below the given object_json paths. */
+    private List<RollupBucket> read(String collection, String devEui, Instant from, Instant to, List<String> fields) {
+        List<RollupBucket> out = new ArrayList<>();
+        for (Document d : collection(collection).find(range(devEui, from, to)).sort(new Document("t", 1))) {
+            Bucket b = Bucket.fromDocument(d);
+            Map<String, RollupBucket.Metric> metrics = new LinkedHashMap<>();
+            b.metrics.forEach((path, s) -> {
+                if (s.count > 0 && selected(path, fields)) metrics.put(path, s.toMetric());
+            });
+            out.add(new RollupBucket(d.getDate("t").toInstant(), b.count, metrics));
+        }
+        return out;
+    }
+
+    private static boolean selected(String path, List<String> fields) {
+        if (fields == null || fields.isEmpty()) return true;
+        for (String f : fields) {
+            if (path.equals(f) || path.startsWith(f + ".")) return true;
+        }
+        return false;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("queued", queued.get());
+        out.put("applied", applied.sum());
+        out.put("dropped", dropped.sum());
+        out.put("rebuilding", rebuildLock.isLocked());
+        out.put("lastRebuild", lastRebuild);
+        return out;
+    }
+
+    private void rebuildInBackground(Instant from, Instant to, String reason) {
+        Thread.ofPlatform().daemon().name("rollup-" + reason).start(() -> {
+            if (!rebuildLock.tryLock()) {
+                log.debug("Rollup {} skipped, a rebuild is already running", reason);
+                return;
+            }
+            try {
+                rebuild(from, to);
+            } catch (Exception e) {
+                log.warn("Rollup {} failed", reason, e);
+            } finally {
+                rebuildLock.unlock();
+            }
+        });
+    }
+
+    /** Rebuilds walk registered devices so every per-device query uses the {dev_eui, timestamp} index. */
+    private List<String> deviceEuis() {
+        return deviceRepo.findAll().stream()
+                .map(EndNodeDevice::getDevEui)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    private long replace(String collection, String devEui, Instant from, Instant to, Map<Instant, Bucket> buckets) {
+        List<WriteModel<Document>> ops = new ArrayList<>(buckets.size() + 1);
+        List<Date> kept = new ArrayList<>(buckets.size());
+        buckets.forEach((t, b) -> {
+            kept.add(Date.from(t));
+            ops.add(new ReplaceOneModel<>(key(new BucketKey(devEui, t)), b.toDocument(devEui, t),
+                    new ReplaceOptions().upsert(true)));
+        });
+        ops.add(new DeleteManyModel<>(new Document("dev_eui", devEui).append("t",
+                new Document("$gte", Date.from(from)).append("$lt", Date.from(to)).append("$nin", kept))));
+        bulkWrite(collection, ops);
+        return buckets.size();
+    }
+
+    private static WriteModel<Document> increment(BucketKey k, Bucket b) {
+        Document inc = new Document("count", b.count);
+        Document min = new Document();
+        Document max = new Document();
+        b.metrics.forEach((path, s) -> {
+            String p = "m." + path + ".";
+            inc.append(p + "sum", s.sum).append(p + "count", s.count);
+            min.append(p + "min", s.min);
+            // {t, v} compares by t first, so $max keeps the value of the newest reading
+            max.append(p + "max", s.max).append(p + "last", s.lastDocument());
+        });
+        Document update = new Document("$inc", inc).append("$currentDate", new Document("updatedAt", true));
+        if (!min.isEmpty()) update.append("$min", min).append("$max", max);
+        return new UpdateOneModel<>(key(k), update, new UpdateOptions().upsert(true));
+    }
+
+    private void bulkWrite(String collection, List<WriteModel<Document>> ops) {
+        if (!ops.isEmpty()) collection(collection).bulkWrite(ops, new BulkWriteOptions().ordered(false));
+    }
+
+    private MongoCollection<Document> collection(String name) {
+        return mongoTemplate.getCollection(name);
+    }
+
+    private static Document key(BucketKey k) {
+        return new Document("dev_eui", k.devEui()).append("t", Date.from(k.t()));
+    }
+
+    private static Document range(String devEui, Instant from, Instant to) {
+        return new Document("dev_eui", devEui)
+                .append("t", new Document("$gte", Date.from(from)).append("$lt", Date.from(to)));
+    }
+
+    /** Numeric leaves of object_json keyed by dotted path, e.g. "humiditySensor.3" or "gpsLocation.0.latitude". */
+    static Map<String, Double> numericLeaves(Object obj) {
+        Map<String, Double> out = new LinkedHashMap<>();
+        walk(obj, "", 0, out);
+        return out;
+    }
+
+    private static void walk(Object node, String prefix, int depth, Map<String, Double> out) {
+        if (node instanceof Number n) {
+            double v = n.doubleValue();
+            if (!prefix.isEmpty() && Double.isFinite(v)) out.put(prefix, v);
+            return;
+        }
+        if (!(node instanceof Map<?, ?> m) || depth >= MAX_PATH_DEPTH) return;
+        for (Map.Entry<?, ?> e : m.entrySet()) {
+            String key = String.valueOf(e.getKey());
+            if (!SEGMENT.matcher(key).matches()) continue;
+            walk(e.getValue(), prefix.isEmpty() ? key : prefix + "." + key, depth + 1, out);
+        }
+    }
+
+    /** Readings folded into one hour or day. */
+    static final class Bucket {
+        long count;
+        final Map<String, Stats> metrics = new TreeMap<>();
+
+        void add(Instant ts, Map<String, Double> values) {
+            count++;
+            values.forEach((path, v) -> metrics.computeIfAbsent(path, k -> new Stats()).add(ts, v));
+        }
+
+        void merge(Bucket other) {
+            count += other.count;
+            other.metrics.forEach((path, s) -> metrics.computeIfAbsent(path, k -> new Stats()).merge(s));
+        }
+
+        Document toDocument(String devEui, Instant t) {
+            Document m = new Document();
+            metrics.forEach((path, s) -> {
+                Document parent = m;
+                String[] seg = path.split("\\.");
+                for (int i = 0; i < seg.length - 1; i++) {
+                    Document next = parent.get(seg[i], Document.class);
+                    if (next == null) parent.put(seg[i], next = new Document());
+                    parent = next;
+                }
+                parent.put(seg[seg.length - 1], s.toDocument());
+            });
+            return new Document("dev_eui", devEui).append("t", Date.from(t))
+                    .append("count", count).append("m", m).append("updatedAt", new Date());
+        }
+
+        static Bucket fromDocument(Document d) {
+            Bucket b = new Bucket();
+            b.count = d.get("count") instanceof Number n ? n.longValue() : 0;
+            if (d.get("m") instanceof Document m) collect(m, "", b.metrics);
+            return b;
+        }
+
+        private static void collect(Document node, String prefix, Map<String, Stats> out) {
+            if (node.get("count") instanceof Number && node.get("sum") instanceof Number) {
+                out.put(prefix, Stats.fromDocument(node));
+                return;
+            }
+            node.forEach((k, v) -> {
+                if (v instanceof Document child) collect(child, prefix.isEmpty() ? k : prefix + "." + k, out);
+            });
+        }
+    }
+
+    static final class Stats {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum;
+        long count;
+        Instant lastT;
+        double lastV;
+
+        void add(Instant t, double v) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            sum += v;
+            count++;
+            if (lastT == null || !t.isBefore(lastT)) {
+                lastT = t;
+                lastV = v;
+            }
+        }
+
+        void merge(Stats o) {
+            min = Math.min(min, o.min);
+            max = Math.max(max, o.max);
+            sum += o.sum;
+            count += o.count;
+            if (o.lastT != null && (lastT == null || !o.lastT.isBefore(lastT))) {
+                lastT = o.lastT;
+                lastV = o.lastV;
+            }
+        }
+
+        Document lastDocument() {
+            return new Document("t", Date.from(lastT)).append("v", lastV);
+        }
+
+        Document toDocument() {
+            Document d = new Document("min", min).append("max", max).append("sum", sum).append("count", count);
+            if (lastT != null) d.append("last", lastDocument());
+            return d;
+        }
+
+        static Stats fromDocument(Document d) {
+            Stats s = new Stats();
+            s.min = asDouble(d.get("min"), Double.POSITIVE_INFINITY);
+            s.max = asDouble(d.get("max"), Double.NEGATIVE_INFINITY);
+            s.sum = asDouble(d.get("sum"), 0);
+            s.count = ((Number) d.get("count")).longValue();
+            if (d.get("last") instanceof Document last && last.get("t") instanceof Date t) {
+                s.lastT = t.toInstant();
+                s.lastV = asDouble(last.get("v"), Double.NaN);
+            }
+            return s;
+        }
+
+        RollupBucket.Metric toMetric() {
+            return new RollupBucket.Metric(finite(min), finite(max), count == 0 ? null : finite(sum / count), count,
+                    lastT != null ? finite(lastV) : null);
+        }
+
+        private static Double finite(double v) {
+            return Double.isFinite(v) ? v : null;
+        }
+
+        private static double asDouble(Object v, double fallback) {
+            return v instanceof Number n ? n.doubleValue() : fallback;
+        }
+    }
+}
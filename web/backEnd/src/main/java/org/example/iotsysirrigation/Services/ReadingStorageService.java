@@ -0,0 +1,383 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where readings live: the plain "sensors" collection the Python bridge creates, or a native time-series
+ * collection (timeField {@code timestamp}, metaField {@code dev_eui}). The layout is chosen per deployment
+ * with {@code app.readings.storage}; every read model resolves its collection from
+ * {@code app.readings.collection}, so repository queries don't change.
+ * <p>
+ * Also runs the online copy from a plain collection into a time-series one, in {@code _id} order with a
+ * checkpoint, while the bridge keeps inserting into the source.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReadingStorageService {
+
+    public static final String TIME_FIELD = "timestamp";
+    /** Mongo allows a single metaField; application_id is fixed per device, so it stays a measurement field. */
+    public static final String META_FIELD = "dev_eui";
+
+    private static final String CHECKPOINTS = "storage_migrations";
+    private static final long PROGRESS_LOG_MS = 10_000;
+    /** How far before a copy's start its catch-up pass looks: writer clock skew plus uplinks stamped before insert. */
+    private static final Duration CATCH_UP_SLACK = Duration.ofMinutes(10);
+
+    private final MongoTemplate mongoTemplate;
+
+    /** plain | timeseries */
+    @Value("${app.readings.storage:plain}")
+    private String storage;
+
+    /** seconds | minutes | hours — how far apart one device's readings usually are */
+    @Value("${app.readings.timeseries.granularity:minutes}")
+    private String granularity;
+
+    @Value("${app.readings.migration.batch-size:5000}")
+    private int defaultBatchSize;
+
+    /** Sleep between batches so the copy leaves headroom for live traffic. */
+    @Value("${app.readings.migration.pause-ms:0}")
+    private long pauseMs;
+
+    private volatile Migration migration;
+
+    public boolean isTimeSeries() {
+        return "timeseries".equalsIgnoreCase(storage);
+    }
+
+    public String collection() {
+        return mongoTemplate.getCollectionName(SensorReading.class);
+    }
+
+    /** Runs before index maintenance, so the collection exists with the right layout before indexes are built. */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!isTimeSeries()) return;
+        String name = collection();
+        Document info = collectionInfo(name);
+        if (info == null) {
+            createTimeSeries(name);
+        } else if (!"timeseries".equals(info.getString("type"))) {
+            log.error("app.readings.storage=timeseries but '{}' is a plain collection; point app.readings.collection "
+                    + "at a time-series collection (POST /api/admin/storage/migrate creates and fills one)", name);
+        }
+    }
+
+    /** Time-series collections can't carry the plain layout's (dev_eui, timestamp, _id) index; meta + time is enough. */
+    public void ensureTimeSeriesIndex() {
+        ensureTimeSeriesIndex(collection());
+    }
+
+    void ensureTimeSeriesIndex(String name) {
+        mongoTemplate.getCollection(name).createIndex(
+                Indexes.compoundIndex(Indexes.ascending(META_FIELD), Indexes.descending(TIME_FIELD)),
+                new IndexOptions().name("dev_eui_timestamp"));
+    }
+
+    void createTimeSeries(String name) {
+        TimeSeriesOptions ts = new TimeSeriesOptions(TIME_FIELD)
+                .metaField(META_FIELD)
+                .granularity(TimeSeriesGranularity.valueOf(granularity.toUpperCase(Locale.ROOT)));
+        mongoTemplate.getDb().createCollection(name, new CreateCollectionOptions().timeSeriesOptions(ts));
+        ensureTimeSeriesIndex(name);
+        log.info("Created time-series collection '{}' ({} granularity)", name, granularity);
+    }
+
+    /** listCollections entry for one collection, or null when it doesn't exist. */
+    private Document collectionInfo(String name) {
+        return mongoTemplate.getDb().listCollections().filter(new Document("name", name)).first();
+    }
+
+    /** Layout, size and index footprint of a collection; works for both layouts. */
+    public Map<String, Object> describe(String name) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("collection", name);
+        Document info = collectionInfo(name);
+        if (info == null) {
+            out.put("exists", false);
+            return out;
+        }
+        out.put("type", info.getString("type"));
+        Document options = info.get("options", Document.class);
+        if (options != null && options.containsKey("timeseries")) out.put("timeseries", options.get("timeseries"));
+        Document stats = mongoTemplate.getCollection(name)
+                .aggregate(List.of(new Document("$collStats", new Document("storageStats", new Document()))))
+                .first();
+        Document storageStats = stats == null ? null : stats.get("storageStats", Document.class);
+        if (storageStats != null) {
+            out.put("count", storageStats.get("count"));
+            out.put("dataSize", storageStats.get("size"));
+            out.put("storageSize", storageStats.get("storageSize"));
+            out.put("totalIndexSize", storageStats.get("totalIndexSize"));
+        }
+        return out;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("mode", isTimeSeries() ? "timeseries" : "plain");
+        out.put("current", describe(collection()));
+        Migration m = migration;
+        out.put("migration", m == null ? null : m.status());
+        return out;
+    }
+
+    /**
+     * Starts copying {@code source} into the time-series collection {@code target} (created if missing) on a
+     * background thread. Resumes from the last checkpoint for the same pair, so running it again after the
+     * bridge and backend have been switched over copies whatever arrived in the meantime.
+     */
+    public synchronized Map<String, Object> startMigration(String source, String target, Integer batchSize) {
+        if (migration != null && migration.running) {
+            throw new IllegalStateException("A migration is already running: " + migration.source + " -> " + migration.target);
+        }
+        if (source.equals(target)) throw new IllegalArgumentException("source and target must differ");
+        Document sourceInfo = collectionInfo(source);
+        if (sourceInfo == null) throw new IllegalArgumentException("Unknown collection: " + source);
+        if ("timeseries".equals(sourceInfo.getString("type"))) {
+            throw new IllegalArgumentException(source + " is already a time-series collection");
+        }
+        Document targetInfo = collectionInfo(target);
+        if (targetInfo == null) {
+            createTimeSeries(target);
+        } else if (!"timeseries".equals(targetInfo.getString("type"))) {
+            throw new IllegalArgumentException(target + " exists and is not a time-series collection");
+        }
+
+        int batch = batchSize == null || batchSize <= 0 ? defaultBatchSize : batchSize;
+        Migration m = new Migration(source, target, batch);
+        migration = m;
+        Thread.ofPlatform().daemon().name("sensors-migration").start(m::run);
+        return m.status();
+    }
+
+    public Map<String, Object> migrationStatus() {
+        Migration m = migration;
+        return m == null ? Map.of("state", "idle") : m.status();
+    }
+
+    /** Stops after the current batch; the checkpoint lets a later start pick up from there. */
+    public Map<String, Object> cancelMigration() {
+        Migration m = migration;
+        if (m == null) return Map.of("state", "idle");
+        m.running = false;
+        return m.status();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Migration m = migration;
+        if (m != null) m.running = false;
+    }
+
+    final class Migration {
+        final String source;
+        final String target;
+        final int batchSize;
+        final String checkpointId;
+        final Instant startedAt = Instant.now();
+
+        volatile boolean running = true;
+        volatile String state = "running";
+        volatile String error;
+        volatile Object lastId;
+        volatile long total;
+        volatile long copied;
+        volatile long alreadyPresent;
+        volatile long skipped;
+        volatile long batches;
+        volatile long caughtUp;
+        volatile Date catchUpFrom;
+        volatile Instant finishedAt;
+
+        Migration(String source, String target, int batchSize) {
+            this.source = source;
+            this.target = target;
+            this.batchSize = batchSize;
+            this.checkpointId = source + "->" + target;
+        }
+
+        void run() {
+            try {
+                MongoCollection<Document> from = mongoTemplate.getCollection(source);
+                MongoCollection<Document> to = mongoTemplate.getCollection(target);
+                MongoCollection<Document> checkpoints = mongoTemplate.getCollection(CHECKPOINTS);
+
+                Document cp = checkpoints.find(Filters.eq("_id", checkpointId)).first();
+                lastId = cp == null ? null : cp.get("lastId");
+                // kept across resumes until a catch-up pass completes, so an interrupted run's window isn't lost
+                catchUpFrom = cp != null && cp.get("catchUpFrom") instanceof Date d ? d
+                        : Date.from(startedAt.minus(CATCH_UP_SLACK));
+                total = from.countDocuments(lastId == null ? new Document() : Filters.gt("_id", lastId));
+                log.info("Migrating {} readings from '{}' to '{}'{}", total, source, target,
+                        lastId == null ? "" : " (resuming after " + lastId + ")");
+
+                long lastLog = System.currentTimeMillis();
+                while (running) {
+                    List<Document> page = new ArrayList<>(batchSize);
+                    from.find(lastId == null ? new Document() : Filters.gt("_id", lastId))
+                            .sort(Sorts.ascending("_id"))
+                            .limit(batchSize)
+                            .into(page);
+                    if (page.isEmpty()) break;
+
+                    copyBatch(page, to);
+                    lastId = page.get(page.size() - 1).get("_id");
+                    batches++;
+                    checkpoint(checkpoints);
+
+                    if (System.currentTimeMillis() - lastLog >= PROGRESS_LOG_MS) {
+                        lastLog = System.currentTimeMillis();
+                        Map<String, Object> s = status();
+                        log.info("Migration {}: {}/{} ({}%), {} docs/s, eta {}s", checkpointId,
+                                s.get("processed"), total, s.get("percent"), s.get("docsPerSecond"), s.get("etaSeconds"));
+                    }
+                    if (pauseMs > 0) TimeUnit.MILLISECONDS.sleep(pauseMs);
+                }
+                if (running) catchUp(from, to, checkpoints);
+                state = running ? "done" : "cancelled";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                state = "cancelled";
+            } catch (Exception e) {
+                state = "failed";
+                error = e.getMessage();
+                log.error("Migration {} failed after {} readings", checkpointId, copied, e);
+            } finally {
+                running = false;
+                finishedAt = Instant.now();
+                log.info("Migration {} {}: copied {}, already present {}, skipped {}",
+                        checkpointId, state, copied, alreadyPresent, skipped);
+            }
+        }
+
+        private void checkpoint(MongoCollection<Document> checkpoints) {
+            checkpoints.replaceOne(Filters.eq("_id", checkpointId),
+                    new Document("_id", checkpointId).append("lastId", lastId).append("catchUpFrom", catchUpFrom)
+                            .append("updatedAt", new Date()),
+                    new ReplaceOptions().upsert(true));
+        }
+
+        /**
+         * The _id walk misses readings inserted during the copy with an _id below lastId: the bridge and the
+         * ingest writer each generate their own ObjectIds, so they aren't globally increasing. This pass re-reads
+         * everything stamped since {@link #catchUpFrom} (a collection scan: plain collections only index
+         * timestamp behind dev_eui) and copies what the target lacks. A reading written during the copy with an
+         * older timestamp, e.g. one replayed from the ingest spool, is still missed; stop the writers for an
+         * exact copy.
+         */
+        private void catchUp(MongoCollection<Document> from, MongoCollection<Document> to,
+                             MongoCollection<Document> checkpoints) throws InterruptedException {
+            state = "catching up";
+            Date next = Date.from(Instant.now().minus(CATCH_UP_SLACK));
+            long before = copied;
+            Object after = null;
+            while (running) {
+                List<Document> page = new ArrayList<>(batchSize);
+                from.find(after == null ? Filters.gte(TIME_FIELD, catchUpFrom)
+                                : Filters.and(Filters.gte(TIME_FIELD, catchUpFrom), Filters.gt("_id", after)))
+                        .sort(Sorts.ascending("_id"))
+                        .limit(batchSize)
+                        .into(page);
+                if (page.isEmpty()) break;
+                copyBatch(page, to);
+                after = page.get(page.size() - 1).get("_id");
+                caughtUp = copied - before;
+                if (pauseMs > 0) TimeUnit.MILLISECONDS.sleep(pauseMs);
+            }
+            if (!running) return;
+            // the next run only has to look back to this pass's own start
+            catchUpFrom = next;
+            checkpoint(checkpoints);
+        }
+
+        /**
+         * Inserts the batch minus documents the target already has. The lookup is bounded by the batch's
+         * devEuis and time range, so it stays on the meta/time index and makes re-runs after a crash safe.
+         */
+        private void copyBatch(List<Document> page, MongoCollection<Document> to) {
+            List<Document> docs = new ArrayList<>(page.size());
+            Set<String> euis = new HashSet<>();
+            Date min = null, max = null;
+            for (Document d : page) {
+                // the time-series layout requires a BSON date in the timeField
+                if (!(d.get(TIME_FIELD) instanceof Date ts)) {
+                    skipped++;
+                    continue;
+                }
+                docs.add(d);
+                euis.add(d.getString(META_FIELD));
+                if (min == null || ts.before(min)) min = ts;
+                if (max == null || ts.after(max)) max = ts;
+            }
+            if (docs.isEmpty()) return;
+
+            Set<Object> present = new HashSet<>();
+            to.find(Filters.and(
+                            Filters.in(META_FIELD, euis),
+                            Filters.gte(TIME_FIELD, min),
+                            Filters.lte(TIME_FIELD, max),
+                            Filters.in("_id", docs.stream().map(d -> d.get("_id")).toList())))
+                    .projection(Projections.include("_id"))
+                    .forEach(d -> present.add(d.get("_id")));
+            if (!present.isEmpty()) {
+                docs.removeIf(d -> present.contains(d.get("_id")));
+                alreadyPresent += present.size();
+            }
+            if (docs.isEmpty()) return;
+
+            to.insertMany(docs, new InsertManyOptions().ordered(false));
+            copied += docs.size();
+        }
+
+        Map<String, Object> status() {
+            long processed = copied + alreadyPresent + skipped;
+            Instant end = finishedAt != null ? finishedAt : Instant.now();
+            double secs = Math.max(Duration.between(startedAt, end).toMillis(), 1) / 1000.0;
+            double rate = processed / secs;
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("state", state);
+            out.put("source", source);
+            out.put("target", target);
+            out.put("batchSize", batchSize);
+            out.put("total", total);
+            out.put("processed", processed);
+            out.put("copied", copied);
+            out.put("alreadyPresent", alreadyPresent);
+            out.put("skipped", skipped);
+            out.put("batches", batches);
+            out.put("caughtUp", caughtUp);
+            out.put("catchUpFrom", catchUpFrom);
+            out.put("percent", total == 0 ? 100.0 : Math.min(100.0, Math.round(1000.0 * processed / total) / 10.0));
+            out.put("docsPerSecond", Math.round(rate));
+            out.put("etaSeconds", rate <= 0 || total <= processed ? 0 : Math.round((total - processed) / rate));
+            out.put("lastId", lastId == null ? null : lastId.toString());
+            out.put("startedAt", startedAt);
+            out.put("finishedAt", finishedAt);
+            out.put("error", error);
+            return out;
+        }
+    }
+}
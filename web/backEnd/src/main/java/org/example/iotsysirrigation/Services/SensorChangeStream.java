@@ -0,0 +1,203 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single shared change-stream consumer on the sensors collection (the Python bridge inserts there).
+ * Listeners get every inserted reading; after a (re)start without a resume token they get onResync()
+ * so they can rebuild from the repository. Needs a replica set; on a standalone mongod it stays down (logged
+ * once) and every listener stays on its fallback.
+ * Time-series collections can't be watched, so in that storage mode it never starts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorChangeStream {
+
+    public interface Listener {
+        void onReading(SensorReading reading);
+
+        /** Events may have been missed; rebuild state from the database. */
+        default void onResync() {}
+
+        /** The stream went live or dropped; while it is down, listeners should rely on their fallback. */
+        default void onLiveChanged(boolean live) {}
+    }
+
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReadingStorageService storage;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @Value("${app.readings.change-stream.enabled:true}")
+    private boolean enabled;
+
+    private volatile boolean running;
+    private volatile boolean live;
+    private volatile Thread worker;
+    private BsonDocument resumeToken;
+    private boolean standaloneWarned;
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private volatile long lastEventAt;
+    private volatile long lastLagMs = -1;
+
+    public void addListener(Listener l) { listeners.add(l); }
+
+    /** True while the cursor is open and listeners are in sync with the collection. */
+    public boolean isLive() { return live; }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || running) return;
+        if (storage.isTimeSeries()) {
+            log.info("sensors change stream disabled: time-series collections don't support change streams");
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform().daemon().name("sensors-change-stream").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        Thread t = worker;
+        if (t != null) t.interrupt();
+    }
+
+    private void run() {
+        long backoff = 1_000;
+        while (running) {
+            try {
+                consume();
+                backoff = 1_000;
+            } catch (Exception e) {
+                setLive(false);
+                if (!running) break;
+                reconnects.incrementAndGet();
+                if (!isStandalone(e)) {
+                    log.warn("sensors change stream unavailable ({}); retrying in {} ms", e.getMessage(), backoff);
+                } else if (!standaloneWarned) {
+                    standaloneWarned = true;
+                    log.warn("MongoDB runs standalone and change streams need a replica set: the latest-reading cache, "
+                            + "WebSocket push and device state stay on their polling fallbacks. Start mongod with "
+                            + "--replSet (db/docker-compose.yml does) to enable them.");
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+        setLive(false);
+    }
+
+    private void consume() {
+        var watch = mongoTemplate.getCollection(mongoTemplate.getCollectionName(SensorReading.class))
+                .watch(List.of(Aggregates.match(Filters.in("operationType", "insert", "replace"))))
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        boolean resumed = resumeToken != null;
+        if (resumed) watch = watch.resumeAfter(resumeToken);
+
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = watch.cursor()) {
+            // cursor is open before resync, so nothing inserted during the rebuild is lost
+            if (!resumed) listeners.forEach(this::resync);
+            setLive(true);
+            log.info("sensors change stream {}", resumed ? "resumed" : "started");
+
+            while (running) {
+                ChangeStreamDocument<Document> ev = cursor.tryNext();
+                if (ev == null) {
+                    if (cursor.getResumeToken() != null) resumeToken = cursor.getResumeToken();
+                    continue;
+                }
+                resumeToken = ev.getResumeToken();
+                Document doc = ev.getFullDocument();
+                if (doc == null) continue;
+                dispatch(mongoTemplate.getConverter().read(SensorReading.class, doc));
+            }
+        } catch (RuntimeException e) {
+            // a stale token (oplog rolled over) can't be resumed; start fresh and resync
+            if (resumed) resumeToken = null;
+            throw e;
+        }
+    }
+
+    /** Only called from the worker thread, so listeners see the transitions in order. */
+    private void setLive(boolean value) {
+        if (live == value) return;
+        live = value;
+        for (Listener l : listeners) {
+            try {
+                l.onLiveChanged(value);
+            } catch (Exception e) {
+                log.warn("change stream listener {} failed", l.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /** "The $changeStream stage is only supported on replica sets" */
+    private static boolean isStandalone(Exception e) {
+        return e instanceof MongoCommandException c && c.getErrorCode() == 40573;
+    }
+
+    private void dispatch(SensorReading r) {
+        long now = System.currentTimeMillis();
+        events.incrementAndGet();
+        lastEventAt = now;
+        if (r.getTimestamp() != null) lastLagMs = now - r.getTimestamp().toEpochMilli();
+        for (Listener l : listeners) {
+            try {
+                l.onReading(r);
+            } catch (Exception e) {
+                log.warn("change stream listener {} failed", l.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private void resync(Listener l) {
+        try {
+            l.onResync();
+        } catch (Exception e) {
+            log.warn("resync of {} failed", l.getClass().getSimpleName(), e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long last = lastEventAt;
+        return Map.of(
+                "enabled", enabled,
+                "live", live,
+                "events", events.get(),
+                "reconnects", reconnects.get(),
+                "msSinceLastEvent", last == 0 ? -1 : System.currentTimeMillis() - last,
+                "lastIngestLagMs", lastLagMs
+        );
+    }
+}
@@ -1,11 +1,21 @@
 package org.example.iotsysirrigation.Services;
 
 import lombok.RequiredArgsConstructor;
+import org.example.iotsysirrigation.DTO.Response.ReadingPage;
+import org.example.iotsysirrigation.DTO.Response.SeriesBucket;
+import org.example.iotsysirrigation.DTO.Response.SeriesResponse;
+import org.example.iotsysirrigation.Models.Enum.Granularity;
 import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
 import org.example.iotsysirrigation.Repositories.SensorReadingRepository;
+import org.example.iotsysirrigation.Repositories.SensorReadingRepositoryCustom.NewestMark;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -14,42 +24,210 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SensorReadingService {
 
+    /** Hard cap on buckets per series response, whatever the range. */
+    static final int MAX_SERIES_BUCKETS = 1000;
+
+    /** Page size bounds for keyset pagination. */
+    static final int MAX_PAGE_SIZE = 1000;
+
+    /** Upper bound of devices per batch-latest call. */
+    static final int MAX_BATCH_DEVICES = 5000;
+
     private final SensorReadingRepository repo;
+    private final EndNodeDeviceRepository deviceRepo;
+    private final LatestReadingCache latestCache;
+
+    /** Bumped when stored readings are changed in place, which their newest mark can't show. */
+    private volatile Revision revision = new Revision(0, null);
+
+    /** How often (and when last) stored readings were rewritten; conditional GETs fold it into their validators. */
+    public record Revision(long generation, Instant at) {}
 
     /** Fetch the latest N readings for a device, applying defaults for null fields. */
     public List<SensorReading> latest(String devEui, int limit) {
+        if (limit <= 1) {
+            return lastOne(devEui).map(List::of).orElseGet(List::of);
+        }
         List<SensorReading> raw = repo.findByDevEuiOrderByTimestampDesc(devEui, PageRequest.of(0, Math.max(1, limit)));
-        return raw.stream().map(this::applyDefaults).collect(Collectors.toList());
+        return raw.stream().map(SensorReadingService::applyDefaults).collect(Collectors.toList());
     }
 
     /** Fetch readings in a time range, applying defaults for null fields. */
     public List<SensorReading> between(String devEui, Instant from, Instant to) {
         List<SensorReading> raw = repo.findByDevEuiAndTimestampBetweenOrderByTimestampDesc(devEui, from, to);
-        return raw.stream().map(this::applyDefaults).collect(Collectors.toList());
+        return raw.stream().map(SensorReadingService::applyDefaults).collect(Collectors.toList());
+    }
+
+    /** Newest reading per devEui (one aggregation for all of them); devices without readings are omitted. */
+    public Map<String, SensorReading> latestPerDevice(Collection<String> devEuis) {
+        Set<String> euis = new LinkedHashSet<>();
+        for (String e : devEuis) {
+            if (e != null && !e.isBlank()) euis.add(e);
+        }
+        if (euis.size() > MAX_BATCH_DEVICES) {
+            throw new IllegalArgumentException("Too many devices in one batch (max " + MAX_BATCH_DEVICES + ")");
+        }
+        Map<String, SensorReading> out = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String eui : euis) {
+            latestCache.get(eui).ifPresentOrElse(r -> out.put(eui, applyDefaults(r)), () -> missing.add(eui));
+        }
+        for (SensorReading r : repo.findLatestPerDevice(missing)) {
+            // the cache gets the stored document: a defaulted "now" timestamp would shadow later readings
+            latestCache.offer(r);
+            out.put(r.getDevEui(), applyDefaults(r));
+        }
+        return out;
     }
 
-    /** Fetch the single most recent reading, applying defaults if needed. */
+    /** {@link #latestPerDevice} for every device registered to the organization. */
+    public Map<String, SensorReading> latestPerOrganization(String organizationId) {
+        return latestPerDevice(organizationDevEuis(organizationId));
+    }
+
+    public List<String> organizationDevEuis(String organizationId) {
+        return deviceRepo.findByOrganizationId(organizationId).stream()
+                .map(EndNodeDevice::getDevEui)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /** Range query reading only timestamp + the requested object_json fields (chart payloads). */
+    public List<SensorReadingPoint> pointsBetween(String devEui, Instant from, Instant to, List<String> fields) {
+        List<SensorReadingPoint> raw = repo.findPoints(devEui, from, to, fields);
+        for (SensorReadingPoint p : raw) {
+            if (p.getSensorsReading() == null) p.setSensorsReading(new HashMap<>());
+        }
+        return raw;
+    }
+
+    /** Fetch the single most recent reading, applying defaults if needed. Served from memory while the cache is live. */
     public Optional<SensorReading> lastOne(String devEui) {
-        List<SensorReading> list = latest(devEui, 1);
-        return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+        Optional<SensorReading> cached = latestCache.get(devEui);
+        if (cached.isPresent()) return cached.map(SensorReadingService::applyDefaults);
+
+        List<SensorReading> raw = repo.findByDevEuiOrderByTimestampDesc(devEui, PageRequest.of(0, 1));
+        if (raw.isEmpty()) return Optional.empty();
+        latestCache.offer(raw.get(0));
+        return Optional.of(applyDefaults(raw.get(0)));
+    }
+
+    /**
+     * Newest (timestamp, id) of a device, for conditional GETs: taken from the live cache when it knows the
+     * device, otherwise one covered index query.
+     */
+    public Optional<NewestMark> newestMark(String devEui) {
+        return newestMark(List.of(devEui));
     }
 
-    /** Normalize nullable fields so upstream services/controllers can rely on them. */
-    private SensorReading applyDefaults(SensorReading r) {
-        if (r.getRxInfo() == null) {
-            r.setRxInfo(List.of());
+    /** {@link #newestMark(String)} over several devices; the database is only asked when the cache can't answer for all. */
+    public Optional<NewestMark> newestMark(Collection<String> devEuis) {
+        NewestMark best = null;
+        for (String eui : devEuis) {
+            SensorReading r = latestCache.get(eui).orElse(null);
+            if (r == null || r.getTimestamp() == null) return repo.findNewestMark(devEuis, null, null);
+            if (best == null || r.getTimestamp().isAfter(best.timestamp())) best = new NewestMark(r.getTimestamp(), r.getId());
         }
-        if (r.getSensorsReading() == null) {
+        return Optional.ofNullable(best);
+    }
+
+    public Revision revision() {
+        return revision;
+    }
+
+    /**
+     * Call after rewriting stored readings (e.g. backfilling object_json): moves {@link #revision} on so every
+     * cached response revalidates, and re-reads the latest-reading cache, which may hold the old documents.
+     */
+    public synchronized void readingsRewritten() {
+        revision = new Revision(revision.generation() + 1, Instant.now());
+        latestCache.onResync();
+    }
+
+    /** Newest (timestamp, id) inside the exclusive (from, to) window. */
+    public Optional<NewestMark> newestMark(String devEui, Instant from, Instant to) {
+        return repo.findNewestMark(List.of(devEui), from, to);
+    }
+
+    /**
+     * Keyset page over a device's readings (newest first). {@code cursor} is the opaque token from the
+     * previous page, null for the first; from/to are optional. Every page is a single index seek.
+     */
+    public ReadingPage page(String devEui, Instant from, Instant to, String cursor, int limit) {
+        int size = Math.min(Math.max(1, limit), MAX_PAGE_SIZE);
+        Instant afterTs = null;
+        String afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decodeCursor(cursor);
+            afterTs = Instant.ofEpochMilli(Long.parseLong(parts[0]));
+            afterId = parts[1];
+        }
+
+        // fetch one extra row to know whether another page exists
+        List<SensorReading> raw = repo.findPage(devEui, from, to, afterTs, afterId, size + 1);
+        boolean more = raw.size() > size;
+        List<SensorReading> items = more ? raw.subList(0, size) : raw;
+
+        String next = null;
+        if (more) {
+            SensorReading last = items.get(items.size() - 1);
+            // taken before applyDefaults so a missing timestamp is never replaced by "now"
+            if (last.getTimestamp() != null && last.getId() != null) {
+                next = encodeCursor(last.getTimestamp(), last.getId());
+            }
+        }
+        return new ReadingPage(items.stream().map(SensorReadingService::applyDefaults).collect(Collectors.toList()), next);
+    }
+
+    static String encodeCursor(Instant ts, String id) {
+        String raw = ts.toEpochMilli() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            if (sep <= 0 || sep == raw.length() - 1) throw new IllegalArgumentException();
+            Long.parseLong(raw.substring(0, sep));
+            return new String[]{raw.substring(0, sep), raw.substring(sep + 1)};
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Bucket one object_json metric server-side. A null granularity picks the finest one that fits;
+     * a requested granularity that would exceed {@link #MAX_SERIES_BUCKETS} is coarsened, and a range too long
+     * for that even at monthly buckets is rejected.
+     */
+    public SeriesResponse series(String devEui, String metric, Instant from, Instant to, Granularity requested) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        Duration range = Duration.between(from, to);
+        Granularity g = Granularity.fit(range, requested != null ? requested : Granularity.MINUTE, MAX_SERIES_BUCKETS);
+        List<SeriesBucket> buckets = repo.aggregateSeries(devEui, metric, from, to, g);
+        return new SeriesResponse(devEui, metric, g.code(), from, to, buckets);
+    }
+
+    /**
+     * Normalize nullable fields so upstream services/controllers can rely on them. Returns a copy when
+     * something had to be filled in: r may be the instance the latest-reading cache and the other change
+     * stream listeners share.
+     */
+    static SensorReading applyDefaults(SensorReading r) {
+        if (r.getRxInfo() != null && r.getSensorsReading() != null && r.getTimestamp() != null) return r;
+        SensorReading c = r.toBuilder().build();
+        if (c.getRxInfo() == null) {
+            c.setRxInfo(List.of());
+        }
+        if (c.getSensorsReading() == null) {
             // keep it loose; you can change to Map.of() if you prefer a strongly-typed Map
-            r.setSensorsReading(new HashMap<>());
+            c.setSensorsReading(new HashMap<>());
         }
         // Ensure timestamp is set to "now" as a last resort (best is to store actual uplink time)
-        try {
-            var tsField = SensorReading.class.getDeclaredField("timestamp");
-            tsField.setAccessible(true);
-            Object v = tsField.get(r);
-            if (v == null) tsField.set(r, Instant.now());
-        } catch (Exception ignored) {}
-        return r;
+        if (c.getTimestamp() == null) c.setTimestamp(Instant.now());
+        return c;
     }
 }
@@ -0,0 +1,165 @@
+package org.example.iotsysirrigation.Services;
+
+import org.bson.Document;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops uplinks already seen within a sliding window: the same frame heard by several gateways after
+ * ChirpStack's own dedup window, MQTT redeliveries, replayed webhooks. The key is devEui + fCnt + a hash of
+ * the payload (so a device that rejoined and restarted at fCnt 0 isn't mistaken for a duplicate); events
+ * without fCnt fall back to the lowest uplinkId in rx_info.
+ * <p>
+ * Two generations of a primitive open-addressing set of 64-bit key hashes: lookups check both, inserts go to
+ * the current one, and every half window the current one becomes the previous one. A key is remembered for
+ * between half and a full window, in two fixed long[] tables. When a generation fills up before its
+ * half window is over it rotates early, shortening the window rather than growing. Not thread-safe; only the
+ * ingest writer thread calls {@link #isDuplicate}. Whatever slips through (e.g. after a restart) is caught by
+ * the unique dedup_id index where the collection supports one.
+ */
+public class UplinkDeduplicator {
+
+    private static final long EMPTY = 0;
+    private static final double MAX_LOAD = 0.7;
+
+    private final long halfWindowMs;
+    private final int maxEntries;
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+    private long rotatedAt;
+
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong unkeyed = new AtomicLong();
+    private final AtomicLong earlyRotations = new AtomicLong();
+    private volatile int size;
+
+    /** @param maxEntries per generation; the table is the next power of two above maxEntries / 0.7 */
+    public UplinkDeduplicator(long windowMs, int maxEntries, long now) {
+        this.halfWindowMs = Math.max(1, windowMs / 2);
+        this.maxEntries = maxEntries;
+        int capacity = Integer.highestOneBit((int) Math.ceil(maxEntries / MAX_LOAD)) << 1;
+        this.current = new long[capacity];
+        this.previous = new long[capacity];
+        this.rotatedAt = now;
+    }
+
+    /** True if an uplink with the same key was seen within the window; otherwise remembers this one. */
+    public boolean isDuplicate(Document uplink, long now) {
+        checked.incrementAndGet();
+        long key = key(uplink);
+        if (key == EMPTY) {
+            unkeyed.incrementAndGet();
+            return false;
+        }
+        if (now - rotatedAt >= halfWindowMs) {
+            // after a full window of silence the previous generation is stale too
+            if (now - rotatedAt >= 2 * halfWindowMs) rotate(now);
+            rotate(now);
+        }
+        if (contains(current, key) || contains(previous, key)) {
+            duplicates.incrementAndGet();
+            return true;
+        }
+        if (currentSize >= maxEntries) {
+            earlyRotations.incrementAndGet();
+            rotate(now);
+        }
+        insert(current, key);
+        currentSize++;
+        size = currentSize;
+        return false;
+    }
+
+    private void rotate(long now) {
+        long[] recycled = previous;
+        Arrays.fill(recycled, EMPTY);
+        previous = current;
+        current = recycled;
+        currentSize = 0;
+        size = 0;
+        rotatedAt = now;
+    }
+
+    private static boolean contains(long[] table, long key) {
+        int mask = table.length - 1;
+        for (int i = (int) key & mask; ; i = (i + 1) & mask) {
+            long k = table[i];
+            if (k == key) return true;
+            if (k == EMPTY) return false;
+        }
+    }
+
+    private static void insert(long[] table, long key) {
+        int mask = table.length - 1;
+        int i = (int) key & mask;
+        while (table[i] != EMPTY) i = (i + 1) & mask;
+        table[i] = key;
+    }
+
+    /** Mixed 64-bit key, never {@link #EMPTY}; EMPTY itself means "nothing to key on". */
+    static long key(Document uplink) {
+        String eui = uplink.getString("dev_eui");
+        if (eui == null || eui.isEmpty()) return EMPTY;
+        long h = mix(euiBits(eui));
+        Object fCnt = uplink.get("f_cnt");
+        if (fCnt instanceof Number n) {
+            String data = uplink.getString("data");
+            h = mix(h ^ (n.longValue() << 32 | (data == null ? 0 : data.hashCode()) & 0xffffffffL));
+        } else {
+            long uplinkId = minUplinkId(uplink.get("rx_info"));
+            if (uplinkId < 0) return EMPTY;
+            h = mix(h ^ mix(uplinkId + 0x632BE59BD9B4E019L));
+        }
+        return h == EMPTY ? 1 : h;
+    }
+
+    /** Normalized devEuis are 16 hex digits, i.e. exactly a long; anything else falls back to its hash. */
+    private static long euiBits(String eui) {
+        if (eui.length() <= 16) {
+            try {
+                return Long.parseUnsignedLong(eui, 16);
+            } catch (NumberFormatException ignored) {
+                // not hex
+            }
+        }
+        return eui.hashCode();
+    }
+
+    private static long minUplinkId(Object rxInfo) {
+        long min = -1;
+        if (rxInfo instanceof List<?> list) {
+            for (Object rx : list) {
+                if (rx instanceof Map<?, ?> m && m.get("uplinkId") instanceof Number n
+                        && (min < 0 || n.longValue() < min)) {
+                    min = n.longValue();
+                }
+            }
+        }
+        return min;
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("checked", checked.get());
+        out.put("duplicates", duplicates.get());
+        out.put("unkeyed", unkeyed.get());
+        out.put("windowMs", halfWindowMs * 2);
+        out.put("entries", size);
+        out.put("maxEntriesPerGeneration", maxEntries);
+        out.put("earlyRotations", earlyRotations.get());
+        return out;
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.iotsysirrigation.Services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Turns a ChirpStack v4 "up" event (the JSON the MQTT integration publishes) into the document the Python
+ * bridge writes to the readings collection, field for field, so {@link org.example.iotsysirrigation.Models.SensorReading}
+ * and everything reading it can't tell the two sources apart. Only dev_eui is normalized (as in
+ * EndNodeDeviceService); the bridge stores ChirpStack's lowercase hex, so existing data already matches.
+ * Two fields are added for deduplication: f_cnt and dedup_id (ChirpStack's deduplicationId, unique per
+ * uplink, so redeliveries of the same event collide on the dedup_id index). Events without a decoded "object"
+ * get object_json from {@link CayenneLppDecoder} when their data is a valid Cayenne LPP frame.
+ */
+public final class UplinkDocuments {
+
+    public static final String DEDUP_ID = "dedup_id";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final DocumentCodec CODEC = new DocumentCodec();
+    private static final ThreadLocal<CayenneLppDecoder> LPP = ThreadLocal.withInitial(CayenneLppDecoder::new);
+
+    private UplinkDocuments() {}
+
+    /**
+     * @param receivedAt becomes "timestamp", as the bridge stamps receive time rather than the event's own
+     * @return null if the event carries no devEui
+     * @throws IOException if the payload isn't JSON
+     */
+    public static Document fromChirpstack(byte[] payload, Instant receivedAt) throws IOException {
+        return fromChirpstack(MAPPER.readTree(payload), receivedAt);
+    }
+
+    public static Document fromChirpstack(JsonNode event, Instant receivedAt) {
+        if (event == null || !event.isObject()) return null;
+        JsonNode info = event.path("deviceInfo");
+        String devEui = EndNodeDeviceService.norm(text(info.get("devEui")));
+        if (devEui == null || devEui.isEmpty()) return null;
+
+        Document doc = new Document();
+        doc.put("application_id", text(info.get("applicationId")));
+        doc.put("dev_eui", devEui);
+        doc.put("f_port", event.hasNonNull("fPort") ? event.get("fPort").asInt() : null);
+        doc.put("data", text(event.get("data")));
+        doc.put("rx_info", plain(event.get("rxInfo")));
+        Object object = plain(event.get("object"));
+        if (object == null) object = decodeLpp(doc.getString("data"));
+        doc.put("object_json", object);
+        doc.put("timestamp", Date.from(receivedAt));
+        if (event.hasNonNull("fCnt")) doc.put("f_cnt", event.get("fCnt").asLong());
+        String dedupId = text(event.get("deduplicationId"));
+        if (dedupId != null && !dedupId.isEmpty()) doc.put(DEDUP_ID, dedupId);
+        return doc;
+    }
+
+    /** No codec on the device profile: decode the frame ourselves, as ChirpStack's Cayenne LPP codec would. */
+    private static Document decodeLpp(String data) {
+        if (data == null || data.isEmpty()) return null;
+        CayenneLppDecoder decoder = LPP.get();
+        return decoder.decodeBase64(data) ? decoder.toObjectJson() : null;
+    }
+
+    private static String text(JsonNode n) {
+        return n == null || n.isNull() ? null : n.asText();
+    }
+
+    /**
+     * Documents, lists, Integer/Long/Double/String/Boolean: what pymongo makes of json.loads output. Integers
+     * beyond int64 (which pymongo refuses) become doubles rather than failing the whole batch.
+     */
+    static Object plain(JsonNode n) {
+        if (n == null || n.isNull() || n.isMissingNode()) return null;
+        if (n.isObject()) {
+            Document d = new Document();
+            n.fields().forEachRemaining(e -> d.put(e.getKey(), plain(e.getValue())));
+            return d;
+        }
+        if (n.isArray()) {
+            List<Object> list = new ArrayList<>(n.size());
+            n.forEach(e -> list.add(plain(e)));
+            return list;
+        }
+        if (n.isInt()) return n.intValue();
+        if (n.isLong()) return n.longValue();
+        if (n.isNumber()) return n.doubleValue();
+        if (n.isBoolean()) return n.booleanValue();
+        return n.asText();
+    }
+
+    /** BSON bytes of a document, the form the ingest spool stores. */
+    static byte[] toBson(Document doc) {
+        BasicOutputBuffer out = new BasicOutputBuffer();
+        CODEC.encode(new BsonBinaryWriter(out), doc, EncoderContext.builder().build());
+        return out.toByteArray();
+    }
+
+    static Document fromBson(byte[] bson) {
+        return CODEC.decode(new BsonBinaryReader(ByteBuffer.wrap(bson)), DecoderContext.builder().build());
+    }
+}
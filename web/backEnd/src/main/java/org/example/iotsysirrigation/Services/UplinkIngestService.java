@@ -0,0 +1,413 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write side of the in-process ingestion. Sources (the MQTT subscriber, the ChirpStack webhook) hand over raw
+ * up-event JSON with its receive time; a single writer drains up to batch-size events (or whatever arrived
+ * within flush-ms), turns them into bridge-shaped documents and writes them with one unordered insertMany.
+ * The queue is a fixed ring (ArrayBlockingQueue): {@link #submit} blocks for up to offer-timeout-ms when it's
+ * full (pushing back on the broker), {@link #offer} fails at once so HTTP callers can answer 429.
+ * Repeats of an uplink within app.ingest.dedup.window-ms are dropped before the write (see {@link UplinkDeduplicator}).
+ * <p>
+ * With the spool on, a batch the database doesn't take goes to disk ({@link UplinkSpool}) instead of being
+ * lost, and so does every batch after it while the spool is non-empty (or while the queue is above three
+ * quarters full), which keeps the collection in arrival order. A separate replay thread moves spooled batches
+ * into the collection oldest first, backing off while the database is still unreachable. Documents get their
+ * _id before they are spooled, so a batch replayed twice after a crash only produces duplicate-key errors.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UplinkIngestService {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RATE_WINDOW_MS = 10_000;
+    private static final long REPLAY_MIN_BACKOFF_MS = 1_000;
+    private static final long REPLAY_MAX_BACKOFF_MS = 30_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ReadingStorageService storage;
+    private final DeviceStateService deviceState;
+
+    /** The sources feeding this writer; with both off (the Python bridge writes instead) nothing is started. */
+    @Value("${app.ingest.http.enabled:false}")
+    private boolean httpEnabled;
+
+    @Value("${app.ingest.mqtt.enabled:false}")
+    private boolean mqttEnabled;
+
+    @Value("${app.ingest.queue-capacity:20000}")
+    private int capacity;
+
+    @Value("${app.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.ingest.flush-ms:200}")
+    private long flushMs;
+
+    @Value("${app.ingest.offer-timeout-ms:2000}")
+    private long offerTimeoutMs;
+
+    @Value("${app.ingest.dedup.enabled:true}")
+    private boolean dedupEnabled;
+
+    @Value("${app.ingest.dedup.window-ms:300000}")
+    private long dedupWindowMs;
+
+    @Value("${app.ingest.dedup.max-entries:262144}")
+    private int dedupMaxEntries;
+
+    @Value("${app.ingest.spool.enabled:true}")
+    private boolean spoolEnabled;
+
+    @Value("${app.ingest.spool.dir:spool}")
+    private String spoolDir;
+
+    @Value("${app.ingest.spool.segment-bytes:67108864}")
+    private long spoolSegmentBytes;
+
+    @Value("${app.ingest.spool.max-bytes:1073741824}")
+    private long spoolMaxBytes;
+
+    @Value("${app.ingest.spool.fsync:true}")
+    private boolean spoolFsync;
+
+    /** Owned by the writer thread. */
+    private UplinkDeduplicator dedup;
+
+    /** Null when disabled or its directory couldn't be opened. */
+    private UplinkSpool spool;
+    private Thread replayer;
+
+    /** One up event as received; parsed on the writer thread so sources return quickly. */
+    public record Uplink(byte[] payload, Instant receivedAt) {}
+
+    private BlockingQueue<Uplink> queue;
+    private volatile boolean running;
+    private Thread writer;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong duplicateKeyErrors = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private volatile long lastBatchMs;
+    private volatile double insertRate;
+    private long rateWindowStart;
+    private long rateWindowInserted;
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        if (!isEnabled()) {
+            log.info("in-process ingestion off (app.ingest.http.enabled and app.ingest.mqtt.enabled are false)");
+            return;
+        }
+        if (dedupEnabled) dedup = new UplinkDeduplicator(dedupWindowMs, dedupMaxEntries, System.currentTimeMillis());
+        if (spoolEnabled) {
+            try {
+                spool = UplinkSpool.open(Path.of(spoolDir), spoolSegmentBytes, spoolMaxBytes, spoolFsync);
+            } catch (IOException | RuntimeException e) {
+                log.error("ingest spool at {} unavailable; uplinks are lost while the database is down", spoolDir, e);
+            }
+        }
+        running = true;
+        rateWindowStart = System.currentTimeMillis();
+        writer = Thread.ofPlatform().daemon().name("uplink-writer").start(this::run);
+        if (spool != null) replayer = Thread.ofPlatform().daemon().name("uplink-replay").start(this::replay);
+    }
+
+    /**
+     * Flushes what is already queued (to the spool if that's where batches are going); sources shut down
+     * first since they depend on this bean. Whatever is still spooled is replayed after the next start.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        if (writer == null) return;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        if (!queue.isEmpty()) log.warn("{} uplinks still queued at shutdown were not written", queue.size());
+        if (replayer != null) {
+            replayer.interrupt();
+            replayer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                log.warn("closing the ingest spool failed", e);
+            }
+            if (!spool.isEmpty()) log.info("{} spooled uplinks will be replayed after restart", spool.size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return httpEnabled || mqttEnabled;
+    }
+
+    /**
+     * Queues one up event for the next batch, waiting up to offer-timeout-ms for room.
+     * @return false if it was dropped because the queue stayed full
+     */
+    public boolean submit(byte[] payload, Instant receivedAt) throws InterruptedException {
+        received.incrementAndGet();
+        if (queue.offer(new Uplink(payload, receivedAt), offerTimeoutMs, TimeUnit.MILLISECONDS)) return true;
+        countDrop();
+        return false;
+    }
+
+    /** Like {@link #submit} but never waits: false means the queue is full right now. */
+    public boolean offer(byte[] payload, Instant receivedAt) {
+        received.incrementAndGet();
+        if (queue.offer(new Uplink(payload, receivedAt))) return true;
+        countDrop();
+        return false;
+    }
+
+    private void countDrop() {
+        if (dropped.incrementAndGet() % 1000 == 1) {
+            log.warn("ingest queue full ({} queued); dropped {} uplinks so far", queue.size(), dropped.get());
+        }
+    }
+
+    private void run() {
+        List<Uplink> batch = new ArrayList<>(batchSize);
+        List<Document> docs = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Uplink first = queue.poll(flushMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    updateRate();
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMs);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) continue;
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0 || !running) break;
+                    Uplink next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                long now = System.currentTimeMillis();
+                for (Uplink u : batch) {
+                    Document d = parse(u);
+                    if (d == null || (dedup != null && dedup.isDuplicate(d, now))) continue;
+                    docs.add(d);
+                }
+                if (!docs.isEmpty()) store(docs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("uplink writer: batch of {} lost", batch.size(), e);
+                failed.addAndGet(docs.size());
+            } finally {
+                batch.clear();
+                docs.clear();
+            }
+        }
+    }
+
+    private Document parse(Uplink u) {
+        Document d;
+        try {
+            d = UplinkDocuments.fromChirpstack(u.payload(), u.receivedAt());
+        } catch (Exception e) {
+            d = null;
+        }
+        if (d == null && rejected.incrementAndGet() % 100 == 1) {
+            log.warn("unusable up event ({} so far): {}", rejected.get(), preview(u.payload()));
+        }
+        return d;
+    }
+
+    private static String preview(byte[] payload) {
+        return new String(payload, 0, Math.min(payload.length, 120), StandardCharsets.UTF_8);
+    }
+
+    /** Straight to the collection, unless older uplinks are still spooled or the queue is backing up. */
+    private void store(List<Document> docs) throws InterruptedException {
+        if (spool != null && (!spool.isEmpty() || queue.size() >= capacity / 4 * 3)) {
+            spool(docs);
+        } else if (!insert(docs, spool != null ? 1 : MAX_ATTEMPTS)) {
+            if (spool != null) {
+                spool(docs);
+            } else {
+                failed.addAndGet(docs.size());
+                log.error("uplink batch of {} lost after {} attempts", docs.size(), MAX_ATTEMPTS);
+            }
+        }
+    }
+
+    /**
+     * Unordered, so one bad document (or a duplicate _id) doesn't stop the rest; transient errors are retried.
+     * @return false if the database stayed unavailable; nothing is counted then
+     */
+    private boolean insert(List<Document> batch, int attempts) throws InterruptedException {
+        long t0 = System.currentTimeMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                mongoTemplate.getCollection(storage.collection())
+                        .insertMany(batch, new InsertManyOptions().ordered(false));
+                inserted.addAndGet(batch.size());
+                deviceState.onIngested(batch);
+                break;
+            } catch (MongoBulkWriteException e) {
+                // the rest of the batch went in; nothing to retry
+                int dups = 0;
+                for (BulkWriteError err : e.getWriteErrors()) {
+                    if (err.getCode() == 11000) dups++;
+                }
+                inserted.addAndGet(e.getWriteResult().getInsertedCount());
+                duplicateKeyErrors.addAndGet(dups);
+                failed.addAndGet(e.getWriteErrors().size() - dups);
+                deviceState.onIngested(batch);
+                if (dups < e.getWriteErrors().size()) {
+                    log.warn("uplink batch: {} of {} documents rejected, first: {}", e.getWriteErrors().size() - dups,
+                            batch.size(), e.getWriteErrors().get(0).getMessage());
+                }
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= attempts) {
+                    log.warn("uplink batch of {} not written after {} attempt(s): {}", batch.size(), attempt, e.getMessage());
+                    return false;
+                }
+                log.warn("uplink batch of {} failed ({}); retrying", batch.size(), e.getMessage());
+                Thread.sleep(500L << (attempt - 1));
+            }
+        }
+        batches.incrementAndGet();
+        lastBatchMs = System.currentTimeMillis() - t0;
+        updateRate();
+        return true;
+    }
+
+    private void spool(List<Document> docs) {
+        List<byte[]> records = new ArrayList<>(docs.size());
+        for (Document d : docs) {
+            // the driver already set one if an insert was attempted; either way a replay collides on it
+            d.putIfAbsent("_id", new ObjectId());
+            records.add(UplinkDocuments.toBson(d));
+        }
+        try {
+            if (spool.append(records)) {
+                spooled.addAndGet(docs.size());
+                return;
+            }
+            log.error("ingest spool full ({} bytes on disk); batch of {} lost", spool.stats().get("diskBytes"), docs.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("ingest spool write failed; batch of {} lost", docs.size(), e);
+        }
+        failed.addAndGet(docs.size());
+    }
+
+    /** Replay thread: spooled batches into the collection, oldest first, one at a time. */
+    private void replay() {
+        long backoff = REPLAY_MIN_BACKOFF_MS;
+        while (running) {
+            try {
+                if (spool.isEmpty()) {
+                    Thread.sleep(flushMs);
+                    continue;
+                }
+                List<Document> docs = new ArrayList<>(batchSize);
+                for (byte[] r : spool.read(batchSize)) docs.add(UplinkDocuments.fromBson(r));
+                if (!docs.isEmpty() && !insert(docs, 1)) {
+                    spool.rewind();
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, REPLAY_MAX_BACKOFF_MS);
+                    continue;
+                }
+                spool.commit();
+                replayed.addAndGet(docs.size());
+                backoff = REPLAY_MIN_BACKOFF_MS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                spool.rewind();
+                log.error("ingest spool replay failed; retrying in {} ms", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(backoff * 2, REPLAY_MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    private synchronized void updateRate() {
+        long now = System.currentTimeMillis();
+        long elapsed = now - rateWindowStart;
+        if (elapsed < RATE_WINDOW_MS) return;
+        long total = inserted.get();
+        insertRate = (total - rateWindowInserted) * 1000.0 / elapsed;
+        rateWindowStart = now;
+        rateWindowInserted = total;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", isEnabled());
+        out.put("received", received.get());
+        out.put("inserted", inserted.get());
+        // repeats that got past the in-memory window and hit the unique dedup_id index
+        out.put("duplicateKeyErrors", duplicateKeyErrors.get());
+        out.put("failed", failed.get());
+        out.put("dropped", dropped.get());
+        out.put("rejected", rejected.get());
+        out.put("queued", queue.size());
+        out.put("capacity", capacity);
+        out.put("batches", batches.get());
+        long b = batches.get();
+        out.put("avgBatchSize", b == 0 ? 0 : (inserted.get() + duplicateKeyErrors.get() + failed.get()) / b);
+        out.put("lastBatchMs", lastBatchMs);
+        // over the last ~10 s window
+        out.put("insertedPerSecond", Math.round(insertRate));
+        UplinkDeduplicator d = dedup;
+        out.put("dedup", d == null ? Map.of("enabled", false) : d.stats());
+        UplinkSpool sp = spool;
+        if (sp == null) {
+            out.put("spool", Map.of("enabled", false));
+        } else {
+            Map<String, Object> spoolStats = new LinkedHashMap<>(sp.stats());
+            spoolStats.put("spooled", spooled.get());
+            spoolStats.put("replayed", replayed.get());
+            out.put("spool", spoolStats);
+        }
+        return out;
+    }
+}
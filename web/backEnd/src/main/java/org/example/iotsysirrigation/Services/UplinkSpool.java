@@ -0,0 +1,361 @@
+package org.example.iotsysirrigation.Services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only disk spool for uplinks the database couldn't take. Records are appended to numbered segment
+ * files ({@code 00000000000000000001.seg}, ...) with plain FileChannel writes, each framed as
+ * [length:int][crc32c:int][bytes], and read back strictly in append order. A segment is deleted once it has
+ * been read and committed past; the read position is checkpointed to spool.pos after every commit, so a
+ * restart resumes where replay stopped (records between the last insert and its checkpoint come back again;
+ * the caller must make replays idempotent). On open the tail is scanned and cut at the first short or
+ * CRC-failing record, which is what a crash in the middle of an append leaves behind.
+ * <p>
+ * Bounded by max-bytes on disk: an append that doesn't fit is refused whole. One thread appends (the ingest
+ * writer) while another reads and commits (the replayer); those calls are synchronized, but only the file I/O
+ * happens under the lock, never the database write in between.
+ */
+@Slf4j
+public class UplinkSpool implements Closeable {
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String CHECKPOINT = "spool.pos";
+    private static final int HEADER = 8;
+    /** Far above any uplink document; a larger length means a torn or corrupt header. */
+    static final int MAX_RECORD = 1 << 20;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final boolean fsync;
+
+    /** Segment sequence → size on disk, oldest first; the last one is being appended to. */
+    private final TreeMap<Long, Long> segments = new TreeMap<>();
+    private FileChannel appendChannel;
+    private long writeSeq;
+    private long writePos;
+
+    private FileChannel readChannel;
+    private long readChannelSeq = -1;
+    private long readSeq;
+    private long readPos;
+    /** Position after the last {@link #read}, made durable by {@link #commit}. */
+    private long pendingSeq;
+    private long pendingPos;
+    private int pendingCount;
+
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER);
+    private final CRC32C crc = new CRC32C();
+
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong corrupt = new AtomicLong();
+    private volatile long diskBytes;
+    private volatile long truncatedBytes;
+
+    private UplinkSpool(Path dir, long segmentBytes, long maxBytes, boolean fsync) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.fsync = fsync;
+    }
+
+    /** Opens (or creates) the spool in {@code dir}, repairing a torn tail and counting what is left to replay. */
+    public static UplinkSpool open(Path dir, long segmentBytes, long maxBytes, boolean fsync) throws IOException {
+        UplinkSpool s = new UplinkSpool(dir, segmentBytes, maxBytes, fsync);
+        s.recover();
+        return s;
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        long[] checkpoint = readCheckpoint();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (!name.endsWith(SEGMENT_SUFFIX)) continue;
+                long seq;
+                try {
+                    seq = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (seq < checkpoint[0]) {
+                    Files.deleteIfExists(p); // replayed before the crash, deletion didn't happen
+                } else {
+                    segments.put(seq, Files.size(p));
+                }
+            }
+        }
+        for (Map.Entry<Long, Long> e : segments.entrySet()) {
+            long seq = e.getKey();
+            long from = seq == checkpoint[0] ? Math.min(checkpoint[1], e.getValue()) : 0;
+            long valid = scan(seq, from);
+            if (valid < e.getValue()) {
+                // torn append on the tail, or corruption in an older segment: what follows can't be framed
+                long lost = e.getValue() - valid;
+                truncatedBytes += lost;
+                if (seq != segments.lastKey()) corrupt.incrementAndGet();
+                log.warn("spool segment {}: cutting {} unreadable bytes at offset {}", seq, lost, valid);
+                try (FileChannel ch = FileChannel.open(segment(seq), StandardOpenOption.WRITE)) {
+                    ch.truncate(valid);
+                    ch.force(true);
+                }
+                e.setValue(valid);
+            }
+        }
+        if (segments.isEmpty()) {
+            readSeq = Math.max(1, checkpoint[0]);
+            readPos = 0;
+            openAppend(readSeq);
+        } else {
+            readSeq = segments.firstKey();
+            readPos = readSeq == checkpoint[0] ? Math.min(checkpoint[1], segments.firstEntry().getValue()) : 0;
+            openAppend(segments.lastKey());
+        }
+        pendingSeq = readSeq;
+        pendingPos = readPos;
+        updateDiskBytes();
+        if (records.get() > 0) log.info("spool {}: {} uplinks waiting for replay", dir, records.get());
+    }
+
+    /** Counts valid records from {@code from}; returns the offset just past the last one. */
+    private long scan(long seq, long from) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment(seq), StandardOpenOption.READ)) {
+            long pos = from;
+            long size = ch.size();
+            while (true) {
+                byte[] r = readRecord(ch, pos, size);
+                if (r == null) return pos;
+                records.incrementAndGet();
+                pos += HEADER + r.length;
+            }
+        }
+    }
+
+    /** The complete, CRC-valid record at {@code pos}, or null (short, oversized or damaged). */
+    private byte[] readRecord(FileChannel ch, long pos, long end) throws IOException {
+        if (end - pos < HEADER) return null;
+        header.clear();
+        readFully(ch, header, pos);
+        int len = header.getInt(0);
+        if (len < 0 || len > MAX_RECORD || end - pos - HEADER < len) return null;
+        byte[] body = new byte[len];
+        readFully(ch, ByteBuffer.wrap(body), pos + HEADER);
+        crc.reset();
+        crc.update(body);
+        return (int) crc.getValue() == header.getInt(4) ? body : null;
+    }
+
+    private void openAppend(long seq) throws IOException {
+        appendChannel = FileChannel.open(segment(seq), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        writeSeq = seq;
+        writePos = appendChannel.size();
+        segments.putIfAbsent(seq, writePos);
+    }
+
+    /** Number of records appended and not yet committed as replayed. */
+    public long size() { return records.get(); }
+
+    public boolean isEmpty() { return records.get() == 0; }
+
+    /**
+     * Appends all records or none; false when they would exceed max-bytes. Forced to disk before returning
+     * when fsync is on.
+     */
+    public synchronized boolean append(List<byte[]> batch) throws IOException {
+        long bytes = 0;
+        for (byte[] r : batch) {
+            if (r.length > MAX_RECORD) throw new IllegalArgumentException("spool record of " + r.length + " bytes");
+            bytes += HEADER + r.length;
+        }
+        if (diskBytes + bytes > maxBytes) {
+            refused.addAndGet(batch.size());
+            return false;
+        }
+        if (writePos > 0 && writePos + bytes > segmentBytes) roll();
+        ByteBuffer buf = ByteBuffer.allocate((int) bytes);
+        for (byte[] r : batch) {
+            crc.reset();
+            crc.update(r);
+            buf.putInt(r.length).putInt((int) crc.getValue()).put(r);
+        }
+        buf.flip();
+        while (buf.hasRemaining()) writePos += appendChannel.write(buf, writePos);
+        if (fsync) appendChannel.force(false);
+        segments.put(writeSeq, writePos);
+        records.addAndGet(batch.size());
+        appended.addAndGet(batch.size());
+        updateDiskBytes();
+        return true;
+    }
+
+    private void roll() throws IOException {
+        appendChannel.force(true);
+        appendChannel.close();
+        openAppend(writeSeq + 1);
+    }
+
+    /**
+     * Up to {@code max} records after the last committed position, oldest first. Reading again without a
+     * {@link #commit} in between continues after this batch; {@link #rewind} goes back to the committed position.
+     */
+    public synchronized List<byte[]> read(int max) throws IOException {
+        List<byte[]> out = new ArrayList<>(Math.min(max, 1024));
+        while (out.size() < max) {
+            long end = pendingSeq == writeSeq ? writePos : segments.getOrDefault(pendingSeq, 0L);
+            if (pendingPos >= end) {
+                if (pendingSeq >= writeSeq) break;
+                Long next = segments.higherKey(pendingSeq);
+                if (next == null) break;
+                pendingSeq = next;
+                pendingPos = 0;
+                continue;
+            }
+            FileChannel ch = readChannel(pendingSeq);
+            byte[] r = readRecord(ch, pendingPos, end);
+            if (r == null) {
+                // written by us since open, so this is damage on disk; skip to the end of the segment
+                corrupt.incrementAndGet();
+                log.error("spool segment {}: unreadable record at offset {}, skipping {} bytes",
+                        pendingSeq, pendingPos, end - pendingPos);
+                pendingPos = end;
+                continue;
+            }
+            out.add(r);
+            pendingPos += HEADER + r.length;
+        }
+        pendingCount += out.size();
+        return out;
+    }
+
+    /** Everything read so far has been stored: drop it from the spool and checkpoint the new position. */
+    public synchronized void commit() throws IOException {
+        while (readSeq < pendingSeq) {
+            closeReadChannel(readSeq);
+            Files.deleteIfExists(segment(readSeq));
+            segments.remove(readSeq);
+            readSeq = segments.isEmpty() ? pendingSeq : segments.firstKey();
+        }
+        readPos = pendingPos;
+        records.addAndGet(-pendingCount);
+        pendingCount = 0;
+        if (readSeq == writeSeq && readPos == writePos) {
+            // everything is replayed, even if records skipped as damaged left the count off
+            records.set(0);
+        }
+        if (readSeq == writeSeq && readPos == writePos && writePos > 0) {
+            // drained: start a fresh segment so the old one's space comes back
+            closeReadChannel(readSeq);
+            roll();
+            Files.deleteIfExists(segment(readSeq));
+            segments.remove(readSeq);
+            readSeq = pendingSeq = writeSeq;
+            readPos = pendingPos = 0;
+        }
+        writeCheckpoint();
+        updateDiskBytes();
+    }
+
+    /** Forget the last reads; the next {@link #read} starts at the committed position again. */
+    public synchronized void rewind() {
+        pendingSeq = readSeq;
+        pendingPos = readPos;
+        pendingCount = 0;
+    }
+
+    private FileChannel readChannel(long seq) throws IOException {
+        if (readChannelSeq != seq) {
+            if (readChannel != null) readChannel.close();
+            readChannel = FileChannel.open(segment(seq), StandardOpenOption.READ);
+            readChannelSeq = seq;
+        }
+        return readChannel;
+    }
+
+    private void closeReadChannel(long seq) throws IOException {
+        if (readChannelSeq == seq && readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+            readChannelSeq = -1;
+        }
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path p = dir.resolve(CHECKPOINT);
+        if (!Files.exists(p)) return new long[]{0, 0};
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(p));
+        if (b.remaining() != 20) return new long[]{0, 0};
+        long seq = b.getLong();
+        long pos = b.getLong();
+        crc.reset();
+        crc.update(b.array(), 0, 16);
+        if ((int) crc.getValue() != b.getInt()) {
+            log.warn("spool checkpoint unreadable; replaying every segment from the start");
+            return new long[]{0, 0};
+        }
+        return new long[]{seq, pos};
+    }
+
+    private void writeCheckpoint() throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(20).putLong(readSeq).putLong(readPos);
+        crc.reset();
+        crc.update(b.array(), 0, 16);
+        b.putInt((int) crc.getValue());
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        Files.write(tmp, b.array());
+        Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void updateDiskBytes() {
+        long sum = 0;
+        for (long s : segments.values()) sum += s;
+        diskBytes = sum;
+    }
+
+    private Path segment(long seq) {
+        return dir.resolve(String.format("%020d%s", seq, SEGMENT_SUFFIX));
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + buf.position());
+            if (n < 0) throw new UncheckedIOException(new IOException("unexpected end of spool segment"));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (readChannel != null) readChannel.close();
+        if (appendChannel != null) {
+            appendChannel.force(true);
+            appendChannel.close();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("dir", dir.toAbsolutePath().toString());
+        out.put("depth", records.get());
+        out.put("diskBytes", diskBytes);
+        out.put("maxBytes", maxBytes);
+        out.put("appended", appended.get());
+        // whole batches that didn't fit under maxBytes
+        out.put("refused", refused.get());
+        out.put("corrupt", corrupt.get());
+        out.put("truncatedBytes", truncatedBytes);
+        return out;
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.iotsysirrigation.DTO.Response;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import org.example.iotsysirrigation.Services.ReadingColumns;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Not a unit test (surefire skips it): a year of one-minute readings with two projected metrics
+ * (what /range?fields=humiditySensor,temperatureSensor returns) as row JSON, columnar JSON and the binary
+ * frame: bytes raw and gzipped, encode and decode time.
+ * Run its main() from the IDE, or with java -cp on target/classes, target/test-classes and the test classpath.
+ */
+public class ColumnarFrameBenchmark {
+
+    private static final int ROWS = 365 * 24 * 60;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        // configured like Boot's: ISO-8601 instants
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        List<SensorReadingPoint> rows = new ArrayList<>(ROWS);
+        Random rnd = new Random(1);
+        Instant t = Instant.parse("2025-01-01T00:00:00Z");
+        for (int i = 0; i < ROWS; i++) {
+            // bridge timestamps carry sub-second jitter
+            Instant ts = t.plusSeconds(60L * i).plusMillis(rnd.nextInt(900));
+            rows.add(new SensorReadingPoint(ts, Map.of(
+                    "humiditySensor", Map.of("3", 40 + rnd.nextInt(50)),
+                    "temperatureSensor", Map.of("2", 15 + rnd.nextInt(200) / 10.0))));
+        }
+        Collections.reverse(rows); // newest first, as served
+
+        ColumnarSeries series = ReadingColumns.of(rows);
+        byte[] rowJson = mapper.writeValueAsBytes(rows);
+        byte[] colJson = columnarJson(mapper, series);
+        byte[] binary = binary(series);
+
+        System.out.printf("%,d rows x 2 metrics%n", ROWS);
+        System.out.printf("%-16s %12s %12s%n", "format", "bytes", "gzip");
+        report("row JSON", rowJson);
+        report("columnar JSON", colJson);
+        report("binary frame", binary);
+
+        System.out.println();
+        time("encode row JSON       ", () -> mapper.writeValueAsBytes(rows));
+        time("pivot + columnar JSON ", () -> columnarJson(mapper, ReadingColumns.of(rows)));
+        time("pivot + binary        ", () -> binary(ReadingColumns.of(rows)));
+        time("decode row JSON       ", () -> mapper.readValue(rowJson, new TypeReference<List<SensorReadingPoint>>() {}));
+        time("decode columnar JSON  ", () -> ColumnarFrame.readJson(mapper.readTree(colJson)));
+        time("decode binary         ", () -> ColumnarFrame.read(binary));
+    }
+
+    private static byte[] columnarJson(ObjectMapper mapper, ColumnarSeries s) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator g = mapper.getFactory().createGenerator(out)) {
+            ColumnarFrame.writeJson(s, g);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] binary(ColumnarSeries s) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ColumnarFrame.write(s, out);
+        return out.toByteArray();
+    }
+
+    private static void report(String name, byte[] body) throws IOException {
+        ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        try (GZIPOutputStream z = new GZIPOutputStream(gz)) {
+            z.write(body);
+        }
+        System.out.printf("%-16s %,12d %,12d%n", name, body.length, gz.size());
+    }
+
+    interface Op {
+        Object run() throws IOException;
+    }
+
+    private static void time(String name, Op op) throws IOException {
+        op.run();
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < RUNS; r++) {
+            long t0 = System.nanoTime();
+            if (op.run() == null) throw new IllegalStateException();
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        System.out.printf("%s %8.1f ms%n", name, best / 1e6);
+    }
+}
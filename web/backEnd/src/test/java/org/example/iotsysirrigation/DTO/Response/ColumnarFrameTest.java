@@ -0,0 +1,78 @@
+package org.example.iotsysirrigation.DTO.Response;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import org.example.iotsysirrigation.Services.ReadingColumns;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarFrameTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** Newest first, like the JSON endpoints, so the deltas are negative; the second row lacks temperature. */
+    static List<SensorReadingPoint> points() {
+        Instant t0 = Instant.parse("2025-06-01T12:00:00Z");
+        return List.of(
+                new SensorReadingPoint(t0.plusSeconds(120), Map.of("humiditySensor", Map.of("3", 78), "temperatureSensor", Map.of("2", 29.5))),
+                new SensorReadingPoint(t0.plusSeconds(61), Map.of("humiditySensor", Map.of("3", 77))),
+                new SensorReadingPoint(t0, Map.of("humiditySensor", Map.of("3", 76.5), "temperatureSensor", Map.of("2", 28.25))));
+    }
+
+    @Test
+    void pivotsReadingsIntoColumns() {
+        ColumnarSeries s = ReadingColumns.of(points());
+        assertEquals(3, s.rows());
+        assertEquals(List.of("humiditySensor.3", "temperatureSensor.2"), List.copyOf(s.columns().keySet()));
+        assertArrayEquals(new double[]{78, 77, 76.5}, s.columns().get("humiditySensor.3"));
+        assertTrue(Double.isNaN(s.columns().get("temperatureSensor.2")[1]));
+    }
+
+    @Test
+    void binaryFrameRoundTrips() throws IOException {
+        ColumnarSeries s = ReadingColumns.of(points());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ColumnarFrame.write(s, out);
+        byte[] frame = out.toByteArray();
+
+        assertSeriesEquals(s, ColumnarFrame.read(frame));
+        assertThrows(IllegalArgumentException.class, () -> ColumnarFrame.read(Arrays.copyOf(frame, frame.length - 3)));
+    }
+
+    @Test
+    void columnarJsonRoundTrips() throws IOException {
+        ColumnarSeries s = ReadingColumns.of(points());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator g = MAPPER.getFactory().createGenerator(out)) {
+            ColumnarFrame.writeJson(s, g);
+        }
+        String json = out.toString();
+        assertTrue(json.startsWith("{\"t\":[" + s.t()[0] + ",-59000,-61000]"), json);
+        assertTrue(json.contains("\"temperatureSensor.2\":[29.5,null,28.25]"), json);
+        assertSeriesEquals(s, ColumnarFrame.readJson(MAPPER.readTree(json)));
+    }
+
+    @Test
+    void zigzagKeepsSignAndExtremes() {
+        for (long v : new long[]{0, 1, -1, 60_000, -60_000, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertEquals(v, ColumnarFrame.unzigzag(ColumnarFrame.zigzag(v)));
+        }
+    }
+
+    static void assertSeriesEquals(ColumnarSeries expected, ColumnarSeries actual) {
+        assertArrayEquals(expected.t(), actual.t());
+        Map<String, double[]> a = new LinkedHashMap<>(actual.columns());
+        assertEquals(expected.columns().keySet(), a.keySet());
+        expected.columns().forEach((k, v) -> assertArrayEquals(v, a.get(k), k));
+    }
+}
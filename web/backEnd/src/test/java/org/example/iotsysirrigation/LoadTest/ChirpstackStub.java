@@ -0,0 +1,185 @@
+package org.example.iotsysirrigation.LoadTest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stand-in for ChirpStack's REST API (the subset ChirpstackClient uses), so a backend under load never talks
+ * to a real network server: GET and PUT /api/devices/{devEui}, POST /api/devices/{devEui}/queue, and the device
+ * list GET /api/devices?applicationId=&limit=&offset=. Every devEui exists for a GET; the list holds the
+ * {@link #listing} devices of {@link VirtualEndNode#APPLICATION_ID}. Each request answers after {@code delayMs},
+ * like a remote call would. Requests without a Bearer
+ * token get 401. Runs on virtual threads so the stub is never the bottleneck. Point the backend at it with
+ * CHIRPSTACK_API_BASE_URL=http://localhost:{port}.
+ */
+public final class ChirpstackStub implements AutoCloseable {
+
+    static {
+        // headers and body go out in separate writes; without this, Nagle + delayed ACK add ~40 ms per response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long delayMs;
+    private volatile int listed;
+    private final LongAdder gets = new LongAdder();
+    private final LongAdder listGets = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder enqueues = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private ChirpstackStub(int port, long delayMs) throws IOException {
+        this.delayMs = delayMs;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.createContext("/api/devices/", this::handle);
+        // exact path only: /api/devices/... goes to the longer context above
+        server.createContext("/api/devices", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /** @param port 0 for any free port */
+    public static ChirpstackStub start(int port, long delayMs) throws IOException {
+        ChirpstackStub stub = new ChirpstackStub(port, delayMs);
+        stub.server.start();
+        return stub;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** The device list shows VirtualEndNode.devEui(0 .. devices-1), named node-{devEui}. */
+    public ChirpstackStub listing(int devices) {
+        this.listed = devices;
+        return this;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("deviceGets", gets.sum());
+        out.put("devicePuts", puts.sum());
+        out.put("listGets", listGets.sum());
+        out.put("enqueues", enqueues.sum());
+        out.put("unauthorized", rejected.sum());
+        out.put("maxConcurrent", maxInFlight.get());
+        return out;
+    }
+
+    /** Most requests the stub was serving at the same time, i.e. the caller's concurrency. */
+    public int maxConcurrent() {
+        return maxInFlight.get();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            ex.getRequestBody().readAllBytes();
+            String auth = ex.getRequestHeaders().getFirst("Authorization");
+            if (auth == null || !auth.startsWith("Bearer ")) {
+                rejected.increment();
+                respond(ex, 401, "{\"error\":\"authorization token is missing\"}");
+                return;
+            }
+            // counted before the response goes out, so a caller's next request can't overlap this one
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                if (delayMs > 0) Thread.sleep(delayMs);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+
+            String method = ex.getRequestMethod();
+            if (ex.getRequestURI().getPath().equals("/api/devices")) {
+                if (method.equals("GET")) {
+                    listGets.increment();
+                    respond(ex, 200, list(query(ex.getRequestURI().getRawQuery())));
+                } else {
+                    respond(ex, 404, "{\"error\":\"not found\"}");
+                }
+                return;
+            }
+            String[] path = ex.getRequestURI().getPath().substring("/api/devices/".length()).split("/");
+            String eui = path[0];
+            if (path.length == 1 && method.equals("GET")) {
+                gets.increment();
+                respond(ex, 200, device(eui));
+            } else if (path.length == 1 && method.equals("PUT")) {
+                puts.increment();
+                respond(ex, 200, "{}");
+            } else if (path.length == 2 && path[1].equals("queue") && method.equals("POST")) {
+                enqueues.increment();
+                respond(ex, 200, "{\"id\":\"" + UUID.randomUUID() + "\"}");
+            } else {
+                respond(ex, 404, "{\"error\":\"not found\"}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String device(String eui) {
+        String now = Instant.now().toString();
+        return """
+                {"device":{"devEui":"%s","name":"node-%s","description":"","applicationId":"%s",
+                 "deviceProfileId":"0b0c6d4e-2e2f-4f0c-9a3b-3c1d9b0e7a11","isDisabled":false,"tags":{},"variables":{}},
+                 "createdAt":"2025-06-01T12:00:00Z","updatedAt":"2025-06-01T12:00:00Z","lastSeenAt":"%s"}"""
+                .formatted(eui, eui, VirtualEndNode.APPLICATION_ID, now);
+    }
+
+    private String list(Map<String, String> q) {
+        int total = VirtualEndNode.APPLICATION_ID.toString().equals(q.get("applicationId")) ? listed : 0;
+        int offset = Integer.parseInt(q.getOrDefault("offset", "0"));
+        int limit = Integer.parseInt(q.getOrDefault("limit", "10"));
+        String now = Instant.now().toString();
+        StringJoiner result = new StringJoiner(",", "[", "]");
+        for (int i = offset; i < Math.min(total, offset + limit); i++) {
+            String eui = VirtualEndNode.devEui(i);
+            result.add("""
+                    {"devEui":"%s","name":"node-%s","description":"","createdAt":"2025-06-01T12:00:00Z",
+                     "updatedAt":"2025-06-01T12:00:00Z","lastSeenAt":"%s",
+                     "deviceProfileId":"0b0c6d4e-2e2f-4f0c-9a3b-3c1d9b0e7a11","deviceProfileName":"lpp"}"""
+                    .formatted(eui, eui, now));
+        }
+        return "{\"totalCount\":" + total + ",\"result\":" + result + "}";
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> out = new HashMap<>();
+        if (raw == null) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) out.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static void respond(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        ex.getResponseBody().write(bytes);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
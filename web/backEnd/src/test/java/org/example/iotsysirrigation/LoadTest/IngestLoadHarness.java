@@ -0,0 +1,411 @@
+package org.example.iotsysirrigation.LoadTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.example.iotsysirrigation.RestControllers.IngestController;
+import org.example.iotsysirrigation.Services.UplinkDocuments;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Not a unit test (surefire skips it): how many devices one backend sustains. {@code devices} virtual end-nodes
+ * ({@link VirtualEndNode}) each send an uplink every {@code intervalS}, evenly spread, into one ingestion path
+ * for {@code durationS}, while {@code readers} dashboard users poll /api/readings/* and /api/devices/* with
+ * {@code thinkMs} between requests. Needs a local mongod and the backend; ChirpStack is {@link ChirpstackStub},
+ * started here on {@code stubPort} (start the backend with CHIRPSTACK_API_BASE_URL=http://localhost:8090).
+ * <ul>
+ *   <li>{@code sink=mqtt}: publishes to the broker the backend subscribes to (INGEST_MQTT=true)</li>
+ *   <li>{@code sink=http}: posts to /api/ingest/chirpstack (INGEST_HTTP=true, {@code secret}=INGEST_HTTP_TOKEN)</li>
+ *   <li>{@code sink=mongo}: inserts the bridge's documents itself, one per uplink as mqtt_to_mongo.py does;
+ *       the backend only serves reads</li>
+ * </ul>
+ * Reports the achieved ingest rate (documents in Mongo), end-to-end lag (scheduled send time until the
+ * document is visible, probed every {@code probeMs}; measured from the schedule so a sender that falls behind
+ * shows up as lag rather than hiding it) and latency percentiles per read endpoint. The devices are upserted
+ * into the devices collection of {@code org} first; {@code cleanup=true} deletes them and their readings
+ * afterwards.
+ * <pre>
+ * java -cp ... -Dsink=mqtt -Ddevices=5000 -DintervalS=60 -DdurationS=300 -Dreaders=50 \
+ *      -Duser=$APP_ADMIN_USERNAME -Dpassword=$APP_ADMIN_PASSWORD ...IngestLoadHarness \
+ *      mongodb://localhost:27017/iot tcp://localhost:1883
+ * </pre>
+ */
+public class IngestLoadHarness {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final long PROBE_POLL_MS = 10;
+    private static final long PROBE_GIVE_UP_MS = 60_000;
+    private static final String OWNER = "loadtest";
+
+    /** One ingestion path; completes with false when the uplink was refused (429, publish failure). */
+    interface Sink extends AutoCloseable {
+        CompletableFuture<Boolean> send(VirtualEndNode.Uplink uplink);
+
+        /** Narrowed from Exception so try-with-resources doesn't have to expect an InterruptedException. */
+        @Override
+        void close() throws IOException;
+    }
+
+    record ReadOp(String name, int weight, Function<Random, HttpRequest> request) {}
+
+    public static void main(String[] args) throws Exception {
+        String mongoUri = args.length > 0 ? args[0] : "mongodb://localhost:27017/iot";
+        String broker = args.length > 1 ? args[1] : "tcp://localhost:1883";
+        String sinkName = System.getProperty("sink", "mqtt");
+        String base = System.getProperty("base", "http://localhost:8081");
+        String token = System.getProperty("token", "");
+        String secret = System.getProperty("secret", "");
+        String collection = System.getProperty("collection", "sensors");
+        String org = System.getProperty("org", "loadtest-org");
+        int devices = Integer.getInteger("devices", 1000);
+        double intervalS = Double.parseDouble(System.getProperty("intervalS", "60"));
+        int durationS = Integer.getInteger("durationS", 120);
+        int readers = Integer.getInteger("readers", 20);
+        long thinkMs = Long.getLong("thinkMs", 2000);
+        int concurrency = Integer.getInteger("concurrency", 256);
+        long probeMs = Long.getLong("probeMs", 100);
+        int stubPort = Integer.getInteger("stubPort", 8090);
+        long stubDelayMs = Long.getLong("stubDelayMs", 20);
+        boolean cleanup = Boolean.getBoolean("cleanup");
+
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        if (token.isBlank() && System.getProperty("user") != null) {
+            token = login(http, base, System.getProperty("user"), System.getProperty("password", ""));
+        }
+
+        try (MongoClient mongo = MongoClients.create(mongoUri);
+             ChirpstackStub stub = stubPort >= 0 ? ChirpstackStub.start(stubPort, stubDelayMs) : null) {
+            String db = Optional.ofNullable(new ConnectionString(mongoUri).getDatabase()).orElse("iot");
+            MongoCollection<Document> readings = mongo.getDatabase(db).getCollection(collection);
+            MongoCollection<Document> deviceColl = mongo.getDatabase(db).getCollection("devices");
+
+            List<VirtualEndNode> nodes = new ArrayList<>(devices);
+            for (int i = 0; i < devices; i++) nodes.add(new VirtualEndNode(i, 1));
+            seed(deviceColl, nodes, org);
+
+            double rate = devices / intervalS;
+            System.out.printf("sink %s, %,d devices every %.0f s = %,.1f uplinks/s for %d s; %d readers every %d ms; stub %s%n",
+                    sinkName, devices, intervalS, rate, durationS, readers, thinkMs, stub == null ? "off" : stub.baseUrl());
+
+            LatencyRecorder ack = new LatencyRecorder();
+            LatencyRecorder lag = new LatencyRecorder();
+            LatencyRecorder late = new LatencyRecorder();
+            LongAdder accepted = new LongAdder(), refused = new LongAdder(), lost = new LongAdder();
+            Map<String, LatencyRecorder> readLatency = new ConcurrentHashMap<>();
+            Map<String, LongAdder> readErrors = new ConcurrentHashMap<>();
+            AtomicBoolean running = new AtomicBoolean(true);
+
+            List<ReadOp> ops = readOps(base, token, org, devices);
+            ExecutorService virtual = Executors.newVirtualThreadPerTaskExecutor();
+            for (int r = 0; r < readers; r++) {
+                int seed = r;
+                virtual.submit(() -> read(http, ops, new Random(seed), thinkMs, running, readLatency, readErrors));
+            }
+
+            Instant wallStart = Instant.now();
+            Date since = Date.from(wallStart.minusSeconds(5));
+            long total = (long) (rate * durationS);
+            long periodNanos = (long) (intervalS * 1e9 / devices);
+            Semaphore inflight = new Semaphore(concurrency);
+            long t0 = System.nanoTime();
+            long lastProbe = t0 - probeMs * 1_000_000;
+            try (Sink sink = sink(sinkName, broker, base, secret, http, readings, concurrency)) {
+                for (long j = 0; j < total; j++) {
+                    long due = t0 + j * periodNanos;
+                    for (long wait; (wait = due - System.nanoTime()) > 0; ) LockSupport.parkNanos(wait);
+                    inflight.acquire();
+                    late.record(Math.max(0, System.nanoTime() - due));
+                    VirtualEndNode.Uplink uplink = nodes.get((int) (j % devices)).next(wallStart.plusNanos(due - t0));
+                    boolean probe = due - lastProbe >= probeMs * 1_000_000;
+                    if (probe) lastProbe = due;
+                    long sent = System.nanoTime();
+                    sink.send(uplink).whenComplete((ok, e) -> {
+                        inflight.release();
+                        ack.record(System.nanoTime() - sent);
+                        if (e != null || !ok) {
+                            refused.increment();
+                            return;
+                        }
+                        accepted.increment();
+                        if (probe) virtual.submit(() -> probe(readings, uplink, due, lag, lost));
+                    });
+                }
+                inflight.acquire(concurrency);
+            }
+            double sendS = (System.nanoTime() - t0) / 1e9;
+
+            Document mine = new Document("application_id", VirtualEndNode.APPLICATION_ID)
+                    .append("timestamp", new Document("$gte", since));
+            long storedAtEnd = readings.countDocuments(mine);
+            long stored = storedAtEnd, drainStart = System.nanoTime(), lastGrowth = drainStart;
+            while (stored < accepted.sum() && System.nanoTime() - lastGrowth < 30_000_000_000L) {
+                Thread.sleep(1_000);
+                long now = readings.countDocuments(mine);
+                if (now > stored) lastGrowth = System.nanoTime();
+                stored = now;
+            }
+            double drainS = (lastGrowth - drainStart) / 1e9;
+            running.set(false);
+            virtual.shutdown();
+            virtual.awaitTermination(PROBE_GIVE_UP_MS + 10_000, TimeUnit.MILLISECONDS);
+
+            System.out.printf("sent      %,d in %.1f s (%,.1f/s)  accepted %,d  refused %,d%n",
+                    total, sendS, total / sendS, accepted.sum(), refused.sum());
+            System.out.printf("stored    %,d of %,d; %,.1f uplinks/s while sending, %.1f s to drain after%n",
+                    stored, accepted.sum(), storedAtEnd / sendS, drainS);
+            System.out.printf("%-34s %9s %9s %9s %9s %9s%n", "(ms)", "n", "p50", "p95", "p99", "max");
+            System.out.printf("%-34s %s%n", "sender behind schedule", late.summary());
+            System.out.printf("%-34s %s%n", "ack (" + sinkName + ")", ack.summary());
+            System.out.printf("%-34s %s  lost %,d%n", "end-to-end lag", lag.summary(), lost.sum());
+            for (ReadOp op : ops) {
+                LatencyRecorder l = readLatency.get(op.name());
+                if (l == null) continue;
+                System.out.printf("%-34s %s  errors %,d%n", op.name(), l.summary(),
+                        readErrors.getOrDefault(op.name(), new LongAdder()).sum());
+            }
+            if (stub != null) System.out.println("chirpstack stub " + stub.stats());
+            if (!token.isBlank()) {
+                HttpRequest stats = HttpRequest.newBuilder(URI.create(base + "/api/admin/ingest"))
+                        .header("Authorization", "Bearer " + token).timeout(TIMEOUT).GET().build();
+                HttpResponse<String> resp = http.send(stats, HttpResponse.BodyHandlers.ofString());
+                if (resp.statusCode() == 200) System.out.println("ingest " + resp.body());
+            }
+
+            if (cleanup) {
+                long r = readings.deleteMany(new Document("application_id", VirtualEndNode.APPLICATION_ID)).getDeletedCount();
+                long d = deviceColl.deleteMany(new Document("userId", OWNER)).getDeletedCount();
+                System.out.printf("cleanup   %,d readings, %,d devices%n", r, d);
+            }
+        }
+    }
+
+    /** Registers the simulated devices the way the app stores them, so device and organization reads find them. */
+    private static void seed(MongoCollection<Document> devices, List<VirtualEndNode> nodes, String org) {
+        Date now = new Date();
+        List<UpdateOneModel<Document>> writes = new ArrayList<>();
+        for (VirtualEndNode n : nodes) {
+            writes.add(new UpdateOneModel<>(Filters.eq("devEui", n.devEui()), Updates.combine(
+                    Updates.setOnInsert("name", "node-" + n.devEui()),
+                    Updates.setOnInsert("description", "load test"),
+                    Updates.setOnInsert("organizationId", org),
+                    Updates.setOnInsert("userId", OWNER),
+                    Updates.setOnInsert("createdAt", now),
+                    Updates.setOnInsert("updatedAt", now)), new UpdateOptions().upsert(true)));
+            if (writes.size() == 1000) {
+                devices.bulkWrite(writes);
+                writes.clear();
+            }
+        }
+        if (!writes.isEmpty()) devices.bulkWrite(writes);
+    }
+
+    private static Sink sink(String name, String broker, String base, String secret, HttpClient http,
+                             MongoCollection<Document> readings, int concurrency) throws MqttException {
+        switch (name) {
+            case "mqtt" -> {
+                MqttAsyncClient client = new MqttAsyncClient(broker, "loadtest-" + UUID.randomUUID(), new MemoryPersistence());
+                MqttConnectOptions options = new MqttConnectOptions();
+                options.setMaxInflight(concurrency);
+                client.connect(options).waitForCompletion();
+                return new Sink() {
+                    @Override
+                    public CompletableFuture<Boolean> send(VirtualEndNode.Uplink u) {
+                        CompletableFuture<Boolean> done = new CompletableFuture<>();
+                        String topic = "application/" + VirtualEndNode.APPLICATION_ID + "/device/" + u.devEui() + "/event/up";
+                        try {
+                            client.publish(topic, u.json(), 1, false, null, new IMqttActionListener() {
+                                @Override
+                                public void onSuccess(IMqttToken token) {
+                                    done.complete(true);
+                                }
+
+                                @Override
+                                public void onFailure(IMqttToken token, Throwable e) {
+                                    done.complete(false);
+                                }
+                            });
+                        } catch (MqttException e) {
+                            done.complete(false);
+                        }
+                        return done;
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            client.disconnect().waitForCompletion();
+                            client.close();
+                        } catch (MqttException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                };
+            }
+            case "http" -> {
+                URI target = URI.create(base + "/api/ingest/chirpstack?event=up");
+                return new Sink() {
+                    @Override
+                    public CompletableFuture<Boolean> send(VirtualEndNode.Uplink u) {
+                        HttpRequest req = HttpRequest.newBuilder(target)
+                                .header("Content-Type", "application/json")
+                                .header(IngestController.TOKEN_HEADER, secret)
+                                .timeout(TIMEOUT)
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(u.json())).build();
+                        return http.sendAsync(req, HttpResponse.BodyHandlers.discarding()).thenApply(r -> r.statusCode() == 202);
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+            case "mongo" -> {
+                // platform threads: the sync driver blocks inside synchronized code, which would pin virtual ones
+                ExecutorService writers = Executors.newFixedThreadPool(Math.min(concurrency, 64));
+                return new Sink() {
+                    @Override
+                    public CompletableFuture<Boolean> send(VirtualEndNode.Uplink u) {
+                        return CompletableFuture.supplyAsync(() -> {
+                            try {
+                                readings.insertOne(UplinkDocuments.fromChirpstack(u.json(), Instant.now()));
+                                return true;
+                            } catch (Exception e) {
+                                return false;
+                            }
+                        }, writers);
+                    }
+
+                    @Override
+                    public void close() {
+                        writers.shutdown();
+                    }
+                };
+            }
+            default -> throw new IllegalArgumentException("sink must be mqtt, http or mongo: " + name);
+        }
+    }
+
+    /** Polls for one uplink's document until it shows up; the lag counts from when it was due to be sent. */
+    private static void probe(MongoCollection<Document> readings, VirtualEndNode.Uplink u, long due,
+                              LatencyRecorder lag, LongAdder lost) {
+        // dev_eui + timestamp is indexed in both storage modes; dedup_id then picks the one uplink
+        Document filter = new Document("dev_eui", u.devEui())
+                .append("timestamp", new Document("$gte", Date.from(u.time().minusSeconds(5))))
+                .append(UplinkDocuments.DEDUP_ID, u.deduplicationId());
+        long giveUp = System.nanoTime() + PROBE_GIVE_UP_MS * 1_000_000;
+        try {
+            while (System.nanoTime() < giveUp) {
+                if (readings.find(filter).projection(new Document("_id", 1)).first() != null) {
+                    lag.record(System.nanoTime() - due);
+                    return;
+                }
+                Thread.sleep(PROBE_POLL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // counted below
+        }
+        lost.increment();
+    }
+
+    /** What the dashboard polls, weighted roughly by how often its pages call each endpoint. */
+    private static List<ReadOp> readOps(String base, String token, String org, int devices) {
+        Function<String, HttpRequest.Builder> get = path -> HttpRequest.newBuilder(URI.create(base + path))
+                .header("Authorization", "Bearer " + token).timeout(TIMEOUT);
+        Function<Random, String> eui = rnd -> VirtualEndNode.devEui(rnd.nextInt(devices));
+        return List.of(
+                new ReadOp("GET  /readings/latest/{eui}", 30, rnd -> get.apply("/api/readings/latest/" + eui.apply(rnd) + "?limit=10").GET().build()),
+                new ReadOp("POST /readings/latest/batch (20)", 10, rnd -> {
+                    StringJoiner body = new StringJoiner("\",\"", "{\"devEuis\":[\"", "\"]}");
+                    for (int i = 0; i < 20; i++) body.add(eui.apply(rnd));
+                    return get.apply("/api/readings/latest/batch").header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build();
+                }),
+                new ReadOp("GET  /readings/latest/organization", 5, rnd -> get.apply("/api/readings/latest/organization/" + org).GET().build()),
+                new ReadOp("GET  /readings/range/{eui} 24h", 10, rnd -> {
+                    Instant to = Instant.now();
+                    return get.apply("/api/readings/range/" + eui.apply(rnd) + "?from=" + to.minus(Duration.ofDays(1)) + "&to=" + to).GET().build();
+                }),
+                new ReadOp("GET  /readings/series/{eui} 7d", 10, rnd -> {
+                    Instant to = Instant.now();
+                    return get.apply("/api/readings/series/" + eui.apply(rnd) + "?metric=temperatureSensor.2&from="
+                            + to.minus(Duration.ofDays(7)) + "&to=" + to).GET().build();
+                }),
+                new ReadOp("GET  /readings/last24h/{eui}", 5, rnd -> get.apply("/api/readings/last24h/" + eui.apply(rnd)).GET().build()),
+                new ReadOp("GET  /devices/organization/{org}", 10, rnd -> get.apply("/api/devices/organization/" + org).GET().build()),
+                new ReadOp("GET  /devices/eui/{eui}", 10, rnd -> get.apply("/api/devices/eui/" + eui.apply(rnd)).GET().build()),
+                new ReadOp("GET  /devices/all", 2, rnd -> get.apply("/api/devices/all").GET().build()));
+    }
+
+    private static void read(HttpClient http, List<ReadOp> ops, Random rnd, long thinkMs, AtomicBoolean running,
+                             Map<String, LatencyRecorder> latency, Map<String, LongAdder> errors) {
+        int totalWeight = ops.stream().mapToInt(ReadOp::weight).sum();
+        try {
+            // stagger the start so the readers don't poll in lockstep
+            Thread.sleep(rnd.nextLong(thinkMs + 1));
+            while (running.get()) {
+                int pick = rnd.nextInt(totalWeight);
+                ReadOp op = ops.get(0);
+                for (ReadOp o : ops) {
+                    if ((pick -= o.weight()) < 0) {
+                        op = o;
+                        break;
+                    }
+                }
+                long t0 = System.nanoTime();
+                try {
+                    int status = http.send(op.request().apply(rnd), HttpResponse.BodyHandlers.discarding()).statusCode();
+                    if (status >= 400) errors.computeIfAbsent(op.name(), k -> new LongAdder()).increment();
+                } catch (Exception e) {
+                    errors.computeIfAbsent(op.name(), k -> new LongAdder()).increment();
+                }
+                latency.computeIfAbsent(op.name(), k -> new LatencyRecorder()).record(System.nanoTime() - t0);
+                Thread.sleep(thinkMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String login(HttpClient http, String base, String user, String password) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String body = mapper.writeValueAsString(Map.of("username", user, "password", password));
+        HttpRequest req = HttpRequest.newBuilder(URI.create(base + "/api/auth/login"))
+                .header("Content-Type", "application/json").timeout(TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)).build();
+        HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+        if (resp.statusCode() != 200) throw new IllegalStateException("login failed: " + resp.statusCode() + " " + resp.body());
+        return mapper.readTree(resp.body()).path("token").asText();
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.iotsysirrigation.LoadTest;
+
+import java.util.Arrays;
+
+/** Every sample of one measurement (nanoseconds), for exact percentiles at the end of a run. Thread-safe. */
+final class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int size;
+
+    synchronized void record(long nanos) {
+        if (size == samples.length) samples = Arrays.copyOf(samples, size * 2);
+        samples[size++] = nanos;
+    }
+
+    synchronized int count() {
+        return size;
+    }
+
+    /** "n, p50, p95, p99, max" in milliseconds. */
+    synchronized String summary() {
+        if (size == 0) return String.format("%,9d %9s %9s %9s %9s", 0, "-", "-", "-", "-");
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return String.format("%,9d %9.1f %9.1f %9.1f %9.1f", size,
+                pct(sorted, 50), pct(sorted, 95), pct(sorted, 99), sorted[size - 1] / 1e6);
+    }
+
+    private static double pct(long[] sorted, int p) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * p / 100)] / 1e6;
+    }
+}
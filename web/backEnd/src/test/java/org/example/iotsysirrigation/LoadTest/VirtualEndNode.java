@@ -0,0 +1,184 @@
+package org.example.iotsysirrigation.LoadTest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * One simulated irrigation node, as the README describes them: a Cayenne LPP frame with GPS on channel 0,
+ * barometer 1, temperature 2, humidity 3, illuminance 4, soil moisture (analog input) 5 and the valve
+ * (digital input) 6, sent as the ChirpStack v4 up event the MQTT and HTTP integrations deliver.
+ * <p>
+ * Values move the way a field does: temperature and light follow the time of day, humidity runs against
+ * temperature, pressure drifts, the soil dries until the valve opens and wets until it closes again. The
+ * frame in "data" and the decoded "object" carry the same values (rounded to LPP precision), each uplink is
+ * heard by one to three gateways of the farm (rxInfo with rssi/snr by distance), and fCnt counts up, so the
+ * ingest path stores exactly the documents the bridge would. Not thread-safe; one instance per device.
+ */
+public final class VirtualEndNode {
+
+    /** applicationId of every simulated device, so load-test readings are easy to find and delete. */
+    public static final String APPLICATION_ID = UUID.nameUUIDFromBytes("loadtest".getBytes(StandardCharsets.UTF_8)).toString();
+
+    private static final long EUI_BASE = 0x70b3d57ed0000000L;
+    private static final double FARM_LAT = 35.8245, FARM_LNG = 10.6345;
+    private static final String[] GATEWAYS = {"a840411d1fdc4150", "a840411d1fdc4151", "a840411d1fdc4152"};
+    private static final double[][] GATEWAY_POS = {{35.8245, 10.6345}, {35.8400, 10.6100}, {35.8050, 10.6600}};
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public record Uplink(String devEui, long fCnt, String deduplicationId, Instant time, byte[] json) {}
+
+    private final String devEui;
+    private final Random rnd;
+    private final int lat, lng, alt;      // LPP units: 1e-4 degree, 1e-2 m
+    private final int nearest;
+    private long fCnt;
+    private double pressure = 1013.0;
+    private double soil;                  // volts on the analog input, 0..3.3
+    private boolean valve;
+
+    public VirtualEndNode(int index, long seed) {
+        this.devEui = devEui(index);
+        this.rnd = new Random(seed ^ index * 0x9e3779b97f4a7c15L);
+        this.lat = (int) Math.round((FARM_LAT + (rnd.nextDouble() - 0.5) * 0.04) * 10_000);
+        this.lng = (int) Math.round((FARM_LNG + (rnd.nextDouble() - 0.5) * 0.04) * 10_000);
+        this.alt = rnd.nextInt(5_000);
+        this.soil = 1.2 + rnd.nextDouble() * 1.4;
+        int best = 0;
+        for (int g = 1; g < GATEWAYS.length; g++) {
+            if (distanceKm(g) < distanceKm(best)) best = g;
+        }
+        this.nearest = best;
+    }
+
+    public static String devEui(int index) {
+        return String.format("%016x", EUI_BASE + index);
+    }
+
+    public String devEui() {
+        return devEui;
+    }
+
+    public Uplink next(Instant now) {
+        double day = (now.getEpochSecond() % 86_400) / 86_400.0;
+        double temperature = 22 + 8 * Math.sin(2 * Math.PI * (day - 0.375)) + rnd.nextGaussian() * 0.3;
+        double humidity = Math.max(10, Math.min(100, 70 - 1.5 * (temperature - 22) + rnd.nextGaussian() * 2));
+        pressure = Math.max(990, Math.min(1035, pressure + rnd.nextGaussian() * 0.2));
+        double light = day > 0.25 && day < 0.75 ? 1200 * Math.sin(Math.PI * (day - 0.25) / 0.5) : 0;
+        if (valve) soil += 0.05;
+        else soil -= 0.002 + rnd.nextDouble() * 0.002;
+        if (soil < 1.2) valve = true;
+        else if (soil > 2.6) valve = false;
+        soil = Math.max(0, Math.min(3.3, soil));
+
+        // raw LPP values first, so "data" and "object" agree to the last digit
+        int tempRaw = (int) Math.round(temperature * 10);
+        int humRaw = (int) Math.round(humidity * 2);
+        int pressRaw = (int) Math.round(pressure * 10);
+        int lux = (int) Math.max(0, Math.min(65_535, Math.round(light + rnd.nextGaussian() * 20)));
+        int soilRaw = (int) Math.round(soil * 100);
+        int valveRaw = valve ? 1 : 0;
+
+        ByteArrayOutputStream lpp = new ByteArrayOutputStream(44);
+        entry(lpp, 0, 0x88, lat, 3);
+        put(lpp, lng, 3);
+        put(lpp, alt, 3);
+        entry(lpp, 1, 0x73, pressRaw, 2);
+        entry(lpp, 2, 0x67, tempRaw, 2);
+        entry(lpp, 3, 0x68, humRaw, 1);
+        entry(lpp, 4, 0x65, lux, 2);
+        entry(lpp, 5, 0x02, soilRaw, 2);
+        entry(lpp, 6, 0x00, valveRaw, 1);
+
+        long count = fCnt++;
+        String dedupId = new UUID(rnd.nextLong(), rnd.nextLong()).toString();
+        String time = now.truncatedTo(ChronoUnit.MICROS).toString();
+
+        ObjectNode event = MAPPER.createObjectNode();
+        event.put("deduplicationId", dedupId);
+        event.put("time", time);
+        ObjectNode info = event.putObject("deviceInfo");
+        info.put("tenantId", "52f14cd4-c6f1-4fbd-8f87-4025e1d49242");
+        info.put("tenantName", "ChirpStack");
+        info.put("applicationId", APPLICATION_ID);
+        info.put("applicationName", "loadtest");
+        info.put("deviceProfileId", "0b0c6d4e-2e2f-4f0c-9a3b-3c1d9b0e7a11");
+        info.put("deviceProfileName", "Cayenne LPP");
+        info.put("deviceName", "node-" + devEui);
+        info.put("devEui", devEui);
+        event.put("devAddr", String.format("%08x", devEui.hashCode()));
+        event.put("adr", true);
+        event.put("dr", 5);
+        event.put("fCnt", count);
+        event.put("fPort", 2);
+        event.put("confirmed", false);
+        event.put("data", Base64.getEncoder().encodeToString(lpp.toByteArray()));
+
+        ObjectNode object = event.putObject("object");
+        object.putObject("gpsLocation").putObject("0")
+                .put("latitude", lat / 10_000.0).put("longitude", lng / 10_000.0).put("altitude", alt / 100.0);
+        object.putObject("barometer").put("1", pressRaw / 10.0);
+        object.putObject("temperatureSensor").put("2", tempRaw / 10.0);
+        object.putObject("humiditySensor").put("3", humRaw / 2.0);
+        object.putObject("illuminanceSensor").put("4", lux);
+        object.putObject("analogInput").put("5", soilRaw / 100.0);
+        object.putObject("digitalInput").put("6", valveRaw);
+
+        int channel = rnd.nextInt(8);
+        ArrayNode rx = event.putArray("rxInfo");
+        for (int g = 0; g < GATEWAYS.length; g++) {
+            // the nearest gateway always hears it, the others two times in five
+            if (g != nearest && rnd.nextInt(5) >= 2) continue;
+            double km = distanceKm(g);
+            ObjectNode r = rx.addObject();
+            r.put("gatewayId", GATEWAYS[g]);
+            r.put("uplinkId", rnd.nextInt(65_536));
+            r.put("gwTime", time);
+            r.put("nsTime", now.plusMillis(40 + rnd.nextInt(40)).toString());
+            r.put("rssi", (int) Math.max(-120, Math.round(-55 - 18 * km + rnd.nextGaussian() * 3)));
+            r.put("snr", Math.round((11 - 4 * km + rnd.nextGaussian()) * 10) / 10.0);
+            r.put("channel", channel);
+            r.putObject("location").put("latitude", GATEWAY_POS[g][0]).put("longitude", GATEWAY_POS[g][1]);
+            byte[] context = new byte[4];
+            rnd.nextBytes(context);
+            r.put("context", Base64.getEncoder().encodeToString(context));
+            r.put("crcStatus", "CRC_OK");
+        }
+        ObjectNode tx = event.putObject("txInfo");
+        tx.put("frequency", 868_100_000 + channel * 200_000);
+        tx.putObject("modulation").putObject("lora")
+                .put("bandwidth", 125_000).put("spreadingFactor", 7).put("codeRate", "CR_4_5");
+
+        try {
+            return new Uplink(devEui, count, dedupId, now, MAPPER.writeValueAsBytes(event));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** To a gateway; equirectangular, a few km around the farm is all it has to cover. */
+    private double distanceKm(int gateway) {
+        double lat1 = lat / 10_000.0, lng1 = lng / 10_000.0, lat2 = GATEWAY_POS[gateway][0], lng2 = GATEWAY_POS[gateway][1];
+        double x = Math.toRadians(lng2 - lng1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * 6371;
+    }
+
+    private static void entry(ByteArrayOutputStream out, int channel, int type, int value, int bytes) {
+        out.write(channel);
+        out.write(type);
+        put(out, value, bytes);
+    }
+
+    private static void put(ByteArrayOutputStream out, int value, int bytes) {
+        for (int i = bytes - 1; i >= 0; i--) out.write(value >> (8 * i));
+    }
+}
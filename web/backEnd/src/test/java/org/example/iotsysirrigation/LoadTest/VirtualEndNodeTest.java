@@ -0,0 +1,53 @@
+package org.example.iotsysirrigation.LoadTest;
+
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
+import org.example.iotsysirrigation.Repositories.DecodedMetricsReadConverter;
+import org.example.iotsysirrigation.Services.CayenneLppDecoder;
+import org.example.iotsysirrigation.Services.UplinkDocuments;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualEndNodeTest {
+
+    /** A day of uplinks from a few nodes lands as the bridge's documents, with frame and object in agreement. */
+    @Test
+    void uplinksBecomeBridgeShapedReadingsWhoseFrameMatchesTheObject() throws IOException {
+        CayenneLppDecoder decoder = new CayenneLppDecoder();
+        Set<String> dedupIds = new HashSet<>();
+        Instant start = Instant.parse("2025-06-01T00:00:00Z");
+        boolean valveOpened = false;
+        for (int n = 0; n < 5; n++) {
+            VirtualEndNode node = new VirtualEndNode(n, 42);
+            for (int i = 0; i < 24 * 60; i++) {
+                Instant t = start.plus(Duration.ofMinutes(i));
+                VirtualEndNode.Uplink u = node.next(t);
+                assertEquals(i, u.fCnt());
+                assertTrue(dedupIds.add(u.deduplicationId()));
+
+                Document doc = UplinkDocuments.fromChirpstack(u.json(), t);
+                assertEquals(node.devEui(), doc.getString("dev_eui"));
+                assertEquals(VirtualEndNode.APPLICATION_ID, doc.getString("application_id"));
+                assertEquals(2, doc.getInteger("f_port"));
+                List<?> rx = doc.getList("rx_info", Object.class);
+                assertTrue(rx.size() >= 1 && rx.size() <= 3, "gateways: " + rx.size());
+                assertEquals("CRC_OK", ((Document) rx.get(0)).getString("crcStatus"));
+
+                assertTrue(decoder.decodeBase64(doc.getString("data")));
+                DecodedMetrics fromObject = DecodedMetricsReadConverter.decode(doc.get("object_json"));
+                assertEquals(fromObject, decoder.toMetrics());
+                assertFalse(Double.isNaN(fromObject.temperature()) || Double.isNaN(fromObject.latitude()));
+                valveOpened |= fromObject.digitalInput() == 1;
+            }
+        }
+        assertTrue(valveOpened, "a day of drying soil should open some valve");
+    }
+}
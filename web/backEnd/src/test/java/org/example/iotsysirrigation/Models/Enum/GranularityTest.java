@@ -0,0 +1,46 @@
+package org.example.iotsysirrigation.Models.Enum;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GranularityTest {
+
+    @Test
+    void fitPicksTheFinestGranularityWithinTheCap() {
+        assertEquals(Granularity.MINUTE, Granularity.fit(Duration.ofHours(16), Granularity.MINUTE, 1000));
+        // 17 h is 1020 minutes
+        assertEquals(Granularity.FIVE_MINUTES, Granularity.fit(Duration.ofHours(17), Granularity.MINUTE, 1000));
+        assertEquals(Granularity.HOUR, Granularity.fit(Duration.ofDays(30), Granularity.MINUTE, 1000));
+        // a requested granularity is a floor, never made finer
+        assertEquals(Granularity.DAY, Granularity.fit(Duration.ofHours(1), Granularity.DAY, 1000));
+    }
+
+    @Test
+    void fitRejectsRangesTooLongEvenForMonths() {
+        assertEquals(Granularity.MONTH, Granularity.fit(Duration.ofDays(30L * 1000), Granularity.MINUTE, 1000));
+        assertThrows(IllegalArgumentException.class,
+                () -> Granularity.fit(Duration.ofDays(30L * 1000 + 1), Granularity.MINUTE, 1000));
+    }
+
+    @Test
+    void bucketsForRoundsUp() {
+        assertEquals(1, Granularity.HOUR.bucketsFor(Duration.ofMinutes(1)));
+        assertEquals(2, Granularity.HOUR.bucketsFor(Duration.ofMinutes(61)));
+        assertEquals(0, Granularity.HOUR.bucketsFor(Duration.ZERO));
+    }
+
+    @Test
+    void parseAcceptsCodesNamesAndAuto() {
+        assertEquals(Granularity.FIFTEEN_MINUTES, Granularity.parse("15m"));
+        assertEquals(Granularity.MONTH, Granularity.parse("1M"));
+        assertEquals(Granularity.MINUTE, Granularity.parse("1m"));
+        assertEquals(Granularity.SIX_HOURS, Granularity.parse(" six_hours "));
+        assertNull(Granularity.parse("auto"));
+        assertNull(Granularity.parse(""));
+        assertNull(Granularity.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> Granularity.parse("2h"));
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.iotsysirrigation.Repositories;
+
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
+import org.example.iotsysirrigation.Models.DecodedReading;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Not a unit test (surefire skips it): compares reading metrics through the map-walking path
+ * (SensorReading + per-metric alias lookups, as export and extractGps did) with DecodedReading.
+ * Run its main() from the IDE, or with java -cp on target/classes, target/test-classes and the test classpath.
+ */
+public class DecodedMetricsBenchmark {
+
+    private static final int RUNS = 5;
+    private static volatile double sink;
+
+    public static void main(String[] args) {
+        MongoMappingContext ctx = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, ctx);
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of(new DecodedMetricsReadConverter()));
+        converter.setCustomConversions(conversions);
+        ctx.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        converter.afterPropertiesSet();
+
+        Document raw = new Document("dev_eui", "a1").append("f_port", 2).append("timestamp", new Date())
+                .append("data", "AWcBEQJoTwNzJ+4EZQEK").append("rx_info", List.of(new Document("rssi", -57).append("snr", 9.5)))
+                .append("object_json", DecodedMetricsReadConverterTest.sampleObjectJson());
+        Document objectJson = raw.get("object_json", Document.class);
+
+        bench("decode only: map walking      ", 1_000_000, () -> sink += mapWalk(objectJson));
+        bench("decode only: precomputed      ", 1_000_000, () -> sink += sum(DecodedMetricsReadConverter.decode(objectJson)));
+        bench("document -> SensorReading+walk", 100_000, () -> sink += mapWalk(converter.read(SensorReading.class, raw).getSensorsReading()));
+        bench("document -> DecodedReading    ", 100_000, () -> sink += sum(converter.read(DecodedReading.class, raw).getMetrics()));
+    }
+
+    private static void bench(String name, int n, Runnable op) {
+        for (int i = 0; i < n; i++) op.run();
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < RUNS; r++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) op.run();
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        System.out.printf("%s %8.1f ns/op%n", name, (double) best / n);
+    }
+
+    /** The previous approach: a map lookup (plus alias probing) per metric. */
+    private static double mapWalk(Object obj) {
+        if (!(obj instanceof Map<?, ?> m)) return 0;
+        double s = first(m, "temperatureSensor") + first(m, "humiditySensor") + first(m, "barometer")
+                + first(m, "illuminanceSensor") + first(m, "analogInput") + first(m, "digitalInput");
+        Double lat = find(m, "lat", "latitude", "gps_lat", "gpsLatitude");
+        Double lng = find(m, "lng", "lon", "longitude", "gps_lon", "gpsLongitude");
+        if ((lat == null || lng == null) && m.get("gpsLocation") instanceof Map<?, ?> gps) {
+            for (Object ch : gps.values()) {
+                if (ch instanceof Map<?, ?> c) {
+                    lat = find(c, "lat", "latitude");
+                    lng = find(c, "lng", "lon", "longitude");
+                    Double alt = find(c, "alt", "altitude");
+                    s += alt != null ? alt : 0;
+                    break;
+                }
+            }
+        }
+        return s + (lat != null ? lat : 0) + (lng != null ? lng : 0);
+    }
+
+    private static double first(Map<?, ?> m, String sensor) {
+        if (m.get(sensor) instanceof Map<?, ?> ch) {
+            for (Object v : ch.values()) if (v instanceof Number n) return n.doubleValue();
+        }
+        return 0;
+    }
+
+    private static Double find(Map<?, ?> m, String... keys) {
+        for (String k : keys) if (m.get(k) instanceof Number n) return n.doubleValue();
+        return null;
+    }
+
+    private static double sum(DecodedMetrics d) {
+        return d.temperature() + d.humidity() + d.pressure() + d.illuminance() + d.analogInput()
+                + d.digitalInput() + d.latitude() + d.longitude() + d.altitude();
+    }
+}
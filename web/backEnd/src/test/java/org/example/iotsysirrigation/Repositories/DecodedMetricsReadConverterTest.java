@@ -0,0 +1,64 @@
+package org.example.iotsysirrigation.Repositories;
+
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
+import org.example.iotsysirrigation.Models.DecodedReading;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecodedMetricsReadConverterTest {
+
+    /** object_json as the bridge stores it. */
+    static Document sampleObjectJson() {
+        return new Document("humiditySensor", new Document("3", 78))
+                .append("barometer", new Document("1", 1013.2))
+                .append("temperatureSensor", new Document("2", 29.5))
+                .append("illuminanceSensor", new Document("4", 266))
+                .append("analogInput", new Document("5", 12.4))
+                .append("digitalInput", new Document("6", 1))
+                .append("gpsLocation", new Document("0", new Document("latitude", 36.8)
+                        .append("longitude", 10.18).append("altitude", 12)));
+    }
+
+    @Test
+    void decodesCayennePayload() {
+        DecodedMetrics m = DecodedMetricsReadConverter.decode(sampleObjectJson());
+        assertEquals(new DecodedMetrics(29.5, 78, 1013.2, 266, 12.4, 1, 36.8, 10.18, 12), m);
+        assertArrayEquals(new double[]{36.8, 10.18, 12}, m.gps());
+    }
+
+    @Test
+    void acceptsLegacyGpsAliasesAndMissingValues() {
+        DecodedMetrics m = DecodedMetricsReadConverter.decode(Map.of("gps", Map.of("lat", "36.8", "lon", 10.18)));
+        assertTrue(m.hasGps());
+        assertArrayEquals(new double[]{36.8, 10.18}, m.gps());
+        assertTrue(Double.isNaN(m.temperature()));
+        assertSame(DecodedMetrics.EMPTY, DecodedMetricsReadConverter.decode(null));
+    }
+
+    @Test
+    void mappingConverterUsesItForDecodedReading() {
+        MongoMappingContext ctx = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, ctx);
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of(new DecodedMetricsReadConverter()));
+        converter.setCustomConversions(conversions);
+        ctx.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        converter.afterPropertiesSet();
+
+        Document raw = new Document("dev_eui", "a1").append("f_port", 2)
+                .append("timestamp", new Date(0)).append("object_json", sampleObjectJson());
+        DecodedReading r = converter.read(DecodedReading.class, raw);
+        assertEquals("a1", r.getDevEui());
+        assertEquals(2, r.getFPort());
+        assertEquals(78, r.getMetrics().humidity());
+    }
+}
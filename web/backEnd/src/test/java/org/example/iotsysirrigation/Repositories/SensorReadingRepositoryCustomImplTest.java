@@ -0,0 +1,39 @@
+package org.example.iotsysirrigation.Repositories;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorReadingRepositoryCustomImplTest {
+
+    @Test
+    void requireMetricAcceptsDottedObjectJsonPaths() {
+        assertEquals("humiditySensor", SensorReadingRepositoryCustomImpl.requireMetric("humiditySensor"));
+        assertEquals("humiditySensor.3", SensorReadingRepositoryCustomImpl.requireMetric("humiditySensor.3"));
+        assertEquals("gpsLocation.0.latitude", SensorReadingRepositoryCustomImpl.requireMetric("gpsLocation.0.latitude"));
+    }
+
+    @Test
+    void requireMetricRejectsOperatorsAndOddPaths() {
+        for (String bad : new String[]{null, "", "$where", "a.$gt", "a..b", ".a", "a.", "a b", "a.b.c.d.e.f"}) {
+            assertThrows(IllegalArgumentException.class, () -> SensorReadingRepositoryCustomImpl.requireMetric(bad), bad);
+        }
+    }
+
+    @Test
+    void pointsQueryProjectsOnlyTheRequestedMetrics() {
+        Instant from = Instant.parse("2025-06-01T00:00:00Z"), to = Instant.parse("2025-06-02T00:00:00Z");
+        Document fields = SensorReadingRepositoryCustomImpl
+                .pointsQuery("a1", from, to, List.of("humiditySensor.3", "temperatureSensor.2"))
+                .getFieldsObject();
+        assertEquals(new Document("timestamp", 1).append("_id", 0)
+                .append("object_json.humiditySensor.3", 1)
+                .append("object_json.temperatureSensor.2", 1), fields);
+        assertThrows(IllegalArgumentException.class,
+                () -> SensorReadingRepositoryCustomImpl.pointsQuery("a1", from, to, List.of("ok", "$bad")));
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionalGetTest {
+
+    private static final Instant NEWEST = Instant.parse("2025-06-01T12:00:00Z");
+
+    @Test
+    void firstPollGetsValidatorsAndRevalidatingCacheControl() {
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        String etag = ConditionalGet.etag("latest", "a1", 10, NEWEST, "id1", null);
+
+        assertFalse(ConditionalGet.notModified(request("GET", res), etag, NEWEST));
+        assertEquals(etag, res.getHeader(HttpHeaders.ETAG));
+        assertEquals(NEWEST.toEpochMilli(), res.getDateHeader(HttpHeaders.LAST_MODIFIED));
+        assertEquals("no-cache, private", res.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void unchangedPollIs304AndNewReadingIsNot() {
+        String etag = ConditionalGet.etag("latest", "a1", 10, NEWEST, "id1", null);
+
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        ServletWebRequest req = request("GET", res);
+        ((MockHttpServletRequest) req.getRequest()).addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        assertTrue(ConditionalGet.notModified(req, etag, NEWEST));
+        assertEquals(304, res.getStatus());
+
+        String changed = ConditionalGet.etag("latest", "a1", 10, NEWEST.plusSeconds(60), "id2", null);
+        assertNotEquals(etag, changed);
+        MockHttpServletResponse res2 = new MockHttpServletResponse();
+        ServletWebRequest req2 = request("GET", res2);
+        ((MockHttpServletRequest) req2.getRequest()).addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        assertFalse(ConditionalGet.notModified(req2, changed, NEWEST.plusSeconds(60)));
+        assertEquals(200, res2.getStatus());
+    }
+
+    @Test
+    void ifModifiedSinceAloneIsHonoured() {
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        ServletWebRequest req = request("GET", res);
+        ((MockHttpServletRequest) req.getRequest()).addHeader(HttpHeaders.IF_MODIFIED_SINCE, NEWEST.toEpochMilli());
+        assertTrue(ConditionalGet.notModified(req, ConditionalGet.etag("x"), NEWEST));
+    }
+
+    private static ServletWebRequest request(String method, MockHttpServletResponse res) {
+        return new ServletWebRequest(new MockHttpServletRequest(method, "/api/readings/latest/a1"), res);
+    }
+}
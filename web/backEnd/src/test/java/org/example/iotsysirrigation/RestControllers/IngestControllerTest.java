@@ -0,0 +1,77 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import org.example.iotsysirrigation.Services.UplinkIngestService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IngestControllerTest {
+
+    private static final byte[] BODY = "{\"deviceInfo\":{\"devEui\":\"0011223344556677\"}}".getBytes();
+    private static final String JSON = "application/json";
+
+    private final UplinkIngestService ingest = mock(UplinkIngestService.class);
+    private final IngestController controller = new IngestController(ingest);
+
+    private IngestControllerTest() {
+        ReflectionTestUtils.setField(controller, "enabled", true);
+        ReflectionTestUtils.setField(controller, "token", "s3cret");
+        ReflectionTestUtils.setField(controller, "maxBodyBytes", 1024);
+    }
+
+    private static MockHttpServletRequest request(byte[] body) {
+        MockHttpServletRequest r = new MockHttpServletRequest("POST", "/api/ingest/chirpstack");
+        r.setContent(body);
+        return r;
+    }
+
+    @Test
+    void queuesUpEventsAndPushesBackWhenFull() throws Exception {
+        when(ingest.offer(any(), any(Instant.class))).thenReturn(true, false);
+
+        assertEquals(202, controller.chirpstack("up", "s3cret", JSON, request(BODY)).getStatusCode().value());
+        var full = controller.chirpstack("up", "s3cret", JSON, request(BODY));
+        assertEquals(429, full.getStatusCode().value());
+        assertEquals("1", full.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(ingest, times(2)).offer(eq(BODY), any(Instant.class));
+    }
+
+    @Test
+    void rejectsWithoutTheSharedSecretAndIgnoresOtherEvents() throws Exception {
+        assertEquals(401, controller.chirpstack("up", null, JSON, request(BODY)).getStatusCode().value());
+        assertEquals(401, controller.chirpstack("up", "s3cre", JSON, request(BODY)).getStatusCode().value());
+        assertEquals(204, controller.chirpstack("join", "s3cret", JSON, request(BODY)).getStatusCode().value());
+        assertEquals(415, controller.chirpstack("up", "s3cret", "application/octet-stream", request(BODY)).getStatusCode().value());
+
+        assertEquals(415, controller.chirpstack("up", "s3cret", "not a media type", request(BODY)).getStatusCode().value());
+
+        ReflectionTestUtils.setField(controller, "enabled", false);
+        assertEquals(404, controller.chirpstack("up", "s3cret", JSON, request(BODY)).getStatusCode().value());
+        verifyNoInteractions(ingest);
+    }
+
+    @Test
+    void readsTheBodyOnlyForAuthorizedCallersAndCapsIt() throws Exception {
+        MockHttpServletRequest unauthorized = spy(request(BODY));
+        assertEquals(401, controller.chirpstack("up", "wrong", JSON, unauthorized).getStatusCode().value());
+        verify(unauthorized, never()).getInputStream();
+
+        byte[] big = new byte[1025];
+        assertEquals(413, controller.chirpstack("up", "s3cret", JSON, request(big)).getStatusCode().value());
+        // no Content-Length (chunked): stops reading past the cap
+        MockHttpServletRequest chunked = new MockHttpServletRequest("POST", "/api/ingest/chirpstack") {
+            @Override
+            public long getContentLengthLong() { return -1; }
+        };
+        chunked.setContent(big);
+        assertEquals(413, controller.chirpstack("up", "s3cret", JSON, chunked).getStatusCode().value());
+        verifyNoInteractions(ingest);
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import org.example.iotsysirrigation.Services.ReactiveSensorReadingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.matchesRegex;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class ReactiveSensorReadingControllerTest {
+
+    private final ReactiveSensorReadingService service = mock(ReactiveSensorReadingService.class);
+    private final ReactiveSensorReadingController controller = new ReactiveSensorReadingController(service,
+            Jackson2ObjectMapperBuilder.json().build());
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+    private ReactiveSensorReadingControllerTest() {
+        // smaller than the range below, so the rows span a full chunk and a partial one
+        ReflectionTestUtils.setField(controller, "batchRows", 2);
+    }
+
+    @Test
+    void rangeIsStreamedAsNdjson() throws Exception {
+        doReturn(Flux.just(
+                new SensorReadingPoint(Instant.parse("2025-06-01T00:20:00Z"), Map.of("humiditySensor", Map.of("3", 79))),
+                new SensorReadingPoint(Instant.parse("2025-06-01T00:10:00Z"), Map.of("humiditySensor", Map.of("3", 78))),
+                new SensorReadingPoint(Instant.parse("2025-06-01T00:00:00Z"), Map.of("humiditySensor", Map.of("3", 77)))))
+                .when(service).fetch(eq("a1"), any(), any(), anyList());
+
+        MvcResult started = mvc.perform(get("/api/readings/stream/range/a1")
+                        .param("from", "2025-06-01T00:00:00Z").param("to", "2025-06-02T00:00:00Z")
+                        .param("fields", "humiditySensor")
+                        .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                // one JSON object per line, in the order the Flux emitted them, whatever the chunking (the builder's
+                // mapper keeps numeric timestamps)
+                .andExpect(content().string(matchesRegex("\\{\"timestamp\":[^\n]*\\{\"3\":79}}}\n"
+                        + "\\{\"timestamp\":[^\n]*\\{\"3\":78}}}\n\\{\"timestamp\":[^\n]*\\{\"3\":77}}}\n")));
+    }
+
+    @Test
+    void badRangesAndFieldsAre400WithTheReason() throws Exception {
+        mvc.perform(get("/api/readings/stream/range/a1")
+                        .param("from", "2025-06-02T00:00:00Z").param("to", "2025-06-01T00:00:00Z")
+                        .accept("application/x-ndjson"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("'from' must be before 'to'"));
+
+        when(service.fetch(eq("a1"), any(), any(), anyList())).thenThrow(new IllegalArgumentException("Invalid field: $bad"));
+        mvc.perform(get("/api/readings/stream/last24h/a1").param("fields", "$bad").accept("application/x-ndjson"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid field: $bad"));
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.ReactiveSensorReadingRepository;
+import org.example.iotsysirrigation.Repositories.SensorReadingRepository;
+import org.example.iotsysirrigation.Services.*;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Not a unit test (surefire skips it): {@link ReadingStreamLoadTest} against the real {@link SensorReadingController}
+ * and {@link ReactiveSensorReadingController} in an embedded Tomcat, with Mongo replaced by repositories that
+ * answer a range query after QUERY_MS with ROWS points (a month of 10-minute readings, two metrics). The
+ * blocking repository sleeps on the request thread like the sync driver waiting on a socket; the reactive one
+ * emits after a timer, like the reactive driver. So this measures how each stack holds threads while the
+ * database works, not Mongo itself. Three backends: Tomcat platform threads capped at THREADS, the same cap
+ * with virtual threads (off unless VIRTUAL_THREADS=true), and Tomcat's default platform pool of 200, which is
+ * what application.yml runs.
+ * Run its main() from the IDE, or with java -cp on target/classes, target/test-classes and the test classpath.
+ */
+public class ReadingStreamBenchmark {
+
+    private static final int QUERY_MS = 200;
+    private static final int ROWS = 30 * 24 * 6;
+    private static final int THREADS = 16;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("days", "30");
+        System.setProperty("clients", Integer.toString(Integer.getInteger("clients", 64)));
+        System.setProperty("requests", Integer.toString(Integer.getInteger("requests", 512)));
+        System.out.printf("query %d ms, %d rows per range, %d cores%n", QUERY_MS, ROWS, Runtime.getRuntime().availableProcessors());
+        run("platform threads, max " + THREADS, "--server.tomcat.threads.max=" + THREADS, "--spring.threads.virtual.enabled=false");
+        run("virtual threads", "--server.tomcat.threads.max=" + THREADS, "--spring.threads.virtual.enabled=true");
+        run("platform threads, max 200", "--spring.threads.virtual.enabled=false");
+    }
+
+    private static void run(String name, String... props) throws Exception {
+        List<String> args = new ArrayList<>(List.of(props));
+        args.add("--server.port=0");
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(Backend.class)
+                .web(WebApplicationType.SERVLET).bannerMode(Banner.Mode.OFF).logStartupInfo(false).run(args.toArray(String[]::new))) {
+            int port = ((WebServerApplicationContext) ctx).getWebServer().getPort();
+            System.setProperty("base", "http://127.0.0.1:" + port);
+            System.out.println("-- " + name);
+            ReadingStreamLoadTest.main(new String[0]);
+        }
+    }
+
+    private static List<SensorReadingPoint> points() {
+        List<SensorReadingPoint> out = new ArrayList<>(ROWS);
+        Instant t = Instant.now();
+        for (int i = 0; i < ROWS; i++) {
+            out.add(new SensorReadingPoint(t.minusSeconds(600L * i), Map.of(
+                    "humiditySensor", Map.of("3", 40 + i % 50 / 2.0),
+                    "temperatureSensor", Map.of("2", 18 + i % 120 / 10.0))));
+        }
+        return out;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({ServletWebServerFactoryAutoConfiguration.class, EmbeddedWebServerFactoryCustomizerAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class, WebMvcAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class,
+            JacksonAutoConfiguration.class, TaskExecutionAutoConfiguration.class})
+    @Import({SensorReadingController.class, ReactiveSensorReadingController.class})
+    static class Backend {
+
+        private final List<SensorReadingPoint> points = points();
+
+        @Bean
+        SensorReadingService sensorReadingService() {
+            SensorReadingRepository repo = mock(SensorReadingRepository.class);
+            when(repo.findPoints(anyString(), any(), any(), anyList())).thenAnswer(inv -> {
+                Thread.sleep(QUERY_MS);
+                return points;
+            });
+            return new SensorReadingService(repo, mock(EndNodeDeviceRepository.class), mock(LatestReadingCache.class));
+        }
+
+        @Bean
+        ReactiveSensorReadingService reactiveSensorReadingService() {
+            ReactiveSensorReadingRepository repo = mock(ReactiveSensorReadingRepository.class);
+            when(repo.findPoints(anyString(), any(), any(), anyList()))
+                    .thenAnswer(inv -> Flux.fromIterable(points).delaySubscription(Duration.ofMillis(QUERY_MS)));
+            return new ReactiveSensorReadingService(repo);
+        }
+
+        @Bean
+        ReadingExportService readingExportService() {
+            return mock(ReadingExportService.class);
+        }
+
+        @Bean
+        ReadingRollupService readingRollupService() {
+            return mock(ReadingRollupService.class);
+        }
+    }
+}
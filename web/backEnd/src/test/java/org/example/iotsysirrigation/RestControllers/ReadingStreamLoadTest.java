@@ -0,0 +1,124 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Not a unit test (surefire skips it): load generator for a running backend. {@code clients} concurrent
+ * callers each issue range queries against the blocking endpoint ({@code /api/readings/range}) and then
+ * the streaming one ({@code /api/readings/stream/range}); a separate probe keeps calling
+ * {@code /api/readings/latest} to show whether cheap requests queue behind the long ones.
+ * <pre>
+ * java -cp ... -Dbase=http://localhost:8081 -Dtoken=$JWT -Deui=a84041000000 -Ddays=30 \
+ *      -Dclients=64 -Drequests=512 ...ReadingStreamLoadTest
+ * </pre>
+ * Start the backend with a small pool (e.g. --server.tomcat.threads.max=16) to make starvation visible.
+ */
+public class ReadingStreamLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String base = System.getProperty("base", "http://localhost:8081");
+        String token = System.getProperty("token", "");
+        String eui = System.getProperty("eui", "a84041000000");
+        int days = Integer.getInteger("days", 30);
+        int clients = Integer.getInteger("clients", 64);
+        int requests = Integer.getInteger("requests", 512);
+        String fields = System.getProperty("fields", "humiditySensor,temperatureSensor");
+
+        Instant to = Instant.now();
+        String query = "?from=" + to.minus(Duration.ofDays(days)) + "&to=" + to + "&fields=" + fields;
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        System.out.printf("%d clients, %d requests, %d-day range of %s%n", clients, requests, days, eui);
+        run("blocking  /range       ", http, token, base + "/api/readings/range/" + eui + query, "application/json", clients, requests, base + "/api/readings/latest/" + eui + "?limit=1");
+        run("reactive  /stream/range", http, token, base + "/api/readings/stream/range/" + eui + query, "application/x-ndjson", clients, requests, base + "/api/readings/latest/" + eui + "?limit=1");
+    }
+
+    private static void run(String name, HttpClient http, String token, String url, String accept,
+                            int clients, int requests, String probeUrl) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicLong next = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        List<Long> probe = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread prober = Thread.ofVirtual().start(() -> {
+            while (running.get()) {
+                long t0 = System.nanoTime();
+                try {
+                    send(http, token, probeUrl, "application/json");
+                    probe.add(System.nanoTime() - t0);
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception ignored) {
+                    // counted only for the main load
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                pool.submit(() -> {
+                    for (long i; (i = next.getAndIncrement()) < requests; ) {
+                        long t0 = System.nanoTime();
+                        try {
+                            bytes.addAndGet(send(http, token, url, accept));
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[(int) i] = System.nanoTime() - t0;
+                    }
+                    return null;
+                });
+            }
+        }
+        double secs = (System.nanoTime() - start) / 1e9;
+        running.set(false);
+        prober.interrupt();
+        prober.join();
+
+        Arrays.sort(latencies);
+        long[] p = probe.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("%s  %6.1f req/s  %7.1f MB/s  p50 %7.1f  p95 %7.1f  p99 %7.1f ms  errors %d  | latest probe p50 %6.1f  p99 %6.1f ms%n",
+                name, requests / secs, bytes.get() / secs / 1e6,
+                pct(latencies, 50), pct(latencies, 95), pct(latencies, 99), errors.get(),
+                pct(p, 50), pct(p, 99));
+    }
+
+    /** Reads the whole body (so streaming responses are timed to their last byte) and returns its size. */
+    private static long send(HttpClient http, String token, String url, String accept) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", accept)
+                .timeout(Duration.ofMinutes(5))
+                .GET().build();
+        HttpResponse<InputStream> res = http.send(req, HttpResponse.BodyHandlers.ofInputStream());
+        long n = 0;
+        try (InputStream in = res.body()) {
+            byte[] buf = new byte[64 * 1024];
+            for (int r; (r = in.read(buf)) > 0; ) n += r;
+        }
+        if (res.statusCode() >= 400) throw new IllegalStateException("HTTP " + res.statusCode());
+        return n;
+    }
+
+    private static double pct(long[] sortedNanos, int p) {
+        if (sortedNanos.length == 0) return Double.NaN;
+        return sortedNanos[Math.min(sortedNanos.length - 1, sortedNanos.length * p / 100)] / 1e6;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.iotsysirrigation.RestControllers;
+
+import org.example.iotsysirrigation.Services.MqttIngestBenchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Not a unit test (surefire skips it): plays ChirpStack's HTTP integration against a running backend
+ * (INGEST_HTTP=true, local Mongo). {@code clients} concurrent senders post {@code uplinks} up events to
+ * /api/ingest/chirpstack; prints accepted/429 counts, ack latency, and, with an admin JWT, what the writer
+ * reports once the queue has drained (inserted, avg batch, inserts/s).
+ * <pre>
+ * java -cp ... -Dbase=http://localhost:8081 -Dsecret=$INGEST_HTTP_TOKEN -Dadmin=$JWT \
+ *      -Dclients=64 -Duplinks=200000 -Ddevices=500 ...WebhookIngestLoadTest
+ * </pre>
+ */
+public class WebhookIngestLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String base = System.getProperty("base", "http://localhost:8081");
+        String secret = System.getProperty("secret", "");
+        String admin = System.getProperty("admin", "");
+        int clients = Integer.getInteger("clients", 64);
+        int uplinks = Integer.getInteger("uplinks", 200_000);
+        int devices = Integer.getInteger("devices", 500);
+
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        URI target = URI.create(base + "/api/ingest/chirpstack?event=up");
+
+        long[] latencies = new long[uplinks];
+        AtomicLong next = new AtomicLong();
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong throttled = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+
+        long start = System.nanoTime();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int seed = c;
+                pool.submit(() -> {
+                    Random rnd = new Random(seed);
+                    for (long i; (i = next.getAndIncrement()) < uplinks; ) {
+                        String eui = String.format("%016x", 0x70b3d57ed0000000L + i % devices);
+                        byte[] body = MqttIngestBenchmark.uplink(eui, (int) (i / devices), rnd).getBytes(StandardCharsets.UTF_8);
+                        HttpRequest req = HttpRequest.newBuilder(target)
+                                .header("Content-Type", "application/json")
+                                .header(IngestController.TOKEN_HEADER, secret)
+                                .timeout(Duration.ofSeconds(30))
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+                        long t0 = System.nanoTime();
+                        try {
+                            int status = http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status == 202) accepted.incrementAndGet();
+                            else if (status == 429) throttled.incrementAndGet();
+                            else errors.incrementAndGet();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[(int) i] = System.nanoTime() - t0;
+                    }
+                    return null;
+                });
+            }
+        }
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%,d up events, %d clients, %d devices%n", uplinks, clients, devices);
+        System.out.printf("posted   %6.1f s  %,9.0f req/s  accepted %,d  429 %,d  errors %,d%n",
+                secs, uplinks / secs, accepted.get(), throttled.get(), errors.get());
+        System.out.printf("ack      p50 %6.2f  p95 %6.2f  p99 %6.2f ms%n",
+                pct(latencies, 50), pct(latencies, 95), pct(latencies, 99));
+
+        if (!admin.isBlank()) {
+            // insertedPerSecond is over the writer's last 10 s window, so read it while it is still busy
+            Thread.sleep(2_000);
+            HttpRequest stats = HttpRequest.newBuilder(URI.create(base + "/api/admin/ingest"))
+                    .header("Authorization", "Bearer " + admin).GET().build();
+            System.out.println("ingest   " + http.send(stats, HttpResponse.BodyHandlers.ofString()).body());
+        }
+    }
+
+    private static double pct(long[] sortedNanos, int p) {
+        if (sortedNanos.length == 0) return Double.NaN;
+        return sortedNanos[Math.min(sortedNanos.length - 1, sortedNanos.length * p / 100)] / 1e6;
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.iotsysirrigation.Services;
+
+import org.example.iotsysirrigation.JWT.ChirpstackHttpConfig;
+import org.example.iotsysirrigation.LoadTest.ChirpstackStub;
+import org.example.iotsysirrigation.LoadTest.VirtualEndNode;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class BulkCommandServiceTest {
+
+    private final EndNodeDeviceRepository repo = mock(EndNodeDeviceRepository.class);
+
+    private BulkCommandService service(ChirpstackStub stub, int parallelism, double ratePerSecond) {
+        ChirpstackClient client = new ChirpstackClient(new ChirpstackHttpConfig().chirpstackHttpClient(false, 2_000));
+        ReflectionTestUtils.setField(client, "baseUrl", stub.baseUrl());
+        ReflectionTestUtils.setField(client, "token", "test");
+        ReflectionTestUtils.setField(client, "poolSize", 64);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "getTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "updateTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "enqueueTimeoutMs", 5_000L);
+        client.init();
+        BulkCommandService service = new BulkCommandService(client, repo);
+        ReflectionTestUtils.setField(service, "parallelism", parallelism);
+        ReflectionTestUtils.setField(service, "ratePerSecond", ratePerSecond);
+        ReflectionTestUtils.setField(service, "maxDevices", 100);
+        return service;
+    }
+
+    private static List<String> euis(int n) {
+        return IntStream.range(0, n).mapToObj(VirtualEndNode::devEui).toList();
+    }
+
+    @Test
+    void fansOutAnOrganizationWithinTheParallelismLimit() throws Exception {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 100)) {
+            when(repo.findDevEuis(isNull(), eq("org-1"), isNull())).thenReturn(euis(60));
+            BulkCommandService service = service(stub, 8, 1_000);
+
+            long t0 = System.nanoTime();
+            List<BulkCommandService.Result> results = service.send(null, "org-1", null, 1, 2);
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+
+            assertEquals(60, results.size());
+            assertTrue(results.stream().allMatch(r -> r.outcome() == BulkCommandService.Outcome.QUEUED));
+            assertEquals(euis(60), results.stream().map(BulkCommandService.Result::devEui).toList());
+            assertEquals(60L, stub.stats().get("enqueues"));
+            assertTrue(stub.maxConcurrent() <= 8 && stub.maxConcurrent() > 1, "in flight " + stub.maxConcurrent());
+            // one after the other would take 6 s
+            assertTrue(ms < 3_000, "took " + ms + " ms");
+        }
+    }
+
+    @Test
+    void startsAtMostRatePerSecond() throws Exception {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 0)) {
+            when(repo.findDevEuis(isNull(), eq("org-1"), isNull())).thenReturn(euis(10));
+            BulkCommandService service = service(stub, 16, 20);
+            service.send(null, "org-1", null, 0, 2); // the first start of a burst goes at once
+
+            long t0 = System.nanoTime();
+            service.send(null, "org-1", null, 0, 2);
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+            // 10 starts 50 ms apart, right after the previous burst
+            assertTrue(ms >= 450, "took " + ms + " ms");
+            assertEquals(20L, stub.stats().get("enqueues"));
+        }
+    }
+
+    @Test
+    void listedDevEuisAreNormalizedAndUnknownOnesReportedNotSent() throws Exception {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 0)) {
+            String known = VirtualEndNode.devEui(1);
+            when(repo.findDevEuis(any(), isNull(), isNull())).thenReturn(List.of(known));
+            BulkCommandService service = service(stub, 4, 1_000);
+
+            List<BulkCommandService.Result> results =
+                    service.send(List.of(known.toUpperCase(), "ff:ff:ff:ff:ff:ff:ff:ff"), null, null, 1, 2);
+
+            verify(repo).findDevEuis(eq(Set.of(known, "ffffffffffffffff")), isNull(), isNull());
+            assertEquals(List.of(
+                    BulkCommandService.Outcome.QUEUED, BulkCommandService.Outcome.NOT_REGISTERED),
+                    results.stream().map(BulkCommandService.Result::outcome).toList());
+            assertEquals(1L, stub.stats().get("enqueues"));
+        }
+    }
+
+    @Test
+    void listedDevicesOutsideTheOrganizationAreNotSelectedRatherThanUnknown() throws Exception {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 0)) {
+            String inOrg = VirtualEndNode.devEui(1), otherOrg = VirtualEndNode.devEui(2), unknown = VirtualEndNode.devEui(3);
+            when(repo.findDevEuis(any(), eq("org-1"), isNull())).thenReturn(List.of(inOrg));
+            when(repo.findDevEuis(eq(Set.of(otherOrg, unknown)), isNull(), isNull())).thenReturn(List.of(otherOrg));
+            BulkCommandService service = service(stub, 4, 1_000);
+
+            List<BulkCommandService.Result> results = service.send(List.of(inOrg, otherOrg, unknown), "org-1", null, 1, 2);
+
+            assertEquals(List.of(
+                    BulkCommandService.Outcome.QUEUED, BulkCommandService.Outcome.NOT_SELECTED,
+                    BulkCommandService.Outcome.NOT_REGISTERED),
+                    results.stream().map(BulkCommandService.Result::outcome).toList());
+            assertEquals(1L, stub.stats().get("enqueues"));
+        }
+    }
+
+    @Test
+    void refusesSelectionsLargerThanMaxDevices() throws IOException {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 0)) {
+            when(repo.findDevEuis(isNull(), eq("org-1"), isNull())).thenReturn(euis(101));
+            BulkCommandService service = service(stub, 4, 1_000);
+
+            assertThrows(IllegalArgumentException.class, () -> service.send(null, "org-1", null, 1, 2));
+            assertThrows(IllegalArgumentException.class, () -> service.send(null, null, null, 1, 2));
+            assertEquals(0L, stub.stats().get("enqueues"));
+        }
+    }
+}
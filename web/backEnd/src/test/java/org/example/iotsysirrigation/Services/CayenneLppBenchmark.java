@@ -0,0 +1,91 @@
+package org.example.iotsysirrigation.Services;
+
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
+import org.example.iotsysirrigation.Repositories.DecodedMetricsReadConverter;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Not a unit test (surefire skips it): ns/op and bytes allocated per op for getting the README frame's
+ * metrics three ways: CayenneLppDecoder on the base64 string (reused buffer), the same decode into a fresh
+ * Map per reading (what a straightforward decoder would do), and DecodedMetricsReadConverter on the stored
+ * object_json (which needs the bridge to have decoded it already).
+ * Run its main() from the IDE, or with java -cp on target/classes, target/test-classes and the test classpath.
+ */
+public class CayenneLppBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int N = 2_000_000;
+    private static volatile double sink;
+
+    public static void main(String[] args) {
+        String data = CayenneLppDecoderTest.README_FRAME;
+        CayenneLppDecoder decoder = new CayenneLppDecoder();
+        decoder.decodeBase64(data);
+        Document objectJson = decoder.toObjectJson();
+
+        bench("LPP decoder, reused buffer   ", () -> {
+            decoder.decodeBase64(data);
+            sink += decoder.get(CayenneLppDecoder.TEMPERATURE) + decoder.get(CayenneLppDecoder.LAT);
+        });
+        bench("LPP into a Map per reading   ", () -> {
+            Map<String, Double> m = mapDecode(Base64.getDecoder().decode(data));
+            sink += m.get("temperatureSensor") + m.get("latitude");
+        });
+        bench("object_json -> DecodedMetrics", () -> {
+            DecodedMetrics d = DecodedMetricsReadConverter.decode(objectJson);
+            sink += d.temperature() + d.latitude();
+        });
+    }
+
+    private static void bench(String name, Runnable op) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        for (int i = 0; i < N; i++) op.run();
+        long best = Long.MAX_VALUE;
+        long bytes = 0;
+        for (int r = 0; r < RUNS; r++) {
+            long a0 = threads.getThreadAllocatedBytes(thread);
+            long t0 = System.nanoTime();
+            for (int i = 0; i < N; i++) op.run();
+            best = Math.min(best, System.nanoTime() - t0);
+            bytes = threads.getThreadAllocatedBytes(thread) - a0;
+        }
+        System.out.printf("%s %7.1f ns/op %7.1f B/op%n", name, (double) best / N, (double) bytes / N);
+    }
+
+    /** The obvious version: a fresh byte[] from Base64 and a HashMap of named values per frame. */
+    private static Map<String, Double> mapDecode(byte[] b) {
+        Map<String, Double> out = new HashMap<>();
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        while (buf.remaining() >= 2) {
+            buf.get();
+            int type = buf.get() & 0xff;
+            switch (type) {
+                case 0x00 -> out.putIfAbsent("digitalInput", (double) (buf.get() & 0xff));
+                case 0x02 -> out.putIfAbsent("analogInput", buf.getShort() / 100.0);
+                case 0x65 -> out.putIfAbsent("illuminanceSensor", (double) (buf.getShort() & 0xffff));
+                case 0x67 -> out.putIfAbsent("temperatureSensor", buf.getShort() / 10.0);
+                case 0x68 -> out.putIfAbsent("humiditySensor", (buf.get() & 0xff) / 2.0);
+                case 0x73 -> out.putIfAbsent("barometer", (buf.getShort() & 0xffff) / 10.0);
+                case 0x88 -> {
+                    out.putIfAbsent("latitude", int24(buf) / 10_000.0);
+                    out.putIfAbsent("longitude", int24(buf) / 10_000.0);
+                    out.putIfAbsent("altitude", int24(buf) / 100.0);
+                }
+                default -> throw new IllegalArgumentException("type " + type);
+            }
+        }
+        return out;
+    }
+
+    private static int int24(ByteBuffer b) {
+        int v = (b.get() & 0xff) << 16 | (b.get() & 0xff) << 8 | (b.get() & 0xff);
+        return v << 8 >> 8;
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.iotsysirrigation.Services;
+
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.DecodedMetrics;
+import org.example.iotsysirrigation.Repositories.DecodedMetricsReadConverter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CayenneLppDecoderTest {
+
+    /** The README's sample frame: GPS 0, barometer 1, temperature 2, humidity 3, illuminance 4, analog 5, digital 6. */
+    static final String README_FRAME = "AIgFd2UBn2kAAAABcyeSAmcBIgNonARlAQoFAgSwBgAB";
+
+    @Test
+    void decodesTheReadmeFrame() {
+        CayenneLppDecoder d = new CayenneLppDecoder();
+        assertTrue(d.decodeBase64(README_FRAME));
+
+        assertEquals(new DecodedMetrics(29.0, 78.0, 1013.0, 266, 12.0, 1, 35.8245, 10.6345, 0.0), d.toMetrics());
+        Document json = d.toObjectJson();
+        assertEquals(new Document("2", 29.0), json.get("temperatureSensor"));
+        assertEquals(new Document("0", new Document("latitude", 35.8245).append("longitude", 10.6345).append("altitude", 0.0)),
+                json.get("gpsLocation"));
+        assertEquals(d.toMetrics(), DecodedMetricsReadConverter.decode(json));
+    }
+
+    /**
+     * Random frames as the README's nodes send them (any subset, any order, any channel numbers, values over
+     * each type's full range) next to the object_json ChirpStack would store for them: decoding the raw frame
+     * must give exactly what the stored object_json gives.
+     */
+    @Test
+    void fuzzAgreesWithObjectJson() {
+        Random rnd = new Random(20250601);
+        CayenneLppDecoder d = new CayenneLppDecoder();
+        for (int i = 0; i < 20_000; i++) {
+            Frame f = randomFrame(rnd, false);
+            String data = Base64.getEncoder().encodeToString(f.bytes.toByteArray());
+            assertTrue(d.decodeBase64(data), data);
+            DecodedMetrics expected = DecodedMetricsReadConverter.decode(f.objectJson);
+            assertEquals(expected, d.toMetrics(), data);
+            assertEquals(expected, DecodedMetricsReadConverter.decode(d.toObjectJson()), data);
+
+            // same answer from a raw buffer, which is left where it was
+            ByteBuffer raw = ByteBuffer.wrap(f.bytes.toByteArray());
+            assertTrue(d.decode(raw));
+            assertEquals(expected, d.toMetrics());
+            assertEquals(0, raw.position());
+        }
+    }
+
+    /**
+     * Same check with types and channels repeating inside a frame, and the channels of each type stored in
+     * frame order or reversed: the lowest channel must win whatever the key order, and a repeated channel
+     * keeps its last entry as it does in ChirpStack's map.
+     */
+    @Test
+    void fuzzAgreesWithObjectJsonWhenTypesAndChannelsRepeat() {
+        Random rnd = new Random(20250602);
+        CayenneLppDecoder d = new CayenneLppDecoder();
+        for (int i = 0; i < 20_000; i++) {
+            Frame f = randomFrame(rnd, true);
+            String data = Base64.getEncoder().encodeToString(f.bytes.toByteArray());
+            assertTrue(d.decodeBase64(data), data);
+            DecodedMetrics expected = DecodedMetricsReadConverter.decode(f.objectJson);
+            assertEquals(expected, d.toMetrics(), data);
+            assertEquals(f.objectJson, d.toObjectJson(), data);
+            assertEquals(expected, DecodedMetricsReadConverter.decode(d.toObjectJson()), data);
+        }
+    }
+
+    @Test
+    void lowestChannelWinsAndARepeatedChannelKeepsItsLastEntry() {
+        // temperature 30.0 on channel 5, 20.0 then 21.0 on channel 2; humidity 40% on 9 then 50% on 1
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int[] e : new int[][]{{5, 0x67, 300, 2}, {2, 0x67, 200, 2}, {9, 0x68, 80, 1}, {2, 0x67, 210, 2}, {1, 0x68, 100, 1}}) {
+            out.write(e[0]);
+            out.write(e[1]);
+            write(out, e[2], e[3]);
+        }
+        CayenneLppDecoder d = new CayenneLppDecoder();
+        assertTrue(d.decodeBase64(Base64.getEncoder().encodeToString(out.toByteArray())));
+        assertEquals(21.0, d.get(CayenneLppDecoder.TEMPERATURE));
+        assertEquals(50.0, d.get(CayenneLppDecoder.HUMIDITY));
+        assertEquals(new Document("5", 30.0).append("2", 21.0), d.toObjectJson().get("temperatureSensor"));
+
+        Document sorted = new Document("temperatureSensor", new Document("2", 21.0).append("5", 30.0))
+                .append("humiditySensor", new Document("1", 50.0).append("9", 40.0));
+        assertEquals(d.toMetrics(), DecodedMetricsReadConverter.decode(sorted));
+        assertEquals(d.toMetrics(), DecodedMetricsReadConverter.decode(d.toObjectJson()));
+    }
+
+    @Test
+    void rejectsGarbageWithoutThrowing() {
+        Random rnd = new Random(7);
+        CayenneLppDecoder d = new CayenneLppDecoder();
+        byte[] buf = new byte[64];
+        int accepted = 0;
+        for (int i = 0; i < 50_000; i++) {
+            int len = rnd.nextInt(buf.length);
+            rnd.nextBytes(buf);
+            if (d.decode(ByteBuffer.wrap(buf, 0, len))) accepted++;
+        }
+        assertTrue(accepted < 50_000);
+
+        assertFalse(d.decodeBase64("AmcBI"));                 // 5 base64 chars can't be whole bytes
+        assertFalse(d.decodeBase64("Am*BIg=="));              // not base64
+        assertFalse(d.decodeBase64("AmcB"));                  // temperature cut short
+        assertFalse(d.decodeBase64("Anc="));                  // unknown type 0x77
+        assertFalse(d.decodeBase64("A".repeat(400)));         // longer than any LoRaWAN payload
+        assertNull(d.toObjectJson());
+        assertTrue(d.decodeBase64(""));
+        assertEquals(DecodedMetrics.EMPTY, d.toMetrics());
+    }
+
+    private record Frame(ByteArrayOutputStream bytes, Document objectJson) {}
+
+    /**
+     * Without repeats every type appears at most once, on any channel; with them, up to 12 entries of any type
+     * on a handful of channels, so types and (type, channel) pairs both repeat.
+     */
+    private static Frame randomFrame(Random rnd, boolean repeats) {
+        List<Integer> types = new ArrayList<>(List.of(0x88, 0x73, 0x67, 0x68, 0x65, 0x02, 0x00, 0x71));
+        List<Integer> picked;
+        if (repeats) {
+            picked = new ArrayList<>();
+            for (int n = rnd.nextInt(13); n > 0; n--) picked.add(types.get(rnd.nextInt(types.size())));
+        } else {
+            Collections.shuffle(types, rnd);
+            picked = types.subList(0, rnd.nextInt(types.size() + 1));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document json = new Document();
+        for (int type : picked) {
+            int ch = rnd.nextInt(repeats ? 4 : 256);
+            out.write(ch);
+            out.write(type);
+            String key = Integer.toString(ch);
+            switch (type) {
+                case 0x88 -> {
+                    int lat = rnd.nextInt(1_800_001) - 900_000, lng = rnd.nextInt(3_600_001) - 1_800_000;
+                    int alt = rnd.nextInt(1 << 24) - (1 << 23);
+                    write(out, lat, 3);
+                    write(out, lng, 3);
+                    write(out, alt, 3);
+                    channel(json, "gpsLocation").put(key, new Document("latitude", lat / 10_000.0)
+                            .append("longitude", lng / 10_000.0).append("altitude", alt / 100.0));
+                }
+                case 0x73 -> {
+                    int v = rnd.nextInt(1 << 16);
+                    write(out, v, 2);
+                    channel(json, "barometer").put(key, v / 10.0);
+                }
+                case 0x67 -> {
+                    int v = rnd.nextInt(1 << 16) - (1 << 15);
+                    write(out, v, 2);
+                    channel(json, "temperatureSensor").put(key, v / 10.0);
+                }
+                case 0x68 -> {
+                    int v = rnd.nextInt(256);
+                    write(out, v, 1);
+                    channel(json, "humiditySensor").put(key, v / 2.0);
+                }
+                case 0x65 -> {
+                    int v = rnd.nextInt(1 << 16);
+                    write(out, v, 2);
+                    channel(json, "illuminanceSensor").put(key, (double) v);
+                }
+                case 0x02 -> {
+                    int v = rnd.nextInt(1 << 16) - (1 << 15);
+                    write(out, v, 2);
+                    channel(json, "analogInput").put(key, v / 100.0);
+                }
+                case 0x00 -> {
+                    int v = rnd.nextInt(2);
+                    write(out, v, 1);
+                    channel(json, "digitalInput").put(key, (double) v);
+                }
+                default -> {
+                    // accelerometer: not a metric, must just be stepped over
+                    int x = rnd.nextInt(1 << 16) - (1 << 15), y = rnd.nextInt(1 << 16) - (1 << 15), z = rnd.nextInt(1 << 16) - (1 << 15);
+                    write(out, x, 2);
+                    write(out, y, 2);
+                    write(out, z, 2);
+                    channel(json, "accelerometer").put(key, new Document("x", x / 1_000.0)
+                            .append("y", y / 1_000.0).append("z", z / 1_000.0));
+                }
+            }
+        }
+        if (repeats && rnd.nextBoolean()) {
+            // another writer may store the channels in another order: Document equality doesn't care, the converter mustn't
+            for (String type : json.keySet()) {
+                List<String> keys = new ArrayList<>(json.get(type, Document.class).keySet());
+                Collections.reverse(keys);
+                Document reversed = new Document();
+                for (String k : keys) reversed.put(k, json.get(type, Document.class).get(k));
+                json.put(type, reversed);
+            }
+        }
+        return new Frame(out, json);
+    }
+
+    private static Document channel(Document json, String type) {
+        Document d = json.get(type, Document.class);
+        if (d == null) json.put(type, d = new Document());
+        return d;
+    }
+
+    private static void write(ByteArrayOutputStream out, int v, int bytes) {
+        for (int i = bytes - 1; i >= 0; i--) out.write(v >> (8 * i));
+    }
+}
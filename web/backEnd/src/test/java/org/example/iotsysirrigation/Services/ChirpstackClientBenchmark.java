@@ -0,0 +1,157 @@
+package org.example.iotsysirrigation.Services;
+
+import org.example.iotsysirrigation.JWT.ChirpstackHttpConfig;
+import org.example.iotsysirrigation.LoadTest.ChirpstackStub;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Not a unit test (surefire skips it): device GETs against a local {@link ChirpstackStub} that answers after
+ * DELAY_MS, three ways. First, what ChirpstackClient did before: a default RestTemplate with fresh headers per
+ * call, called from THREADS platform threads. Then the pooled client, blocking, from the same threads. Last,
+ * the pooled client's async API with THREADS calls in flight from a single thread. Finally, one call each
+ * against a stub that hangs for HUNG_MS, to show how long a stuck ChirpStack holds the caller.
+ * Run its main() from the IDE, or with java -cp on target/classes, target/test-classes and the test classpath.
+ */
+public class ChirpstackClientBenchmark {
+
+    private static final int DELAY_MS = Integer.getInteger("delayMs", 5);
+    private static final int THREADS = Integer.getInteger("threads", 64);
+    private static final int SECONDS = 5;
+    private static final int HUNG_MS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, DELAY_MS)) {
+            RestTemplate rest = new RestTemplate();
+            ChirpstackClient client = client(stub.baseUrl(), 5_000);
+
+            System.out.printf("stub delay %d ms, %d callers / in flight, %d s per run%n", DELAY_MS, THREADS, SECONDS);
+            System.out.printf("%-28s %10s %10s %10s %8s%n", "client", "req/s", "p50 ms", "p99 ms", "errors");
+            for (int round = 0; round < 2; round++) {
+                boolean print = round == 1; // the first round warms up
+                blocking("RestTemplate (before)", print, () -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.set("Authorization", "Bearer bench");
+                    headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+                    headers.setContentType(MediaType.APPLICATION_JSON);
+                    return rest.exchange(stub.baseUrl() + "/api/devices/0011223344556677", HttpMethod.GET,
+                            new HttpEntity<>(headers), String.class).getStatusCode().is2xxSuccessful();
+                });
+                blocking("pooled, blocking", print, () -> client.getDeviceByDevEui("0011223344556677").isPresent());
+                async("pooled, async", print, client);
+            }
+            System.out.println("chirpstack stub " + stub.stats());
+        }
+
+        try (ChirpstackStub hung = ChirpstackStub.start(0, HUNG_MS)) {
+            long t0 = System.nanoTime();
+            HttpHeaders headers = new HttpHeaders();
+            headers.set("Authorization", "Bearer bench");
+            new RestTemplate().exchange(hung.baseUrl() + "/api/devices/0011223344556677", HttpMethod.GET,
+                    new HttpEntity<>(headers), String.class);
+            System.out.printf("hung ChirpStack (%d ms): RestTemplate returned after %,d ms%n", HUNG_MS, (System.nanoTime() - t0) / 1_000_000);
+            t0 = System.nanoTime();
+            client(hung.baseUrl(), 1_000).getDeviceByDevEui("0011223344556677");
+            System.out.printf("hung ChirpStack (%d ms): pooled client (get-timeout 1000 ms) returned after %,d ms%n",
+                    HUNG_MS, (System.nanoTime() - t0) / 1_000_000);
+        }
+    }
+
+    interface Call {
+        boolean run() throws Exception;
+    }
+
+    private static ChirpstackClient client(String baseUrl, long timeoutMs) {
+        ChirpstackClient client = new ChirpstackClient(new ChirpstackHttpConfig().chirpstackHttpClient(false, 2_000));
+        ReflectionTestUtils.setField(client, "baseUrl", baseUrl);
+        ReflectionTestUtils.setField(client, "token", "bench");
+        ReflectionTestUtils.setField(client, "poolSize", THREADS);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "getTimeoutMs", timeoutMs);
+        ReflectionTestUtils.setField(client, "updateTimeoutMs", timeoutMs);
+        ReflectionTestUtils.setField(client, "enqueueTimeoutMs", timeoutMs);
+        client.init();
+        return client;
+    }
+
+    private static void blocking(String name, boolean print, Call call) throws InterruptedException {
+        List<long[]> perThread = new ArrayList<>();
+        LongAdder errors = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        long t0 = System.nanoTime();
+        try (ExecutorService pool = Executors.newFixedThreadPool(THREADS)) {
+            for (int t = 0; t < THREADS; t++) {
+                long[] samples = new long[1_000_000];
+                perThread.add(samples);
+                pool.submit(() -> {
+                    int n = 0;
+                    while (!stop.get() && n < samples.length - 1) {
+                        long s = System.nanoTime();
+                        try {
+                            if (!call.run()) errors.increment();
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+                        samples[++n] = System.nanoTime() - s;
+                    }
+                    samples[0] = n;
+                });
+            }
+            Thread.sleep(SECONDS * 1000L);
+            stop.set(true);
+        }
+        double secs = (System.nanoTime() - t0) / 1e9;
+        List<Long> all = new ArrayList<>();
+        for (long[] s : perThread) for (int i = 1; i <= s[0]; i++) all.add(s[i]);
+        if (print) report(name, all, secs, errors.sum());
+    }
+
+    private static void async(String name, boolean print, ChirpstackClient client) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(THREADS);
+        List<Long> latencies = new ArrayList<>();
+        LongAdder errors = new LongAdder();
+        long t0 = System.nanoTime();
+        long end = t0 + SECONDS * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            inFlight.acquire();
+            long s = System.nanoTime();
+            CompletableFuture<?> call = client.getDeviceByDevEuiAsync("0011223344556677").whenComplete((info, e) -> {
+                long took = System.nanoTime() - s;
+                synchronized (latencies) {
+                    latencies.add(took);
+                }
+                if (e != null || info.isEmpty()) errors.increment();
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(THREADS);
+        double secs = (System.nanoTime() - t0) / 1e9;
+        if (print) report(name, latencies, secs, errors.sum());
+    }
+
+    private static void report(String name, List<Long> latencies, double secs, long errors) {
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        System.out.printf("%-28s %10.0f %10.2f %10.2f %8d%n", name, sorted.length / secs,
+                pct(sorted, 50), pct(sorted, 99), errors);
+    }
+
+    private static double pct(long[] sorted, int p) {
+        if (sorted.length == 0) return Double.NaN;
+        return sorted[Math.min(sorted.length - 1, sorted.length * p / 100)] / 1e6;
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.iotsysirrigation.Services;
+
+import org.example.iotsysirrigation.JWT.ChirpstackHttpConfig;
+import org.example.iotsysirrigation.LoadTest.ChirpstackStub;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChirpstackClientTest {
+
+    private static ChirpstackClient client(ChirpstackStub stub, int poolSize, long acquireMs, long timeoutMs) {
+        ChirpstackClient client = new ChirpstackClient(new ChirpstackHttpConfig().chirpstackHttpClient(false, 2_000));
+        ReflectionTestUtils.setField(client, "baseUrl", stub.baseUrl());
+        ReflectionTestUtils.setField(client, "token", "test");
+        ReflectionTestUtils.setField(client, "poolSize", poolSize);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", acquireMs);
+        ReflectionTestUtils.setField(client, "getTimeoutMs", timeoutMs);
+        ReflectionTestUtils.setField(client, "updateTimeoutMs", timeoutMs);
+        ReflectionTestUtils.setField(client, "enqueueTimeoutMs", timeoutMs);
+        client.init();
+        return client;
+    }
+
+    @Test
+    void asyncCallsShareAtMostPoolSizeConnections() throws IOException {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 50)) {
+            ChirpstackClient client = client(stub, 4, 10_000, 5_000);
+            List<CompletableFuture<Optional<ChirpstackClient.DeviceInfo>>> calls = new ArrayList<>();
+            for (int i = 0; i < 40; i++) calls.add(client.getDeviceByDevEuiAsync(String.format("%016x", i)));
+
+            for (int i = 0; i < 40; i++) {
+                ChirpstackClient.DeviceInfo info = calls.get(i).join().orElseThrow();
+                assertEquals("node-" + String.format("%016x", i), info.name());
+                assertEquals("ONLINE", info.status());
+            }
+            assertEquals(4, stub.maxConcurrent());
+            assertEquals(40L, client.stats().get("requests"));
+            assertEquals(0L, client.stats().get("failures"));
+            assertEquals(0, client.stats().get("inFlight"));
+        }
+    }
+
+    @Test
+    void updateReadsThenWritesAndEnqueuePosts() throws IOException {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 0)) {
+            ChirpstackClient client = client(stub, 4, 1_000, 5_000);
+            assertTrue(client.updateDeviceMetaAsync("0011223344556677", "valve-1", null, "OFFLINE").join());
+            assertTrue(client.enqueueDownlink("0011223344556677", 1, 2));
+            assertEquals(1L, stub.stats().get("deviceGets"));
+            assertEquals(1L, stub.stats().get("devicePuts"));
+            assertEquals(1L, stub.stats().get("enqueues"));
+        }
+    }
+
+    @Test
+    void aHungChirpstackFailsCallsWithinTheirTimeout() throws IOException {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 5_000)) {
+            ChirpstackClient client = client(stub, 1, 100, 200);
+            long t0 = System.nanoTime();
+            CompletableFuture<Optional<ChirpstackClient.DeviceInfo>> first = client.getDeviceByDevEuiAsync("0011223344556677");
+            // the only connection is taken: this one gives up waiting for it
+            CompletableFuture<Boolean> second = client.enqueueDownlinkAsync("0011223344556677", 1, 2);
+
+            assertFalse(second.join());
+            assertTrue(first.join().isEmpty());
+            assertTrue(System.nanoTime() - t0 < 2_000_000_000L, "took " + (System.nanoTime() - t0) / 1_000_000 + " ms");
+            assertEquals(1L, client.stats().get("timeouts"));
+            assertEquals(1L, client.stats().get("queueTimeouts"));
+            assertEquals(0, client.stats().get("inFlight"));
+        }
+    }
+
+    @Test
+    void devEuiIsOnePathSegmentAndBadUrisFailTheFuture() throws IOException {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 0)) {
+            ChirpstackClient client = client(stub, 4, 1_000, 5_000);
+            // used to throw from URI.create on the caller's thread
+            assertEquals("node-00 11", client.getDeviceByDevEuiAsync("00 11").join().orElseThrow().name());
+            // stays a single segment instead of reaching /queue
+            assertFalse(client.updateDeviceMetaAsync("a/queue", "x", null, null).join());
+            assertEquals(0L, stub.stats().get("enqueues"));
+
+            ReflectionTestUtils.setField(client, "baseUrl", "http://bad host");
+            CompletableFuture<Boolean> call = assertDoesNotThrow(() -> client.enqueueDownlinkAsync("0011223344556677", 1, 2));
+            assertFalse(call.join());
+            assertEquals(0, client.stats().get("inFlight"));
+        }
+    }
+}
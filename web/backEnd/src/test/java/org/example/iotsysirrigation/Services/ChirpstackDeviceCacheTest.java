@@ -0,0 +1,91 @@
+package org.example.iotsysirrigation.Services;
+
+import org.example.iotsysirrigation.JWT.ChirpstackHttpConfig;
+import org.example.iotsysirrigation.LoadTest.ChirpstackStub;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChirpstackDeviceCacheTest {
+
+    private static ChirpstackDeviceCache cache(ChirpstackStub stub, long ttlMs, long refreshAfterMs) {
+        ChirpstackClient client = new ChirpstackClient(new ChirpstackHttpConfig().chirpstackHttpClient(false, 2_000));
+        ReflectionTestUtils.setField(client, "baseUrl", stub.baseUrl());
+        ReflectionTestUtils.setField(client, "token", "test");
+        ReflectionTestUtils.setField(client, "poolSize", 8);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "getTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "updateTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "enqueueTimeoutMs", 5_000L);
+        client.init();
+        ChirpstackDeviceCache cache = new ChirpstackDeviceCache(client);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMs", ttlMs);
+        ReflectionTestUtils.setField(cache, "refreshAfterMs", refreshAfterMs);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        return cache;
+    }
+
+    @Test
+    void concurrentMissesShareOneUpstreamGet() throws IOException {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 100)) {
+            ChirpstackDeviceCache cache = cache(stub, 60_000, 50_000);
+            List<CompletableFuture<Optional<ChirpstackClient.DeviceInfo>>> calls = new ArrayList<>();
+            // same device, spelled the ways callers send it
+            for (int i = 0; i < 20; i++) calls.add(cache.getAsync(i % 2 == 0 ? "00:11:22:33:44:55:66:77" : "0011223344556677"));
+
+            for (var call : calls) assertEquals("node-0011223344556677", call.join().orElseThrow().name());
+            assertEquals(1L, stub.stats().get("deviceGets"));
+            assertTrue(cache.get("0011223344556677").isPresent());
+            assertEquals(1L, stub.stats().get("deviceGets"));
+            assertEquals(1L, cache.stats().get("upstreamCalls"));
+            assertEquals(1L, cache.stats().get("misses"));
+        }
+    }
+
+    @Test
+    void staleEntriesAreServedWhileRefreshedAndReloadedOnceExpired() throws Exception {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 200)) {
+            ChirpstackDeviceCache cache = cache(stub, 1_000, 100);
+            cache.get("0011223344556677");
+            Thread.sleep(150);
+
+            long t0 = System.nanoTime();
+            assertTrue(cache.get("0011223344556677").isPresent());
+            assertTrue(cache.get("0011223344556677").isPresent());
+            // served from the cache, not after the stub's 200 ms
+            assertTrue(System.nanoTime() - t0 < 100_000_000L);
+            assertEquals(1L, cache.stats().get("refreshes"));
+            Thread.sleep(400);
+            assertEquals(2L, stub.stats().get("deviceGets"));
+
+            // the refreshed entry is young again; let it expire past the ttl
+            Thread.sleep(1_100);
+            assertTrue(cache.get("0011223344556677").isPresent());
+            assertEquals(3L, stub.stats().get("deviceGets"));
+            assertEquals(1L, cache.stats().get("expired"));
+        }
+    }
+
+    @Test
+    void updateReusesTheCachedBodyAndDropsTheEntry() throws IOException {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 0)) {
+            ChirpstackDeviceCache cache = cache(stub, 60_000, 50_000);
+            cache.get("0011223344556677");
+            assertTrue(cache.updateDeviceMeta("0011223344556677", "valve-1", null, null));
+            assertEquals(1L, stub.stats().get("deviceGets"));
+            assertEquals(1L, stub.stats().get("devicePuts"));
+
+            cache.get("0011223344556677");
+            assertEquals(2L, stub.stats().get("deviceGets"));
+            assertEquals(1L, cache.stats().get("invalidations"));
+        }
+    }
+}
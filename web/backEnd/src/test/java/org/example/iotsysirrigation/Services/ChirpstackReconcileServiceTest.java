@@ -0,0 +1,143 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.example.iotsysirrigation.JWT.ChirpstackHttpConfig;
+import org.example.iotsysirrigation.LoadTest.ChirpstackStub;
+import org.example.iotsysirrigation.LoadTest.VirtualEndNode;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.Organization;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.OrganizationRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ChirpstackReconcileServiceTest {
+
+    private static final String APP = VirtualEndNode.APPLICATION_ID.toString();
+
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> devices = mock(MongoCollection.class);
+    private final EndNodeDeviceRepository repo = mock(EndNodeDeviceRepository.class);
+
+    private ChirpstackReconcileService service(ChirpstackStub stub, String applications, long maxDurationMs) {
+        ChirpstackClient client = new ChirpstackClient(new ChirpstackHttpConfig().chirpstackHttpClient(false, 2_000));
+        ReflectionTestUtils.setField(client, "baseUrl", stub.baseUrl());
+        ReflectionTestUtils.setField(client, "token", "test");
+        ReflectionTestUtils.setField(client, "poolSize", 64);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "getTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "updateTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(client, "enqueueTimeoutMs", 5_000L);
+        client.init();
+
+        MongoTemplate template = mock(MongoTemplate.class);
+        when(template.getCollectionName(EndNodeDevice.class)).thenReturn("devices");
+        when(template.getCollection("devices")).thenReturn(devices);
+        when(devices.bulkWrite(anyList(), any())).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()));
+        OrganizationRepository orgRepo = mock(OrganizationRepository.class);
+        when(orgRepo.findById("org-1")).thenReturn(Optional.of(Organization.builder().id("org-1").address("Farm road 1").build()));
+
+        ChirpstackReconcileService service = new ChirpstackReconcileService(client, repo, orgRepo, template);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "applicationsSpec", applications);
+        ReflectionTestUtils.setField(service, "pageSize", 100);
+        ReflectionTestUtils.setField(service, "parallelism", 4);
+        ReflectionTestUtils.setField(service, "maxDurationMs", maxDurationMs);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        service.init();
+        return service;
+    }
+
+    private static EndNodeDevice stored(String eui, String name, Instant lastSeen) {
+        return EndNodeDevice.builder().devEui(eui).organizationId("org-1").name(name).lastSeen(lastSeen).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<WriteModel<Document>> written() {
+        ArgumentCaptor<List<WriteModel<Document>>> ops = ArgumentCaptor.forClass(List.class);
+        verify(devices, atLeastOnce()).bulkWrite(ops.capture(), any());
+        List<WriteModel<Document>> all = new ArrayList<>();
+        ops.getAllValues().forEach(all::addAll);
+        return all;
+    }
+
+    @Test
+    void diffsEveryPageAgainstTheCollectionAndWritesInBulks() throws Exception {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 20).listing(1_200)) {
+            String e0 = VirtualEndNode.devEui(0), e1 = VirtualEndNode.devEui(1), e2 = VirtualEndNode.devEui(2);
+            Instant future = Instant.now().plusSeconds(3600);
+            when(repo.findAllSyncFields()).thenReturn(List.of(
+                    stored(e0, "node-" + e0, future),          // matches
+                    stored(e1, "renamed", future),             // name drifted
+                    stored(e2, "node-" + e2, null),            // never seen
+                    stored("ffffffffffffffff", "gone", null),   // deleted on ChirpStack
+                    // another organization's device, maybe in an application not configured here
+                    EndNodeDevice.builder().devEui("eeeeeeeeeeeeeeee").organizationId("org-2").name("elsewhere").build()));
+            ChirpstackReconcileService service = service(stub, APP + "=org-1:user-1, other-app", 10_000);
+
+            Map<String, Object> out = service.reconcile();
+
+            assertEquals(true, out.get("complete"));
+            // 12 pages of the configured application, 1 (empty) of the other one
+            assertEquals(13, out.get("pages"));
+            assertEquals(1_200, out.get("listed"));
+            assertEquals(1L, out.get("unchanged"));
+            assertEquals(2L, out.get("updated"));
+            assertEquals(1_197L, out.get("created"));
+            assertEquals(1, out.get("orphaned"));
+            assertEquals(List.of("ffffffffffffffff"), out.get("orphanSample"));
+            assertTrue(stub.maxConcurrent() <= 4, "at most parallelism pages in flight, saw " + stub.maxConcurrent());
+            verify(devices, times(3)).bulkWrite(anyList(), any());
+
+            List<WriteModel<Document>> ops = written();
+            UpdateOneModel<Document> rename = ops.stream()
+                    .filter(op -> op instanceof UpdateOneModel<Document> u && e1.equals(((Document) u.getFilter()).get("devEui")))
+                    .map(op -> (UpdateOneModel<Document>) op).findFirst().orElseThrow();
+            Document update = (Document) rename.getUpdate();
+            assertEquals("node-" + e1, ((Document) update.get("$set")).get("name"));
+            // ChirpStack's lastSeen is older than ours: not touched
+            assertNull(update.get("$max"));
+            Document created = ops.stream().filter(op -> op instanceof InsertOneModel)
+                    .map(op -> ((InsertOneModel<Document>) op).getDocument()).findFirst().orElseThrow();
+            assertEquals("org-1", created.get("organizationId"));
+            assertEquals("user-1", created.get("userId"));
+            assertEquals("Farm road 1", created.get("address"));
+            assertNotNull(created.get("lastSeen"));
+        }
+    }
+
+    @Test
+    void aSlowChirpstackEndsTheRunAtTheDeadlineWithoutOrphans() throws Exception {
+        try (ChirpstackStub stub = ChirpstackStub.start(0, 400).listing(1_000)) {
+            when(repo.findAllSyncFields()).thenReturn(List.of(stored("ffffffffffffffff", "gone", null)));
+            ChirpstackReconcileService service = service(stub, APP, 600);
+
+            long t0 = System.nanoTime();
+            Map<String, Object> out = service.reconcile();
+
+            assertTrue(System.nanoTime() - t0 < 2_000_000_000L, "took " + (System.nanoTime() - t0) / 1_000_000 + " ms");
+            assertEquals(false, out.get("complete"));
+            assertNull(out.get("orphaned"));
+            // the first page arrived in time: its devices are known but not registered here
+            assertEquals(100L, out.get("unregistered"));
+        }
+    }
+}
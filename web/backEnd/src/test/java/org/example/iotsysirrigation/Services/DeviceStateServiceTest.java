@@ -0,0 +1,103 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class DeviceStateServiceTest {
+
+    private static final Instant T0 = Instant.parse("2025-06-01T12:00:00Z");
+
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> devices = mock(MongoCollection.class);
+    private final DeviceStateService service;
+
+    private DeviceStateServiceTest() {
+        MongoTemplate template = mock(MongoTemplate.class);
+        when(template.getCollectionName(EndNodeDevice.class)).thenReturn("devices");
+        when(template.getCollection("devices")).thenReturn(devices);
+        when(devices.bulkWrite(anyList(), any())).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        service = new DeviceStateService(template, mock(SensorChangeStream.class));
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxPending", 1000);
+    }
+
+    private static SensorReading reading(String eui, int secs, Double lat) {
+        Map<String, Object> object = lat == null
+                ? Map.of("temperatureSensor", Map.of("2", 20.0 + secs))
+                : Map.of("temperatureSensor", Map.of("2", 20.0 + secs),
+                         "gpsLocation", Map.of("0", Map.of("latitude", lat, "longitude", 10.18, "altitude", 12.0)));
+        return SensorReading.builder().devEui(eui).timestamp(T0.plusSeconds(secs)).sensorsReading(object).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<WriteModel<Document>> flushed() {
+        ArgumentCaptor<List<WriteModel<Document>>> ops = ArgumentCaptor.forClass(List.class);
+        verify(devices).bulkWrite(ops.capture(), any());
+        return ops.getValue();
+    }
+
+    @Test
+    void coalescesReadingsIntoOneUpdatePerDevice() {
+        // a minute at one reading per second, delivered slightly out of order, with a fix only early on
+        service.onReading(reading("00-11-22-33-44-55-66-77", 0, 36.80));
+        for (int s = 59; s >= 1; s--) service.onReading(reading("0011223344556677", s, null));
+        service.onReading(reading("8899aabbccddeeff", 5, null));
+
+        service.flush();
+
+        List<WriteModel<Document>> ops = flushed();
+        assertEquals(2, ops.size());
+        UpdateOneModel<Document> op = (UpdateOneModel<Document>) ops.stream()
+                .filter(o -> "0011223344556677".equals(((UpdateOneModel<Document>) o).getFilter().toBsonDocument().getString("devEui").getValue()))
+                .findFirst().orElseThrow();
+        Document set = ((Document) op.getUpdate()).get("$set", Document.class);
+        assertEquals(Date.from(T0.plusSeconds(59)), set.get("lastSeen"));
+        assertEquals(36.80, set.get("lat"));
+        assertEquals(12.0, set.get("altitude"));
+        assertEquals(Map.of("2", 79.0), ((Map<?, ?>) set.get("lastValues")).get("temperatureSensor"));
+        assertNotNull(set.get("updatedAt"));
+
+        assertEquals(61L, service.stats().get("readings"));
+        assertEquals(0, service.stats().get("pending"));
+        service.flush();
+        verifyNoMoreInteractions(devices);
+    }
+
+    @Test
+    void neverMovesADeviceBackwards() {
+        Document filter = (Document) DeviceStateService.update("0011223344556677",
+                new DeviceStateService.State(T0, null, null), new Date()).getFilter();
+        assertEquals(List.of(new Document("lastSeen", new Document("$lt", Date.from(T0))), new Document("lastSeen", null)),
+                filter.get("$or"));
+    }
+
+    @Test
+    void keepsStateForTheNextFlushWhenTheWriteFails() {
+        when(devices.bulkWrite(anyList(), any())).thenThrow(new IllegalStateException("primary stepped down"));
+        service.onReading(reading("0011223344556677", 1, null));
+        service.flush();
+        service.onReading(reading("0011223344556677", 2, null));
+
+        assertEquals(1, service.stats().get("pending"));
+        assertEquals(1L, service.stats().get("failures"));
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.iotsysirrigation.Services;
+
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.Organization;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.OrganizationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class EndNodeDeviceServiceTest {
+
+    private final EndNodeDeviceRepository repo = mock(EndNodeDeviceRepository.class);
+    private final OrganizationRepository orgRepo = mock(OrganizationRepository.class);
+    private final ChirpstackDeviceCache chirpstackDevices = mock(ChirpstackDeviceCache.class);
+    private final SensorReadingService readingService = mock(SensorReadingService.class);
+    private final SensorChangeStream changeStream = mock(SensorChangeStream.class);
+    private final DeviceStateService deviceState = new DeviceStateService(mock(MongoTemplate.class), changeStream);
+    private final EndNodeDeviceService service = new EndNodeDeviceService(repo, orgRepo,
+            mock(ChirpstackClient.class), chirpstackDevices, readingService, deviceState);
+
+    private EndNodeDeviceServiceTest() {
+        ReflectionTestUtils.setField(deviceState, "enabled", true);
+        when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    private EndNodeDevice registered() {
+        EndNodeDevice d = new EndNodeDevice();
+        d.setId("d1");
+        d.setDevEui("a1");
+        d.setName("Valve");
+        d.setLat(1.0);
+        d.setLng(2.0);
+        when(repo.findById("d1")).thenReturn(Optional.of(d));
+        when(chirpstackDevices.updateDeviceMeta(eq("a1"), any(), any(), any())).thenReturn(true);
+        when(readingService.lastOne("a1")).thenReturn(Optional.of(SensorReading.builder().devEui("a1")
+                .sensorsReading(Map.of("gpsLocation", Map.of("1", Map.of("latitude", 36.8, "longitude", 10.1))))
+                .build()));
+        return d;
+    }
+
+    @Test
+    void updateRefreshesGpsFromTheLatestReadingWhenOnlyTheBridgeWrites() {
+        registered();
+        when(changeStream.isLive()).thenReturn(false);   // standalone mongod, no in-process ingest
+
+        EndNodeDevice saved = service.updateSmart("d1", new EndNodeDevice());
+        assertEquals(36.8, saved.getLat());
+        assertEquals(10.1, saved.getLng());
+    }
+
+    @Test
+    void updateLeavesGpsToTheWriteBehindWhileItIsFed() {
+        registered();
+        when(changeStream.isLive()).thenReturn(true);
+
+        EndNodeDevice saved = service.updateSmart("d1", new EndNodeDevice());
+        assertEquals(1.0, saved.getLat());
+        verify(readingService, never()).lastOne(any());
+
+        when(changeStream.isLive()).thenReturn(false);
+        ReflectionTestUtils.setField(deviceState, "mqttIngest", true);
+        service.updateSmart("d1", new EndNodeDevice());
+        verify(readingService, never()).lastOne(any());
+    }
+
+    @Test
+    void createStampsServerTimeNotChirpstacksUpdatedAt() {
+        when(repo.findByDevEui("a1")).thenReturn(Optional.empty());
+        when(orgRepo.existsById("org1")).thenReturn(true);
+        when(orgRepo.findById("org1")).thenReturn(Optional.of(Organization.builder().id("org1").address("Farm").build()));
+        when(chirpstackDevices.get("a1")).thenReturn(Optional.of(new ChirpstackClient.DeviceInfo(
+                "a1", "Valve", "", "", "2024-01-01T00:00:00Z", "2024-02-01T00:00:00Z", "")));
+        when(readingService.lastOne("a1")).thenReturn(Optional.empty());
+
+        EndNodeDevice d = new EndNodeDevice();
+        d.setDevEui("A1");
+        d.setOrganizationId("org1");
+        d.setUserId("u1");
+        Instant before = Instant.now();
+        EndNodeDevice saved = service.createSmart(d);
+
+        assertEquals(Instant.parse("2024-01-01T00:00:00Z"), saved.getCreatedAt());
+        assertFalse(saved.getUpdatedAt().isBefore(before), "updatedAt " + saved.getUpdatedAt());
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.iotsysirrigation.Services;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexMaintenanceServiceTest {
+
+    @Test
+    void findsAStageNestedInInputStage() {
+        Document plan = Document.parse("""
+                {"stage": "LIMIT", "inputStage": {"stage": "FETCH", "inputStage": {"stage": "COLLSCAN"}}}""");
+        assertTrue(IndexMaintenanceService.containsStage(plan, "COLLSCAN"));
+        assertTrue(IndexMaintenanceService.containsStage(plan, "LIMIT"));
+        assertFalse(IndexMaintenanceService.containsStage(plan, "IXSCAN"));
+    }
+
+    @Test
+    void findsAStageInInputStagesAndSbeQueryPlans() {
+        Document or = Document.parse("""
+                {"stage": "OR", "inputStages": [{"stage": "IXSCAN"}, {"stage": "FETCH", "inputStage": {"stage": "COLLSCAN"}}]}""");
+        assertTrue(IndexMaintenanceService.containsStage(or, "COLLSCAN"));
+
+        // slot-based engine: the stages sit under queryPlan
+        Document sbe = Document.parse("""
+                {"queryPlan": {"stage": "PROJECTION_COVERED", "inputStage": {"stage": "IXSCAN", "indexName": "COLLSCAN_idx"}}}""");
+        assertTrue(IndexMaintenanceService.containsStage(sbe, "IXSCAN"));
+        // only "stage" values count, not other fields that happen to match
+        assertFalse(IndexMaintenanceService.containsStage(sbe, "COLLSCAN"));
+    }
+
+    @Test
+    void ignoresScalarsAndEmptyPlans() {
+        assertFalse(IndexMaintenanceService.containsStage(null, "COLLSCAN"));
+        assertFalse(IndexMaintenanceService.containsStage("COLLSCAN", "COLLSCAN"));
+        assertFalse(IndexMaintenanceService.containsStage(List.of(), "COLLSCAN"));
+        assertFalse(IndexMaintenanceService.containsStage(new Document(), "COLLSCAN"));
+    }
+}
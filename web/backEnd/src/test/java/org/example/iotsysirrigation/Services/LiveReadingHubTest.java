@@ -0,0 +1,129 @@
+package org.example.iotsysirrigation.Services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.example.iotsysirrigation.Models.EndNodeDevice;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LiveReadingHubTest {
+
+    private final SensorChangeStream changeStream = mock(SensorChangeStream.class);
+    private final EndNodeDeviceRepository deviceRepo = mock(EndNodeDeviceRepository.class);
+    private final LiveReadingHub hub = new LiveReadingHub(changeStream, deviceRepo,
+            new ObjectMapper().registerModule(new JavaTimeModule())
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+
+    private LiveReadingHubTest() {
+        ReflectionTestUtils.setField(hub, "maxPending", 8);
+        ReflectionTestUtils.setField(hub, "senders", 1);
+        hub.init();
+        when(deviceRepo.findByDevEui("a1")).thenReturn(Optional.of(device("a1", "org1")));
+        when(deviceRepo.findByDevEui("b2")).thenReturn(Optional.of(device("b2", "org1")));
+        when(deviceRepo.findByDevEui("c3")).thenReturn(Optional.of(device("c3", "org2")));
+    }
+
+    private static EndNodeDevice device(String eui, String org) {
+        EndNodeDevice d = new EndNodeDevice();
+        d.setDevEui(eui);
+        d.setOrganizationId(org);
+        return d;
+    }
+
+    private static SensorReading reading(String eui, long epochMs) {
+        return SensorReading.builder().devEui(eui).timestamp(Instant.ofEpochMilli(epochMs)).build();
+    }
+
+    @Test
+    void slowClientOnlyGetsNewestReadingPerDevice() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        doAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);     // first send (hello) stalls like a slow socket
+            sent.add(inv.<TextMessage>getArgument(0).getPayload());
+            done.countDown();
+            return null;
+        }).when(session).sendMessage(any());
+
+        hub.open(session, "org1", false);
+        hub.subscribe(session, "a1", null);
+        hub.subscribe(session, "b2", null);
+        hub.onReading(reading("a1", 1));
+        hub.onReading(reading("a1", 2));
+        hub.onReading(reading("b2", 5));
+        hub.onReading(reading("a1", 3));
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(sent.get(0).contains("\"hello\""));
+        assertTrue(sent.get(1).contains("\"b2\""), sent.get(1));
+        assertTrue(sent.get(2).contains("\"a1\"") && sent.get(2).contains("1970-01-01T00:00:00.003Z"), sent.get(2));
+        assertEquals(2L, hub.stats().get("conflated"));
+    }
+
+    @Test
+    void liveChangesAreBroadcastAsStatus() throws Exception {
+        CountDownLatch done = new CountDownLatch(3);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s3");
+        doAnswer(inv -> {
+            sent.add(inv.<TextMessage>getArgument(0).getPayload());
+            done.countDown();
+            return null;
+        }).when(session).sendMessage(any());
+
+        when(changeStream.isLive()).thenReturn(true);
+        hub.open(session, "org1", false);
+        assertTrue(waitFor(sent, 1));
+        hub.onLiveChanged(false);
+        assertTrue(waitFor(sent, 2));
+        hub.onLiveChanged(true);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        ObjectMapper json = new ObjectMapper();
+        List<String> got = new ArrayList<>();
+        for (String payload : sent) {
+            var msg = json.readTree(payload);
+            got.add(msg.get("type").asText() + ":" + msg.get("live").asBoolean());
+        }
+        assertEquals(List.of("hello:true", "status:false", "status:true"), got);
+    }
+
+    private static boolean waitFor(List<String> sent, int n) throws InterruptedException {
+        for (int i = 0; i < 500 && sent.size() < n; i++) Thread.sleep(10);
+        return sent.size() >= n;
+    }
+
+    @Test
+    void clientCannotSubscribeOutsideItsOrganization() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s2");
+        hub.open(session, "org1", false);
+
+        assertThrows(AccessDeniedException.class, () -> hub.subscribe(session, "c3", null));
+        assertThrows(AccessDeniedException.class, () -> hub.subscribe(session, null, "org2"));
+        assertThrows(IllegalArgumentException.class, () -> hub.subscribe(session, "zz", null));
+    }
+}
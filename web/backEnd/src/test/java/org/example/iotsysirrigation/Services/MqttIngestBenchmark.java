@@ -0,0 +1,126 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Not a unit test (surefire skips it): publishes ChirpStack-shaped uplinks to a local broker and measures how
+ * fast {@link MqttUplinkSubscriber} + {@link UplinkIngestService} land them in Mongo (sustained uplinks/s,
+ * publish to last insert). Needs a running mosquitto and mongod:
+ * <pre>java -cp ... -Duplinks=200000 -Ddevices=500 -DbatchSize=500 ...MqttIngestBenchmark mongodb://localhost:27017 tcp://localhost:1883</pre>
+ * Uses (and drops) the iot_ingest_bench database.
+ */
+public class MqttIngestBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String mongoUri = args.length > 0 ? args[0] : "mongodb://localhost:27017";
+        String broker = args.length > 1 ? args[1] : "tcp://localhost:1883";
+        int uplinks = Integer.getInteger("uplinks", 200_000);
+        int devices = Integer.getInteger("devices", 500);
+        int batchSize = Integer.getInteger("batchSize", 500);
+
+        try (MongoClient mongo = MongoClients.create(mongoUri)) {
+            MongoTemplate template = new MongoTemplate(mongo, "iot_ingest_bench");
+            template.getDb().drop();
+            ReadingStorageService storage = new ReadingStorageService(template) {
+                @Override
+                public String collection() {
+                    return "sensors";
+                }
+            };
+
+            // device write-behind left off (enabled is only set from config), this measures the reading writes
+            DeviceStateService deviceState = new DeviceStateService(template, new SensorChangeStream(template, storage));
+            UplinkIngestService ingest = new UplinkIngestService(template, storage, deviceState);
+            ReflectionTestUtils.setField(ingest, "mqttEnabled", true);
+            ReflectionTestUtils.setField(ingest, "capacity", 20_000);
+            ReflectionTestUtils.setField(ingest, "batchSize", batchSize);
+            ReflectionTestUtils.setField(ingest, "flushMs", 200L);
+            ReflectionTestUtils.setField(ingest, "offerTimeoutMs", 2_000L);
+            ingest.init();
+
+            MqttUplinkSubscriber subscriber = new MqttUplinkSubscriber(ingest);
+            ReflectionTestUtils.setField(subscriber, "enabled", true);
+            ReflectionTestUtils.setField(subscriber, "url", broker);
+            ReflectionTestUtils.setField(subscriber, "topic", "application/+/device/+/event/up");
+            ReflectionTestUtils.setField(subscriber, "clientId", "bench-ingest");
+            ReflectionTestUtils.setField(subscriber, "qos", 1);
+            ReflectionTestUtils.setField(subscriber, "username", "");
+            ReflectionTestUtils.setField(subscriber, "password", "");
+            subscriber.start();
+            while (!Boolean.TRUE.equals(subscriber.stats().get("connected"))) Thread.sleep(100);
+            Thread.sleep(1_000); // subscribe runs right after connect
+
+            MqttAsyncClient publisher = new MqttAsyncClient(broker, "bench-publisher", new MemoryPersistence());
+            MqttConnectOptions options = new MqttConnectOptions();
+            options.setMaxInflight(1_000);
+            publisher.connect(options).waitForCompletion();
+
+            Random rnd = new Random(1);
+            long t0 = System.nanoTime();
+            for (int i = 0; i < uplinks; i++) {
+                String eui = String.format("%016x", 0x70b3d57ed0000000L + i % devices);
+                byte[] payload = uplink(eui, i / devices, rnd).getBytes(StandardCharsets.UTF_8);
+                String topic = "application/bench/device/" + eui + "/event/up";
+                while (true) {
+                    try {
+                        publisher.publish(topic, payload, 1, false);
+                        break;
+                    } catch (MqttException e) {
+                        if (e.getReasonCode() != MqttException.REASON_CODE_MAX_INFLIGHT) throw e;
+                        Thread.sleep(1);
+                    }
+                }
+            }
+            double publishS = (System.nanoTime() - t0) / 1e9;
+
+            long deadline = System.currentTimeMillis() + 300_000;
+            while (written(ingest) < uplinks && System.currentTimeMillis() < deadline) Thread.sleep(50);
+            double totalS = (System.nanoTime() - t0) / 1e9;
+
+            System.out.printf("%,d uplinks from %d devices, batch-size %d%n", uplinks, devices, batchSize);
+            System.out.printf("published   %8.1f s  %,10.0f uplinks/s%n", publishS, uplinks / publishS);
+            System.out.printf("in Mongo    %8.1f s  %,10.0f uplinks/s%n", totalS, written(ingest) / totalS);
+            System.out.printf("documents   %,d%n", template.getCollection("sensors").countDocuments());
+            System.out.println("writer      " + ingest.stats());
+            System.out.println("mqtt        " + subscriber.stats());
+
+            publisher.disconnect().waitForCompletion();
+            publisher.close();
+            subscriber.stop();
+            ingest.shutdown();
+            template.getDb().drop();
+        }
+    }
+
+    private static long written(UplinkIngestService ingest) {
+        return (Long) ingest.stats().get("inserted") + (Long) ingest.stats().get("failed");
+    }
+
+    /** A ChirpStack v4 up event with the LPP channels the README documents, roughly as the integration sends it. */
+    public static String uplink(String eui, int fCnt, Random rnd) {
+        return String.format(Locale.ROOT, """
+                {"deduplicationId":"%s","time":"2025-06-01T12:00:00Z",
+                 "deviceInfo":{"tenantId":"t","applicationId":"bench","deviceName":"node-%s","devEui":"%s"},
+                 "fCnt":%d,"fPort":2,"data":"AIgFd2UBn2kAAAABcyeSAmcBIgNonARlAQoFAgSwBgAB",
+                 "object":{"gpsLocation":{"0":{"latitude":35.8245,"longitude":10.6345,"altitude":0}},
+                           "barometer":{"1":%.1f},"temperatureSensor":{"2":%.1f},"humiditySensor":{"3":%.1f},
+                           "illuminanceSensor":{"4":%d},"analogInput":{"5":%.2f},"digitalInput":{"6":%d}},
+                 "rxInfo":[{"gatewayId":"a840411d1fdc4150","uplinkId":%d,"rssi":%d,"snr":%.1f,"channel":%d,
+                            "crcStatus":"CRC_OK"}]}""",
+                Long.toHexString(rnd.nextLong()), eui, eui, fCnt,
+                1000 + rnd.nextInt(300) / 10.0, 15 + rnd.nextInt(200) / 10.0, 30 + rnd.nextInt(600) / 10.0,
+                rnd.nextInt(2000), rnd.nextInt(330) / 100.0, rnd.nextInt(2),
+                rnd.nextInt(65536), -40 - rnd.nextInt(80), rnd.nextInt(200) / 10.0 - 5, rnd.nextInt(8));
+    }
+}
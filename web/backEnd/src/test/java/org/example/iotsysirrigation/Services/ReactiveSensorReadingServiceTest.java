@@ -0,0 +1,43 @@
+package org.example.iotsysirrigation.Services;
+
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Models.SensorReadingPoint;
+import org.example.iotsysirrigation.Repositories.ReactiveSensorReadingRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReactiveSensorReadingServiceTest {
+
+    private final ReactiveSensorReadingRepository repo = mock(ReactiveSensorReadingRepository.class);
+    private final ReactiveSensorReadingService service = new ReactiveSensorReadingService(repo);
+
+    private static final Instant FROM = Instant.parse("2025-06-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2025-06-02T00:00:00Z");
+
+    @Test
+    void fullReadingsGetTheBlockingPathsDefaults() {
+        when(repo.findByDevEuiAndTimestampBetweenOrderByTimestampDesc("a1", FROM, TO))
+                .thenReturn(Flux.just(SensorReading.builder().id("x").devEui("a1").timestamp(TO).build()));
+
+        List<?> rows = service.fetch("a1", FROM, TO, null).collectList().block();
+        SensorReading r = (SensorReading) rows.get(0);
+        assertEquals(List.of(), r.getRxInfo());
+        assertNotNull(r.getSensorsReading());
+        verify(repo, never()).findPoints(any(), any(), any(), any());
+    }
+
+    @Test
+    void fieldsSwitchToTheProjectedPoints() {
+        when(repo.findPoints("a1", FROM, TO, List.of("humiditySensor")))
+                .thenReturn(Flux.just(new SensorReadingPoint(TO, null)));
+
+        List<?> rows = service.fetch("a1", FROM, TO, List.of("humiditySensor")).collectList().block();
+        assertNotNull(((SensorReadingPoint) rows.get(0)).getSensorsReading());
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReadingRedecodeServiceTest {
+
+    private static final Instant FROM = Instant.parse("2025-06-01T00:00:00Z"), TO = Instant.parse("2025-06-02T00:00:00Z");
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> coll = mock(MongoCollection.class);
+    private final ReadingStorageService storage = mock(ReadingStorageService.class);
+    private final SensorReadingService readingService = mock(SensorReadingService.class);
+    private final ReadingRollupService rollupService = mock(ReadingRollupService.class);
+    private final ReadingRedecodeService service = new ReadingRedecodeService(mongoTemplate, storage, readingService, rollupService);
+
+    @SuppressWarnings("unchecked")
+    private ReadingRedecodeServiceTest() {
+        when(storage.collection()).thenReturn("sensors");
+        when(mongoTemplate.getCollection("sensors")).thenReturn(coll);
+        FindIterable<Document> find = mock(FindIterable.class, RETURNS_SELF);
+        MongoCursor<Document> cursor = mock(MongoCursor.class);
+        when(coll.find(any(Document.class))).thenReturn(find);
+        when(find.cursor()).thenReturn(cursor);
+        when(cursor.hasNext()).thenReturn(true, false);
+        // stored before the device profile had a codec: no object_json yet
+        when(cursor.next()).thenReturn(new Document("_id", "r1").append("data", CayenneLppDecoderTest.README_FRAME));
+        BulkWriteResult written = mock(BulkWriteResult.class);
+        when(written.getModifiedCount()).thenReturn(1);
+        when(coll.bulkWrite(anyList(), any())).thenReturn(written);
+        when(rollupService.isEnabled()).thenReturn(true);
+        when(rollupService.rebuild(FROM, TO)).thenReturn(Map.of("readings", 1L));
+    }
+
+    private Map<String, Object> await() throws InterruptedException {
+        for (int i = 0; i < 500 && "running".equals(service.status().get("state")); i++) Thread.sleep(10);
+        return service.status();
+    }
+
+    @Test
+    void applyRunsInTheBackgroundThenRebuildsRollupsAndMovesTheEtags() throws Exception {
+        Map<String, Object> started = service.start(FROM, TO, true);
+        assertNotNull(started.get("state"));
+
+        Map<String, Object> done = await();
+        assertEquals("done", done.get("state"));
+        assertEquals(1L, done.get("missingObjectJson"));
+        assertEquals(1L, done.get("filled"));
+        assertEquals(Map.of("readings", 1L), done.get("rollups"));
+        verify(rollupService).rebuild(FROM, TO);
+        verify(readingService).readingsRewritten();
+    }
+
+    @Test
+    void aDryRunRewritesNothing() throws Exception {
+        service.start(FROM, TO, false);
+
+        Map<String, Object> done = await();
+        assertEquals("done", done.get("state"));
+        assertEquals(1L, done.get("missingObjectJson"));
+        assertEquals(0L, done.get("filled"));
+        verify(coll, never()).bulkWrite(anyList(), any());
+        verify(rollupService, never()).rebuild(any(), any());
+        verify(readingService, never()).readingsRewritten();
+    }
+
+    @Test
+    void applyIsRefusedOnTimeSeriesStorage() {
+        when(storage.isTimeSeries()).thenReturn(true);
+        assertThrows(IllegalStateException.class, () -> service.start(FROM, TO, true));
+        assertEquals("idle", service.status().get("state"));
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.iotsysirrigation.Services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.example.iotsysirrigation.DTO.Response.RollupBucket;
+import org.bson.conversions.Bson;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.SensorReadingRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ReadingRollupServiceTest {
+
+    private static final Map<String, Object> OBJECT_JSON = Map.of(
+            "humiditySensor", Map.of("3", 78),
+            "gpsLocation", Map.of("0", Map.of("latitude", 36.8, "longitude", 10.1)),
+            "$bad", Map.of("1", 5),
+            "note", "text");
+
+    @Test
+    void numericLeavesFlattenObjectJson() {
+        Map<String, Double> leaves = ReadingRollupService.numericLeaves(OBJECT_JSON);
+        assertEquals(Map.of(
+                "humiditySensor.3", 78.0,
+                "gpsLocation.0.latitude", 36.8,
+                "gpsLocation.0.longitude", 10.1), leaves);
+    }
+
+    @Test
+    void bucketsMergeAndSurviveStorage() {
+        ReadingRollupService.Bucket a = new ReadingRollupService.Bucket();
+        a.add(Instant.ofEpochSecond(120), Map.of("humiditySensor.3", 70.0));
+        a.add(Instant.ofEpochSecond(60), Map.of("humiditySensor.3", 90.0));   // late arrival, not the "last"
+        ReadingRollupService.Bucket b = new ReadingRollupService.Bucket();
+        b.add(Instant.ofEpochSecond(3000), Map.of("humiditySensor.3", 80.0, "gpsLocation.0.latitude", 36.8));
+
+        ReadingRollupService.Bucket day = new ReadingRollupService.Bucket();
+        day.merge(ReadingRollupService.Bucket.fromDocument(a.toDocument("a1", Instant.EPOCH)));
+        day.merge(ReadingRollupService.Bucket.fromDocument(b.toDocument("a1", Instant.EPOCH)));
+
+        Document stored = day.toDocument("a1", Instant.EPOCH);
+        assertEquals(3L, stored.get("count"));
+        RollupBucket.Metric h = ReadingRollupService.Bucket.fromDocument(stored).metrics.get("humiditySensor.3").toMetric();
+        assertEquals(70.0, h.min());
+        assertEquals(90.0, h.max());
+        assertEquals(80.0, h.avg(), 1e-9);
+        assertEquals(3, h.count());
+        assertEquals(80.0, h.last());
+        assertEquals(1, ReadingRollupService.Bucket.fromDocument(stored).metrics.get("gpsLocation.0.latitude").count);
+    }
+
+    @Test
+    void metricWithoutValuesHasNoNonFiniteFields() throws Exception {
+        RollupBucket.Metric empty = ReadingRollupService.Stats.fromDocument(new Document("count", 0L)).toMetric();
+        assertNull(empty.min());
+        assertNull(empty.max());
+        assertNull(empty.avg());
+        assertNull(empty.last());
+        // serializes as plain JSON instead of failing on Infinity/NaN
+        assertEquals("{\"min\":null,\"max\":null,\"avg\":null,\"count\":0,\"last\":null}",
+                new ObjectMapper().writeValueAsString(empty));
+    }
+
+    @Test
+    void bucketsParseLikeReadingsToo() throws Exception {
+        RollupBucket bucket = new RollupBucket(Instant.parse("2025-06-01T10:00:00Z"), 2, Map.of(
+                "humiditySensor.3", new RollupBucket.Metric(70.0, 80.0, 75.0, 2, 80.0)));
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        Map<?, ?> json = mapper.readValue(mapper.writeValueAsString(bucket), Map.class);
+
+        assertEquals(json.get("t"), json.get("timestamp"));
+        assertEquals(Map.of("humiditySensor", Map.of("3", 80.0)), json.get("sensorsReading"));
+        assertEquals(75.0, ((Map<?, ?>) ((Map<?, ?>) json.get("metrics")).get("humiditySensor.3")).get("avg"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void versionMovesWhenTheNewestDailyBucketIsFlushed() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        MongoCollection<Document> daily = mock(MongoCollection.class);
+        FindIterable<Document> find = mock(FindIterable.class, RETURNS_SELF);
+        when(mongoTemplate.getCollection(ReadingRollupService.DAILY)).thenReturn(daily);
+        when(daily.find(any(Bson.class))).thenReturn(find);
+        Date today = Date.from(Instant.parse("2025-06-01T00:00:00Z"));
+        when(find.first()).thenReturn(
+                new Document("t", today).append("count", 3L).append("updatedAt", new Date(1000)),
+                new Document("t", today).append("count", 4L).append("updatedAt", new Date(2000)),
+                null);
+        ReadingRollupService service = new ReadingRollupService(mongoTemplate, mock(SensorChangeStream.class),
+                mock(SensorReadingRepository.class), mock(EndNodeDeviceRepository.class));
+
+        List<Object> before = service.version("a1");
+        assertNotEquals(before, service.version("a1"));
+        assertEquals(List.of(0L), service.version("a1"));
+    }
+}
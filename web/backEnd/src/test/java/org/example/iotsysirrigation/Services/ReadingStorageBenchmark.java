@@ -0,0 +1,146 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.*;
+import org.bson.Document;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Not a unit test (surefire skips it): loads the same synthetic one-minute uplinks into a plain collection
+ * (with the SensorReading compound index) and a time-series collection (as ReadingStorageService creates it),
+ * then prints storage/index size and range-query latency for both. Needs a running mongod:
+ * <pre>java -cp ... -Ddevices=20 -Ddays=30 ...ReadingStorageBenchmark mongodb://localhost:27017</pre>
+ * Uses (and drops) the iot_storage_bench database.
+ */
+public class ReadingStorageBenchmark {
+
+    private static final int RUNS = 50;
+    private static final int BATCH = 5_000;
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        String uri = args.length > 0 ? args[0] : "mongodb://localhost:27017";
+        int devices = Integer.getInteger("devices", 20);
+        int days = Integer.getInteger("days", 30);
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            MongoDatabase db = client.getDatabase("iot_storage_bench");
+            db.drop();
+
+            MongoCollection<Document> plain = db.getCollection("sensors_plain");
+            plain.createIndex(Indexes.compoundIndex(Indexes.ascending("dev_eui"),
+                    Indexes.descending("timestamp"), Indexes.descending("_id")));
+            db.createCollection("sensors_ts", new CreateCollectionOptions().timeSeriesOptions(
+                    new TimeSeriesOptions(ReadingStorageService.TIME_FIELD)
+                            .metaField(ReadingStorageService.META_FIELD)
+                            .granularity(TimeSeriesGranularity.MINUTES)));
+            MongoCollection<Document> ts = db.getCollection("sensors_ts");
+            ts.createIndex(Indexes.compoundIndex(Indexes.ascending("dev_eui"), Indexes.descending("timestamp")));
+
+            Instant end = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+            Instant start = end.minus(Duration.ofDays(days));
+            long loadPlain = load(plain, devices, start, end);
+            long loadTs = load(ts, devices, start, end);
+            System.out.printf("%d devices x %d days of one-minute readings%n", devices, days);
+            System.out.printf("load             plain %6d ms   timeseries %6d ms%n", loadPlain, loadTs);
+
+            Document sp = storage(db, "sensors_plain"), st = storage(db, "sensors_ts");
+            for (String k : List.of("size", "storageSize", "totalIndexSize")) {
+                System.out.printf("%-16s plain %10.1f MB   timeseries %10.1f MB%n", k,
+                        mb(sp.get(k)), mb(st.get(k)));
+            }
+
+            Random rnd = new Random(7);
+            for (Duration window : List.of(Duration.ofHours(1), Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(days))) {
+                long[] a = new long[RUNS], b = new long[RUNS];
+                for (int i = 0; i < RUNS; i++) {
+                    String eui = eui(rnd.nextInt(devices));
+                    Instant to = end.minus(Duration.ofMinutes(rnd.nextInt(60)));
+                    Instant from = to.minus(window);
+                    a[i] = range(plain, eui, from, to);
+                    b[i] = range(ts, eui, from, to);
+                }
+                System.out.printf("range %-10s plain p50 %6.2f p95 %6.2f ms   timeseries p50 %6.2f p95 %6.2f ms%n",
+                        window, pct(a, 50), pct(a, 95), pct(b, 50), pct(b, 95));
+            }
+            db.drop();
+        }
+    }
+
+    private static long load(MongoCollection<Document> c, int devices, Instant start, Instant end) {
+        long t0 = System.nanoTime();
+        List<Document> batch = new ArrayList<>(BATCH);
+        Random rnd = new Random(42);
+        // interleaved like real traffic: every device reports once per minute
+        for (Instant t = start; t.isBefore(end); t = t.plusSeconds(60)) {
+            for (int d = 0; d < devices; d++) {
+                batch.add(uplink(d, t, rnd));
+                if (batch.size() == BATCH) {
+                    c.insertMany(batch, new InsertManyOptions().ordered(false));
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) c.insertMany(batch, new InsertManyOptions().ordered(false));
+        return (System.nanoTime() - t0) / 1_000_000;
+    }
+
+    private static Document uplink(int device, Instant t, Random rnd) {
+        return new Document("application_id", "9b0c1d2e-bench")
+                .append("dev_eui", eui(device))
+                .append("f_port", 2)
+                .append("data", "AWcBEQJoTwNzJ+4EZQEK")
+                .append("rx_info", List.of(new Document("gatewayId", "a84041ffff1e2b3c")
+                        .append("rssi", -60 - rnd.nextInt(40)).append("snr", 5 + rnd.nextInt(80) / 10.0)))
+                .append("object_json", new Document("humiditySensor", new Document("3", 40 + rnd.nextInt(50)))
+                        .append("barometer", new Document("1", 1000 + rnd.nextInt(300) / 10.0))
+                        .append("temperatureSensor", new Document("2", 15 + rnd.nextInt(200) / 10.0))
+                        .append("illuminanceSensor", new Document("4", rnd.nextInt(1000)))
+                        .append("analogInput", new Document("5", rnd.nextInt(330) / 10.0))
+                        .append("digitalInput", new Document("6", rnd.nextInt(2)))
+                        .append("gpsLocation", new Document("0", new Document("latitude", 36.8)
+                                .append("longitude", 10.18).append("altitude", 12))))
+                .append("timestamp", Date.from(t));
+    }
+
+    /** Same shape as SensorReadingRepository.findByDevEuiAndTimestampBetweenOrderByTimestampDesc. */
+    private static long range(MongoCollection<Document> c, String eui, Instant from, Instant to) {
+        long t0 = System.nanoTime();
+        int n = 0;
+        for (Document ignored : c.find(Filters.and(Filters.eq("dev_eui", eui),
+                        Filters.gt("timestamp", Date.from(from)), Filters.lt("timestamp", Date.from(to))))
+                .sort(Sorts.descending("timestamp"))) {
+            n++;
+        }
+        sink += n;
+        return System.nanoTime() - t0;
+    }
+
+    private static Document storage(MongoDatabase db, String name) {
+        Document d = db.getCollection(name)
+                .aggregate(List.of(new Document("$collStats", new Document("storageStats", new Document()))))
+                .first();
+        return d == null ? new Document() : d.get("storageStats", Document.class);
+    }
+
+    private static String eui(int device) {
+        return String.format("a84041000000%04x", device);
+    }
+
+    private static double mb(Object bytes) {
+        return bytes instanceof Number n ? n.doubleValue() / (1024 * 1024) : Double.NaN;
+    }
+
+    private static double pct(long[] nanos, int p) {
+        long[] s = nanos.clone();
+        Arrays.sort(s);
+        return s[Math.min(s.length - 1, s.length * p / 100)] / 1e6;
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReadingStorageServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> source = mock(MongoCollection.class), target = mock(MongoCollection.class),
+            checkpoints = mock(MongoCollection.class);
+    private final ReadingStorageService service = new ReadingStorageService(mongoTemplate);
+    private final Set<Object> copiedIds = new LinkedHashSet<>();
+
+    private ReadingStorageServiceTest() {
+        when(mongoTemplate.getCollection("sensors")).thenReturn(source);
+        when(mongoTemplate.getCollection("sensors_ts")).thenReturn(target);
+        when(mongoTemplate.getCollection("storage_migrations")).thenReturn(checkpoints);
+        FindIterable<Document> noCheckpoint = pages();
+        when(checkpoints.find(any(Bson.class))).thenReturn(noCheckpoint);
+        // the target answers "already present" for whatever was inserted into it
+        when(target.find(any(Bson.class))).thenAnswer(inv -> {
+            FindIterable<Document> present = pages();
+            doAnswer(each -> {
+                Consumer<Document> c = each.getArgument(0);
+                copiedIds.forEach(id -> c.accept(new Document("_id", id)));
+                return null;
+            }).when(present).forEach(any());
+            return present;
+        });
+        when(target.insertMany(anyList(), any())).thenAnswer(inv -> {
+            List<Document> docs = inv.getArgument(0);
+            docs.forEach(d -> copiedIds.add(d.get("_id")));
+            return null;
+        });
+    }
+
+    private static Document reading(int id) {
+        return new Document("_id", id).append("dev_eui", "a1").append("timestamp", new Date());
+    }
+
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    private static FindIterable<Document> pages(List<Document>... pages) {
+        FindIterable<Document> it = mock(FindIterable.class, RETURNS_SELF);
+        Iterator<List<Document>> next = Arrays.asList(pages).iterator();
+        when(it.into(anyCollection())).thenAnswer(inv -> {
+            Collection<Document> into = inv.getArgument(0);
+            if (next.hasNext()) into.addAll(next.next());
+            return into;
+        });
+        return it;
+    }
+
+    @Test
+    void catchUpCopiesReadingsInsertedBelowTheResumeId() {
+        // the _id walk sees 1 and 3; 2 was written by another writer during the copy with a smaller ObjectId
+        FindIterable<Document> walk = pages(List.of(reading(1), reading(3)), List.of());
+        FindIterable<Document> recent = pages(List.of(reading(2), reading(3)), List.of());
+        when(source.find(any(Bson.class))).thenAnswer(inv ->
+                inv.getArgument(0, Bson.class).toBsonDocument().containsKey("timestamp") ? recent : walk);
+
+        ReadingStorageService.Migration m = service.new Migration("sensors", "sensors_ts", 100);
+        Instant started = m.startedAt;
+        m.run();
+
+        assertEquals("done", m.state);
+        assertEquals(Set.of(1, 3, 2), copiedIds);
+        assertEquals(1, m.caughtUp);
+        // the next resume looks back only to this pass
+        assertFalse(m.catchUpFrom.toInstant().isBefore(started.minusSeconds(600)));
+        verify(checkpoints, atLeast(2)).replaceOne(any(Bson.class), argThat(cp -> cp.get("catchUpFrom") != null), any());
+    }
+}
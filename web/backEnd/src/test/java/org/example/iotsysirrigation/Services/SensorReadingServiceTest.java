@@ -0,0 +1,125 @@
+package org.example.iotsysirrigation.Services;
+
+import org.example.iotsysirrigation.DTO.Response.ReadingPage;
+import org.example.iotsysirrigation.Models.SensorReading;
+import org.example.iotsysirrigation.Repositories.EndNodeDeviceRepository;
+import org.example.iotsysirrigation.Repositories.SensorReadingRepository;
+import org.example.iotsysirrigation.Repositories.SensorReadingRepositoryCustom.NewestMark;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SensorReadingServiceTest {
+
+    private final SensorReadingRepository repo = mock(SensorReadingRepository.class);
+    private final EndNodeDeviceRepository deviceRepo = mock(EndNodeDeviceRepository.class);
+    private final LatestReadingCache cache = mock(LatestReadingCache.class);
+    private final SensorReadingService service = new SensorReadingService(repo, deviceRepo, cache);
+
+    private static SensorReading reading(String id, long epochMs) {
+        return SensorReading.builder().id(id).devEui("a1").timestamp(Instant.ofEpochMilli(epochMs)).build();
+    }
+
+    @Test
+    void cursorRoundTrip() {
+        Instant ts = Instant.ofEpochMilli(1_757_528_502_606L);
+        String token = SensorReadingService.encodeCursor(ts, "68c1c1b6f1720d4e739ef6f0");
+        String[] parts = SensorReadingService.decodeCursor(token);
+        assertEquals("1757528502606", parts[0]);
+        assertEquals("68c1c1b6f1720d4e739ef6f0", parts[1]);
+    }
+
+    @Test
+    void garbageCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SensorReadingService.decodeCursor("not-a-cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> service.page("a1", null, null, "eDp5", 10));
+    }
+
+    @Test
+    void pageEmitsCursorOnlyWhenMoreRowsExist() {
+        when(repo.findPage(eq("a1"), isNull(), isNull(), isNull(), isNull(), eq(3)))
+                .thenReturn(List.of(reading("c", 30), reading("b", 20), reading("a", 10)));
+
+        ReadingPage first = service.page("a1", null, null, null, 2);
+        assertEquals(2, first.items().size());
+        assertNotNull(first.nextCursor());
+
+        when(repo.findPage(eq("a1"), isNull(), isNull(), eq(Instant.ofEpochMilli(20)), eq("b"), eq(3)))
+                .thenReturn(List.of(reading("a", 10)));
+
+        ReadingPage second = service.page("a1", null, null, first.nextCursor(), 2);
+        assertEquals(1, second.items().size());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void lastOneFallsBackToRepositoryAndFillsCache() {
+        SensorReading r = reading("a", 10);
+        when(cache.get("a1")).thenReturn(Optional.empty());
+        when(repo.findByDevEuiOrderByTimestampDesc(eq("a1"), any())).thenReturn(List.of(r));
+
+        SensorReading served = service.lastOne("a1").orElseThrow();
+        assertEquals("a", served.getId());
+        verify(cache).offer(r);
+
+        when(cache.get("a1")).thenReturn(Optional.of(r));
+        service.lastOne("a1");
+        verify(repo, times(1)).findByDevEuiOrderByTimestampDesc(eq("a1"), any());
+    }
+
+    @Test
+    void defaultsAreAppliedToACopyOfASharedReading() {
+        SensorReading shared = reading("a", 10);
+        when(cache.get("a1")).thenReturn(Optional.of(shared));
+
+        SensorReading served = service.lastOne("a1").orElseThrow();
+        assertEquals(List.of(), served.getRxInfo());
+        assertNotNull(served.getSensorsReading());
+        assertNull(shared.getRxInfo());
+        assertNull(shared.getSensorsReading());
+
+        SensorReading complete = shared.toBuilder().rxInfo(List.of()).sensorsReading(new HashMap<>()).build();
+        assertSame(complete, SensorReadingService.applyDefaults(complete));
+    }
+
+    @Test
+    void newestMarkUsesCacheOnlyWhenItKnowsEveryDevice() {
+        when(cache.get("a1")).thenReturn(Optional.of(reading("x", 50)));
+        assertEquals(new NewestMark(Instant.ofEpochMilli(50), "x"), service.newestMark("a1").orElseThrow());
+        verify(repo, never()).findNewestMark(any(), any(), any());
+
+        when(cache.get("b2")).thenReturn(Optional.empty());
+        when(repo.findNewestMark(List.of("a1", "b2"), null, null))
+                .thenReturn(Optional.of(new NewestMark(Instant.ofEpochMilli(70), "y")));
+        assertEquals("y", service.newestMark(List.of("a1", "b2")).orElseThrow().id());
+    }
+
+    @Test
+    void rewritingReadingsMovesTheRevisionAndReloadsTheCache() {
+        SensorReadingService.Revision before = service.revision();
+        service.readingsRewritten();
+
+        assertEquals(before.generation() + 1, service.revision().generation());
+        assertNotNull(service.revision().at());
+        verify(cache).onResync();
+    }
+
+    @Test
+    void theCacheGetsTheStoredReadingNotOneWithADefaultedTimestamp() {
+        SensorReading undated = SensorReading.builder().id("a").devEui("a1").build();
+        when(cache.get("a1")).thenReturn(Optional.empty());
+        when(repo.findByDevEuiOrderByTimestampDesc(eq("a1"), any())).thenReturn(List.of(undated));
+        when(repo.findLatestPerDevice(List.of("a1"))).thenReturn(List.of(undated));
+
+        assertNotNull(service.lastOne("a1").orElseThrow().getTimestamp());
+        assertNotNull(service.latestPerDevice(List.of("a1")).get("a1").getTimestamp());
+        verify(cache, times(2)).offer(argThat(r -> r.getTimestamp() == null));
+    }
+}
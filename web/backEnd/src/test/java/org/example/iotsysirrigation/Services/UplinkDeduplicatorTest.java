@@ -0,0 +1,75 @@
+package org.example.iotsysirrigation.Services;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UplinkDeduplicatorTest {
+
+    private static final long WINDOW = 60_000;
+
+    private static Document uplink(String eui, long fCnt, String data) {
+        return new Document("dev_eui", eui).append("f_cnt", fCnt).append("data", data);
+    }
+
+    @Test
+    void sameFrameWithinWindowIsDuplicate() {
+        UplinkDeduplicator d = new UplinkDeduplicator(WINDOW, 1000, 0);
+
+        assertFalse(d.isDuplicate(uplink("0011223344556677", 42, "AmcBIg=="), 0));
+        // second gateway, same frame
+        assertTrue(d.isDuplicate(uplink("0011223344556677", 42, "AmcBIg=="), 200));
+        // next frame, other device, and a rejoined device reusing the counter with a new payload
+        assertFalse(d.isDuplicate(uplink("0011223344556677", 43, "AmcBIw=="), 300));
+        assertFalse(d.isDuplicate(uplink("0011223344556678", 42, "AmcBIg=="), 300));
+        assertFalse(d.isDuplicate(uplink("0011223344556677", 42, "AmcBJA=="), 400));
+
+        assertEquals(1L, d.stats().get("duplicates"));
+        assertEquals(5L, d.stats().get("checked"));
+    }
+
+    @Test
+    void remembersForAtLeastHalfAndAtMostAFullWindow() {
+        UplinkDeduplicator d = new UplinkDeduplicator(WINDOW, 1000, 0);
+        assertFalse(d.isDuplicate(uplink("a1", 1, "x"), 10_000));
+
+        assertTrue(d.isDuplicate(uplink("a1", 1, "x"), 29_999));
+        // half window: rotated into the previous generation, still remembered
+        assertTrue(d.isDuplicate(uplink("a1", 1, "x"), 30_001));
+        // next rotation drops it (remembered for 50 s here)
+        assertFalse(d.isDuplicate(uplink("a1", 1, "x"), 60_002));
+        // a full window of silence clears both generations at once
+        assertFalse(d.isDuplicate(uplink("a1", 1, "x"), 60_002 + WINDOW));
+    }
+
+    @Test
+    void fallsBackToUplinkIdWithoutFrameCounter() {
+        UplinkDeduplicator d = new UplinkDeduplicator(WINDOW, 1000, 0);
+        Document a = new Document("dev_eui", "a1").append("rx_info",
+                List.of(new Document("gatewayId", "g2").append("uplinkId", 9001), new Document("gatewayId", "g1").append("uplinkId", 77)));
+        Document redelivered = new Document("dev_eui", "a1").append("rx_info",
+                List.of(new Document("gatewayId", "g1").append("uplinkId", 77), new Document("gatewayId", "g2").append("uplinkId", 9001)));
+
+        assertFalse(d.isDuplicate(a, 0));
+        assertTrue(d.isDuplicate(redelivered, 1));
+        assertFalse(d.isDuplicate(new Document("dev_eui", "a1"), 2));
+        assertEquals(1L, d.stats().get("unkeyed"));
+    }
+
+    @Test
+    void staysBoundedUnderFloodByRotatingEarly() {
+        UplinkDeduplicator d = new UplinkDeduplicator(WINDOW, 1000, 0);
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(d.isDuplicate(uplink("a1", i, "x"), 0));
+        }
+        assertTrue((int) d.stats().get("entries") <= 1000);
+        assertEquals(9L, d.stats().get("earlyRotations"));
+        // the last generation and the one before it are still remembered
+        assertTrue(d.isDuplicate(uplink("a1", 9_999, "x"), 0));
+        assertTrue(d.isDuplicate(uplink("a1", 8_500, "x"), 0));
+        assertFalse(d.isDuplicate(uplink("a1", 7_999, "x"), 0));
+    }
+}
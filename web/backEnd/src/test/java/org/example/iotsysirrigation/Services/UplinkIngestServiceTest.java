@@ -0,0 +1,222 @@
+package org.example.iotsysirrigation.Services;
+
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class UplinkIngestServiceTest {
+
+    static final String UPLINK = """
+            {"deduplicationId":"3b1c","time":"2025-06-01T12:00:00.1Z",
+             "deviceInfo":{"applicationId":"app-1","devEui":"00-11-22-33-AA-BB-CC-DD","deviceName":"valve-1"},
+             "fCnt":42,"fPort":2,"data":"AmcBIgNonAYAAQ==",
+             "object":{"temperatureSensor":{"2":32.1},"humiditySensor":{"3":49.5},"digitalInput":{"6":1}},
+             "rxInfo":[{"gatewayId":"gw-1","rssi":-57,"snr":9.25}]}""";
+
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> collection = mock(MongoCollection.class);
+    private final List<List<Document>> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private UplinkIngestService service;
+
+    private void start(int batchSize, long flushMs) {
+        start(batchSize, flushMs, null);
+    }
+
+    private void start(int batchSize, long flushMs, Path spoolDir) {
+        MongoTemplate template = mock(MongoTemplate.class);
+        ReadingStorageService storage = mock(ReadingStorageService.class);
+        when(storage.collection()).thenReturn("sensors");
+        when(template.getCollection("sensors")).thenReturn(collection);
+        service = new UplinkIngestService(template, storage, mock(DeviceStateService.class));
+        ReflectionTestUtils.setField(service, "mqttEnabled", true);
+        ReflectionTestUtils.setField(service, "capacity", 1000);
+        ReflectionTestUtils.setField(service, "batchSize", batchSize);
+        ReflectionTestUtils.setField(service, "flushMs", flushMs);
+        ReflectionTestUtils.setField(service, "offerTimeoutMs", 10L);
+        ReflectionTestUtils.setField(service, "dedupEnabled", true);
+        ReflectionTestUtils.setField(service, "dedupWindowMs", 60_000L);
+        ReflectionTestUtils.setField(service, "dedupMaxEntries", 10_000);
+        if (spoolDir != null) {
+            ReflectionTestUtils.setField(service, "spoolEnabled", true);
+            ReflectionTestUtils.setField(service, "spoolDir", spoolDir.toString());
+            ReflectionTestUtils.setField(service, "spoolSegmentBytes", 4_096L);
+            ReflectionTestUtils.setField(service, "spoolMaxBytes", 10_000_000L);
+            ReflectionTestUtils.setField(service, "spoolFsync", false);
+        }
+        service.init();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        release.countDown();
+        if (service != null) service.shutdown();
+    }
+
+    private static byte[] uplink(int i) {
+        return UPLINK.replace("00-11-22-33-AA-BB-CC-DD", String.format("%016x", i % 7))
+                .replace("\"fCnt\":42", "\"fCnt\":" + i)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void mapsChirpstackEventToBridgeDocument() throws Exception {
+        Instant now = Instant.parse("2025-06-01T12:00:01Z");
+        Document d = UplinkDocuments.fromChirpstack(UPLINK.getBytes(StandardCharsets.UTF_8), now);
+
+        assertEquals("app-1", d.get("application_id"));
+        assertEquals("00112233aabbccdd", d.get("dev_eui"));
+        assertEquals(2, d.get("f_port"));
+        assertEquals("AmcBIgNonAYAAQ==", d.get("data"));
+        assertEquals(Date.from(now), d.get("timestamp"));
+        assertEquals(32.1, ((Map<?, ?>) ((Map<?, ?>) d.get("object_json")).get("temperatureSensor")).get("2"));
+        assertEquals(1, ((Map<?, ?>) ((Map<?, ?>) d.get("object_json")).get("digitalInput")).get("6"));
+        assertEquals(-57, ((Map<?, ?>) ((List<?>) d.get("rx_info")).get(0)).get("rssi"));
+
+        assertNull(UplinkDocuments.fromChirpstack("{\"deviceInfo\":{}}".getBytes(StandardCharsets.UTF_8), now));
+
+        // no codec on the device profile: object_json comes from the LPP frame
+        String noCodec = UPLINK.replaceAll("\"object\":\\{.*?\\}\\},", "");
+        Document decoded = UplinkDocuments.fromChirpstack(noCodec.getBytes(StandardCharsets.UTF_8), now);
+        assertEquals(Map.of("2", 29.0), decoded.get("object_json", Document.class).get("temperatureSensor"));
+    }
+
+    @Test
+    void writesEverythingInBoundedUnorderedBatches() throws Exception {
+        doAnswer(inv -> {
+            batches.add(new ArrayList<>(inv.getArgument(0)));
+            return null;
+        }).when(collection).insertMany(anyList(), any(InsertManyOptions.class));
+        start(50, 200);
+        for (int i = 0; i < 420; i++) {
+            assertTrue(service.submit(uplink(i), Instant.now()));
+        }
+        assertTrue(service.submit("not json".getBytes(StandardCharsets.UTF_8), Instant.now()));
+        // the last partial batch goes out after flush-ms at the latest
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!Long.valueOf(420).equals(service.stats().get("inserted")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(420, batches.stream().mapToInt(List::size).sum());
+        assertTrue(batches.stream().allMatch(b -> b.size() <= 50));
+        assertTrue(batches.size() >= 9, "expected full batches, got " + batches.size());
+        verify(collection, atLeastOnce()).insertMany(anyList(), argThat((InsertManyOptions o) -> !o.isOrdered()));
+        assertEquals(420L, service.stats().get("inserted"));
+        assertEquals(1L, service.stats().get("rejected"));
+    }
+
+    @Test
+    void dropsRepeatedUplinksBeforeWriting() throws Exception {
+        doAnswer(inv -> {
+            batches.add(new ArrayList<>(inv.getArgument(0)));
+            return null;
+        }).when(collection).insertMany(anyList(), any(InsertManyOptions.class));
+        start(50, 50);
+        for (int gateway = 0; gateway < 3; gateway++) {
+            for (int i = 0; i < 20; i++) service.submit(uplink(i), Instant.now());
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((!Long.valueOf(60).equals(((Map<?, ?>) service.stats().get("dedup")).get("checked"))
+                || !Long.valueOf(20).equals(service.stats().get("inserted"))) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(20, batches.stream().mapToInt(List::size).sum());
+        assertEquals(40L, ((Map<?, ?>) service.stats().get("dedup")).get("duplicates"));
+    }
+
+    @Test
+    void dropsWhenQueueStaysFull() throws Exception {
+        doAnswer(inv -> {
+            release.await(); // stuck database
+            return null;
+        }).when(collection).insertMany(anyList(), any(InsertManyOptions.class));
+        start(10, 50);
+        int accepted = 0;
+        for (int i = 0; i < 1_100; i++) {
+            if (service.submit(uplink(i), Instant.now())) accepted++;
+        }
+        // capacity 1000 plus whatever the writer already took off the queue
+        assertTrue(accepted >= 1_000 && accepted < 1_100, "accepted " + accepted);
+        assertEquals(1_100L - accepted, service.stats().get("dropped"));
+        assertFalse(service.offer(uplink(0), Instant.now()));
+    }
+
+    @Test
+    void spoolsWhileTheDatabaseIsDownAndReplaysInOrder(@TempDir Path dir) throws Exception {
+        AtomicBoolean down = new AtomicBoolean(true);
+        doAnswer(inv -> {
+            if (down.get()) throw new MongoTimeoutException("no primary");
+            batches.add(new ArrayList<>(inv.getArgument(0)));
+            return null;
+        }).when(collection).insertMany(anyList(), any(InsertManyOptions.class));
+        start(20, 50, dir);
+        for (int i = 0; i < 100; i++) service.submit(uplink(i), Instant.now());
+        awaitStat("spool", "spooled", 100L);
+        assertTrue(batches.isEmpty());
+        assertEquals(100L, ((Map<?, ?>) service.stats().get("spool")).get("depth"));
+
+        down.set(false);
+        for (int i = 100; i < 150; i++) service.submit(uplink(i), Instant.now());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Long.valueOf(150).equals(service.stats().get("inserted")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        List<Long> order = batches.stream().flatMap(List::stream).map(d -> d.getLong("f_cnt")).toList();
+        assertEquals(LongStream.range(0, 150).boxed().toList(), order);
+        assertTrue(batches.stream().flatMap(List::stream).allMatch(d -> d.get("_id") != null));
+        Map<?, ?> spool = (Map<?, ?>) service.stats().get("spool");
+        assertEquals(0L, spool.get("depth"));
+        assertEquals(0L, service.stats().get("failed"));
+    }
+
+    @Test
+    void startsNothingWithoutAnIngestSource(@TempDir Path dir) throws Exception {
+        Path spoolDir = dir.resolve("spool");
+        service = new UplinkIngestService(mock(MongoTemplate.class), mock(ReadingStorageService.class),
+                mock(DeviceStateService.class));
+        ReflectionTestUtils.setField(service, "capacity", 10);
+        ReflectionTestUtils.setField(service, "spoolEnabled", true);
+        ReflectionTestUtils.setField(service, "spoolDir", spoolDir.toString());
+        service.init();
+
+        assertFalse(service.isEnabled());
+        assertFalse(Files.exists(spoolDir));
+        assertNull(ReflectionTestUtils.getField(service, "writer"));
+        assertNull(ReflectionTestUtils.getField(service, "replayer"));
+    }
+
+    private void awaitStat(String section, String key, Object value) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!value.equals(((Map<?, ?>) service.stats().get(section)).get(key)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(value, ((Map<?, ?>) service.stats().get(section)).get(key));
+    }
+}
@@ -0,0 +1,127 @@
+package org.example.iotsysirrigation.Services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UplinkSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    private UplinkSpool open() throws IOException {
+        return UplinkSpool.open(dir, 256, 1_000_000, false);
+    }
+
+    private static List<byte[]> records(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> ("uplink-" + i).getBytes(StandardCharsets.UTF_8)).toList();
+    }
+
+    private static List<String> strings(List<byte[]> records) {
+        return records.stream().map(r -> new String(r, StandardCharsets.UTF_8)).toList();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(UplinkSpool.SEGMENT_SUFFIX)).sorted().toList();
+        }
+    }
+
+    @Test
+    void replaysInAppendOrderAcrossSegmentsAndFreesThem() throws IOException {
+        try (UplinkSpool spool = open()) {
+            for (int i = 0; i < 100; i += 10) assertTrue(spool.append(records(i, i + 10)));
+            assertEquals(100, spool.size());
+            assertTrue(segments().size() > 3, "expected rolled segments, got " + segments().size());
+
+            List<String> out = new ArrayList<>();
+            for (List<byte[]> batch; !(batch = spool.read(7)).isEmpty(); ) {
+                out.addAll(strings(batch));
+                spool.commit();
+            }
+            assertEquals(strings(records(0, 100)), out);
+            assertTrue(spool.isEmpty());
+            // drained: only a fresh, empty segment is left
+            assertEquals(1, segments().size());
+            assertEquals(0, Files.size(segments().get(0)));
+        }
+    }
+
+    @Test
+    void resumesFromTheCommittedPositionAfterRestart() throws IOException {
+        try (UplinkSpool spool = open()) {
+            spool.append(records(0, 10));
+            spool.read(4);
+            spool.commit();
+            spool.read(3); // read but never stored: must come back
+        }
+        try (UplinkSpool spool = open()) {
+            assertEquals(6, spool.size());
+            assertEquals(strings(records(4, 10)), strings(spool.read(100)));
+            spool.rewind();
+            assertEquals(strings(records(4, 6)), strings(spool.read(2)));
+        }
+    }
+
+    @Test
+    void cutsATruncatedTailSegmentBackToTheLastWholeRecord() throws IOException {
+        try (UplinkSpool spool = UplinkSpool.open(dir, 1 << 20, 1_000_000, false)) {
+            spool.append(records(0, 5));
+            spool.append(records(5, 6));
+        }
+        // crash in the middle of writing record 5
+        Path tail = segments().get(segments().size() - 1);
+        try (FileChannel ch = FileChannel.open(tail, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 3);
+        }
+
+        try (UplinkSpool spool = UplinkSpool.open(dir, 1 << 20, 1_000_000, false)) {
+            assertEquals(5, spool.size());
+            // the 13 bytes of record 5 that made it to disk
+            assertEquals(13L, spool.stats().get("truncatedBytes"));
+            spool.append(records(6, 8));
+            assertEquals(List.of("uplink-0", "uplink-1", "uplink-2", "uplink-3", "uplink-4", "uplink-6", "uplink-7"),
+                    strings(spool.read(100)));
+        }
+    }
+
+    @Test
+    void dropsEverythingAfterACorruptRecord() throws IOException {
+        try (UplinkSpool spool = UplinkSpool.open(dir, 1 << 20, 1_000_000, false)) {
+            spool.append(records(0, 4));
+        }
+        Path tail = segments().get(0);
+        // flip a payload byte of the third record (8-byte header + "uplink-N")
+        long third = 2 * (8 + "uplink-0".length()) + 8;
+        try (FileChannel ch = FileChannel.open(tail, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{'X'}), third);
+        }
+
+        try (UplinkSpool spool = UplinkSpool.open(dir, 1 << 20, 1_000_000, false)) {
+            assertEquals(List.of("uplink-0", "uplink-1"), strings(spool.read(100)));
+        }
+    }
+
+    @Test
+    void refusesWholeBatchesBeyondTheDiskQuota() throws IOException {
+        try (UplinkSpool spool = UplinkSpool.open(dir, 1 << 20, 100, false)) {
+            assertTrue(spool.append(records(0, 4)));   // 4 x 16 bytes
+            assertFalse(spool.append(records(4, 7)));  // would reach 112
+            assertEquals(4, spool.size());
+            assertEquals(3L, spool.stats().get("refused"));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.example.iotsysirrigation.Services;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.example.iotsysirrigation.JWT.ChirpstackHttpConfig;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Not a unit test (surefire skips it): the device peek (GET, what the device endpoints do before create/update)
+ * and command (POST .../queue) paths of {@link ChirpstackClient} behind an embedded Tomcat, against a local
+ * ChirpStack stub that answers after DELAY_MS. Once with Tomcat's default pool (200 workers, the HTTP client
+ * on its default executor), once with virtual threads (Boot's executor, and the HTTP client on virtual threads).
+ * The servlets call the client directly, so security and Mongo are out of the picture.
+ * Run its main() from the IDE, or with java -cp on target/classes, target/test-classes and the test classpath.
+ */
+public class VirtualThreadsBenchmark {
+
+    private static final int DELAY_MS = 1000;
+    private static final int CONCURRENCY = 500;
+    private static final int SECONDS = 6;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    public static void main(String[] args) throws Exception {
+        Tomcat stub = stub();
+        try {
+            String chirpstack = "http://127.0.0.1:" + stub.getConnector().getLocalPort();
+            System.out.printf("stub delay %d ms, %d concurrent callers, %d s per run%n", DELAY_MS, CONCURRENCY, SECONDS);
+            System.out.printf("%-16s %-8s %10s %10s %10s %8s%n", "mode", "path", "req/s", "p50 ms", "p99 ms", "errors");
+            for (boolean virtual : new boolean[]{false, true}) {
+                Tomcat tomcat = backend(client(chirpstack, virtual), virtual);
+                try {
+                    String base = "http://127.0.0.1:" + tomcat.getConnector().getLocalPort();
+                    run(virtual, "device", HttpRequest.newBuilder(URI.create(base + "/api/devices/eui/0011223344556677")).timeout(TIMEOUT).GET().build());
+                    run(virtual, "command", HttpRequest.newBuilder(URI.create(base + "/api/commands/0011223344556677")).timeout(TIMEOUT)
+                            .POST(HttpRequest.BodyPublishers.noBody()).build());
+                } finally {
+                    tomcat.stop();
+                    tomcat.destroy();
+                }
+            }
+        } finally {
+            stub.stop();
+            stub.destroy();
+        }
+    }
+
+    /** ChirpStack stand-in: its own Tomcat on virtual threads, so the stub itself is never the bottleneck. */
+    private static Tomcat stub() throws Exception {
+        byte[] device = """
+                {"device":{"devEui":"0011223344556677","name":"valve-1","description":"","applicationId":"a","deviceProfileId":"p"},
+                 "lastSeenAt":"2025-06-01T12:00:00Z"}""".getBytes(StandardCharsets.UTF_8);
+        byte[] queued = "{\"id\":\"q\"}".getBytes(StandardCharsets.UTF_8);
+        return tomcat(true, Map.of("/api/devices/*", new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                req.getInputStream().readAllBytes();
+                try {
+                    Thread.sleep(DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = req.getRequestURI().endsWith("/queue") ? queued : device;
+                resp.setContentType("application/json");
+                resp.setContentLength(body.length);
+                resp.getOutputStream().write(body);
+            }
+        }));
+    }
+
+    private static ChirpstackClient client(String baseUrl, boolean virtual) {
+        ChirpstackClient client = new ChirpstackClient(new ChirpstackHttpConfig().chirpstackHttpClient(virtual, 2_000));
+        ReflectionTestUtils.setField(client, "baseUrl", baseUrl);
+        ReflectionTestUtils.setField(client, "token", "bench");
+        // as many connections as callers, and the stub's delay well inside every timeout
+        ReflectionTestUtils.setField(client, "poolSize", CONCURRENCY);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", 30_000L);
+        ReflectionTestUtils.setField(client, "getTimeoutMs", 30_000L);
+        ReflectionTestUtils.setField(client, "updateTimeoutMs", 30_000L);
+        ReflectionTestUtils.setField(client, "enqueueTimeoutMs", 30_000L);
+        client.init();
+        return client;
+    }
+
+    private static Tomcat backend(ChirpstackClient client, boolean virtual) throws Exception {
+        return tomcat(virtual, Map.of(
+                "/api/devices/eui/*", new HttpServlet() {
+                    @Override
+                    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        String devEui = req.getPathInfo().substring(1);
+                        resp.setStatus(client.getDeviceByDevEui(devEui).isPresent() ? 200 : 404);
+                        resp.getWriter().write("{}");
+                    }
+                },
+                "/api/commands/*", new HttpServlet() {
+                    @Override
+                    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        String devEui = req.getPathInfo().substring(1);
+                        resp.setStatus(client.enqueueDownlink(devEui, 1, 2) ? 200 : 502);
+                        resp.getWriter().write("{}");
+                    }
+                }));
+    }
+
+    private static Tomcat tomcat(boolean virtual, Map<String, HttpServlet> servlets) throws Exception {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+        tomcat.setPort(0);
+        if (virtual) {
+            // what Boot's TomcatVirtualThreadsWebServerFactoryCustomizer installs
+            tomcat.getConnector().getProtocolHandler().setExecutor(new VirtualThreadExecutor("tomcat-handler-"));
+        } else {
+            tomcat.getConnector(); // default executor, maxThreads 200 as in Boot
+        }
+        Context ctx = tomcat.addContext("", null);
+        servlets.forEach((pattern, servlet) -> {
+            Tomcat.addServlet(ctx, pattern, servlet);
+            ctx.addServletMappingDecoded(pattern, pattern);
+        });
+        tomcat.start();
+        return tomcat;
+    }
+
+    private static void run(boolean virtual, String path, HttpRequest request) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        LongAdder errors = new LongAdder();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            // warm-up, not counted
+            loop(http, request, callers, new AtomicBoolean(), 2, null, errors);
+            latencies.clear();
+            errors.reset();
+            long t0 = System.nanoTime();
+            loop(http, request, callers, stop, SECONDS, latencies, errors);
+            double elapsed = (System.nanoTime() - t0) / 1e9;
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            System.out.printf("%-16s %-8s %10.0f %10.1f %10.1f %8d%n", virtual ? "virtual" : "platform (200)", path,
+                    sorted.size() / elapsed, pct(sorted, 0.50), pct(sorted, 0.99), errors.sum());
+        }
+    }
+
+    private static void loop(HttpClient http, HttpRequest request, ExecutorService callers, AtomicBoolean stop,
+                             int seconds, List<Long> latencies, LongAdder errors) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            callers.submit(() -> {
+                try {
+                    while (!stop.get()) {
+                        long s = System.nanoTime();
+                        try {
+                            HttpResponse<Void> r = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (r.statusCode() != 200) errors.increment();
+                            else if (latencies != null) latencies.add(System.nanoTime() - s);
+                        } catch (IOException e) {
+                            errors.increment();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        Thread.sleep(seconds * 1000L);
+        stop.set(true);
+        done.await();
+    }
+
+    private static double pct(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) return Double.NaN;
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(p * sorted.size()))) / 1e6;
+    }
+}
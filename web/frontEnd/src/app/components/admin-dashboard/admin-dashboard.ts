@@ -194,11 +194,12 @@ export class AdminDashboard implements OnInit, OnDestroy {
               return of({map:empty, all:[] as RichDevice[]});
             }
 
-            const dev$ = pairs.map(p =>
-              this.readingSvc.getLatest(p.d.devEui, 1).pipe(
-                timeout(this.API_TIMEOUT_MS), catchError(()=>of([] as SensorReading[])),
-                map(reads=>{
-                  const r = reads?.[0] as any;
+            // newest reading of every device in one batch call
+            return this.readingSvc.getLatestBatch(pairs.map(p => p.d.devEui)).pipe(
+              timeout(this.API_TIMEOUT_MS), catchError(()=>of({} as Record<string, SensorReading>)),
+              map(latestByEui=>{
+                const items = pairs.map(p=>{
+                  const r = latestByEui?.[p.d.devEui] as any;
                   const o = this.payloadOf(r);
 
                   const soilHumidity = this.getFirstNumeric(o?.analogInput)       ?? this.getFirstNumeric(o?.soilHumidity);
@@ -247,15 +248,13 @@ export class AdminDashboard implements OnInit, OnDestroy {
                     status: (latest?.fresh ? 'ONLINE' : 'OFFLINE')
                   };
                   return {orgId:p.orgId, rd};
-                })
-              )
-            );
+                });
 
-            return forkJoin(dev$).pipe(map(items=>{
-              const map: Record<string,RichDevice[]> = {}; this.organizations.forEach(o=>map[o.id!]=[]);
-              const all: RichDevice[]=[]; items.forEach(({orgId,rd})=>{map[orgId].push(rd); all.push(rd);});
-              return {map, all};
-            }));
+                const map: Record<string,RichDevice[]> = {}; this.organizations.forEach(o=>map[o.id!]=[]);
+                const all: RichDevice[]=[]; items.forEach(({orgId,rd})=>{map[orgId].push(rd); all.push(rd);});
+                return {map, all};
+              })
+            );
           })
         );
       }),
@@ -4,12 +4,13 @@ import { FormsModule } from '@angular/forms';
 import { MatProgressSpinnerModule } from '@angular/material/progress-spinner';
 import { Router } from '@angular/router';
 import { PLATFORM_ID } from '@angular/core';
-import { catchError, finalize, forkJoin, map, of, timeout, from } from 'rxjs';
+import { catchError, finalize, of, timeout, from, Subscription } from 'rxjs';
 
 import { AuthService } from '../../services/authService/auth.service';
 import { DeviceService } from '../../services/endNodeDeviceService/end-node-device';
 import { SensorReadingService } from '../../services/sensorReadingService/sensor-reading';
 import { OrganizationService } from '../../services/organizationService/organization';
+import { LiveReadingService } from '../../services/liveReadingService/live-reading';
 
 import { EndNodeDevice } from '../../models/end-node-device.model';
 import { SensorReading } from '../../models/sensor-reading.model';
@@ -99,11 +100,16 @@ export class ClientDashboard implements OnInit, OnDestroy {
   canCommand = false;
 
   private refreshTimer?: any;
+  private lastRefreshAt = 0;
+  private liveSub?: Subscription;
+  private pushing = false;   // last status: connected with a live change stream
+  private rawDevices: EndNodeDevice[] = [];
 
   constructor(
     private auth: AuthService,
     private deviceSvc: DeviceService,
     private readingSvc: SensorReadingService,
+    private liveSvc: LiveReadingService,
     @Optional() private orgSvc: OrganizationService,
     private router: Router,
     @Inject(PLATFORM_ID) private platformId: Object
@@ -135,24 +141,45 @@ export class ClientDashboard implements OnInit, OnDestroy {
 
     this.refresh();
     if (isPlatformBrowser(this.platformId)) {
-      this.refreshTimer = setInterval(() => this.refresh(), 10 * 60 * 1000);
+      // readings are pushed while the live channel is up; polling is only the fallback
+      this.liveSub = this.liveSvc.events().subscribe(ev => {
+        if (ev.type === 'reading') this.applyLiveReading(ev.reading);
+        else if (ev.type === 'resync') this.refresh();
+        else if (ev.type === 'status') {
+          // pushes stopped: catch up once now, then tick() polls until the channel is live again
+          if (this.pushing && !(ev.connected && ev.live)) this.refresh();
+          this.pushing = ev.connected && ev.live;
+        }
+      });
+      this.liveSvc.subscribeOrganization(this.orgId);
+      this.refreshTimer = setInterval(() => this.tick(), 60 * 1000);
       document.addEventListener('visibilitychange', this.handleVisibility);
     }
   }
 
   ngOnDestroy(): void {
     if (this.refreshTimer) clearInterval(this.refreshTimer);
+    this.liveSub?.unsubscribe();
     if (isPlatformBrowser(this.platformId)) {
+      this.liveSvc.disconnect();
       document.removeEventListener('visibilitychange', this.handleVisibility);
     }
   }
 
-  private handleVisibility = () => { if (document.visibilityState === 'visible') this.refresh(); };
+  private handleVisibility = () => {
+    if (document.visibilityState === 'visible' && !(this.liveSvc.connected && this.liveSvc.live)) this.refresh();
+  };
+
+  private tick(): void {
+    if (this.liveSvc.connected && this.liveSvc.live) this.recomputeFreshness();
+    else if (Date.now() - this.lastRefreshAt >= 10 * 60 * 1000) this.refresh();
+  }
 
   // ==== data ====
   refresh(): void {
     this.error = null;
     this.loading = true;
+    this.lastRefreshAt = Date.now();
 
     this.deviceSvc.getByOrganization(this.orgId)
       .pipe(
@@ -166,77 +193,24 @@ export class ClientDashboard implements OnInit, OnDestroy {
       )
       .subscribe((devs: EndNodeDevice[]) => {
         if (!devs?.length) {
+          this.rawDevices = [];
           this.devices = [];
           this.recomputeKpis();
           this.saveCache();
           return;
         }
 
-        const requests = devs.map(d => {
-          const deviceId = (d as any).id ?? (d as any)._id ?? (d as any).deviceId ?? d.devEui;
-
-          const latestReads$ = this.readingSvc.getLatest(d.devEui, 1).pipe(
-            timeout(this.API_TIMEOUT_MS),
-            catchError(() => of([] as SensorReading[]))
-          );
-
-          return forkJoin({ latestReads: latestReads$ }).pipe(
-            map(({ latestReads }) => {
-              const r = latestReads?.[0];
-              const o: any = this.payloadOf(r);
-
-              const soilHumidity = this.getFirstNumeric(o?.analogInput)       ?? this.getFirstNumeric(o?.soilHumidity);
-              const luminosity   = this.getFirstNumeric(o?.illuminanceSensor) ?? this.getFirstNumeric(o?.luminosity);
-              const humidity     = this.getFirstNumeric(o?.humiditySensor)    ?? this.getFirstNumeric(o?.humidity);
-              const barometer    = this.getFirstNumeric(o?.barometer);
-              const temperature  = this.getFirstNumeric(o?.temperatureSensor) ?? this.getFirstNumeric(o?.temperature);
-              const command      = this.findCommandValue(o);
-
-              const soilHumidityMax = 100;
-              const luminosityMax   = 100000;
-              const humidityMax     = 100;
-              const barometerMax    = 1100;
-              const temperatureMax  = 60;
-
-              let latest: DeviceWithLatest['latest'] | undefined;
-              if (r) {
-                const ts = new Date((r as any).timestamp).getTime();
-                const fresh = Number.isFinite(ts) && (Date.now() - ts) <= this.FRESH_WINDOW_MS;
-                latest = {
-                  timestamp: (r as any).timestamp,
-                  soilHumidity: this.toNumOrNull(soilHumidity), soilHumidityMax,
-                  luminosity:   this.toNumOrNull(luminosity),   luminosityMax,
-                  humidity:     this.toNumOrNull(humidity),     humidityMax,
-                  barometer:    this.toNumOrNull(barometer),    barometerMax,
-                  temperature:  this.toNumOrNull(temperature),  temperatureMax,
-                  command:      this.toNumOrNull(command),
-                  fresh
-                };
-              }
-
-              const devCoords = this.pickCoordsFromDevice(d as any) || this.pickCoordsFromReading(o);
-              const lat = devCoords?.lat ?? this.orgLat ?? null;
-              const lng = devCoords?.lng ?? this.orgLng ?? null;
-              const altitude = this.toNumOrNull((d as any).altitude ?? (o?.gpsLocation?.altitude));
-
-              return {
-                id: deviceId,
-                devEui: d.devEui,
-                name: d.name,
-                latest,
-                lat, lng, altitude,
-                description: d.description,
-                location: d.address,
-                status: (latest?.fresh ? 'ONLINE' : 'OFFLINE')
-              } as RichDevice;
-            })
-          );
-        });
-
-        forkJoin(
-          requests.map(r$ => r$.pipe(timeout(this.API_TIMEOUT_MS), catchError(() => of(undefined as unknown as DeviceWithLatest))))
-        ).subscribe(list => {
-          this.devices = (list.filter(Boolean) as RichDevice[]);
+        // one batch call for the whole organization instead of one /latest per device
+        this.readingSvc.getLatestBatch(devs.map(d => d.devEui)).pipe(
+          timeout(this.API_TIMEOUT_MS),
+          catchError(() => of({} as Record<string, SensorReading>))
+        ).subscribe(latestByEui => {
+          this.rawDevices = devs;
+          const list = devs.map(d => this.toRichDevice(d, latestByEui?.[d.devEui]));
+          // re-subscribing picks up devices added since the last refresh
+          if (isPlatformBrowser(this.platformId)) this.liveSvc.subscribeOrganization(this.orgId);
+
+          this.devices = list;
           this.recomputeKpis();
           if (!this.selectedDevEui && this.devices.length) this.selectedDevEui = this.devices[0].devEui;
           this.saveCache();
@@ -244,6 +218,82 @@ export class ClientDashboard implements OnInit, OnDestroy {
       });
   }
 
+  /** Card model for one device from its record and newest reading (used by refresh and by live pushes). */
+  private toRichDevice(d: EndNodeDevice, r?: SensorReading): RichDevice {
+    const deviceId = (d as any).id ?? (d as any)._id ?? (d as any).deviceId ?? d.devEui;
+    const o: any = this.payloadOf(r);
+
+    const soilHumidity = this.getFirstNumeric(o?.analogInput)       ?? this.getFirstNumeric(o?.soilHumidity);
+    const luminosity   = this.getFirstNumeric(o?.illuminanceSensor) ?? this.getFirstNumeric(o?.luminosity);
+    const humidity     = this.getFirstNumeric(o?.humiditySensor)    ?? this.getFirstNumeric(o?.humidity);
+    const barometer    = this.getFirstNumeric(o?.barometer);
+    const temperature  = this.getFirstNumeric(o?.temperatureSensor) ?? this.getFirstNumeric(o?.temperature);
+    const command      = this.findCommandValue(o);
+
+    const soilHumidityMax = 100;
+    const luminosityMax   = 100000;
+    const humidityMax     = 100;
+    const barometerMax    = 1100;
+    const temperatureMax  = 60;
+
+    let latest: DeviceWithLatest['latest'] | undefined;
+    if (r) {
+      const ts = new Date((r as any).timestamp).getTime();
+      const fresh = Number.isFinite(ts) && (Date.now() - ts) <= this.FRESH_WINDOW_MS;
+      latest = {
+        timestamp: (r as any).timestamp,
+        soilHumidity: this.toNumOrNull(soilHumidity), soilHumidityMax,
+        luminosity:   this.toNumOrNull(luminosity),   luminosityMax,
+        humidity:     this.toNumOrNull(humidity),     humidityMax,
+        barometer:    this.toNumOrNull(barometer),    barometerMax,
+        temperature:  this.toNumOrNull(temperature),  temperatureMax,
+        command:      this.toNumOrNull(command),
+        fresh
+      };
+    }
+
+    const devCoords = this.pickCoordsFromDevice(d as any) || this.pickCoordsFromReading(o);
+    const lat = devCoords?.lat ?? this.orgLat ?? null;
+    const lng = devCoords?.lng ?? this.orgLng ?? null;
+    const altitude = this.toNumOrNull((d as any).altitude ?? (o?.gpsLocation?.altitude));
+
+    return {
+      id: deviceId,
+      devEui: d.devEui,
+      name: d.name,
+      latest,
+      lat, lng, altitude,
+      description: d.description,
+      location: d.address,
+      status: (latest?.fresh ? 'ONLINE' : 'OFFLINE')
+    } as RichDevice;
+  }
+
+  /** A pushed reading replaces only that device's card. */
+  private applyLiveReading(r: SensorReading): void {
+    const eui = (r as any)?.devEui;
+    const idx = this.rawDevices.findIndex(d => d.devEui === eui);
+    if (idx < 0) return;
+    const current = this.devices.find(x => x.devEui === eui);
+    const curTs = current?.latest?.timestamp ? new Date(current.latest.timestamp as any).getTime() : 0;
+    if (new Date((r as any).timestamp).getTime() < curTs) return;
+    this.devices = this.devices.map(x => x.devEui === eui ? this.toRichDevice(this.rawDevices[idx], r) : x);
+    this.recomputeKpis();
+    this.saveCache();
+  }
+
+  /** Without polling nothing else would flip a card to OFFLINE once its reading ages out. */
+  private recomputeFreshness(): void {
+    const now = Date.now();
+    this.devices = this.devices.map(d => {
+      if (!d.latest) return d;
+      const ts = new Date(d.latest.timestamp as any).getTime();
+      const fresh = Number.isFinite(ts) && (now - ts) <= this.FRESH_WINDOW_MS;
+      return fresh === d.latest.fresh ? d : { ...d, latest: { ...d.latest, fresh }, status: fresh ? 'ONLINE' : 'OFFLINE' };
+    });
+    this.recomputeKpis();
+  }
+
   // ==== cache + KPIs ====
   private saveCache(): void {
     try {
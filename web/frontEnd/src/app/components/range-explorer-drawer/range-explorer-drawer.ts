@@ -44,8 +44,8 @@ export class RangeExplorerDrawer implements OnChanges {
   userSetGranularity = false;
   seriesSel = { min: true, avg: true, max: true, realtime: false };
   noDataInRange = false;
+  exporting = false;
 
-  lastBinStarts: number[] = [];
 
   /** We render bars for everything per your request */
   rangeLine: ChartData<'bar', (number | null)[], string> = { labels: [], datasets: [] };
@@ -296,7 +296,6 @@ export class RangeExplorerDrawer implements OnChanges {
 
     const step = this.stepForGranularity(this.granularity);
     const bins = this.makeBins(this.rangeSel.start, this.rangeSel.end, step);
-    this.lastBinStarts = bins.edges.slice(0, -1);
     const perBin: number[][] = Array.from({ length: Math.max(bins.labels.length - 1, 1) }, () => []);
     const realtime: (number | null)[] = perBin.map(() => null);
 
@@ -353,49 +352,20 @@ export class RangeExplorerDrawer implements OnChanges {
       });
   }
 
-  // CSV
+  // CSV: streamed by the backend from its cursor (raw readings, flattened metric columns)
   downloadCSVRange(): void {
-    const cols: string[] = ['date', 'time'];
-    const want = this.seriesSel;
-    if (want.avg) cols.push('avg');
-    if (want.min) cols.push('min');
-    if (want.max) cols.push('max');
-    if (want.realtime) cols.push('realtime');
-
-    let csv = cols.join(',') + '\n';
-    const labels = (this.rangeLine.labels || []) as string[];
-
-    const pad2 = (n: number) => n.toString().padStart(2,'0');
-    const toDateStr = (d: Date) => `${d.getFullYear()}-${pad2(d.getMonth()+1)}-${pad2(d.getDate())}`;
-    const toTimeStr = (d: Date) => `${pad2(d.getHours())}:${pad2(d.getMinutes())}`;
-
-    for (let i = 0; i < labels.length; i++) {
-      const t = this.lastBinStarts[i] ?? Date.now();
-      const dt = new Date(t);
-
-      const dateStr = toDateStr(dt);
-      const timeStr = (this.granularity === 'day') ? '' : toTimeStr(dt);
-
-      const row: (string | number)[] = [dateStr, timeStr];
-
-      const getVal = (label: string) => {
-        const ds = this.rangeLine.datasets.find(d => d.label === label);
-        const v = (ds?.data?.[i] ?? '') as any;
-        return (v === null || Number.isNaN(v)) ? '' : v;
-      };
-
-      if (want.avg) row.push(getVal('Avg'));
-      if (want.min) row.push(getVal('Min'));
-      if (want.max) row.push(getVal('Max'));
-      if (want.realtime) row.push(getVal('Realtime'));
-
-      csv += row.join(',') + '\n';
-    }
-
-    const filename = `${this.metricTitle(this.metric)}_${this.rangeSel.start.toISOString().slice(0,10)}_${this.rangeSel.end.toISOString().slice(0,10)}.csv`;
-    const blob = new Blob([csv], { type: 'text/csv;charset=utf-8;' });
-    const url = URL.createObjectURL(blob);
-    const a = document.createElement('a'); a.href = url; a.download = filename; a.click();
-    URL.revokeObjectURL(url);
+    if (!this.device || this.exporting) return;
+    const from = this.rangeSel.start, to = this.rangeSel.end;
+    this.exporting = true;
+    this.readingSvc.exportRange(this.device.devEui, from.toISOString(), to.toISOString(), 'csv')
+      .pipe(catchError(() => of(null)))
+      .subscribe(blob => {
+        this.exporting = false;
+        if (!blob) return;
+        const filename = `${this.device!.devEui}_${from.toISOString().slice(0,10)}_${to.toISOString().slice(0,10)}.csv`;
+        const url = URL.createObjectURL(blob);
+        const a = document.createElement('a'); a.href = url; a.download = filename; a.click();
+        URL.revokeObjectURL(url);
+      });
   }
 }
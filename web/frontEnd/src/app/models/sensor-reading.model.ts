@@ -19,3 +19,41 @@ export interface SensorReading {
   timestamp:    string;
 
 }
+
+export interface SeriesBucket {
+  t: string;
+  count: number;
+  min: number | null;
+  max: number | null;
+  avg: number | null;
+}
+
+export interface SeriesResponse {
+  devEui: string;
+  metric: string;
+  granularity: string;
+  from: string;
+  to: string;
+  buckets: SeriesBucket[];
+}
+
+/** Fields without a finite value come back null. */
+export interface RollupMetric {
+  min: number | null;
+  max: number | null;
+  avg: number | null;
+  count: number;
+  last: number | null;
+}
+
+/**
+ * Hourly/daily rollup; metrics keyed by object_json path, e.g. 'humiditySensor.3'.
+ * timestamp and sensorsReading repeat t and each metric's last value in a reading's shape.
+ */
+export interface RollupBucket {
+  t: string;
+  count: number;
+  metrics: Record<string, RollupMetric>;
+  timestamp: string;
+  sensorsReading: Record<string, any>;
+}
@@ -0,0 +1,102 @@
+import { Inject, Injectable, NgZone, PLATFORM_ID } from '@angular/core';
+import { isPlatformBrowser } from '@angular/common';
+import { Observable, Subject } from 'rxjs';
+import { AuthService } from '../authService/auth.service';
+import { SensorReading } from '../../models/sensor-reading.model';
+
+export type LiveEvent =
+  | { type: 'reading'; reading: SensorReading }
+  | { type: 'resync' }
+  | { type: 'status'; connected: boolean; live: boolean };
+
+/**
+ * WebSocket push of new readings (/api/ws/readings). Keeps its subscriptions and re-sends them after
+ * a reconnect; `live` is false while the backend has no change stream (it says so in `hello` and in a
+ * `status` message whenever that changes), so callers should keep polling.
+ */
+@Injectable({ providedIn: 'root' })
+export class LiveReadingService {
+  private ws?: WebSocket;
+  private events$ = new Subject<LiveEvent>();
+  private subs = new Set<string>();   // "devEui:<eui>" | "org:<id>"
+  private retryMs = 1000;
+  private retryTimer?: any;
+  private wanted = false;
+
+  connected = false;
+  live = false;
+
+  constructor(
+    private auth: AuthService,
+    private zone: NgZone,
+    @Inject(PLATFORM_ID) private platformId: Object
+  ) {}
+
+  events(): Observable<LiveEvent> { return this.events$.asObservable(); }
+
+  subscribeOrganization(orgId: string): void { this.add(`org:${orgId}`); }
+  subscribeDevice(devEui: string): void { this.add(`devEui:${devEui}`); }
+
+  disconnect(): void {
+    this.wanted = false;
+    this.subs.clear();
+    if (this.retryTimer) clearTimeout(this.retryTimer);
+    this.ws?.close();
+    this.ws = undefined;
+  }
+
+  private add(key: string): void {
+    if (!isPlatformBrowser(this.platformId)) return;
+    this.subs.add(key);
+    this.wanted = true;
+    if (this.ws?.readyState === WebSocket.OPEN) this.send(key);
+    else if (!this.ws) this.connect();
+  }
+
+  private connect(): void {
+    const token = this.auth.getToken();
+    if (!token) return;
+    const proto = location.protocol === 'https:' ? 'wss' : 'ws';
+    // the token goes in the first frame, not the URL, so it never shows up in access logs
+    const ws = new WebSocket(`${proto}://${location.host}/api/ws/readings`);
+    this.ws = ws;
+
+    ws.onopen = () => {
+      this.retryMs = 1000;
+      ws.send(JSON.stringify({ action: 'auth', token }));
+      this.subs.forEach(k => this.send(k));
+    };
+    ws.onmessage = ev => this.zone.run(() => this.onMessage(ev.data));
+    ws.onclose = () => this.zone.run(() => {
+      this.ws = undefined;
+      this.setStatus(false, false);
+      if (!this.wanted) return;
+      this.retryTimer = setTimeout(() => this.connect(), this.retryMs);
+      this.retryMs = Math.min(this.retryMs * 2, 60000);
+    });
+  }
+
+  private send(key: string): void {
+    const [kind, id] = [key.slice(0, key.indexOf(':')), key.slice(key.indexOf(':') + 1)];
+    const msg = kind === 'org' ? { action: 'subscribe', organizationId: id } : { action: 'subscribe', devEui: id };
+    this.ws?.send(JSON.stringify(msg));
+  }
+
+  private onMessage(raw: string): void {
+    let msg: any;
+    try { msg = JSON.parse(raw); } catch { return; }
+    switch (msg?.type) {
+      case 'hello':   this.setStatus(true, !!msg.live); break;
+      case 'reading': if (msg.reading) this.events$.next({ type: 'reading', reading: msg.reading }); break;
+      case 'status':  this.setStatus(true, !!msg.live); break;
+      case 'resync':  this.events$.next({ type: 'resync' }); break;
+      case 'error':   console.warn('[LiveReading]', msg.message); break;
+    }
+  }
+
+  private setStatus(connected: boolean, live: boolean): void {
+    this.connected = connected;
+    this.live = live;
+    this.events$.next({ type: 'status', connected, live });
+  }
+}
@@ -1,7 +1,7 @@
 import { Injectable } from '@angular/core';
 import {HttpClient, HttpParams} from '@angular/common/http';
 import { Observable } from 'rxjs';
-import { SensorReading } from '../../models/sensor-reading.model';
+import { RollupBucket, SensorReading, SeriesResponse } from '../../models/sensor-reading.model';
 
 @Injectable({ providedIn: 'root' })
 export class SensorReadingService {
@@ -16,6 +16,11 @@ export class SensorReadingService {
     );
   }
 
+  /** Newest reading per device in one request: { devEui: reading }. */
+  getLatestBatch(devEuis: string[]): Observable<Record<string, SensorReading>> {
+    return this.http.post<Record<string, SensorReading>>(`${this.base}/latest/batch`, { devEuis });
+  }
+
   getRange(devEui: string, from: string, to: string): Observable<SensorReading[]> {
     return this.http.get<SensorReading[]>(
       `${this.base}/range/${devEui}`,
@@ -31,11 +36,32 @@ export class SensorReadingService {
     return this.http.get<SensorReading[]>(`${this.base}/last24h/${devEui}`);
   }
 
-  getLastMonth(devEui: string): Observable<SensorReading[]> {
-    return this.http.get<SensorReading[]>(`${this.base}/lastMonth/${devEui}`);
+  /**
+   * Hourly rollups (min/max/avg/count/last per object_json metric) for the last 30 days. Each bucket also has
+   * timestamp and sensorsReading like a reading; with rollups disabled on the backend these are raw readings.
+   */
+  getLastMonth(devEui: string): Observable<RollupBucket[]> {
+    return this.http.get<RollupBucket[]>(`${this.base}/lastMonth/${devEui}`);
+  }
+
+  /** Daily rollups for the last 365 days, shaped like getLastMonth. */
+  getLastYear(devEui: string): Observable<RollupBucket[]> {
+    return this.http.get<RollupBucket[]>(`${this.base}/lastYear/${devEui}`);
   }
 
-  getLastYear(devEui: string): Observable<SensorReading[]> {
-    return this.http.get<SensorReading[]>(`${this.base}/lastYear/${devEui}`);
+  /** Server-side bucketed series, e.g. metric 'humiditySensor.3', granularity '1h' or 'auto'. */
+  getSeries(devEui: string, metric: string, from: string, to: string, granularity = 'auto'): Observable<SeriesResponse> {
+    return this.http.get<SeriesResponse>(
+      `${this.base}/series/${devEui}`,
+      { params: new HttpParams().set('metric', metric).set('from', from).set('to', to).set('granularity', granularity) }
+    );
+  }
+
+  /** Raw readings streamed by the backend as a file (flattened metric columns). */
+  exportRange(devEui: string, from: string, to: string, format: 'csv' | 'ndjson' = 'csv'): Observable<Blob> {
+    return this.http.get(
+      `${this.base}/export/${devEui}`,
+      { params: new HttpParams().set('from', from).set('to', to).set('format', format), responseType: 'blob' }
+    );
   }
 }
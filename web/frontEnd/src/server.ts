@@ -17,20 +17,20 @@ const angularApp = new AngularNodeAppEngine();
 /** --- API proxy (must be BEFORE static & SSR handlers) --- */
 const backendTarget = process.env['BACKEND_URL'] ?? 'http://backend:8081';
 
-app.use(
-  '/api',
-  createProxyMiddleware({
-    target: backendTarget,
-    changeOrigin: true,
-    xfwd: true,
-    proxyTimeout: 30_000,
-    timeout: 30_000,
-    // Express removes "/api" when mounting; add it back so backend receives "/api/..."
-    pathRewrite: (path: string) => `/api${path}`,
-    // v3 logging
-    logger: console,
-  })
-);
+const apiProxy = createProxyMiddleware({
+  target: backendTarget,
+  changeOrigin: true,
+  xfwd: true,
+  proxyTimeout: 30_000,
+  timeout: 30_000,
+  // Express removes "/api" when mounting; add it back so backend receives "/api/..."
+  // (WebSocket upgrades bypass Express and arrive with the full path)
+  pathRewrite: (path: string) => (path.startsWith('/api/') ? path : `/api${path}`),
+  // v3 logging
+  logger: console,
+});
+
+app.use('/api', apiProxy);
 /** -------------------------------------------------------- */
 
 /** Serve static assets from the browser build */
@@ -53,11 +53,16 @@ app.use((req: Request, res: Response, next: NextFunction) => {
 /** Start server if run directly */
 if (isMainModule(import.meta.url)) {
   const port = Number(process.env['PORT'] ?? 4000);
-  app.listen(port, (error?: unknown) => {
+  const server = app.listen(port, (error?: unknown) => {
     if (error) throw error;
     console.log(`Node Express server listening on http://localhost:${port}`);
     console.log(`Proxying /api -> ${backendTarget}`);
   });
+  // live readings (/api/ws/readings)
+  server.on('upgrade', (req, socket, head) => {
+    if (req.url?.startsWith('/api/ws/')) apiProxy.upgrade(req, socket as any, head);
+    else socket.destroy();
+  });
 }
 
 /** Export request handler for CLI/functions */